@@ -0,0 +1,148 @@
+package com.axway.apim.benchmarks;
+
+import com.axway.apim.service.BackendAPI;
+import com.axway.apim.service.CatalogEntry;
+import com.axway.apim.service.Organization;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.jayway.jsonpath.JsonPath;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Extracting a single field from the API Manager responses read by {@code getOrgId} ({@code $.[0].id}),
+ * {@code createBackend} ({@code $.id}) and the catalog replication check ({@code $.[0].state}): JsonPath against
+ * Jackson's tree model, binding to the typed response models the tool uses, and a streaming scan that stops at the
+ * first match.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class JsonExtractionBenchmark {
+
+    private static final ObjectMapper objectMapper = new ObjectMapper();
+    private static final JsonFactory jsonFactory = new JsonFactory();
+
+    @Param({"organization", "backend", "catalog"})
+    public String response;
+
+    private String body;
+    private String jsonPath;
+    private boolean array;
+    private String field;
+    private ObjectReader reader;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        switch (response) {
+            case "organization":
+                body = "[" + organization("2b1ae6d1-1a4c-4b5e-9a39-7c9c2ff0d6a1") + "]";
+                jsonPath = "$.[0].id";
+                array = true;
+                field = "id";
+                reader = objectMapper.readerFor(Organization[].class);
+                break;
+            case "backend":
+                body = backend();
+                jsonPath = "$.id";
+                array = false;
+                field = "id";
+                reader = objectMapper.readerFor(BackendAPI.class);
+                break;
+            case "catalog":
+                body = "[" + catalog("published") + "," + catalog("deprecated") + "]";
+                jsonPath = "$.[0].state";
+                array = true;
+                field = "state";
+                reader = objectMapper.readerFor(CatalogEntry[].class);
+                break;
+            default:
+                throw new IllegalArgumentException(response);
+        }
+    }
+
+    @Benchmark
+    public String jsonPath() {
+        return JsonPath.parse(body).read(jsonPath, String.class);
+    }
+
+    @Benchmark
+    public String jacksonTree() throws IOException {
+        JsonNode node = objectMapper.readTree(body);
+        return (array ? node.path(0) : node).path(field).asText();
+    }
+
+    @Benchmark
+    public Object typedBinding() throws IOException {
+        Object value = reader.readValue(body);
+        return array ? ((Object[]) value)[0] : value;
+    }
+
+    @Benchmark
+    public String jacksonStreaming() throws IOException {
+        try (JsonParser parser = jsonFactory.createParser(body)) {
+            if (array && parser.nextToken() != JsonToken.START_ARRAY) {
+                return null;
+            }
+            if (parser.nextToken() != JsonToken.START_OBJECT) {
+                return null;
+            }
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                String name = parser.getCurrentName();
+                parser.nextToken();
+                if (field.equals(name)) {
+                    return parser.getValueAsString();
+                }
+                parser.skipChildren();
+            }
+            return null;
+        }
+    }
+
+    private static String organization(String id) {
+        return "{\"id\":\"" + id + "\",\"name\":\"Development\",\"description\":\"Development organization\","
+            + "\"email\":\"dev@example.com\",\"image\":null,\"restricted\":false,\"virtualHost\":null,"
+            + "\"phone\":\"+61 2 0000 0000\",\"enabled\":true,\"development\":true,\"dn\":\"o=Development,ou=organizations,ou=APIPortal\","
+            + "\"createdOn\":1617235200000,\"startTrialDate\":null,\"endTrialDate\":null,\"trialDuration\":null,\"isTrial\":null}";
+    }
+
+    private static String backend() {
+        StringBuilder builder = new StringBuilder("{\"id\":\"e4ded8c8-0a40-4b50-bc13-552fb7209150\",\"name\":\"petstore\","
+            + "\"summary\":\"Petstore\",\"description\":\"\",\"version\":\"1.0.0\",\"basePath\":\"https://petstore.swagger.io\","
+            + "\"resourcePath\":\"/v2\",\"models\":{},\"consumes\":[],\"produces\":[],\"integral\":false,"
+            + "\"createdOn\":1617235200000,\"createdBy\":\"c3b1f4a2\",\"organizationId\":\"2b1ae6d1\","
+            + "\"serviceType\":\"rest\",\"hasOriginalDefinition\":true,\"importUrl\":null,\"properties\":{},\"methods\":[");
+        for (int i = 0; i < 20; i++) {
+            builder.append(i > 0 ? "," : "").append("{\"id\":\"m").append(i)
+                .append("\",\"name\":\"operation").append(i).append("\",\"verb\":\"GET\",\"path\":\"/pets/").append(i).append("\"}");
+        }
+        return builder.append("]}").toString();
+    }
+
+    private static String catalog(String state) {
+        return "{\"id\":\"f1c2d3e4\",\"name\":\"petstore\",\"summary\":\"Petstore\",\"version\":\"1.0.0\","
+            + "\"type\":\"rest\",\"path\":\"/petstore\",\"state\":\"" + state + "\",\"tags\":{},\"availableSDK\":{},"
+            + "\"createdOn\":1617235200000,\"createdBy\":\"c3b1f4a2\",\"documentationUrl\":null,\"retired\":false,"
+            + "\"deprecated\":false,\"image\":null,\"properties\":{},\"securityProfiles\":[],\"apiId\":\"e4ded8c8\"}";
+    }
+}
@@ -0,0 +1,241 @@
+package com.axway.apim.benchmarks;
+
+import com.axway.apim.APIDeployment;
+import com.axway.apim.BatchDeployment;
+import com.axway.apim.DeploymentContext;
+import com.axway.apim.DeploymentResult;
+import com.axway.apim.ManifestEntry;
+import com.axway.apim.benchmarks.stub.ApiManagerStub;
+import com.axway.apim.benchmarks.stub.EndpointProfile;
+import com.axway.apim.metrics.MetricsRegistry;
+import com.axway.apim.service.APIManager;
+import com.axway.apim.service.APIManagerFactory;
+import com.axway.apim.service.CatalogSnapshot;
+import com.axway.apim.service.ConcurrencyPolicy;
+import com.axway.apim.service.HttpClientFactory;
+import com.axway.apim.service.MetricsInterceptor;
+import com.axway.apim.service.RetryPolicy;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import picocli.CommandLine;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Drives batch deployments against an {@link ApiManagerStub} cluster and reports deployment throughput, deployment
+ * latency percentiles and per-endpoint HTTP latency percentiles. Every API is seeded with the generated spec and
+ * deployed with a changed copy of it, so each deployment runs the full create, publish, upgrade, replication and
+ * deprecate flow.
+ */
+@CommandLine.Command(description = "Load test the deployment flow against an in-process API Manager stub",
+    name = "load-harness", mixinStandardHelpOptions = true)
+public class LoadHarness implements Callable<Integer> {
+
+    private static final String ORGANIZATION = "Development";
+
+    @CommandLine.Option(names = {"--apis"}, defaultValue = "200", description = "Number of APIs to deploy (default: ${DEFAULT-VALUE})")
+    private int apis;
+
+    @CommandLine.Option(names = {"-t", "--threads"}, defaultValue = "50", description = "Parallel deployments (default: ${DEFAULT-VALUE})")
+    private int threads;
+
+    @CommandLine.Option(names = {"--nodes"}, defaultValue = "1", description = "Simulated API Manager nodes (default: ${DEFAULT-VALUE})")
+    private int nodes;
+
+    @CommandLine.Option(names = {"--spec-size"}, defaultValue = "100KB", description = "Size of the generated spec (default: ${DEFAULT-VALUE})")
+    private String specSize;
+
+    @CommandLine.Option(names = {"--latency"}, description = "Fixed latency in ms per endpoint, e.g. createBackend=200")
+    private Map<String, Long> latency = new HashMap<>();
+
+    @CommandLine.Option(names = {"--jitter"}, description = "Additional uniform random latency in ms per endpoint")
+    private Map<String, Long> jitter = new HashMap<>();
+
+    @CommandLine.Option(names = {"--error-rate"}, description = "Share of failed requests per endpoint, e.g. publishAPI=0.05")
+    private Map<String, Double> errorRate = new HashMap<>();
+
+    @CommandLine.Option(names = {"--error-code"}, defaultValue = "503", description = "Status code of simulated failures (default: ${DEFAULT-VALUE})")
+    private int errorCode;
+
+    @CommandLine.Option(names = {"--lost-responses"}, description = "Apply the failed requests before answering with the error code, as when the response is lost")
+    private boolean lostResponses;
+
+    @CommandLine.Option(names = {"--capacity"}, description = "Concurrent requests per endpoint before the stub slows down, and 503s beyond twice as many, e.g. publishAPI=4")
+    private Map<String, Integer> capacity = new HashMap<>();
+
+    @CommandLine.Option(names = {"--adaptive-concurrency"}, description = "Hold the client to adaptive concurrency limits per endpoint class")
+    private boolean adaptiveConcurrency;
+
+    @CommandLine.Option(names = {"--concurrency-limit"}, description = "Maximum adaptive limit of an endpoint class, e.g. IMPORT=8")
+    private Map<ConcurrencyPolicy.EndpointClass, Integer> concurrencyLimits = new EnumMap<>(ConcurrencyPolicy.EndpointClass.class);
+
+    @CommandLine.Option(names = {"--max-retries"}, defaultValue = "3", description = "Retries of a failed API Manager call (default: ${DEFAULT-VALUE})")
+    private int maxRetries;
+
+    @CommandLine.Option(names = {"--replication-delay"}, split = ",", description = "Catalog replication delay in ms per node, e.g. 0,500,2000")
+    private List<Long> replicationDelay = new ArrayList<>();
+
+    @CommandLine.Option(names = {"--replication-timeout"}, defaultValue = "60", description = "Seconds to wait for replication (default: ${DEFAULT-VALUE})")
+    private long replicationTimeout;
+
+    @CommandLine.Option(names = {"--max-idle-connections"}, defaultValue = "16", description = "Idle connections kept in the shared connection pool (default: ${DEFAULT-VALUE})")
+    private int maxIdleConnections;
+
+    @CommandLine.Option(names = {"--compress-upload"}, description = "Upload the specs gzip compressed")
+    private boolean compressUpload;
+
+    @CommandLine.Option(names = {"--catalog-snapshot"}, description = "Resolve the APIs from one catalog snapshot instead of one lookup per API")
+    private boolean catalogSnapshot;
+
+    @CommandLine.Option(names = {"--metrics-file"}, description = "Write the collected metrics to this file (Prometheus text format, or JSON for a .json file)")
+    private File metricsFile;
+
+    public static void main(String[] args) {
+        System.exit(new CommandLine(new LoadHarness()).execute(args));
+    }
+
+    @Override
+    public Integer call() throws Exception {
+        Path directory = Files.createTempDirectory("apim-load");
+        File seeded = SpecGenerator.fixture(specSize, directory, "seeded");
+        File changed = changedCopy(seeded, directory.resolve("changed-" + specSize + ".json").toFile());
+        byte[] seededSpec = Files.readAllBytes(seeded.toPath());
+
+        try (ApiManagerStub stub = new ApiManagerStub(nodes)) {
+            configure(stub);
+            stub.start();
+            String orgId = stub.addOrganization(ORGANIZATION);
+            List<ManifestEntry> entries = new ArrayList<>();
+            for (int i = 0; i < apis; i++) {
+                String name = String.format("api-%04d", i);
+                stub.addAPI(name, orgId, seededSpec);
+                entries.add(new ManifestEntry(name, ORGANIZATION, changed.getPath()));
+            }
+
+            MetricsRegistry metrics = new MetricsRegistry();
+            HttpClientFactory httpClientFactory = new HttpClientFactory(false, maxIdleConnections, 300, metrics);
+            APIManagerFactory apiManagerFactory = new APIManagerFactory(httpClientFactory, "apiadmin", "changeme");
+            RetryPolicy retryPolicy = new RetryPolicy();
+            retryPolicy.setMaxAttempts(maxRetries + 1);
+            apiManagerFactory.setRetryPolicy(retryPolicy);
+            if (adaptiveConcurrency) {
+                ConcurrencyPolicy concurrencyPolicy = new ConcurrencyPolicy();
+                for (Map.Entry<ConcurrencyPolicy.EndpointClass, Integer> limit : concurrencyLimits.entrySet()) {
+                    concurrencyPolicy.setMaxLimit(limit.getKey(), limit.getValue());
+                }
+                apiManagerFactory.setConcurrencyPolicy(concurrencyPolicy);
+            }
+            List<String> urls = stub.urls();
+            ScheduledExecutorService scheduler = DeploymentContext.newScheduler();
+            DeploymentContext context = new DeploymentContext(apiManagerFactory, urls.subList(1, urls.size()), scheduler);
+            context.setReplicationTimeoutMillis(TimeUnit.SECONDS.toMillis(replicationTimeout));
+            context.setMetrics(metrics);
+            context.setCompressUpload(compressUpload);
+            if (catalogSnapshot) {
+                context.setCatalog(new CatalogSnapshot(TimeUnit.MINUTES.toMillis(5), metrics));
+            }
+            try {
+                APIManager apiManager = apiManagerFactory.login(urls.get(0));
+                if (apiManager == null) {
+                    System.err.println("Login to the stub failed");
+                    return 1;
+                }
+                long start = System.nanoTime();
+                List<DeploymentResult> results = new BatchDeployment(context, apiManager, threads).deploy(entries);
+                long elapsedNanos = System.nanoTime() - start;
+                report(results, elapsedNanos, metrics);
+                if (metricsFile != null) {
+                    metrics.write(metricsFile);
+                }
+                return BatchDeployment.isSuccessful(results) ? 0 : 1;
+            } finally {
+                apiManagerFactory.close();
+                scheduler.shutdownNow();
+                httpClientFactory.shutdown();
+            }
+        } finally {
+            Files.deleteIfExists(seeded.toPath());
+            Files.deleteIfExists(changed.toPath());
+            Files.deleteIfExists(directory);
+        }
+    }
+
+    private void configure(ApiManagerStub stub) {
+        for (Map.Entry<String, Long> entry : latency.entrySet()) {
+            stub.profile(entry.getKey()).setLatencyMillis(entry.getValue());
+        }
+        for (Map.Entry<String, Long> entry : jitter.entrySet()) {
+            stub.profile(entry.getKey()).setJitterMillis(entry.getValue());
+        }
+        for (Map.Entry<String, Double> entry : errorRate.entrySet()) {
+            EndpointProfile profile = stub.profile(entry.getKey());
+            profile.setErrorRate(entry.getValue());
+            profile.setErrorCode(errorCode);
+            profile.setApplyBeforeError(lostResponses);
+        }
+        for (Map.Entry<String, Integer> entry : capacity.entrySet()) {
+            stub.profile(entry.getKey()).setCapacity(entry.getValue());
+        }
+        for (int i = 0; i < Math.min(nodes, replicationDelay.size()); i++) {
+            stub.setReplicationDelayMillis(i, replicationDelay.get(i));
+        }
+    }
+
+    private static File changedCopy(File spec, File target) throws IOException {
+        ObjectMapper objectMapper = new ObjectMapper();
+        JsonNode root = objectMapper.readTree(spec);
+        ((ObjectNode) root.path("paths")).putObject("/load-harness").putObject("get")
+            .put("operationId", "loadHarness")
+            .putObject("responses").putObject("200").put("description", "OK");
+        objectMapper.writeValue(target, root);
+        return target;
+    }
+
+    private void report(List<DeploymentResult> results, long elapsedNanos, MetricsRegistry metrics) {
+        Map<APIDeployment.Status, Integer> statuses = new EnumMap<>(APIDeployment.Status.class);
+        List<Long> durations = new ArrayList<>();
+        for (DeploymentResult result : results) {
+            statuses.merge(result.getStatus(), 1, Integer::sum);
+            durations.add(result.getDurationMillis());
+        }
+        Collections.sort(durations);
+        double seconds = elapsedNanos / (double) TimeUnit.SECONDS.toNanos(1);
+
+        System.out.println();
+        System.out.printf("Deployments     : %d in %.2f s with %d threads against %d node(s)%n", results.size(), seconds, threads, nodes);
+        System.out.printf("Statuses        : %s%n", statuses);
+        System.out.printf("Throughput      : %.2f deployments/s%n", results.size() / seconds);
+        System.out.printf("Deployment (ms) : p50 %d  p95 %d  p99 %d  max %d%n",
+            percentile(durations, 0.50), percentile(durations, 0.95), percentile(durations, 0.99), percentile(durations, 1.0));
+        System.out.println();
+        System.out.printf("%-26s %8s %10s %10s %10s%n", "Endpoint", "Calls", "p50 ms", "p99 ms", "max ms");
+        for (JsonNode histogram : metrics.toJson().path("histograms")) {
+            if (MetricsInterceptor.DURATION.equals(histogram.path("name").asText())) {
+                System.out.printf("%-26s %8d %10.1f %10.1f %10.1f%n", histogram.path("labels").path("endpoint").asText(),
+                    histogram.path("count").asLong(), histogram.path("p50").asDouble() * 1000,
+                    histogram.path("p99").asDouble() * 1000, histogram.path("max").asDouble() * 1000);
+            }
+        }
+    }
+
+    private static long percentile(List<Long> sorted, double quantile) {
+        if (sorted.isEmpty()) {
+            return 0;
+        }
+        int index = (int) Math.ceil(quantile * sorted.size()) - 1;
+        return sorted.get(Math.max(0, Math.min(sorted.size() - 1, index)));
+    }
+}
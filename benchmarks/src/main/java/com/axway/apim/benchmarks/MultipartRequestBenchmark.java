@@ -0,0 +1,94 @@
+package com.axway.apim.benchmarks;
+
+import com.axway.apim.openapi.SpecFile;
+import com.axway.apim.service.APIMService;
+import com.axway.apim.service.UploadRequestBody;
+import okhttp3.MediaType;
+import okhttp3.Request;
+import okhttp3.RequestBody;
+import okio.BufferedSink;
+import okio.GzipSink;
+import okio.Okio;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import retrofit2.Retrofit;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Builds the multipart request of {@code createBackend} through the real Retrofit service interface and writes it
+ * to a discarding sink, which is the work OkHttp does on the wire. Compares the file backed body used by the
+ * deployment with reading the spec into a byte array first, and the uncompressed with the gzip compressed upload.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx2g")
+public class MultipartRequestBenchmark {
+
+    private static final MediaType OCTET_STREAM = MediaType.get("application/octet-stream");
+
+    private APIMService apimService;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        apimService = new Retrofit.Builder()
+            .baseUrl("http://localhost:8075/api/portal/v1.3/")
+            .build()
+            .create(APIMService.class);
+    }
+
+    @Benchmark
+    public long fileBody(SpecFixtures fixtures) throws IOException {
+        return write(RequestBody.create(fixtures.local, OCTET_STREAM));
+    }
+
+    @Benchmark
+    public long snapshotBody(SpecFixtures fixtures) throws IOException {
+        return write(new UploadRequestBody(SpecFile.read(fixtures.local).content(), OCTET_STREAM, "benchmark", null));
+    }
+
+    @Benchmark
+    public long snapshotGzipBody(SpecFixtures fixtures) throws IOException {
+        RequestBody file = new UploadRequestBody(SpecFile.read(fixtures.local).content(), OCTET_STREAM, "benchmark", null);
+        Request request = request(file);
+        try (BufferedSink sink = Okio.buffer(new GzipSink(Okio.blackhole()))) {
+            request.body().writeTo(sink);
+        }
+        return request.body().contentLength();
+    }
+
+    @Benchmark
+    public long byteArrayBody(SpecFixtures fixtures) throws IOException {
+        return write(RequestBody.create(Files.readAllBytes(fixtures.local.toPath()), OCTET_STREAM));
+    }
+
+    private long write(RequestBody file) throws IOException {
+        Request request = request(file);
+        try (BufferedSink sink = Okio.buffer(Okio.blackhole())) {
+            request.body().writeTo(sink);
+        }
+        return request.body().contentLength();
+    }
+
+    private Request request(RequestBody file) {
+        return apimService.createBackend(file,
+            RequestBody.create("2b1ae6d1-1a4c-4b5e-9a39-7c9c2ff0d6a1".getBytes(StandardCharsets.UTF_8)),
+            RequestBody.create("swagger".getBytes(StandardCharsets.UTF_8)),
+            RequestBody.create("petstore".getBytes(StandardCharsets.UTF_8)), null).request();
+    }
+}
@@ -0,0 +1,39 @@
+package com.axway.apim.benchmarks;
+
+import com.axway.apim.openapi.SpecDigest;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Unchanged spec detection as the deployment did it before ({@code readTree} both documents and
+ * {@code JsonNode.equals}) and as it does now (compare the streaming digests). Identical documents are the worst case
+ * for {@code equals}, which has to visit every node.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx2g")
+public class SpecComparisonBenchmark {
+
+    private static final ObjectMapper objectMapper = new ObjectMapper();
+
+    @Benchmark
+    public boolean treeEquals(SpecFixtures fixtures) throws IOException {
+        return objectMapper.readTree(fixtures.downloaded).equals(objectMapper.readTree(fixtures.local));
+    }
+
+    @Benchmark
+    public boolean digestEquals(SpecFixtures fixtures) throws IOException {
+        return SpecDigest.digest(fixtures.downloaded).equals(SpecDigest.digest(fixtures.local));
+    }
+}
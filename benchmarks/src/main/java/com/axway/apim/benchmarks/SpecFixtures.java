@@ -0,0 +1,43 @@
+package com.axway.apim.benchmarks;
+
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * Two byte identical copies of a generated spec, as the deployment sees them: the local openapi file and the
+ * definition downloaded from API Manager.
+ */
+@State(Scope.Benchmark)
+public class SpecFixtures {
+
+    @Param({"100KB", "1MB", "10MB", "50MB"})
+    public String size;
+
+    public File local;
+    public File downloaded;
+
+    private Path directory;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        directory = Files.createTempDirectory("apim-benchmarks");
+        local = SpecGenerator.fixture(size, directory, "local");
+        downloaded = SpecGenerator.fixture(size, directory, "downloaded");
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        Files.deleteIfExists(local.toPath());
+        Files.deleteIfExists(downloaded.toPath());
+        Files.deleteIfExists(directory);
+    }
+}
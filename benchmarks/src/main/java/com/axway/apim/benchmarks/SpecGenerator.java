@@ -0,0 +1,200 @@
+package com.axway.apim.benchmarks;
+
+import com.fasterxml.jackson.core.JsonEncoding;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Random;
+
+/**
+ * Generates Swagger 2.0 documents of a given size. The output only depends on the seed and the target size, so the
+ * checked-in fixtures under {@code src/main/resources/specs} can be reproduced with
+ * {@code java -cp target/benchmarks.jar com.axway.apim.benchmarks.SpecGenerator src/main/resources/specs 100KB 1MB}.
+ */
+public class SpecGenerator {
+
+    public static final long SEED = 42;
+
+    private static final String[] TYPES = {"string", "integer", "number", "boolean"};
+    private static final String[] WORDS = {"order", "pet", "store", "user", "account", "payment", "invoice", "customer",
+        "address", "item", "status", "category", "tag", "shipment", "refund", "balance"};
+
+    private final JsonFactory jsonFactory = new JsonFactory();
+
+    /**
+     * Returns a fixture of the given size, {@code 100KB}, {@code 1MB}, {@code 10MB} or {@code 50MB}. Checked-in
+     * fixtures are copied from the classpath, all other sizes are generated into {@code directory}.
+     */
+    public static File fixture(String size, Path directory) throws IOException {
+        return fixture(size, directory, "spec");
+    }
+
+    public static File fixture(String size, Path directory, String prefix) throws IOException {
+        File file = directory.resolve(prefix + "-" + size + ".json").toFile();
+        try (InputStream resource = SpecGenerator.class.getResourceAsStream("/specs/spec-" + size + ".json")) {
+            if (resource != null) {
+                Files.copy(resource, file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+                return file;
+            }
+        }
+        new SpecGenerator().write(file, parseSize(size));
+        return file;
+    }
+
+    public static long parseSize(String size) {
+        String upper = size.toUpperCase();
+        if (upper.endsWith("MB")) {
+            return Long.parseLong(upper.substring(0, upper.length() - 2)) * 1024 * 1024;
+        }
+        if (upper.endsWith("KB")) {
+            return Long.parseLong(upper.substring(0, upper.length() - 2)) * 1024;
+        }
+        return Long.parseLong(upper);
+    }
+
+    public void write(File file, long targetBytes) throws IOException {
+        Random random = new Random(SEED);
+        try (JsonGenerator generator = jsonFactory.createGenerator(file, JsonEncoding.UTF8)) {
+            generator.useDefaultPrettyPrinter();
+            generator.writeStartObject();
+            generator.writeStringField("swagger", "2.0");
+            generator.writeObjectFieldStart("info");
+            generator.writeStringField("title", "Generated benchmark API");
+            generator.writeStringField("version", "1.0.0");
+            generator.writeEndObject();
+            generator.writeStringField("host", "api.example.com");
+            generator.writeStringField("basePath", "/v1");
+
+            // paths take roughly two thirds of the document, definitions the rest
+            int resources = 0;
+            generator.writeObjectFieldStart("paths");
+            while (generator.getOutputBuffered() + file.length() < targetBytes * 2 / 3) {
+                writePath(generator, random, resources++);
+                generator.flush();
+            }
+            generator.writeEndObject();
+            generator.writeObjectFieldStart("definitions");
+            for (int i = 0; i < resources; i++) {
+                writeDefinition(generator, random, i);
+            }
+            generator.writeEndObject();
+            generator.writeEndObject();
+        }
+    }
+
+    private void writePath(JsonGenerator generator, Random random, int index) throws IOException {
+        String name = name(random, index);
+        generator.writeObjectFieldStart("/" + name + "/{id}");
+        for (String method : new String[]{"get", "put", "delete"}) {
+            generator.writeObjectFieldStart(method);
+            generator.writeArrayFieldStart("tags");
+            generator.writeString(name);
+            generator.writeEndArray();
+            generator.writeStringField("summary", sentence(random, 6));
+            generator.writeStringField("description", sentence(random, 20));
+            generator.writeStringField("operationId", method + "Resource" + index);
+            generator.writeArrayFieldStart("parameters");
+            writeParameter(generator, "id", "path", "string", true, random);
+            writeParameter(generator, "fields", "query", TYPES[random.nextInt(TYPES.length)], false, random);
+            if ("put".equals(method)) {
+                generator.writeStartObject();
+                generator.writeStringField("name", "body");
+                generator.writeStringField("in", "body");
+                generator.writeBooleanField("required", true);
+                generator.writeObjectFieldStart("schema");
+                generator.writeStringField("$ref", "#/definitions/Resource" + index);
+                generator.writeEndObject();
+                generator.writeEndObject();
+            }
+            generator.writeEndArray();
+            generator.writeObjectFieldStart("responses");
+            generator.writeObjectFieldStart("200");
+            generator.writeStringField("description", sentence(random, 4));
+            generator.writeObjectFieldStart("schema");
+            generator.writeStringField("$ref", "#/definitions/Resource" + index);
+            generator.writeEndObject();
+            generator.writeEndObject();
+            generator.writeObjectFieldStart("404");
+            generator.writeStringField("description", "Not found");
+            generator.writeEndObject();
+            generator.writeEndObject();
+            generator.writeEndObject();
+        }
+        generator.writeEndObject();
+    }
+
+    private void writeParameter(JsonGenerator generator, String name, String in, String type, boolean required, Random random) throws IOException {
+        generator.writeStartObject();
+        generator.writeStringField("name", name);
+        generator.writeStringField("in", in);
+        generator.writeStringField("description", sentence(random, 5));
+        generator.writeBooleanField("required", required);
+        generator.writeStringField("type", type);
+        generator.writeEndObject();
+    }
+
+    private void writeDefinition(JsonGenerator generator, Random random, int index) throws IOException {
+        generator.writeObjectFieldStart("Resource" + index);
+        generator.writeStringField("type", "object");
+        generator.writeArrayFieldStart("required");
+        generator.writeString("id");
+        generator.writeEndArray();
+        generator.writeObjectFieldStart("properties");
+        generator.writeObjectFieldStart("id");
+        generator.writeStringField("type", "string");
+        generator.writeEndObject();
+        int properties = 3 + random.nextInt(8);
+        for (int i = 0; i < properties; i++) {
+            String type = TYPES[random.nextInt(TYPES.length)];
+            generator.writeObjectFieldStart(WORDS[random.nextInt(WORDS.length)] + i);
+            generator.writeStringField("type", type);
+            generator.writeStringField("description", sentence(random, 8));
+            if ("integer".equals(type)) {
+                generator.writeNumberField("minimum", random.nextInt(10));
+                generator.writeNumberField("maximum", 1000 + random.nextInt(10000));
+            } else if ("number".equals(type)) {
+                generator.writeNumberField("multipleOf", 0.01);
+            } else if ("string".equals(type) && random.nextBoolean()) {
+                generator.writeNumberField("maxLength", 16 + random.nextInt(240));
+            }
+            generator.writeEndObject();
+        }
+        generator.writeEndObject();
+        generator.writeEndObject();
+    }
+
+    private static String name(Random random, int index) {
+        return WORDS[random.nextInt(WORDS.length)] + "s" + index;
+    }
+
+    private static String sentence(Random random, int words) {
+        StringBuilder builder = new StringBuilder();
+        for (int i = 0; i < words; i++) {
+            if (i > 0) {
+                builder.append(' ');
+            }
+            builder.append(WORDS[random.nextInt(WORDS.length)]);
+        }
+        return builder.append('.').toString();
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length < 2) {
+            System.err.println("Usage: SpecGenerator <directory> <size>...");
+            System.exit(1);
+        }
+        Path directory = new File(args[0]).toPath();
+        Files.createDirectories(directory);
+        for (int i = 1; i < args.length; i++) {
+            File file = directory.resolve("spec-" + args[i] + ".json").toFile();
+            new SpecGenerator().write(file, parseSize(args[i]));
+            System.out.println(file + " " + file.length() + " bytes");
+        }
+    }
+}
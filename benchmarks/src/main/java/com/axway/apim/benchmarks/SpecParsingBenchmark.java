@@ -0,0 +1,55 @@
+package com.axway.apim.benchmarks;
+
+import com.axway.apim.openapi.SpecDigest;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Tree model parsing of a spec against streaming over its tokens, with and without building the canonical digest.
+ * Run with {@code -prof gc} to see the allocation difference.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx2g")
+public class SpecParsingBenchmark {
+
+    private static final ObjectMapper objectMapper = new ObjectMapper();
+    private static final JsonFactory jsonFactory = new JsonFactory();
+
+    @Benchmark
+    public JsonNode readTree(SpecFixtures fixtures) throws IOException {
+        return objectMapper.readTree(fixtures.local);
+    }
+
+    @Benchmark
+    public long streamTokens(SpecFixtures fixtures) throws IOException {
+        long tokens = 0;
+        try (JsonParser parser = jsonFactory.createParser(fixtures.local)) {
+            JsonToken token;
+            while ((token = parser.nextToken()) != null) {
+                tokens += token.id();
+            }
+        }
+        return tokens;
+    }
+
+    @Benchmark
+    public String streamDigest(SpecFixtures fixtures) throws IOException {
+        return SpecDigest.digest(fixtures.local);
+    }
+}
@@ -0,0 +1,163 @@
+package com.axway.apim.benchmarks;
+
+import com.axway.apim.benchmarks.stub.ApiManagerStub;
+import picocli.CommandLine;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the launch time of the tool's artifacts: the Spring Boot jar, the shaded jar of the {@code fast-start}
+ * profile with and without its AppCDS archive, and the native image of the {@code native} profile. Each artifact is
+ * launched as a separate process, as CI does, once with {@code --version} (JVM and picocli start) and once deploying
+ * an unchanged spec against an {@link ApiManagerStub} (login, lookup, download and digest comparison), which is the
+ * common case of a CI run. Artifacts that are missing are left out.
+ */
+@CommandLine.Command(description = "Compare the launch time of the jar, the shaded jar with AppCDS and the native image",
+    name = "startup-benchmark", mixinStandardHelpOptions = true)
+public class StartupBenchmark implements Callable<Integer> {
+
+    private static final String ORGANIZATION = "Development";
+    private static final String API_NAME = "startup";
+
+    @CommandLine.Option(names = {"--target"}, defaultValue = "../target", description = "Build directory of the tool, built with -Pfast-start (default: ${DEFAULT-VALUE})")
+    private File target;
+
+    @CommandLine.Option(names = {"--version-name"}, defaultValue = "1.0.1", description = "Version in the jar names (default: ${DEFAULT-VALUE})")
+    private String versionName;
+
+    @CommandLine.Option(names = {"--java"}, description = "java executable (default: the one running the benchmark)")
+    private String java;
+
+    @CommandLine.Option(names = {"--jvm-option"}, description = "Additional option of the JVM launches, e.g. -XX:TieredStopAtLevel=1")
+    private List<String> jvmOptions = new ArrayList<>();
+
+    @CommandLine.Option(names = {"--launches"}, defaultValue = "20", description = "Measured launches per artifact and workload (default: ${DEFAULT-VALUE})")
+    private int launches;
+
+    @CommandLine.Option(names = {"--warmup"}, defaultValue = "3", description = "Unmeasured launches before, to fill the page cache (default: ${DEFAULT-VALUE})")
+    private int warmup;
+
+    @CommandLine.Option(names = {"--spec-size"}, defaultValue = "100KB", description = "Size of the deployed spec (default: ${DEFAULT-VALUE})")
+    private String specSize;
+
+    public static void main(String[] args) {
+        System.exit(new CommandLine(new StartupBenchmark()).execute(args));
+    }
+
+    @Override
+    public Integer call() throws Exception {
+        Map<String, List<String>> artifacts = artifacts();
+        if (artifacts.isEmpty()) {
+            System.err.println("No artifacts in " + target + ", build the tool with mvn package -Pfast-start");
+            return 1;
+        }
+        Path directory = Files.createTempDirectory("apim-startup");
+        File spec = SpecGenerator.fixture(specSize, directory);
+        File output = directory.resolve("launch.log").toFile();
+        try (ApiManagerStub stub = new ApiManagerStub(1)) {
+            stub.start();
+            stub.addAPI(API_NAME, stub.addOrganization(ORGANIZATION), Files.readAllBytes(spec.toPath()));
+            List<Workload> workloads = Arrays.asList(new Workload("version", 0, "--version"),
+                // the tool exits with 1 when the spec is unchanged
+                new Workload("deploy", 1, "-e", stub.url(0), "-u", "apiadmin", "-p", "changeme",
+                    "-n", API_NAME, "-o", ORGANIZATION, "-i", spec.getPath()));
+
+            System.out.printf("%-10s %-12s %8s %8s %8s %8s%n", "workload", "artifact", "mean ms", "p50 ms", "p95 ms", "min ms");
+            for (Workload workload : workloads) {
+                for (Map.Entry<String, List<String>> artifact : artifacts.entrySet()) {
+                    List<String> command = new ArrayList<>(artifact.getValue());
+                    command.addAll(workload.arguments);
+                    for (int i = 0; i < warmup; i++) {
+                        launch(command, output);
+                    }
+                    List<Double> millis = new ArrayList<>();
+                    for (int i = 0; i < launches; i++) {
+                        long start = System.nanoTime();
+                        int exitCode = launch(command, output);
+                        millis.add((System.nanoTime() - start) / (double) TimeUnit.MILLISECONDS.toNanos(1));
+                        if (exitCode != workload.exitCode) {
+                            System.err.println(artifact.getKey() + " " + workload.name + " exited with " + exitCode + " : " + command);
+                            System.err.print(new String(Files.readAllBytes(output.toPath())));
+                            return 1;
+                        }
+                    }
+                    Collections.sort(millis);
+                    System.out.printf("%-10s %-12s %8.0f %8.0f %8.0f %8.0f%n", workload.name, artifact.getKey(),
+                        millis.stream().mapToDouble(Double::doubleValue).average().orElse(0),
+                        percentile(millis, 0.5), percentile(millis, 0.95), millis.get(0));
+                }
+            }
+            return 0;
+        } finally {
+            Files.deleteIfExists(spec.toPath());
+            Files.deleteIfExists(output.toPath());
+            Files.deleteIfExists(directory);
+        }
+    }
+
+    private Map<String, List<String>> artifacts() {
+        String javaExecutable = java != null ? java : System.getProperty("java.home") + File.separator + "bin" + File.separator + "java";
+        File bootJar = new File(target, "apim-deployment-" + versionName + "-boot.jar");
+        File fastJar = new File(target, "apim-deployment-" + versionName + "-fast.jar");
+        File archive = new File(target, "apim-deployment.jsa");
+        File nativeImage = new File(target, "apim");
+        Map<String, List<String>> artifacts = new LinkedHashMap<>();
+        if (bootJar.isFile()) {
+            artifacts.put("boot-jar", jvm(javaExecutable, "-jar", bootJar.getPath()));
+        }
+        if (fastJar.isFile()) {
+            artifacts.put("shaded-jar", jvm(javaExecutable, "-jar", fastJar.getPath()));
+            if (archive.isFile()) {
+                artifacts.put("appcds", jvm(javaExecutable, "-XX:SharedArchiveFile=" + archive.getPath(), "-jar", fastJar.getPath()));
+            }
+        }
+        if (nativeImage.canExecute()) {
+            artifacts.put("native", Collections.singletonList(nativeImage.getPath()));
+        }
+        return artifacts;
+    }
+
+    private List<String> jvm(String javaExecutable, String... arguments) {
+        List<String> command = new ArrayList<>();
+        command.add(javaExecutable);
+        command.addAll(jvmOptions);
+        command.addAll(Arrays.asList(arguments));
+        return command;
+    }
+
+    private static int launch(List<String> command, File output) throws IOException, InterruptedException {
+        Process process = new ProcessBuilder(command)
+            .redirectErrorStream(true)
+            .redirectOutput(output)
+            .start();
+        return process.waitFor();
+    }
+
+    private static final class Workload {
+
+        private final String name;
+        private final int exitCode;
+        private final List<String> arguments;
+
+        private Workload(String name, int exitCode, String... arguments) {
+            this.name = name;
+            this.exitCode = exitCode;
+            this.arguments = Arrays.asList(arguments);
+        }
+    }
+
+    private static double percentile(List<Double> sorted, double quantile) {
+        return sorted.get(Math.min(sorted.size() - 1, (int) Math.ceil(quantile * sorted.size()) - 1));
+    }
+}
@@ -0,0 +1,624 @@
+package com.axway.apim.benchmarks.stub;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import okhttp3.HttpUrl;
+import okhttp3.MediaType;
+import okhttp3.MultipartReader;
+import okhttp3.mockwebserver.Dispatcher;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+import okhttp3.mockwebserver.RecordedRequest;
+import okio.Buffer;
+import okio.BufferedSource;
+import okio.GzipSource;
+import okio.Okio;
+import org.jetbrains.annotations.NotNull;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UnsupportedEncodingException;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * In-process stand-in for the {@code /api/portal/v1.3} endpoints declared by {@code APIMService}. Every node of the
+ * simulated cluster is its own {@link MockWebServer}; all nodes share one API repository, as API Manager nodes share
+ * their store, but a published API only shows up in the discovery catalog of a node after that node's replication
+ * delay. Endpoints are named after the {@code APIMService} methods, both for {@link #profile(String)} and for the
+ * metrics recorded by the client.
+ */
+public class ApiManagerStub implements Closeable {
+
+    private static final Logger logger = LoggerFactory.getLogger(ApiManagerStub.class);
+
+    private static final String BASE = "/api/portal/v1.3";
+    private static final String SESSION_COOKIE = "APIMANAGERSESSION";
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final List<MockWebServer> nodes = new ArrayList<>();
+    private final long[] replicationDelayMillis;
+    private final Map<String, EndpointProfile> profiles = new ConcurrentHashMap<>();
+    private final Map<String, String> sessions = new ConcurrentHashMap<>();
+    private final Map<String, Long> sessionExpiry = new ConcurrentHashMap<>();
+    private volatile long sessionTtlMillis = TimeUnit.HOURS.toMillis(1);
+
+    private final AtomicInteger loginCount = new AtomicInteger();
+
+    private final Object lock = new Object();
+    private final Map<String, ObjectNode> organizations = new HashMap<>();
+    private final Map<String, ObjectNode> proxies = new HashMap<>();
+    private final Map<String, byte[]> backends = new HashMap<>();
+    private final Map<String, ObjectNode> backendInfo = new HashMap<>();
+    private final Map<String, Long> publishedAtNanos = new HashMap<>();
+
+    public ApiManagerStub(int nodeCount) {
+        this.replicationDelayMillis = new long[nodeCount];
+        for (int i = 0; i < nodeCount; i++) {
+            nodes.add(new MockWebServer());
+        }
+    }
+
+    public void start() throws IOException {
+        for (int i = 0; i < nodes.size(); i++) {
+            MockWebServer node = nodes.get(i);
+            node.setDispatcher(new NodeDispatcher(node, i));
+            node.start();
+            logger.info("API Manager stub node {} listening on {}", i, url(i));
+        }
+    }
+
+    public String url(int node) {
+        HttpUrl url = nodes.get(node).url("/");
+        return url.scheme() + "://" + url.host() + ":" + url.port();
+    }
+
+    public List<String> urls() {
+        List<String> urls = new ArrayList<>();
+        for (int i = 0; i < nodes.size(); i++) {
+            urls.add(url(i));
+        }
+        return urls;
+    }
+
+    /**
+     * Returns the mutable profile of an endpoint, e.g. {@code createBackend} or {@code listCatalogByName}.
+     */
+    public EndpointProfile profile(String endpoint) {
+        return profiles.computeIfAbsent(endpoint, key -> new EndpointProfile());
+    }
+
+    public void setSessionTtlMillis(long sessionTtlMillis) {
+        this.sessionTtlMillis = sessionTtlMillis;
+    }
+
+    /**
+     * Invalidates all sessions, as a restart of API Manager would.
+     */
+    public void expireSessions() {
+        sessions.clear();
+        sessionExpiry.clear();
+    }
+
+    public int getLoginCount() {
+        return loginCount.get();
+    }
+
+    public void setReplicationDelayMillis(int node, long delayMillis) {
+        replicationDelayMillis[node] = delayMillis;
+    }
+
+    public String addOrganization(String name) {
+        synchronized (lock) {
+            String id = UUID.randomUUID().toString();
+            ObjectNode organization = objectMapper.createObjectNode();
+            organization.put("id", id);
+            organization.put("name", name);
+            organization.put("enabled", true);
+            organization.put("development", true);
+            organizations.put(id, organization);
+            return id;
+        }
+    }
+
+    /**
+     * Adds a published API that is already replicated to all nodes.
+     */
+    public String addAPI(String name, String organizationId, byte[] spec) {
+        synchronized (lock) {
+            ObjectNode backend = newBackend(name, organizationId, spec);
+            backend.put("createdOn", System.currentTimeMillis() - TimeUnit.DAYS.toMillis(1));
+            String backendId = backend.get("id").asText();
+            ObjectNode proxy = newProxy(backendId, organizationId, name);
+            proxy.put("state", "published");
+            publishedAtNanos.put(proxy.get("id").asText(), System.nanoTime() - TimeUnit.DAYS.toNanos(1));
+            return proxy.get("id").asText();
+        }
+    }
+
+    /**
+     * Adds a published variant of the API {@code proxyId} on the same backend API, in another organization or on
+     * another path.
+     */
+    public String addVariant(String proxyId, String organizationId, String path) {
+        synchronized (lock) {
+            ObjectNode original = proxies.get(proxyId);
+            ObjectNode proxy = newProxy(original.path("apiId").asText(), organizationId, original.path("name").asText());
+            proxy.put("path", path);
+            proxy.put("state", "published");
+            publishedAtNanos.put(proxy.get("id").asText(), System.nanoTime() - TimeUnit.DAYS.toNanos(1));
+            return proxy.get("id").asText();
+        }
+    }
+
+    public int getProxyCount() {
+        synchronized (lock) {
+            return proxies.size();
+        }
+    }
+
+    public int getBackendCount() {
+        synchronized (lock) {
+            return backends.size();
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        for (MockWebServer node : nodes) {
+            node.shutdown();
+        }
+    }
+
+    private ObjectNode newBackend(String name, String organizationId, byte[] spec) {
+        String id = UUID.randomUUID().toString();
+        ObjectNode backend = objectMapper.createObjectNode();
+        backend.put("id", id);
+        backend.put("name", name);
+        backend.put("organizationId", organizationId);
+        backend.put("serviceType", "rest");
+        backend.put("createdOn", System.currentTimeMillis());
+        backends.put(id, spec);
+        backendInfo.put(id, backend);
+        return backend;
+    }
+
+    private ObjectNode newProxy(String backendId, String organizationId, String name) {
+        String id = UUID.randomUUID().toString();
+        ObjectNode proxy = objectMapper.createObjectNode();
+        proxy.put("id", id);
+        proxy.put("organizationId", organizationId);
+        proxy.put("apiId", backendId);
+        proxy.put("name", name);
+        proxy.put("version", "1.0.0");
+        proxy.put("path", "/" + name);
+        proxy.put("state", "unpublished");
+        proxy.put("deprecated", false);
+        proxy.putArray("securityProfiles");
+        proxy.putArray("authenticationProfiles");
+        proxy.putObject("inboundProfiles");
+        proxy.putObject("outboundProfiles");
+        proxy.putObject("serviceProfiles");
+        proxies.put(id, proxy);
+        return proxy;
+    }
+
+    private class NodeDispatcher extends Dispatcher {
+
+        private final MockWebServer server;
+        private final int node;
+
+        NodeDispatcher(MockWebServer server, int node) {
+            this.server = server;
+            this.node = node;
+        }
+
+        @NotNull
+        @Override
+        public MockResponse dispatch(@NotNull RecordedRequest request) {
+            // MockWebServer keeps every recorded request, including the uploaded specs, until it is taken
+            try {
+                server.takeRequest(0, TimeUnit.NANOSECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            HttpUrl url = request.getRequestUrl();
+            String path = url == null ? "" : url.encodedPath();
+            if (!path.startsWith(BASE)) {
+                return json(404, error("Unknown path " + path));
+            }
+            String[] segments = path.substring(BASE.length()).split("/");
+            String method = request.getMethod();
+            String endpoint = endpoint(method, segments);
+            if (endpoint == null) {
+                return json(404, error("Unknown endpoint " + method + " " + path));
+            }
+            EndpointProfile profile = profiles.get(endpoint);
+            if (profile != null && profile.getCapacity() > 0) {
+                int inFlight = profile.inFlight().incrementAndGet();
+                try {
+                    if (inFlight > 2 * profile.getCapacity()) {
+                        return json(503, error("Overloaded : " + endpoint));
+                    }
+                    return dispatch(request, endpoint, segments, profile,
+                        profile.getLatencyMillis() * Math.max(profile.getCapacity(), inFlight) / profile.getCapacity(), true);
+                } finally {
+                    profile.inFlight().decrementAndGet();
+                }
+            }
+            return dispatch(request, endpoint, segments, profile, profile == null ? 0 : profile.getLatencyMillis(), false);
+        }
+
+        /**
+         * Answers the request after {@code latencyMillis} plus jitter; {@code blocking} waits in the dispatcher, so
+         * that the request counts as in flight until it is answered.
+         */
+        private MockResponse dispatch(RecordedRequest request, String endpoint, String[] segments, EndpointProfile profile,
+                                      long latencyMillis, boolean blocking) {
+            String method = request.getMethod();
+            String path = request.getRequestUrl() == null ? "" : request.getRequestUrl().encodedPath();
+            MockResponse response;
+            boolean fail = profile != null && profile.getErrorRate() > 0 && ThreadLocalRandom.current().nextDouble() < profile.getErrorRate();
+            if (fail && !profile.isApplyBeforeError()) {
+                response = json(profile.getErrorCode(), error("Simulated failure of " + endpoint));
+            } else if (!"login".equals(endpoint) && !authenticated(request)) {
+                response = json(401, error("Not authenticated"));
+            } else {
+                try {
+                    response = handle(endpoint, request, segments);
+                } catch (IOException | RuntimeException e) {
+                    logger.warn("Stub failed to handle {} {}", method, path, e);
+                    response = json(500, error(String.valueOf(e.getMessage())));
+                }
+                if (fail) {
+                    response = json(profile.getErrorCode(), error("Simulated lost response of " + endpoint));
+                }
+            }
+            if (profile != null) {
+                long delay = latencyMillis;
+                if (profile.getJitterMillis() > 0) {
+                    delay += ThreadLocalRandom.current().nextLong(profile.getJitterMillis() + 1);
+                }
+                if (delay > 0 && blocking) {
+                    try {
+                        Thread.sleep(delay);
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                } else if (delay > 0) {
+                    response.setHeadersDelay(delay, TimeUnit.MILLISECONDS);
+                }
+            }
+            return response;
+        }
+
+        private String endpoint(String method, String[] segments) {
+            // segments[0] is empty because the path starts with a slash
+            String resource = segments.length > 1 ? segments[1] : "";
+            switch (resource) {
+                case "login":
+                    return "POST".equals(method) ? "login" : "DELETE".equals(method) ? "logout" : null;
+                case "currentuser":
+                    return "GET".equals(method) ? "currentUser" : null;
+                case "organizations":
+                    return "GET".equals(method) ? "getOrganizationByName" : null;
+                case "discovery":
+                    return "GET".equals(method) ? "listCatalogByName" : null;
+                case "apirepo":
+                    if (segments.length == 2 && "GET".equals(method)) {
+                        return "listBackendAPIs";
+                    }
+                    if (segments.length == 3 && "import".equals(segments[2]) && "POST".equals(method)) {
+                        return "createBackend";
+                    }
+                    if (segments.length == 4 && "download".equals(segments[3]) && "GET".equals(method)) {
+                        return "downloadBackendAPI";
+                    }
+                    if (segments.length == 3 && "DELETE".equals(method)) {
+                        return "deleteBackendAPI";
+                    }
+                    return null;
+                case "proxies":
+                    if (segments.length == 2) {
+                        return "GET".equals(method) ? "listFrontendAPIsByName" : "POST".equals(method) ? "createFrontend" : null;
+                    }
+                    if (segments.length == 4 && "upgrade".equals(segments[2]) && "POST".equals(method)) {
+                        return "upgradeAPI";
+                    }
+                    if (segments.length == 3) {
+                        return "GET".equals(method) ? "getFrontendAPI" : "PUT".equals(method) ? "updateFrontend"
+                            : "DELETE".equals(method) ? "deleteAPI" : null;
+                    }
+                    if (segments.length == 4 && "POST".equals(method)) {
+                        switch (segments[3]) {
+                            case "publish":
+                                return "publishAPI";
+                            case "unpublish":
+                                return "unPublishAPI";
+                            case "deprecate":
+                                return "deprecateAPI";
+                            default:
+                                return null;
+                        }
+                    }
+                    return null;
+                default:
+                    return null;
+            }
+        }
+
+        private boolean authenticated(RecordedRequest request) {
+            String cookies = request.getHeader("Cookie");
+            if (cookies == null) {
+                return false;
+            }
+            for (String cookie : cookies.split(";")) {
+                String[] pair = cookie.trim().split("=", 2);
+                if (pair.length == 2 && SESSION_COOKIE.equals(pair[0])) {
+                    String token = sessions.get(pair[1]);
+                    Long expiry = sessionExpiry.get(pair[1]);
+                    if (expiry != null && expiry < System.currentTimeMillis()) {
+                        sessions.remove(pair[1]);
+                        sessionExpiry.remove(pair[1]);
+                        return false;
+                    }
+                    return token != null && token.equals(request.getHeader("CSRF-Token"));
+                }
+            }
+            return false;
+        }
+
+        private MockResponse handle(String endpoint, RecordedRequest request, String[] segments) throws IOException {
+            HttpUrl url = request.getRequestUrl();
+            switch (endpoint) {
+                case "login": {
+                    String session = UUID.randomUUID().toString();
+                    String token = UUID.randomUUID().toString();
+                    sessions.put(session, token);
+                    sessionExpiry.put(session, System.currentTimeMillis() + sessionTtlMillis);
+                    loginCount.incrementAndGet();
+                    return new MockResponse().setResponseCode(303)
+                        .setHeader("Location", "/home")
+                        .setHeader("CSRF-Token", token)
+                        .setHeader("Set-Cookie", SESSION_COOKIE + "=" + session + "; Path=/; HttpOnly");
+                }
+                case "logout":
+                    return new MockResponse().setResponseCode(204);
+                case "currentUser": {
+                    ObjectNode user = objectMapper.createObjectNode();
+                    user.put("id", "apiadmin");
+                    user.put("loginName", "apiadmin");
+                    user.put("role", "admin");
+                    return json(200, user);
+                }
+                case "getOrganizationByName":
+                    synchronized (lock) {
+                        return json(200, filter(organizations.values(), url));
+                    }
+                case "listFrontendAPIsByName":
+                    synchronized (lock) {
+                        return json(200, filter(proxies.values(), url));
+                    }
+                case "getFrontendAPI":
+                    synchronized (lock) {
+                        ObjectNode proxy = proxies.get(segments[2]);
+                        return proxy == null ? json(404, error("Frontend API not found")) : json(200, proxy.deepCopy());
+                    }
+                case "listBackendAPIs":
+                    synchronized (lock) {
+                        return json(200, filter(backendInfo.values(), url));
+                    }
+                case "listCatalogByName":
+                    return json(200, catalog(url.queryParameter("value")));
+                case "createBackend":
+                    return importBackend(request);
+                case "downloadBackendAPI":
+                    synchronized (lock) {
+                        byte[] spec = backends.get(segments[2]);
+                        if (spec == null) {
+                            return json(404, error("Backend API not found"));
+                        }
+                        return new MockResponse().setResponseCode(200)
+                            .setHeader("Content-Type", "application/json")
+                            .setBody(new Buffer().write(spec));
+                    }
+                case "deleteBackendAPI":
+                    synchronized (lock) {
+                        backendInfo.remove(segments[2]);
+                        return backends.remove(segments[2]) == null ? json(404, error("Backend API not found")) : new MockResponse().setResponseCode(204);
+                    }
+                case "createFrontend": {
+                    JsonNode body = objectMapper.readTree(request.getBody().readByteArray());
+                    synchronized (lock) {
+                        String backendId = body.path("apiId").asText();
+                        if (!backends.containsKey(backendId)) {
+                            return json(400, error("Unknown backend API " + backendId));
+                        }
+                        ObjectNode proxy = newProxy(backendId, body.path("organizationId").asText(), "backend-" + backendId);
+                        return json(201, proxy);
+                    }
+                }
+                case "updateFrontend": {
+                    JsonNode body = objectMapper.readTree(request.getBody().readByteArray());
+                    synchronized (lock) {
+                        if (!proxies.containsKey(segments[2]) || !body.isObject()) {
+                            return json(404, error("Frontend API not found"));
+                        }
+                        ObjectNode proxy = (ObjectNode) body;
+                        proxy.put("id", segments[2]);
+                        proxies.put(segments[2], proxy);
+                        return json(200, proxy);
+                    }
+                }
+                case "deleteAPI":
+                    synchronized (lock) {
+                        publishedAtNanos.remove(segments[2]);
+                        return proxies.remove(segments[2]) == null ? json(404, error("Frontend API not found")) : new MockResponse().setResponseCode(204);
+                    }
+                case "publishAPI": {
+                    Map<String, String> form = form(request);
+                    synchronized (lock) {
+                        ObjectNode proxy = proxies.get(segments[2]);
+                        if (proxy == null) {
+                            return json(404, error("Frontend API not found"));
+                        }
+                        if (form.get("name") != null) {
+                            proxy.put("name", form.get("name"));
+                        }
+                        proxy.put("state", "published");
+                        publishedAtNanos.put(segments[2], System.nanoTime());
+                        return json(201, proxy);
+                    }
+                }
+                case "unPublishAPI":
+                    synchronized (lock) {
+                        ObjectNode proxy = proxies.get(segments[2]);
+                        if (proxy == null) {
+                            return json(404, error("Frontend API not found"));
+                        }
+                        proxy.put("state", "unpublished");
+                        publishedAtNanos.remove(segments[2]);
+                        return json(201, proxy);
+                    }
+                case "deprecateAPI": {
+                    Map<String, String> form = form(request);
+                    synchronized (lock) {
+                        ObjectNode proxy = proxies.get(segments[2]);
+                        if (proxy == null) {
+                            return json(404, error("Frontend API not found"));
+                        }
+                        proxy.put("deprecated", true);
+                        proxy.put("retirementDate", form.get("retirementDate"));
+                        return json(201, proxy);
+                    }
+                }
+                case "upgradeAPI": {
+                    Map<String, String> form = form(request);
+                    synchronized (lock) {
+                        if (!proxies.containsKey(segments[3]) || !proxies.containsKey(form.get("upgradeApiId"))) {
+                            return json(404, error("Frontend API not found"));
+                        }
+                        return new MockResponse().setResponseCode(204);
+                    }
+                }
+                default:
+                    return json(404, error("Unknown endpoint " + endpoint));
+            }
+        }
+
+        /**
+         * The catalog entry of the API {@code id}, or of every published API when {@code id} is null.
+         */
+        private ArrayNode catalog(String id) {
+            ArrayNode catalog = objectMapper.createArrayNode();
+            synchronized (lock) {
+                for (String proxyId : id != null ? Collections.singleton(id) : publishedAtNanos.keySet()) {
+                    Long publishedAt = publishedAtNanos.get(proxyId);
+                    ObjectNode proxy = proxies.get(proxyId);
+                    long delay = TimeUnit.MILLISECONDS.toNanos(replicationDelayMillis[node]);
+                    if (publishedAt != null && proxy != null && System.nanoTime() - publishedAt >= delay) {
+                        ObjectNode entry = catalog.addObject();
+                        entry.put("id", proxyId);
+                        entry.put("name", proxy.path("name").asText());
+                        entry.put("apiId", proxy.path("apiId").asText());
+                        entry.put("state", "published");
+                        entry.put("deprecated", proxy.path("deprecated").asBoolean());
+                    }
+                }
+            }
+            return catalog;
+        }
+
+        private MockResponse importBackend(RecordedRequest request) throws IOException {
+            MediaType contentType = MediaType.parse(String.valueOf(request.getHeader("Content-Type")));
+            String boundary = contentType == null ? null : contentType.parameter("boundary");
+            if (boundary == null) {
+                return json(400, error("Expected multipart/form-data"));
+            }
+            Map<String, byte[]> parts = new HashMap<>();
+            BufferedSource body = "gzip".equalsIgnoreCase(request.getHeader("Content-Encoding"))
+                ? Okio.buffer(new GzipSource(request.getBody()))
+                : request.getBody();
+            try (MultipartReader reader = new MultipartReader(body, boundary)) {
+                MultipartReader.Part part;
+                while ((part = reader.nextPart()) != null) {
+                    String disposition = String.valueOf(part.headers().get("Content-Disposition"));
+                    int start = disposition.indexOf("name=\"");
+                    if (start >= 0) {
+                        String name = disposition.substring(start + 6, disposition.indexOf('"', start + 6));
+                        parts.put(name, part.body().readByteArray());
+                    }
+                    part.close();
+                }
+            }
+            if (!parts.containsKey("file") || !parts.containsKey("organizationId")) {
+                return json(400, error("file and organizationId are required"));
+            }
+            String name = parts.containsKey("name") ? new String(parts.get("name"), StandardCharsets.UTF_8) : "imported";
+            synchronized (lock) {
+                ObjectNode backend = newBackend(name, new String(parts.get("organizationId"), StandardCharsets.UTF_8), parts.get("file"));
+                return json(201, backend.deepCopy());
+            }
+        }
+
+        private ArrayNode filter(Iterable<ObjectNode> values, HttpUrl url) {
+            // API Manager filters the proxies by backend with the field name apiid
+            String field = "apiid".equals(url.queryParameter("field")) ? "apiId" : url.queryParameter("field");
+            String value = url.queryParameter("value");
+            ArrayNode result = objectMapper.createArrayNode();
+            for (ObjectNode node : values) {
+                if (field == null || value == null || value.equals(node.path(field).asText())) {
+                    result.add(node.deepCopy());
+                }
+            }
+            return result;
+        }
+    }
+
+    private static Map<String, String> form(RecordedRequest request) throws UnsupportedEncodingException {
+        String body = request.getBody().readUtf8();
+        if (body.isEmpty()) {
+            return Collections.emptyMap();
+        }
+        Map<String, String> form = new HashMap<>();
+        for (String pair : body.split("&")) {
+            String[] nameValue = pair.split("=", 2);
+            form.put(URLDecoder.decode(nameValue[0], "UTF-8"), nameValue.length > 1 ? URLDecoder.decode(nameValue[1], "UTF-8") : "");
+        }
+        return form;
+    }
+
+    private ObjectNode error(String message) {
+        ObjectNode error = objectMapper.createObjectNode();
+        error.putArray("errors").addObject().put("message", message);
+        return error;
+    }
+
+    private MockResponse json(int code, JsonNode body) {
+        try {
+            return new MockResponse().setResponseCode(code)
+                .setHeader("Content-Type", "application/json")
+                .setHeader("Date", DateTimeFormatter.RFC_1123_DATE_TIME.format(ZonedDateTime.now(ZoneOffset.UTC)))
+                .setBody(new Buffer().write(objectMapper.writeValueAsBytes(body)));
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -0,0 +1,74 @@
+package com.axway.apim.benchmarks.stub;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Simulated behaviour of one API Manager endpoint: a fixed latency plus uniform jitter before the response headers,
+ * and the share of requests answered with {@code errorCode} instead. With {@code applyBeforeError} the failing
+ * requests are still carried out, as when API Manager applies a call but its response is lost on the way back.
+ * <p>
+ * With a {@code capacity} the endpoint behaves like an overloaded admin node: the latency grows in proportion to the
+ * concurrent requests above the capacity, and requests beyond twice the capacity are answered with 503 right away.
+ */
+public class EndpointProfile {
+
+    private long latencyMillis;
+    private long jitterMillis;
+    private double errorRate;
+    private int errorCode = 503;
+    private boolean applyBeforeError;
+    private int capacity;
+    private final AtomicInteger inFlight = new AtomicInteger();
+
+    public long getLatencyMillis() {
+        return latencyMillis;
+    }
+
+    public void setLatencyMillis(long latencyMillis) {
+        this.latencyMillis = latencyMillis;
+    }
+
+    public long getJitterMillis() {
+        return jitterMillis;
+    }
+
+    public void setJitterMillis(long jitterMillis) {
+        this.jitterMillis = jitterMillis;
+    }
+
+    public double getErrorRate() {
+        return errorRate;
+    }
+
+    public void setErrorRate(double errorRate) {
+        this.errorRate = errorRate;
+    }
+
+    public int getErrorCode() {
+        return errorCode;
+    }
+
+    public void setErrorCode(int errorCode) {
+        this.errorCode = errorCode;
+    }
+
+    public boolean isApplyBeforeError() {
+        return applyBeforeError;
+    }
+
+    public void setApplyBeforeError(boolean applyBeforeError) {
+        this.applyBeforeError = applyBeforeError;
+    }
+
+    public int getCapacity() {
+        return capacity;
+    }
+
+    public void setCapacity(int capacity) {
+        this.capacity = capacity;
+    }
+
+    AtomicInteger inFlight() {
+        return inFlight;
+    }
+}
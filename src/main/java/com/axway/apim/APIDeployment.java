@@ -0,0 +1,659 @@
+package com.axway.apim;
+
+import com.axway.apim.journal.DeploymentJournal;
+import com.axway.apim.journal.Journal;
+import com.axway.apim.journal.JournalEntry;
+import com.axway.apim.journal.JournalState;
+import com.axway.apim.metrics.MetricsRegistry;
+import com.axway.apim.openapi.SpecComparison;
+import com.axway.apim.openapi.SpecDiff;
+import com.axway.apim.openapi.SpecDigest;
+import com.axway.apim.openapi.SpecFile;
+import com.axway.apim.openapi.SpecFingerprintCache;
+import com.axway.apim.propagation.ConfigPropagation;
+import com.axway.apim.service.API;
+import com.axway.apim.service.APIMService;
+import com.axway.apim.service.APIManager;
+import com.axway.apim.service.BackendAPI;
+import com.axway.apim.service.Calls;
+import com.axway.apim.service.CatalogSnapshot;
+import com.axway.apim.service.Organization;
+import com.axway.apim.service.ReplayCheck;
+import com.axway.apim.service.UploadRequestBody;
+import okhttp3.MediaType;
+import okhttp3.RequestBody;
+import okhttp3.ResponseBody;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import retrofit2.Response;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+
+public class APIDeployment implements Callable<Integer> {
+
+    private static final Logger logger = LoggerFactory.getLogger(APIDeployment.class);
+
+    public static final String DEPLOYMENTS = "apim_deployments_total";
+
+    public enum Status {
+        PENDING, PLANNED, DEPLOYED, UNCHANGED, SKIPPED, FAILED
+    }
+
+    private final DeploymentContext context;
+    private final APIManager apiManager;
+    private final String apiName;
+    private final String orgName;
+    private final File openAPI;
+    private final MetricsRegistry metrics;
+
+    private Status status = Status.PENDING;
+    private String message;
+    private ReplicationResult replicationResult;
+    private SpecDiff specDiff;
+    private SpecFile spec;
+    private Journal journal;
+    private JournalState state = new JournalState();
+    private boolean backendDownloaded;
+
+    public APIDeployment(DeploymentContext context, APIManager apiManager, String apiName, String orgName, File openAPI) {
+        this.context = context;
+        this.apiManager = apiManager;
+        this.apiName = apiName;
+        this.orgName = orgName;
+        this.openAPI = openAPI;
+        this.metrics = context.getMetrics();
+    }
+
+    /**
+     * Runs the deployment. The read-only steps that do not depend on each other overlap: the organization lookup and
+     * the frontend lookup are in flight while the local spec is digested, and the backend download starts as soon as
+     * the frontend is known. The create, publish, upgrade and deprecate steps stay strictly ordered.
+     * <p>
+     * With a {@link DeploymentJournal} every completed step is recorded. If the journal holds an interrupted
+     * deployment of the same spec, it is resumed after its last completed step; an interrupted deployment of a
+     * different spec is rolled back first.
+     * <p>
+     * In plan mode ({@link DeploymentContext#isPlanOnly()}) only the read-only steps run and the journal is not
+     * consulted; a deployment that would change API Manager ends as {@link Status#PLANNED}.
+     */
+    @Override
+    public Integer call() {
+        long start = System.nanoTime();
+        try {
+            return deploy();
+        } finally {
+            metrics.recordPhase("total", start);
+            metrics.increment(DEPLOYMENTS, "status", status.name());
+        }
+    }
+
+    private int deploy() {
+        long phaseStart = System.nanoTime();
+        APIMService apimService = apiManager.getApimService();
+        CatalogSnapshot catalog = context.getCatalog();
+        CompletableFuture<String> orgFuture = catalog != null ? catalog.findOrganizationId(apimService, orgName)
+            : Calls.map(Calls.enqueue(apimService.getOrganizationByName("name", "eq", orgName)), this::parseOrgId);
+        CompletableFuture<List<API>> frontendFuture = findFrontendAPIs(apimService);
+        DeploymentJournal deploymentJournal = context.getJournal();
+        CompletableFuture<Response<ResponseBody>> downloadFuture = null;
+        try {
+            String openAPIDigest;
+            try {
+                long digestStart = System.nanoTime();
+                openAPIDigest = SpecDigest.digest(spec().openStream());
+                metrics.recordPhase("digest", digestStart);
+            } catch (IOException e) {
+                logger.error("Unable to parse open API json file : {}", openAPI, e);
+                return fail("Unable to parse open API json file");
+            }
+
+            if (deploymentJournal != null && !context.isPlanOnly()) {
+                journal = deploymentJournal.open(apiManager.getUrl(), apiName);
+                JournalState pending = journal.getState();
+                if (pending != null && openAPIDigest.equals(pending.getDigest())) {
+                    logger.info("Resuming interrupted deployment of {}", pending);
+                    state = pending;
+                    return rollout(apimService, null);
+                }
+                if (pending != null) {
+                    logger.warn("The openapi definition changed since the interrupted deployment of {}, rolling it back", apiName);
+                    if (!new DeploymentRollback(apimService).rollback(pending)) {
+                        return fail("Unable to roll back the interrupted deployment");
+                    }
+                    journal.reset();
+                    // the lookup may have seen the frontend API of the interrupted deployment
+                    frontendFuture.cancel(true);
+                    if (catalog != null) {
+                        catalog.invalidate(apiName);
+                    }
+                    frontendFuture = findFrontendAPIs(apimService);
+                }
+            }
+
+            List<API> apis = Calls.await(frontendFuture);
+            metrics.recordPhase("lookup", phaseStart);
+            if (apis == null || apis.size() == 0) {
+                logger.error(" No Match for the API : {}", apiName);
+                return fail("No Match for the API");
+            }
+            if (apis.size() > 1) {
+                logger.error("More than on API matched : {}", apis);
+                return fail("More than one API matched");
+            }
+            API api = apis.get(0);
+            logger.info("{}", apis);
+            String id = api.getId();
+            String backendAPIId = api.getApiId();
+            logger.info("Found the API : {} from API Catalog with id : {}", apiName, id);
+            SpecFingerprintCache fingerprintCache = context.getFingerprintCache();
+            SpecFingerprintCache.Fingerprint fingerprint = null;
+            if (fingerprintCache != null) {
+                fingerprint = fingerprintCache.get(apiManager.getUrl(), backendAPIId);
+            }
+            boolean fingerprintMatches = fingerprint != null && openAPIDigest.equals(fingerprint.getDigest()) && id.equals(fingerprint.getFrontendAPIId());
+            if (!fingerprintMatches) {
+                phaseStart = System.nanoTime();
+                logger.info("Downloading Backend API Definition with id : {}", backendAPIId);
+                downloadFuture = Calls.enqueue(apimService.downloadBackendAPI(backendAPIId, true, "swagger.json"));
+                backendDownloaded = true;
+            }
+
+            String orgId = Calls.await(orgFuture);
+            if (orgId == null) {
+                return fail("Organization not found : " + orgName);
+            }
+            if (fingerprintMatches) {
+                logger.info(" The openapi definition matches the cached fingerprint, exiting.. ");
+                return unchanged("The openapi definition matches the cached fingerprint");
+            }
+            Response<ResponseBody> downloadResponse = Calls.await(downloadFuture);
+            logger.info("Backend api download complete wit status code :{}", downloadResponse.code());
+            if (!downloadResponse.isSuccessful()) {
+                return fail("Unable to download backend API, status code : " + downloadResponse.code());
+            }
+            String existingOpenAPIDigest;
+            try (ResponseBody downloadBody = downloadResponse.body()) {
+                SpecComparison comparison = SpecComparison.compare(apiName, downloadBody.byteStream(), spec(), openAPIDigest,
+                    context.getRedeployThreshold(), context.getDiffReportDirectory());
+                existingOpenAPIDigest = comparison.getDigest();
+                specDiff = comparison.getDiff();
+            }
+            metrics.recordPhase("download", phaseStart);
+            if (existingOpenAPIDigest.equals(openAPIDigest)) {
+                logger.info(" The openapi definition is not changed, exiting.. ");
+                if (fingerprintCache != null) {
+                    fingerprintCache.put(apiManager.getUrl(), backendAPIId, id, openAPIDigest);
+                }
+                return unchanged("The openapi definition is not changed");
+            }
+            if (specDiff != null && !specDiff.requiresRedeploy(context.getRedeployThreshold())) {
+                logger.info(" The openapi definition has only {} changes, skipping deployment ", specDiff.getSeverity());
+                status = Status.SKIPPED;
+                message = "The openapi definition has only " + specDiff.getSeverity() + " changes";
+                return 1;
+            }
+            logger.info(" The openapi definition is changed ");
+            if (context.isPlanOnly()) {
+                status = Status.PLANNED;
+                message = specDiff != null ? "The openapi definition has " + specDiff.getSeverity() + " changes" : "The openapi definition is changed";
+                return 0;
+            }
+            JournalEntry started = new JournalEntry(JournalEntry.Step.STARTED);
+            started.setUrl(apiManager.getUrl());
+            started.setApiName(apiName);
+            started.setOrgName(orgName);
+            started.setOrgId(orgId);
+            started.setOpenAPI(openAPI.getPath());
+            started.setDigest(openAPIDigest);
+            started.setOldAPIId(id);
+            started.setOldBackendId(backendAPIId);
+            record(started);
+            // the catalog snapshot only holds the ids, the configuration of the old API is read when it is copied
+            return rollout(apimService, catalog == null ? api : null);
+        } catch (IOException e) {
+            logger.error("Error processing", e);
+            return fail(e.getMessage());
+        } finally {
+            orgFuture.cancel(true);
+            frontendFuture.cancel(true);
+            if (downloadFuture != null) {
+                downloadFuture.cancel(true);
+                Calls.close(downloadFuture);
+            }
+            closeJournal();
+        }
+    }
+
+    /**
+     * Runs the steps that change API Manager, skipping the ones the journal records as done. {@code api} is the old
+     * frontend API, or null when resuming, in which case it is only read again if its configuration still has to be
+     * copied.
+     */
+    private int rollout(APIMService apimService, API api) throws IOException {
+        if (context.getCatalog() != null) {
+            context.getCatalog().invalidate(apiName);
+        }
+        String id = state.getOldAPIId();
+        String backendAPIId = state.getOldBackendId();
+        long phaseStart;
+        String newBackendID = state.getNewBackendId();
+        if (!state.isDone(JournalEntry.Step.BACKEND_CREATED)) {
+            logger.info("Creating new backend API");
+            phaseStart = System.nanoTime();
+            newBackendID = createBackend(apimService, state.getOrgId());
+            metrics.recordPhase("create_backend", phaseStart);
+            if (newBackendID == null) {
+                return fail("Unable to create backend API");
+            }
+            logger.info("Backend API created with id : {}", newBackendID);
+            JournalEntry entry = new JournalEntry(JournalEntry.Step.BACKEND_CREATED);
+            entry.setNewBackendId(newBackendID);
+            record(entry);
+        }
+        String newAPIId = state.getNewAPIId();
+        API newAPI = null;
+        if (!state.isDone(JournalEntry.Step.FRONTEND_CREATED)) {
+            logger.info("Creating new Frontend API");
+            phaseStart = System.nanoTime();
+            newAPI = createFrontend(apimService, newBackendID, state.getOrgId());
+            metrics.recordPhase("create_frontend", phaseStart);
+            if (newAPI == null) {
+                return fail("Unable to create frontend API");
+            }
+            newAPIId = newAPI.getId();
+            JournalEntry entry = new JournalEntry(JournalEntry.Step.FRONTEND_CREATED);
+            entry.setNewAPIId(newAPIId);
+            record(entry);
+        }
+        if (!state.isDone(JournalEntry.Step.FRONTEND_UPDATED)) {
+            phaseStart = System.nanoTime();
+            if (newAPI == null) {
+                newAPI = getFrontendAPI(apimService, newAPIId);
+            }
+            if (api == null) {
+                api = getFrontendAPI(apimService, id);
+            }
+            if (newAPI != null && api != null) {
+                newAPI = updateNewAPIWithExistingConfig(apimService, api, newAPI);
+            }
+            metrics.recordPhase("update_frontend", phaseStart);
+            if (newAPI == null || api == null) {
+                return fail("Unable to create frontend API");
+            }
+            record(new JournalEntry(JournalEntry.Step.FRONTEND_UPDATED));
+        }
+        logger.info("Frontend API created with id : {}", newAPIId);
+        if (!state.isDone(JournalEntry.Step.PUBLISHED)) {
+            phaseStart = System.nanoTime();
+            int statusCode = publishAPI(apimService, newAPIId);
+            metrics.recordPhase("publish", phaseStart);
+            if (statusCode != 201) {
+                return fail("Unable to publish API, status code : " + statusCode);
+            }
+            record(new JournalEntry(JournalEntry.Step.PUBLISHED));
+        }
+        if (!state.isDone(JournalEntry.Step.UPGRADED)) {
+            logger.info("Upgrading API {} with new API {}", id, newAPIId);
+            phaseStart = System.nanoTime();
+            int statusCode = upgradeAPI(apimService, id, newAPIId);
+            metrics.recordPhase("upgrade", phaseStart);
+            if (statusCode != 204) {
+                return fail("Unable to upgrade API, status code : " + statusCode);
+            }
+            record(new JournalEntry(JournalEntry.Step.UPGRADED));
+        }
+        if (!state.isDone(JournalEntry.Step.REPLICATED) && !state.isDone(JournalEntry.Step.REPLICATION_TIMED_OUT)) {
+            phaseStart = System.nanoTime();
+            boolean published = checkCatalogForPublishedState(apimService, newAPIId);
+            metrics.recordPhase("replication", phaseStart);
+            record(new JournalEntry(published ? JournalEntry.Step.REPLICATED : JournalEntry.Step.REPLICATION_TIMED_OUT));
+        }
+        phaseStart = System.nanoTime();
+        if (state.isDone(JournalEntry.Step.REPLICATED)) {
+            SpecFingerprintCache fingerprintCache = context.getFingerprintCache();
+            if (fingerprintCache != null) {
+                fingerprintCache.put(apiManager.getUrl(), newBackendID, newAPIId, state.getDigest());
+            }
+            // recorded before the call, since a deprecation whose response was lost cannot be rolled back
+            record(new JournalEntry(JournalEntry.Step.OLD_API_DEPRECATING));
+            int statusCode = deprecateAPI(apimService, id);
+            metrics.recordPhase("deprecate", phaseStart);
+            if (statusCode == 201) {
+                logger.info("Deprecate API with id : {}", id);
+                return complete("Deployed frontend API " + newAPIId);
+            }
+            return fail("Unable to deprecate API, status code : " + statusCode);
+        }
+        int statusCode = 201;
+        if (!state.isDone(JournalEntry.Step.OLD_API_UNPUBLISHED)) {
+            logger.info("Un publish API with id : {}", id);
+            record(new JournalEntry(JournalEntry.Step.OLD_API_UNPUBLISHING));
+            statusCode = unPublishAPI(apimService, id);
+            if (statusCode == 201) {
+                record(new JournalEntry(JournalEntry.Step.OLD_API_UNPUBLISHED));
+            }
+        }
+        if (statusCode == 201) {
+            statusCode = 204;
+            if (!state.isDone(JournalEntry.Step.OLD_API_DELETED)) {
+                logger.info("Delete API with id : {}", id);
+                statusCode = deleteAPI(apimService, id);
+                if (statusCode == 204) {
+                    record(new JournalEntry(JournalEntry.Step.OLD_API_DELETED));
+                }
+            }
+            if (statusCode == 204) {
+                logger.info("Delete Backend API with id : {}", backendAPIId);
+                statusCode = deleteBackendAPI(apimService, backendAPIId);
+                metrics.recordPhase("remove_old_api", phaseStart);
+                if (statusCode == 204)
+                    return complete("Deployed frontend API " + newAPIId + ", removed API " + id);
+            }
+        }
+        return fail("Unable to remove API " + id + ", status code : " + statusCode);
+    }
+
+    private void record(JournalEntry entry) throws IOException {
+        if (journal != null) {
+            journal.append(entry);
+            state = journal.getState();
+        } else {
+            state.apply(entry);
+        }
+    }
+
+    private int complete(String message) throws IOException {
+        if (journal != null) {
+            journal.complete();
+            journal = null;
+        }
+        return success(message);
+    }
+
+    private void closeJournal() {
+        if (journal == null) {
+            return;
+        }
+        try {
+            if (status == Status.FAILED && journal.getState() != null) {
+                logger.warn("Deployment of {} is incomplete, run it again to resume or roll it back with --rollback : {}", apiName, journal.getFile());
+            }
+            journal.close();
+        } catch (IOException e) {
+            logger.warn("Unable to close journal {}", journal.getFile(), e);
+        }
+        journal = null;
+    }
+
+    /**
+     * Reads the spec file on first use, the digest at the start of the deployment, so that digest, diff and upload
+     * share one snapshot of the file.
+     */
+    private SpecFile spec() throws IOException {
+        if (spec == null) {
+            spec = SpecFile.read(openAPI);
+        }
+        return spec;
+    }
+
+    private int success(String message) {
+        this.status = Status.DEPLOYED;
+        this.message = message;
+        return 0;
+    }
+
+    private int unchanged(String message) {
+        this.status = Status.UNCHANGED;
+        this.message = message;
+        return 1;
+    }
+
+    private int fail(String message) {
+        this.status = Status.FAILED;
+        this.message = message;
+        return 1;
+    }
+
+    public boolean checkCatalogForPublishedState(APIMService apimService, String id) throws IOException {
+        Map<String, APIMService> nodes = new LinkedHashMap<>();
+        nodes.put(apiManager.getUrl(), apimService);
+        for (String secondaryURL : context.getClusterUrls()) {
+            logger.info("Checking secondary URL : {}", secondaryURL);
+            APIManager secondary = context.getApiManagerFactory().login(secondaryURL);
+            if (secondary != null) {
+                nodes.put(secondaryURL, secondary.getApimService());
+            } else {
+                logger.error("Unable to connect to API manager : {}", secondaryURL);
+            }
+        }
+        ReplicationWatcher watcher = new ReplicationWatcher(context.getScheduler(), context.getReplicationTimeoutMillis());
+        replicationResult = watcher.await(nodes, id);
+        logger.info("API : {} , Replication : {}", id, replicationResult);
+        return replicationResult.isPublished();
+    }
+
+    /**
+     * Looks up the frontend APIs of this name in the catalog snapshot, or asks API Manager when there is none or the
+     * snapshot no longer knows the API. The old APIs of earlier deployments that are deprecated or retired, but not yet
+     * cleaned up, are left out.
+     */
+    private CompletableFuture<List<API>> findFrontendAPIs(APIMService apimService) {
+        CatalogSnapshot catalog = context.getCatalog();
+        if (catalog != null && !catalog.isStale(apiName)) {
+            return catalog.findFrontendAPIs(apimService, apiName);
+        }
+        return Calls.map(Calls.enqueue(apimService.listFrontendAPIsByName("name", "eq", apiName)), response -> {
+            if (!response.isSuccessful()) {
+                throw new IOException("Unable to list frontend APIs, status code : " + response.code());
+            }
+            List<API> apis = new ArrayList<>();
+            if (response.body() != null) {
+                for (API api : response.body()) {
+                    if (api.isDeprecatedOrRetired()) {
+                        logger.info("Leaving out the deprecated frontend API {} of {}", api.getId(), apiName);
+                    } else {
+                        apis.add(api);
+                    }
+                }
+            }
+            return apis;
+        });
+    }
+
+    private API getFrontendAPI(APIMService apimService, String apiId) throws IOException {
+        Response<API> frontendResponse = apimService.getFrontendAPI(apiId).execute();
+        if (!frontendResponse.isSuccessful()) {
+            logger.error("Unable to read Frontend API {}, status code :{}", apiId, frontendResponse.code());
+            return null;
+        }
+        return frontendResponse.body();
+    }
+
+    public String getOrgId(APIMService apimService, String orgName) throws IOException {
+        return parseOrgId(apimService.getOrganizationByName("name", "eq", orgName).execute());
+    }
+
+    private String parseOrgId(Response<List<Organization>> orgResponse) {
+        logger.info("Get Org name complete with status code :{}", orgResponse.code());
+
+        if (!orgResponse.isSuccessful()) {
+            logger.error("Organization {} not found in API manger", orgName);
+            return null;
+        }
+
+        List<Organization> organizations = orgResponse.body();
+        if (organizations == null || organizations.isEmpty() || organizations.get(0).getId() == null) {
+            logger.error("Unable to retrieve Organization detail");
+            return null;
+        }
+        return organizations.get(0).getId();
+    }
+
+    public String createBackend(APIMService apimService, String orgId) throws IOException {
+        RequestBody requestBody = new UploadRequestBody(spec().content(), MediaType.get("application/octet-stream"), apiName, metrics);
+        RequestBody orgRequestBody = RequestBody.create(orgId.getBytes(StandardCharsets.UTF_8));
+        RequestBody typeRequestBody = RequestBody.create("swagger".getBytes(StandardCharsets.UTF_8));
+        RequestBody apiNameRequestBody = RequestBody.create(apiName.getBytes(StandardCharsets.UTF_8));
+        boolean compress = context.isCompressUpload();
+        Response<BackendAPI> backendResponse = apimService.createBackend(requestBody, orgRequestBody, typeRequestBody, apiNameRequestBody, compress ? "gzip" : null).execute();
+        if (compress && backendResponse.code() == 415) {
+            logger.warn("API Manager does not accept compressed uploads, uploading uncompressed");
+            backendResponse.errorBody().close();
+            context.setCompressUpload(false);
+            backendResponse = apimService.createBackend(requestBody, orgRequestBody, typeRequestBody, apiNameRequestBody, null).execute();
+        }
+        logger.info("Create Backend  complete with status code :{}", backendResponse.code());
+
+        if (!backendResponse.isSuccessful()) {
+            logger.error("Unable to create backend API");
+            return null;
+        }
+
+        BackendAPI backendAPI = backendResponse.body();
+        if (backendAPI == null || backendAPI.getId() == null) {
+            logger.error("Unable to retrieve Backend detail");
+            return null;
+        }
+        return backendAPI.getId();
+    }
+
+    public API createFrontend(APIMService apimService, String backendAPIId, String orgId) throws IOException {
+        return createFrontend(apimService, backendAPIId, orgId, ReplayCheck.READ_BACK);
+    }
+
+    public API createFrontend(APIMService apimService, String backendAPIId, String orgId, ReplayCheck replayCheck) throws IOException {
+        API request = new API();
+        request.setApiId(backendAPIId);
+        request.setOrganizationId(orgId);
+        Response<API> frontendResponse = apimService.createFrontend(request, replayCheck).execute();
+        logger.info("Create Frontend  complete with status code :{}", frontendResponse.code());
+
+        if (!frontendResponse.isSuccessful()) {
+            logger.error("Unable to create Frontend API");
+            return null;
+        }
+        return frontendResponse.body();
+    }
+
+    public int publishAPI(APIMService apimService, String apiId) throws IOException {
+        return publishAPI(apimService, apiId, null);
+    }
+
+    public int publishAPI(APIMService apimService, String apiId, String vhost) throws IOException {
+
+        Response<ResponseBody> frontendResponse = apimService.publishAPI(apiId, apiName, vhost).execute();
+        logger.info("Publish Frontend API complete with status code :{}", frontendResponse.code());
+        return frontendResponse.code();
+
+    }
+
+    public int deprecateAPI(APIMService apimService, String apiId) throws IOException {
+        Instant instant = Instant.now();
+        String retirementDate = instant.plusMillis(context.getRetirementDelayMillis()).toString();
+        Response<ResponseBody> frontendResponse = apimService.deprecateAPI(retirementDate, apiId).execute();
+        logger.info("Deprecate Frontend API complete with status code :{}", frontendResponse.code());
+        return frontendResponse.code();
+
+    }
+
+    public int unPublishAPI(APIMService apimService, String apiId) throws IOException {
+
+        Response<ResponseBody> frontendResponse = apimService.unPublishAPI(apiId).execute();
+        logger.info("UnPublish Frontend API complete with status code :{}", frontendResponse.code());
+        return frontendResponse.code();
+
+    }
+
+    public int deleteAPI(APIMService apimService, String apiId) throws IOException {
+
+        Response<Void> frontendResponse = apimService.deleteAPI(apiId).execute();
+        logger.info("Delete Frontend API complete with status code :{}", frontendResponse.code());
+        return frontendResponse.code();
+
+    }
+
+    public int deleteBackendAPI(APIMService apimService, String apiId) throws IOException {
+
+        Response<Void> frontendResponse = apimService.deleteBackendAPI(apiId).execute();
+        logger.info("Delete Backend API complete with status code :{}", frontendResponse.code());
+        return frontendResponse.code();
+
+    }
+
+    public int upgradeAPI(APIMService apimService, String newAPIId, String oldAPIId) throws IOException {
+
+        Response<Void> frontendResponse = apimService.upgradeAPI(newAPIId, oldAPIId).execute();
+        logger.info("Upgrade Frontend API complete with status code :{}", frontendResponse.code());
+        return frontendResponse.code();
+
+    }
+
+    /**
+     * Copies the configuration of the old API to the new one with the context's {@link ConfigPropagation}. API
+     * Manager only accepts the whole frontend document, so the update is a full PUT, made only if a section differs.
+     */
+    public API updateNewAPIWithExistingConfig(APIMService apimService, API oldAPI, API newAPI) throws IOException {
+        ConfigPropagation.Propagation propagation = context.getConfigPropagation().propagate(oldAPI, newAPI);
+        String newAPIId = newAPI.getId();
+        if (!propagation.isChanged()) {
+            logger.info("Frontend API {} already has the configuration of the old API, skipping the update", newAPIId);
+            metrics.increment(ConfigPropagation.PROPAGATIONS, "outcome", "unchanged");
+            return newAPI;
+        }
+        logger.info("Copying the configuration sections {} from old API to new API", propagation.getChanges());
+        metrics.increment(ConfigPropagation.PROPAGATIONS, "outcome", "updated");
+
+        Response<API> frontendResponse = apimService.updateFrontend(newAPIId, propagation.getApi()).execute();
+        logger.info("Copy Frontend configuration from old API to new API complete with status code :{}", frontendResponse.code());
+
+        if (!frontendResponse.isSuccessful()) {
+            logger.error("Unable to copy configuration");
+            return null;
+        }
+        return frontendResponse.body();
+    }
+
+    public String getApiName() {
+        return apiName;
+    }
+
+    public String getOrgName() {
+        return orgName;
+    }
+
+    public File getOpenAPI() {
+        return openAPI;
+    }
+
+    public Status getStatus() {
+        return status;
+    }
+
+    public String getMessage() {
+        return message;
+    }
+
+    public SpecDiff getSpecDiff() {
+        return specDiff;
+    }
+
+    public ReplicationResult getReplicationResult() {
+        return replicationResult;
+    }
+
+    /**
+     * Whether the backend definition was downloaded, false when the fingerprint cache matched or the lookup failed.
+     */
+    public boolean isBackendDownloaded() {
+        return backendDownloaded;
+    }
+}
@@ -1,34 +1,33 @@
 package com.axway.apim;
 
 
-import com.axway.apim.service.APIMService;
+import com.axway.apim.daemon.DaemonServer;
+import com.axway.apim.daemon.DeploymentDaemon;
+import com.axway.apim.daemon.SpecWatcher;
+import com.axway.apim.journal.DeploymentJournal;
+import com.axway.apim.journal.Journal;
+import com.axway.apim.metrics.MetricsRegistry;
+import com.axway.apim.openapi.ChangeType;
+import com.axway.apim.openapi.SpecFingerprintCache;
+import com.axway.apim.propagation.ConfigPropagation;
 import com.axway.apim.service.APIManager;
-import com.axway.apim.service.CSRFTokenInterceptor;
-import com.fasterxml.jackson.databind.JsonNode;
-import com.fasterxml.jackson.databind.ObjectMapper;
-import com.jayway.jsonpath.JsonPath;
-import com.jayway.jsonpath.PathNotFoundException;
-import okhttp3.*;
-import okhttp3.logging.HttpLoggingInterceptor;
+import com.axway.apim.service.APIManagerFactory;
+import com.axway.apim.service.CatalogSnapshot;
+import com.axway.apim.service.ConcurrencyPolicy;
+import com.axway.apim.service.HttpClientFactory;
+import com.axway.apim.service.RetryPolicy;
+import com.axway.apim.service.SessionCache;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import picocli.CommandLine;
-import retrofit2.Response;
-import retrofit2.Retrofit;
-import retrofit2.converter.jackson.JacksonConverterFactory;
-
-import javax.net.ssl.SSLContext;
-import javax.net.ssl.SSLSocketFactory;
-import javax.net.ssl.TrustManager;
-import javax.net.ssl.X509TrustManager;
+
 import java.io.File;
 import java.io.IOException;
-import java.nio.charset.StandardCharsets;
-import java.security.KeyManagementException;
-import java.security.NoSuchAlgorithmException;
-import java.time.Instant;
 import java.util.*;
+import java.nio.file.Path;
 import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.TimeUnit;
 
 @CommandLine.Command(description = "APIM Deployment",
@@ -37,7 +36,10 @@ public class App implements Callable<Integer> {
 
     private static final Logger logger = LoggerFactory.getLogger(App.class);
 
-    @CommandLine.Option(required = true, names = {"-e", "--url"}, description = "API Manager URL")
+    @CommandLine.Spec
+    private CommandLine.Model.CommandSpec spec;
+
+    @CommandLine.Option(names = {"-e", "--url"}, description = "API Manager URL")
     private String url;
 
     @CommandLine.Option(names = {"-c", "--clusterurl"}, description = "API Manager Cluster URLs")
@@ -49,394 +51,438 @@ public class App implements Callable<Integer> {
     @CommandLine.Option(required = true, names = {"-p", "--password"}, description = "API Manager Password")
     private String password;
 
-    @CommandLine.Option(required = true, names = {"-n", "--name"}, description = "API  name")
+    @CommandLine.Option(names = {"-n", "--name"}, description = "API  name")
     private String apiName;
 
-    @CommandLine.Option(required = true, names = {"-o", "--organization_name"}, description = "API Manager Development Organization name")
+    @CommandLine.Option(names = {"-o", "--organization_name"}, description = "API Manager Development Organization name")
     private String orgName;
 
     @CommandLine.Option(names = {"-s", "--skipSSL"}, description = "SKIP SSL server validation")
     private boolean skipSSL = false;
 
-    @CommandLine.Option(required = true, names = {"-i", "--openapi"}, description = "Open API File location")
+    @CommandLine.Option(names = {"-i", "--openapi"}, description = "Open API File location")
     private File openAPI;
 
-    private final ObjectMapper objectMapper = new ObjectMapper();
+    @CommandLine.Option(names = {"-m", "--manifest"}, description = "Batch manifest (JSON array of name, organization, openapi entries)")
+    private File manifest;
 
-    public static void main(String[] args) {
-        int exitCode = new CommandLine(new App()).execute(args);
-        System.exit(exitCode);
-    }
+    @CommandLine.Option(names = {"-t", "--threads"}, defaultValue = "4", description = "Parallel deployments in batch mode (default: ${DEFAULT-VALUE})")
+    private int threads;
 
-    @Override
-    public Integer call() {
-        JsonNode openAPIJsonNode;
-        try {
-            openAPIJsonNode = objectMapper.readTree(openAPI);
-        } catch (IOException e) {
-            logger.error("Unable to parse open API json file : {}", openAPI, e);
-            return 1;
-        }
+    @CommandLine.Option(names = {"-r", "--report"}, description = "Batch deployment report output file")
+    private File report;
 
-        APIManager apiManager = null;
-        try {
-            apiManager = createAPIMService(url, username, password);
-            if (apiManager == null)
-                return 1;
-            APIMService apimService = apiManager.getApimService();
-            String orgId = getOrgId(apimService, orgName);
-            if (orgId == null) {
-                return 1;
-            }
-            Response<List<Map<String, Object>>> response = apimService.listFrontendAPIsByName("name", "eq", apiName).execute();
-            if (response.isSuccessful()) {
-                List<Map<String, Object>> apis = response.body();
-                if (apis == null || apis.size() == 0) {
-                    logger.error(" No Match for the API : {}", apiName);
-                    return 1;
-                }
-                if (apis.size() > 1) {
-                    logger.error("More than on API matched : {}", apis);
-                    return 1;
-                }
-                Map<String, Object> api = apis.get(0);
-                logger.info("{}", apis);
-                String id = (String) api.get("id");
-                String backendAPIId = (String) api.get("apiId");
-                logger.info("Found the API : {} from API Catalog with id : {}", apiName, id);
-                logger.info("Downloading Backend API Definition with id : {}", backendAPIId);
-                Response<ResponseBody> downloadResponse = apimService.downloadBackendAPI(backendAPIId, true, "swagger.json").execute();
-                logger.info("Backend api download complete wit status code :{}", downloadResponse.code());
-                if (downloadResponse.isSuccessful()) {
-                    JsonNode existingOpenAPI = objectMapper.readTree(downloadResponse.body().string());
-                    if (!existingOpenAPI.equals(openAPIJsonNode)) {
-                        logger.info(" The openapi definition is changed ");
-                        logger.info("Creating new backend API");
-                        String newBackendID = createBackend(apimService, orgId);
-                        if (newBackendID != null) {
-                            logger.info("Backend API created with id : {}", newBackendID);
-                            logger.info("Creating new Frontend API");
-                            Map<String, Object> newAPI = createFrontend(apimService, newBackendID, orgId);
-                            newAPI = updateNewAPIWithExistingConfig(apimService, api, newAPI);
-                            if (newAPI != null) {
-                                String newAPIId = (String) newAPI.get("id");
-                                logger.info("Frontend API created with id : {}", newAPIId);
-                                int statusCode = publishAPI(apimService, newAPIId);
-                                if (statusCode == 201) {
-                                    logger.info("Upgrading API {} with new API {}", id, newAPIId);
-                                    statusCode = upgradeAPI(apimService, id, newAPIId);
-                                    if (statusCode == 204) {
-
-                                        if (checkCatalogForPublishedState(apimService, newAPIId)) {
-                                            statusCode = deprecateAPI(apimService, id);
-                                            if (statusCode == 201) {
-                                                logger.info("Deprecate API with id : {}", id);
-                                                return 0;
-                                            }
-                                        } else {
-                                            logger.info("Un publish API with id : {}", id);
-                                            statusCode = unPublishAPI(apimService, id);
-                                            if (statusCode == 201) {
-                                                logger.info("Delete API with id : {}", id);
-                                                statusCode = deleteAPI(apimService, id);
-                                                if (statusCode == 204) {
-                                                    logger.info("Delete Backend API with id : {}", backendAPIId);
-                                                    statusCode = deleteBackendAPI(apimService, backendAPIId);
-                                                    if (statusCode == 204)
-                                                        return 0;
-                                                }
-                                            }
-                                        }
-                                    }
-                                }
-                            }
-
-                        }
-                    } else {
-                        logger.info(" The openapi definition is not changed, exiting.. ");
-                    }
-                }
-                return 1;
-            }
-        } catch (IOException e) {
-            logger.error("Error processing", e);
-        } finally {
+    @CommandLine.Option(names = {"--replication-timeout"}, defaultValue = "600", description = "Seconds to wait for the API to be published on all API Manager nodes (default: ${DEFAULT-VALUE})")
+    private long replicationTimeout;
 
-            if (apiManager != null) {
-                APIMService apimService = apiManager.getApimService();
-                apimService.logout();
-            }
-        }
-        return 0;
-    }
+    @CommandLine.Option(names = {"--max-idle-connections"}, defaultValue = "16", description = "Idle connections kept in the shared connection pool (default: ${DEFAULT-VALUE})")
+    private int maxIdleConnections;
 
+    @CommandLine.Option(names = {"--keep-alive"}, defaultValue = "300", description = "Seconds an idle pooled connection is kept alive (default: ${DEFAULT-VALUE})")
+    private long keepAlive;
 
-    private OkHttpClient newClient(CookieJar cookieJar, HttpLoggingInterceptor httpLoggingInterceptor, CSRFTokenInterceptor csrfTokenInterceptor) {
+    @CommandLine.Option(names = {"--fingerprint-cache"}, description = "Directory of the spec fingerprint cache, skips the backend download when the spec is unchanged")
+    private File fingerprintCache;
 
-        return new OkHttpClient.Builder()
-            .addInterceptor(httpLoggingInterceptor)
-            .addInterceptor(csrfTokenInterceptor)
-            .cookieJar(cookieJar)
-            .followRedirects(false)
-            .build();
-    }
+    @CommandLine.Option(names = {"--fingerprint-cache-size"}, defaultValue = "10000", description = "Maximum entries kept in the spec fingerprint cache (default: ${DEFAULT-VALUE})")
+    private int fingerprintCacheSize;
 
-    public boolean checkCatalogForPublishedState(APIMService apimService, String id) throws IOException {
-        String state = "";
-        boolean exit = false;
-        Object newObj = new Object();
-        do {
-            try {
-                Thread.sleep(3000);
-            } catch (InterruptedException e) {
-                logger.error("Error ", e);
-            }
-            Response<ResponseBody> catalogResponse = apimService.listCatalogByName("id", "eq", id).execute();
-            logger.info("Get Catalog By API Name is complete with status code :{}", catalogResponse.code());
-            if (!catalogResponse.isSuccessful()) {
-                logger.error("API  {} not found in API manger catalog", apiName);
-                return false;
-            }
-            try {
-                state = JsonPath.parse(catalogResponse.body().string()).read("$.[0].state", String.class);
-                logger.info("API : {} , State : {}", id, state);
-            } catch (PathNotFoundException e) {
-                logger.info("Catalog is not yet created");
-            }
+    @CommandLine.Option(names = {"--redeploy-on"}, defaultValue = "COSMETIC", description = "Least severe spec change that triggers a deployment: ${COMPLETION-CANDIDATES} (default: ${DEFAULT-VALUE})")
+    private ChangeType redeployThreshold;
 
-            if (state.equals("published")) {
-                if (newObj.equals(apimService)) {
-                    apimService.logout();
-                }
-                if (urls == null || urls.isEmpty()) {
-                    exit = true;
+    @CommandLine.Option(names = {"--diff-report"}, description = "Directory for the per-API OpenAPI diff reports")
+    private File diffReport;
 
-                } else {
-                    String secondaryURL = urls.pop();
-                    logger.info("Checking secondary URL : {}", secondaryURL);
-                    APIManager apiManager = createAPIMService(secondaryURL, username, password);
-                    if (apiManager != null) {
-                        newObj = apiManager.getApimService();
-                    } else {
-                        logger.error("Unable to connect to API manager : {}", secondaryURL);
-                    }
-                }
-            }
-        } while (!exit);
-        return true;
-    }
+    @CommandLine.Option(names = {"--metrics-file"}, description = "Write per-step latency and call count metrics to this file (Prometheus text format, or JSON for a .json file)")
+    private File metricsFile;
 
-    public String getOrgId(APIMService apimService, String orgName) throws IOException {
-        Response<ResponseBody> orgResponse = apimService.getOrganizationByName("name", "eq", orgName).execute();
-        logger.info("Get Org name complete with status code :{}", orgResponse.code());
+    @CommandLine.Option(names = {"--compress-upload"}, description = "Upload the OpenAPI file gzip compressed (falls back to uncompressed if API Manager rejects it)")
+    private boolean compressUpload;
 
-        if (!orgResponse.isSuccessful()) {
-            logger.error("Organization {} not found in API manger", orgName);
-            return null;
-        }
+    @CommandLine.Option(names = {"--session-cache"}, description = "Directory of the encrypted session cache, reuses API Manager sessions across runs instead of logging in")
+    private File sessionCache;
 
-        try {
-            return JsonPath.parse(orgResponse.body().string()).read("$.[0].id", String.class);
-        } catch (PathNotFoundException e) {
-            logger.error("Unable to retrieve Organization detail", e);
-            return null;
-        }
-    }
+    @CommandLine.Option(names = {"--session-cache-key"}, defaultValue = "${env:APIM_SESSION_CACHE_KEY}", description = "Passphrase of the session cache (default: environment variable APIM_SESSION_CACHE_KEY)")
+    private String sessionCacheKey;
 
-    public String createBackend(APIMService apimService, String orgId) throws IOException {
-        RequestBody requestBody = RequestBody.create(openAPI, MediaType.get("application/octet-stream"));
-        RequestBody orgRequestBody = RequestBody.create(orgId.getBytes(StandardCharsets.UTF_8));
-        RequestBody typeRequestBody = RequestBody.create("swagger".getBytes(StandardCharsets.UTF_8));
-        RequestBody apiNameRequestBody = RequestBody.create(apiName.getBytes(StandardCharsets.UTF_8));
-        Response<ResponseBody> backendResponse = apimService.createBackend(requestBody, orgRequestBody, typeRequestBody, apiNameRequestBody).execute();
-        logger.info("Create Backend  complete with status code :{}", backendResponse.code());
-
-        if (!backendResponse.isSuccessful()) {
-            logger.error("Unable to create backend API");
-            return null;
-        }
+    @CommandLine.Option(names = {"--max-retries"}, defaultValue = "3", description = "Retries of a failed API Manager call, 0 disables retries (default: ${DEFAULT-VALUE})")
+    private int maxRetries;
 
-        try {
-            return JsonPath.parse(backendResponse.body().string()).read("$.id", String.class);
-        } catch (PathNotFoundException e) {
-            logger.error("Unable to retrieve Backend detail", e);
-            return null;
-        }
-    }
+    @CommandLine.Option(names = {"--retry-budget"}, defaultValue = "60", description = "Seconds a call may spend retrying in total (default: ${DEFAULT-VALUE})")
+    private long retryBudget;
 
-    public Map<String, Object> createFrontend(APIMService apimService, String backendAPIId, String orgId) throws IOException {
-        Map<String, String> map = new HashMap<>();
-        map.put("apiId", backendAPIId);
-        map.put("organizationId", orgId);
-        Response<Map<String, Object>> frontendResponse = apimService.createFrontend(map).execute();
-        logger.info("Create Frontend  complete with status code :{}", frontendResponse.code());
+    @CommandLine.Option(names = {"--breaker-threshold"}, defaultValue = "5", description = "Consecutive failures after which calls to an API Manager node fail fast (default: ${DEFAULT-VALUE})")
+    private int breakerThreshold;
 
-        if (!frontendResponse.isSuccessful()) {
-            logger.error("Unable to create Frontend API");
-            return null;
-        }
-        return frontendResponse.body();
-    }
+    @CommandLine.Option(names = {"--breaker-open"}, defaultValue = "30", description = "Seconds calls to a failing node fail fast before a trial call (default: ${DEFAULT-VALUE})")
+    private long breakerOpen;
 
-    public int publishAPI(APIMService apimService, String apiId) throws IOException {
+    @CommandLine.Option(names = {"--journal"}, description = "Directory of the deployment journal, resumes interrupted deployments from their last completed step")
+    private File journal;
 
-        Response<ResponseBody> frontendResponse = apimService.publishAPI(apiId, apiName, null).execute();
-        logger.info("Publish Frontend API complete with status code :{}", frontendResponse.code());
-        return frontendResponse.code();
+    @CommandLine.Option(names = {"--rollback"}, description = "Roll back the interrupted deployments in the journal (all of them, or the one of --name) instead of deploying")
+    private boolean rollback;
 
-    }
+    @CommandLine.Option(names = {"--watch"}, description = "Run as a daemon that deploys the OpenAPI files of this directory (or of --manifest) whenever they change")
+    private File watch;
 
-    public int deprecateAPI(APIMService apimService, String apiId) throws IOException {
-        Instant instant = Instant.now();
-        String retirementDate = instant.plusMillis(5000).toString();
-        //  String retirementDate = instant.plus(2, ChronoUnit.MINUTES).toString();
-        Response<ResponseBody> frontendResponse = apimService.deprecateAPI(retirementDate, apiId).execute();
-        logger.info("Deprecate Frontend API complete with status code :{}", frontendResponse.code());
-        return frontendResponse.code();
+    @CommandLine.Option(names = {"--debounce"}, defaultValue = "2000", description = "Milliseconds a changed file has to stay unchanged before it is deployed (default: ${DEFAULT-VALUE})")
+    private long debounce;
 
-    }
+    @CommandLine.Option(names = {"--queue-size"}, defaultValue = "100", description = "Deployments the daemon queues at most (default: ${DEFAULT-VALUE})")
+    private int queueSize;
 
-    public int unPublishAPI(APIMService apimService, String apiId) throws IOException {
+    @CommandLine.Option(names = {"--http-port"}, description = "Local port of the daemon's status and deploy endpoint")
+    private Integer httpPort;
 
-        Response<ResponseBody> frontendResponse = apimService.unPublishAPI(apiId).execute();
-        logger.info("UnPublish Frontend API complete with status code :{}", frontendResponse.code());
-        return frontendResponse.code();
+    @CommandLine.Option(names = {"--catalog-snapshot"}, description = "Read all frontend APIs and organizations once and resolve the APIs of the run from memory instead of one lookup per API")
+    private boolean catalogSnapshot;
 
-    }
+    @CommandLine.Option(names = {"--catalog-ttl"}, defaultValue = "300", description = "Seconds after which the catalog snapshot is read again (default: ${DEFAULT-VALUE})")
+    private long catalogTtl;
 
-    public int deleteAPI(APIMService apimService, String apiId) throws IOException {
+    @CommandLine.Option(names = {"--topology"}, description = "Deploy to every API Manager environment of this topology file (JSON array of name, url, clusterUrls, canary, threads entries) instead of --url")
+    private File topology;
 
-        Response<Void> frontendResponse = apimService.deleteAPI(apiId).execute();
-        logger.info("Delete Frontend API complete with status code :{}", frontendResponse.code());
-        return frontendResponse.code();
+    @CommandLine.Option(names = {"--max-parallel-environments"}, defaultValue = "4", description = "Environments of the topology deployed at the same time (default: ${DEFAULT-VALUE})")
+    private int maxParallelEnvironments;
 
-    }
+    @CommandLine.Option(names = {"--abort-after"}, defaultValue = "1", description = "Failed environments after which the environments not yet started are skipped, 0 never skips (default: ${DEFAULT-VALUE})")
+    private int abortAfter;
 
-    public int deleteBackendAPI(APIMService apimService, String apiId) throws IOException {
+    @CommandLine.Option(names = {"--retirement-delay"}, defaultValue = "5", description = "Seconds from deprecation of the old API to its retirement date (default: ${DEFAULT-VALUE})")
+    private long retirementDelay;
 
-        Response<Void> frontendResponse = apimService.deleteBackendAPI(apiId).execute();
-        logger.info("Delete Backend API complete with status code :{}", frontendResponse.code());
-        return frontendResponse.code();
+    @CommandLine.Option(names = {"--cleanup"}, description = "Remove the deprecated APIs retired longer than --cleanup-grace ago and their backend APIs (all of them, or those of --name and --organization_name) instead of deploying")
+    private boolean cleanup;
 
-    }
+    @CommandLine.Option(names = {"--cleanup-grace"}, defaultValue = "86400", description = "Seconds after its retirement date a retired API is kept before --cleanup removes it (default: ${DEFAULT-VALUE})")
+    private long cleanupGrace;
 
+    @CommandLine.Option(names = {"--cleanup-batch-size"}, defaultValue = "50", description = "APIs removed per cleanup batch (default: ${DEFAULT-VALUE})")
+    private int cleanupBatchSize;
 
-    public int upgradeAPI(APIMService apimService, String newAPIId, String oldAPIId) throws IOException {
+    @CommandLine.Option(names = {"--cleanup-rate"}, defaultValue = "10", description = "API Manager calls per second made by --cleanup, 0 for no limit (default: ${DEFAULT-VALUE})")
+    private double cleanupRate;
 
-        Response<Void> frontendResponse = apimService.upgradeAPI(newAPIId, oldAPIId).execute();
-        logger.info("Upgrade Frontend API complete with status code :{}", frontendResponse.code());
-        return frontendResponse.code();
+    @CommandLine.Option(names = {"--dry-run"}, description = "With --cleanup only report the APIs that would be removed")
+    private boolean dryRun;
 
-    }
+    @CommandLine.Option(names = {"--plan"}, description = "Only read API Manager and write the deployment plan (change decisions, predicted requests, payload sizes and replication wait) to --report instead of deploying")
+    private boolean plan;
 
-    public Map<String, Object> updateNewAPIWithExistingConfig(APIMService apimService, Map<String, Object> oldAPI, Map<String, Object> newAPI) throws IOException {
+    @CommandLine.Option(names = {"--plan-history"}, description = "JSON metrics file (--metrics-file) of an earlier deployment run, the plan's predictions are drawn from its timings")
+    private File planHistory;
 
-        newAPI.put("path", oldAPI.get("path"));
-        newAPI.put("authenticationProfiles", oldAPI.get("authenticationProfiles"));
-        newAPI.put("securityProfiles", oldAPI.get("securityProfiles"));
-        newAPI.put("outboundProfiles", oldAPI.get("outboundProfiles"));
-        newAPI.put("serviceProfiles", oldAPI.get("serviceProfiles"));
-        newAPI.put("inboundProfiles", oldAPI.get("inboundProfiles"));
-        String newAPIId = (String) newAPI.get("id");
+    @CommandLine.Option(names = {"--propagation-config"}, description = "JSON file of the frontend API fields copied from the old to the new API and their copy strategy (REPLACE, MERGE or SKIP)")
+    private File propagationConfig;
 
-        Response<Map<String, Object>> frontendResponse = apimService.updateFrontend(newAPIId, newAPI).execute();
-        logger.info("Copy Frontend configuration from old API to new API complete with status code :{}", frontendResponse.code());
+    @CommandLine.Option(names = {"--adaptive-concurrency"}, description = "Hold the concurrent calls to every API Manager node to limits per endpoint class (IMPORT, PUBLISH, WRITE, READ) that adapt to latency and 429/503 responses")
+    private boolean adaptiveConcurrency;
 
-        if (!frontendResponse.isSuccessful()) {
-            logger.error("Unable to copy configuration");
-            return null;
-        }
-        return frontendResponse.body();
-    }
+    @CommandLine.Option(names = {"--concurrency-limit"}, description = "Maximum adaptive limit of an endpoint class, e.g. IMPORT=2 (defaults: IMPORT=4, PUBLISH=4, WRITE=16, READ=64)")
+    private Map<ConcurrencyPolicy.EndpointClass, Integer> concurrencyLimits = new EnumMap<>(ConcurrencyPolicy.EndpointClass.class);
 
+    @CommandLine.Option(names = {"--latency-tolerance"}, defaultValue = "3", description = "Latency, as a multiple of the lowest latency of an endpoint, above which the adaptive limit is lowered (default: ${DEFAULT-VALUE})")
+    private double latencyTolerance;
 
-    private OkHttpClient newUnsecureSSLClient(CookieJar cookieJar, HttpLoggingInterceptor httpLoggingInterceptor, CSRFTokenInterceptor csrfTokenInterceptor) {
-        final TrustManager[] trustAllCerts = new TrustManager[]{
-            new X509TrustManager() {
-                @Override
-                public void checkClientTrusted(java.security.cert.X509Certificate[] chain, String authType) {
-                }
+    @CommandLine.Option(names = {"--group"}, description = "Deploy the spec to every frontend API of the backend API of --name (e.g. its per-organization or per-vhost variants): one backend import, the frontend APIs upgraded on --threads workers and one replication check")
+    private boolean group;
 
-                @Override
-                public void checkServerTrusted(java.security.cert.X509Certificate[] chain, String authType) {
-                }
+    private SessionCache sharedSessionCache;
 
-                @Override
-                public java.security.cert.X509Certificate[] getAcceptedIssuers() {
-                    return new java.security.cert.X509Certificate[]{};
-                }
-            }
-        };
+    private ScheduledExecutorService scheduler;
+
+    private volatile CountDownLatch daemonStopped;
 
+    public static void main(String[] args) {
+        int exitCode = new CommandLine(new App()).execute(args);
+        System.exit(exitCode);
+    }
+
+    @Override
+    public Integer call() {
+        if (url == null && topology == null) {
+            throw new CommandLine.ParameterException(spec.commandLine(), "Missing required option: '--url=<url>' (or --topology)");
+        }
+        if (topology != null && (watch != null || rollback)) {
+            throw new CommandLine.ParameterException(spec.commandLine(), "--topology cannot be combined with --watch or --rollback");
+        }
+        if (cleanup && (topology != null || watch != null || rollback)) {
+            throw new CommandLine.ParameterException(spec.commandLine(), "--cleanup cannot be combined with --topology, --watch or --rollback");
+        }
+        if (plan && (topology != null || watch != null || rollback || cleanup)) {
+            throw new CommandLine.ParameterException(spec.commandLine(), "--plan cannot be combined with --topology, --watch, --rollback or --cleanup");
+        }
+        if (group && (manifest != null || topology != null || watch != null || rollback || cleanup || plan || journal != null)) {
+            throw new CommandLine.ParameterException(spec.commandLine(), "--group cannot be combined with --manifest, --topology, --watch, --rollback, --cleanup, --plan or --journal");
+        }
+        if (rollback && journal == null) {
+            throw new CommandLine.ParameterException(spec.commandLine(), "--rollback requires --journal");
+        }
+        if (watch != null && manifest == null && orgName == null) {
+            throw new CommandLine.ParameterException(spec.commandLine(), "--watch requires --organization_name or --manifest");
+        }
+        if (!rollback && !cleanup && watch == null && manifest == null && (apiName == null || orgName == null || openAPI == null)) {
+            throw new CommandLine.ParameterException(spec.commandLine(),
+                "Missing required options: --name, --organization_name and --openapi (or --manifest)");
+        }
+        if (sessionCache != null && (sessionCacheKey == null || sessionCacheKey.isEmpty())) {
+            throw new CommandLine.ParameterException(spec.commandLine(),
+                "--session-cache requires --session-cache-key or the APIM_SESSION_CACHE_KEY environment variable");
+        }
+        MetricsRegistry metrics = new MetricsRegistry();
+        HttpClientFactory httpClientFactory = new HttpClientFactory(skipSSL, maxIdleConnections, keepAlive, metrics);
+        if (watch == null) {
+            // the daemon shuts the client down itself once the running deployments finished
+            httpClientFactory.registerShutdownHook();
+        }
+        APIManagerFactory apiManagerFactory = newAPIManagerFactory(httpClientFactory, username, password);
+        scheduler = DeploymentContext.newScheduler();
+        DeploymentContext context = newContext(apiManagerFactory, urls, metrics);
         try {
-            final SSLContext sslContext = SSLContext.getInstance("SSL");
-            sslContext.init(null, trustAllCerts, new java.security.SecureRandom());
-            final SSLSocketFactory sslSocketFactory = sslContext.getSocketFactory();
-            return new OkHttpClient.Builder()
-                .addInterceptor(httpLoggingInterceptor)
-                .addInterceptor(csrfTokenInterceptor)
-                // .addInterceptor(basicAuthInterceptor)
-                .cookieJar(cookieJar)
-                .followRedirects(false)
-                .connectTimeout(120, TimeUnit.SECONDS)
-                .readTimeout(120, TimeUnit.SECONDS)
-                .writeTimeout(120, TimeUnit.SECONDS)
-                .hostnameVerifier((s, sslSession) -> true)
-                .sslSocketFactory(sslSocketFactory, (X509TrustManager) trustAllCerts[0])
-                .build();
-        } catch (NoSuchAlgorithmException | KeyManagementException e) {
-            e.printStackTrace();
+            if (sessionCache != null) {
+                sharedSessionCache = new SessionCache(sessionCache.toPath(), sessionCacheKey.toCharArray());
+                apiManagerFactory.setSessionCache(sharedSessionCache);
+            }
+            if (journal != null) {
+                context.setJournal(new DeploymentJournal(journal.toPath()));
+            }
+            if (propagationConfig != null) {
+                context.setConfigPropagation(ConfigPropagation.read(propagationConfig));
+            }
+            if (fingerprintCache != null) {
+                context.setFingerprintCache(new SpecFingerprintCache(fingerprintCache.toPath(), fingerprintCacheSize));
+            }
+            if (topology != null) {
+                return deployFanOut(context, httpClientFactory, metrics);
+            }
+            APIManager apiManager = apiManagerFactory.login(url);
+            if (apiManager == null)
+                return 1;
+            if (rollback) {
+                return rollback(context, apiManager);
+            }
+            if (cleanup) {
+                RetiredAPICleanup retiredAPICleanup = new RetiredAPICleanup(apiManager.getApimService(), TimeUnit.SECONDS.toMillis(cleanupGrace),
+                    threads, cleanupBatchSize, cleanupRate, dryRun, metrics);
+                List<CleanupResult> results = retiredAPICleanup.cleanup(apiName, orgName);
+                retiredAPICleanup.writeReport(results, report);
+                return RetiredAPICleanup.isSuccessful(results) ? 0 : 1;
+            }
+            if (plan) {
+                return plan(context, apiManager);
+            }
+            if (watch != null) {
+                return runDaemon(context, apiManager, httpClientFactory, metrics);
+            }
+            if (manifest != null) {
+                return deployBatch(context, apiManager);
+            }
+            if (group) {
+                return deployGroup(context, apiManager);
+            }
+            return new APIDeployment(context, apiManager, apiName, orgName, openAPI).call();
+        } catch (IOException e) {
+            logger.error("Error processing", e);
+            return 1;
+        } finally {
+            apiManagerFactory.close();
+            scheduler.shutdownNow();
+            writeMetrics(metrics);
+            if (daemonStopped != null) {
+                daemonStopped.countDown();
+            }
         }
-        return null;
     }
 
-    public APIManager createAPIMService(String httpURL, String username, String password) throws IOException {
-        final Map<String, List<Cookie>> cookieStore = new HashMap<>();
-        APIManager apiManager = new APIManager();
-
-        CookieJar cookieJar = new CookieJar() {
-            @Override
-            public void saveFromResponse(HttpUrl httpUrl, List<Cookie> list) {
-                cookieStore.put(httpUrl.host(), list);
+    private APIManagerFactory newAPIManagerFactory(HttpClientFactory httpClientFactory, String username, String password) {
+        APIManagerFactory apiManagerFactory = new APIManagerFactory(httpClientFactory, username, password);
+        RetryPolicy retryPolicy = new RetryPolicy();
+        retryPolicy.setMaxAttempts(maxRetries + 1);
+        retryPolicy.setBudgetMillis(TimeUnit.SECONDS.toMillis(retryBudget));
+        retryPolicy.setFailureThreshold(breakerThreshold);
+        retryPolicy.setOpenMillis(TimeUnit.SECONDS.toMillis(breakerOpen));
+        apiManagerFactory.setRetryPolicy(retryPolicy);
+        if (adaptiveConcurrency) {
+            ConcurrencyPolicy concurrencyPolicy = new ConcurrencyPolicy();
+            concurrencyPolicy.setLatencyTolerance(latencyTolerance);
+            for (Map.Entry<ConcurrencyPolicy.EndpointClass, Integer> limit : concurrencyLimits.entrySet()) {
+                concurrencyPolicy.setMaxLimit(limit.getKey(), limit.getValue());
             }
+            apiManagerFactory.setConcurrencyPolicy(concurrencyPolicy);
+        }
+        if (sharedSessionCache != null) {
+            apiManagerFactory.setSessionCache(sharedSessionCache);
+        }
+        return apiManagerFactory;
+    }
 
-            @Override
-            public List<Cookie> loadForRequest(HttpUrl httpUrl) {
-                List<Cookie> cookies = cookieStore.get(httpUrl.host());
-                return cookies != null ? cookies : new ArrayList<>();
-            }
-        };
+    private DeploymentContext newContext(APIManagerFactory apiManagerFactory, Collection<String> clusterUrls, MetricsRegistry metrics) {
+        DeploymentContext context = new DeploymentContext(apiManagerFactory, clusterUrls, scheduler);
+        context.setReplicationTimeoutMillis(TimeUnit.SECONDS.toMillis(replicationTimeout));
+        context.setRetirementDelayMillis(TimeUnit.SECONDS.toMillis(retirementDelay));
+        context.setRedeployThreshold(redeployThreshold);
+        context.setDiffReportDirectory(diffReport);
+        context.setMetrics(metrics);
+        context.setCompressUpload(compressUpload);
+        if (catalogSnapshot) {
+            context.setCatalog(new CatalogSnapshot(TimeUnit.SECONDS.toMillis(catalogTtl), metrics));
+        }
+        return context;
+    }
 
-        CSRFTokenInterceptor csrfTokenInterceptor = new CSRFTokenInterceptor(apiManager);
-        // String endpoint = url + "";
-        //BasicAuthInterceptor basicAuthInterceptor = new BasicAuthInterceptor(username, new String(password));
-        HttpLoggingInterceptor interceptor = new HttpLoggingInterceptor();
-        interceptor.setLevel(HttpLoggingInterceptor.Level.BASIC);
-        OkHttpClient client;
+    private void writeMetrics(MetricsRegistry metrics) {
+        if (metricsFile == null) {
+            return;
+        }
+        try {
+            metrics.write(metricsFile);
+        } catch (IOException e) {
+            logger.error("Unable to write metrics to {}", metricsFile, e);
+        }
+    }
+
+    private int rollback(DeploymentContext context, APIManager apiManager) throws IOException {
+        DeploymentRollback deploymentRollback = new DeploymentRollback(apiManager.getApimService());
+        int failed = 0;
+        for (Journal pending : context.getJournal().openPending()) {
+            try {
+                if (!url.equals(pending.getState().getUrl()) || (apiName != null && !apiName.equals(pending.getState().getApiName()))) {
+                    continue;
+                }
+                if (deploymentRollback.rollback(pending.getState())) {
+                    logger.info("Rolled back deployment of {}", pending.getState().getApiName());
+                    pending.complete();
+                } else {
+                    failed++;
+                }
+            } finally {
+                pending.close();
+            }
+        }
+        return failed == 0 ? 0 : 1;
+    }
 
-        if (skipSSL) {
-            client = newUnsecureSSLClient(cookieJar, interceptor, csrfTokenInterceptor);
+    /**
+     * Deploys every watched spec once, then keeps deploying them on change until the JVM is stopped. The shutdown hook
+     * waits for the running deployments before it shuts the HTTP client down, so they are not cancelled mid-step.
+     */
+    private int runDaemon(DeploymentContext context, APIManager apiManager, HttpClientFactory httpClientFactory,
+                          MetricsRegistry metrics) throws IOException {
+        List<ManifestEntry> entries = new ArrayList<>();
+        Set<Path> directories = new LinkedHashSet<>();
+        directories.add(watch.getAbsoluteFile().toPath());
+        if (manifest != null) {
+            entries.addAll(BatchDeployment.readManifest(manifest, orgName));
+            for (ManifestEntry entry : entries) {
+                directories.add(new File(entry.getOpenAPI()).getAbsoluteFile().getParentFile().toPath());
+            }
         } else {
-            client = newClient(cookieJar, interceptor, csrfTokenInterceptor);
+            File[] files = watch.listFiles((dir, name) -> name.endsWith(".json") && !name.startsWith("."));
+            if (files == null) {
+                throw new IOException("Unable to list " + watch);
+            }
+            for (File file : files) {
+                entries.add(new ManifestEntry(SpecWatcher.apiName(file), orgName, file.getAbsolutePath()));
+            }
         }
 
-        Retrofit apimRetrofit = new Retrofit.Builder()
-            .baseUrl(httpURL)
-            .client(client)
-            .addConverterFactory(JacksonConverterFactory.create())
-            .build();
-
-        APIMService apimService = apimRetrofit.create(APIMService.class);
-        Response<ResponseBody> loginResponse = apimService.login(username, password).execute();
-        if (loginResponse.code() == 303) {
-            String csrfToken = loginResponse.headers().get("CSRF-Token");
-            apiManager.setApimService(apimService);
-            apiManager.setCsrfToken(csrfToken);
-            return apiManager;
+        DeploymentDaemon daemon = new DeploymentDaemon(context, apiManager, threads, queueSize, debounce);
+        SpecWatcher watcher = new SpecWatcher(daemon, directories, manifest == null ? orgName : null);
+        DaemonServer server = httpPort == null ? null : new DaemonServer(daemon, metrics, httpPort);
+        CountDownLatch stopped = new CountDownLatch(1);
+        daemonStopped = stopped;
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            try {
+                watcher.close();
+            } catch (IOException e) {
+                logger.warn("Unable to stop watching", e);
+            }
+            try {
+                stopped.await(context.getReplicationTimeoutMillis() + TimeUnit.MINUTES.toMillis(2), TimeUnit.MILLISECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } finally {
+                httpClientFactory.shutdown();
+            }
+        }, "daemon-shutdown"));
+        try {
+            daemon.start();
+            if (server != null) {
+                server.start();
+            }
+            for (ManifestEntry entry : entries) {
+                daemon.register(entry);
+            }
+            daemon.triggerAll("startup");
+            watcher.run();
+            return 0;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return 1;
+        } finally {
+            if (server != null) {
+                server.stop();
+            }
+            daemon.close();
         }
-        return null;
     }
 
+    /**
+     * Deploys the manifest, or the single API, to every environment of the topology. Every environment gets its own
+     * API Manager sessions and deployment context; the journal, the fingerprint cache and the config propagation of {@code template} are
+     * shared, their entries are keyed by API Manager URL.
+     */
+    private int deployFanOut(DeploymentContext template, HttpClientFactory httpClientFactory, MetricsRegistry metrics) throws IOException {
+        List<Environment> environments = FanOutDeployment.readTopology(topology);
+        List<ManifestEntry> entries = manifest != null ? BatchDeployment.readManifest(manifest, orgName)
+            : Collections.singletonList(new ManifestEntry(apiName, orgName, openAPI.getPath()));
+        FanOutDeployment fanOutDeployment = new FanOutDeployment(maxParallelEnvironments, abortAfter, metrics);
+        List<EnvironmentResult> results = fanOutDeployment.deploy(environments, environment -> {
+            APIManagerFactory apiManagerFactory = newAPIManagerFactory(httpClientFactory,
+                environment.getUsername() != null ? environment.getUsername() : username,
+                environment.getPassword() != null ? environment.getPassword() : password);
+            try {
+                DeploymentContext context = newContext(apiManagerFactory, environment.getClusterUrls(), metrics);
+                context.setJournal(template.getJournal());
+                context.setFingerprintCache(template.getFingerprintCache());
+                context.setConfigPropagation(template.getConfigPropagation());
+                APIManager apiManager = apiManagerFactory.login(environment.getUrl());
+                if (apiManager == null) {
+                    throw new IOException("Login to " + environment.getUrl() + " failed");
+                }
+                int environmentThreads = environment.getThreads() != null ? environment.getThreads() : threads;
+                return new BatchDeployment(context, apiManager, environmentThreads).deploy(entries);
+            } finally {
+                apiManagerFactory.close();
+            }
+        });
+        fanOutDeployment.writeReport(results, report);
+        return FanOutDeployment.isSuccessful(results) ? 0 : 1;
+    }
 
-}
+    private int plan(DeploymentContext context, APIManager apiManager) throws IOException {
+        List<ManifestEntry> entries = manifest != null ? BatchDeployment.readManifest(manifest, orgName)
+            : Collections.singletonList(new ManifestEntry(apiName, orgName, openAPI.getPath()));
+        DeploymentPlanner planner = new DeploymentPlanner(context, apiManager, threads,
+            planHistory != null ? DeploymentPlanner.History.read(planHistory) : null);
+        DeploymentPlan deploymentPlan = planner.plan(entries);
+        planner.writeReport(deploymentPlan, report);
+        return DeploymentPlanner.isSuccessful(deploymentPlan) ? 0 : 1;
+    }
 
+    private int deployGroup(DeploymentContext context, APIManager apiManager) throws IOException {
+        List<DeploymentResult> results = new GroupDeployment(context, apiManager, apiName, orgName, openAPI, threads).deploy();
+        new BatchDeployment(context, apiManager, threads).writeReport(results, report);
+        return BatchDeployment.isSuccessful(results) ? 0 : 1;
+    }
+
+    private int deployBatch(DeploymentContext context, APIManager apiManager) throws IOException {
+        List<ManifestEntry> entries = BatchDeployment.readManifest(manifest, orgName);
+        BatchDeployment batchDeployment = new BatchDeployment(context, apiManager, threads);
+        List<DeploymentResult> results = batchDeployment.deploy(entries);
+        batchDeployment.writeReport(results, report);
+        return BatchDeployment.isSuccessful(results) ? 0 : 1;
+    }
+}
@@ -0,0 +1,121 @@
+package com.axway.apim;
+
+import com.axway.apim.service.APIManager;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class BatchDeployment {
+
+    private static final Logger logger = LoggerFactory.getLogger(BatchDeployment.class);
+
+    private final DeploymentContext context;
+    private final APIManager apiManager;
+    private final int threads;
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    public BatchDeployment(DeploymentContext context, APIManager apiManager, int threads) {
+        this.context = context;
+        this.apiManager = apiManager;
+        this.threads = Math.max(1, threads);
+    }
+
+    public static List<ManifestEntry> readManifest(File manifest, String defaultOrgName) throws IOException {
+        List<ManifestEntry> entries = new ObjectMapper().readValue(manifest, new TypeReference<List<ManifestEntry>>() {
+        });
+        File baseDir = manifest.getAbsoluteFile().getParentFile();
+        for (ManifestEntry entry : entries) {
+            if (entry.getApiName() == null || entry.getOpenAPI() == null) {
+                throw new IOException("Manifest entry requires name and openapi : " + entry);
+            }
+            if (entry.getOrgName() == null) {
+                entry.setOrgName(defaultOrgName);
+            }
+            if (entry.getOrgName() == null) {
+                throw new IOException("Manifest entry requires organization : " + entry);
+            }
+            File openAPI = new File(entry.getOpenAPI());
+            if (!openAPI.isAbsolute()) {
+                entry.setOpenAPI(new File(baseDir, entry.getOpenAPI()).getPath());
+            }
+        }
+        return entries;
+    }
+
+    public List<DeploymentResult> deploy(List<ManifestEntry> entries) {
+        ExecutorService executorService = Executors.newFixedThreadPool(Math.min(threads, Math.max(1, entries.size())), new ThreadFactory() {
+            private final AtomicInteger count = new AtomicInteger();
+
+            @Override
+            public Thread newThread(Runnable runnable) {
+                return new Thread(runnable, "deploy-" + count.incrementAndGet());
+            }
+        });
+        logger.info("Deploying {} APIs with {} parallel workers", entries.size(), threads);
+        long start = System.currentTimeMillis();
+        List<Future<DeploymentResult>> futures = new ArrayList<>();
+        try {
+            for (ManifestEntry entry : entries) {
+                futures.add(executorService.submit(() -> deploy(entry)));
+            }
+            List<DeploymentResult> results = new ArrayList<>();
+            for (int i = 0; i < futures.size(); i++) {
+                ManifestEntry entry = entries.get(i);
+                try {
+                    results.add(futures.get(i).get());
+                } catch (ExecutionException e) {
+                    logger.error("Deployment of API {} failed", entry.getApiName(), e.getCause());
+                    results.add(new DeploymentResult(entry.getApiName(), entry.getOrgName(), entry.getOpenAPI(),
+                        APIDeployment.Status.FAILED, 1, 0, String.valueOf(e.getCause())));
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    logger.error("Batch deployment interrupted");
+                    break;
+                }
+            }
+            logger.info("Batch deployment of {} APIs complete in {} ms", entries.size(), System.currentTimeMillis() - start);
+            return results;
+        } finally {
+            executorService.shutdownNow();
+        }
+    }
+
+    private DeploymentResult deploy(ManifestEntry entry) {
+        long start = System.currentTimeMillis();
+        APIDeployment deployment = new APIDeployment(context, apiManager, entry.getApiName(), entry.getOrgName(), new File(entry.getOpenAPI()));
+        int exitCode = deployment.call();
+        return new DeploymentResult(deployment, exitCode, System.currentTimeMillis() - start);
+    }
+
+    public static boolean isSuccessful(List<DeploymentResult> results) {
+        for (DeploymentResult result : results) {
+            if (result.getStatus() == APIDeployment.Status.FAILED || result.getStatus() == APIDeployment.Status.PENDING) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    public void writeReport(List<DeploymentResult> results, File report) throws IOException {
+        for (DeploymentResult result : results) {
+            logger.info("{} : {} in {} ms - {}", result.getApiName(), result.getStatus(), result.getDurationMillis(), result.getMessage());
+        }
+        if (report != null) {
+            objectMapper.enable(SerializationFeature.INDENT_OUTPUT).writeValue(report, results);
+            logger.info("Batch report written to {}", report);
+        }
+    }
+}
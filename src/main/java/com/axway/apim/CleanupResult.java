@@ -0,0 +1,74 @@
+package com.axway.apim;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.annotation.JsonPropertyOrder;
+
+@JsonInclude(JsonInclude.Include.NON_NULL)
+@JsonPropertyOrder({"apiName", "id", "apiId", "state", "retirementDate", "status", "backendDeleted", "message"})
+public class CleanupResult {
+
+    public enum Status {
+        PLANNED, DELETED, FAILED, NOT_DUE, SKIPPED
+    }
+
+    private final String apiName;
+    private final String id;
+    private final String apiId;
+    private final String state;
+    private final String retirementDate;
+    private Status status;
+    private Boolean backendDeleted;
+    private String message;
+
+    public CleanupResult(String apiName, String id, String apiId, String state, String retirementDate) {
+        this.apiName = apiName;
+        this.id = id;
+        this.apiId = apiId;
+        this.state = state;
+        this.retirementDate = retirementDate;
+    }
+
+    public String getApiName() {
+        return apiName;
+    }
+
+    public String getId() {
+        return id;
+    }
+
+    public String getApiId() {
+        return apiId;
+    }
+
+    public String getState() {
+        return state;
+    }
+
+    public String getRetirementDate() {
+        return retirementDate;
+    }
+
+    public Status getStatus() {
+        return status;
+    }
+
+    public Boolean getBackendDeleted() {
+        return backendDeleted;
+    }
+
+    public String getMessage() {
+        return message;
+    }
+
+    CleanupResult finish(Status status, Boolean backendDeleted, String message) {
+        this.status = status;
+        this.backendDeleted = backendDeleted;
+        this.message = message;
+        return this;
+    }
+
+    @Override
+    public String toString() {
+        return apiName + " (" + id + ") : " + status + (message == null ? "" : " - " + message);
+    }
+}
@@ -0,0 +1,160 @@
+package com.axway.apim;
+
+import com.axway.apim.journal.DeploymentJournal;
+import com.axway.apim.metrics.MetricsRegistry;
+import com.axway.apim.openapi.ChangeType;
+import com.axway.apim.openapi.SpecFingerprintCache;
+import com.axway.apim.propagation.ConfigPropagation;
+import com.axway.apim.service.APIManagerFactory;
+import com.axway.apim.service.CatalogSnapshot;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+public class DeploymentContext {
+
+    private final APIManagerFactory apiManagerFactory;
+    private final List<String> clusterUrls;
+    private final ScheduledExecutorService scheduler;
+    private long replicationTimeoutMillis = TimeUnit.MINUTES.toMillis(10);
+    private long retirementDelayMillis = TimeUnit.SECONDS.toMillis(5);
+    private SpecFingerprintCache fingerprintCache;
+    private ChangeType redeployThreshold = ChangeType.COSMETIC;
+    private File diffReportDirectory;
+    private MetricsRegistry metrics = new MetricsRegistry();
+    private volatile boolean compressUpload;
+    private DeploymentJournal journal;
+    private CatalogSnapshot catalog;
+    private boolean planOnly;
+    private ConfigPropagation configPropagation = new ConfigPropagation();
+
+    /**
+     * {@code scheduler} runs the replication polls. It is shared by all contexts of a run, e.g. one per environment of
+     * a topology, and shut down by its owner.
+     */
+    public DeploymentContext(APIManagerFactory apiManagerFactory, Collection<String> clusterUrls, ScheduledExecutorService scheduler) {
+        this.apiManagerFactory = apiManagerFactory;
+        this.clusterUrls = clusterUrls == null ? Collections.emptyList() : new ArrayList<>(clusterUrls);
+        this.scheduler = scheduler;
+    }
+
+    /**
+     * The scheduler for the replication polls of a run.
+     */
+    public static ScheduledExecutorService newScheduler() {
+        return Executors.newScheduledThreadPool(2, runnable -> {
+            Thread thread = new Thread(runnable, "deployment-scheduler");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    public APIManagerFactory getApiManagerFactory() {
+        return apiManagerFactory;
+    }
+
+    public List<String> getClusterUrls() {
+        return clusterUrls;
+    }
+
+    public ScheduledExecutorService getScheduler() {
+        return scheduler;
+    }
+
+    public long getReplicationTimeoutMillis() {
+        return replicationTimeoutMillis;
+    }
+
+    public void setReplicationTimeoutMillis(long replicationTimeoutMillis) {
+        this.replicationTimeoutMillis = replicationTimeoutMillis;
+    }
+
+    public long getRetirementDelayMillis() {
+        return retirementDelayMillis;
+    }
+
+    public void setRetirementDelayMillis(long retirementDelayMillis) {
+        this.retirementDelayMillis = retirementDelayMillis;
+    }
+
+    public SpecFingerprintCache getFingerprintCache() {
+        return fingerprintCache;
+    }
+
+    public void setFingerprintCache(SpecFingerprintCache fingerprintCache) {
+        this.fingerprintCache = fingerprintCache;
+    }
+
+    public ChangeType getRedeployThreshold() {
+        return redeployThreshold;
+    }
+
+    public void setRedeployThreshold(ChangeType redeployThreshold) {
+        this.redeployThreshold = redeployThreshold;
+    }
+
+    public File getDiffReportDirectory() {
+        return diffReportDirectory;
+    }
+
+    public void setDiffReportDirectory(File diffReportDirectory) {
+        this.diffReportDirectory = diffReportDirectory;
+    }
+
+    public boolean isCompressUpload() {
+        return compressUpload;
+    }
+
+    public void setCompressUpload(boolean compressUpload) {
+        this.compressUpload = compressUpload;
+    }
+
+    public DeploymentJournal getJournal() {
+        return journal;
+    }
+
+    public void setJournal(DeploymentJournal journal) {
+        this.journal = journal;
+    }
+
+    public CatalogSnapshot getCatalog() {
+        return catalog;
+    }
+
+    public void setCatalog(CatalogSnapshot catalog) {
+        this.catalog = catalog;
+    }
+
+    public MetricsRegistry getMetrics() {
+        return metrics;
+    }
+
+    public void setMetrics(MetricsRegistry metrics) {
+        this.metrics = metrics;
+    }
+
+    /**
+     * Whether deployments stop after their read-only steps, see {@link DeploymentPlanner}.
+     */
+    public boolean isPlanOnly() {
+        return planOnly;
+    }
+
+    public void setPlanOnly(boolean planOnly) {
+        this.planOnly = planOnly;
+    }
+
+    public ConfigPropagation getConfigPropagation() {
+        return configPropagation;
+    }
+
+    public void setConfigPropagation(ConfigPropagation configPropagation) {
+        this.configPropagation = configPropagation;
+    }
+}
@@ -0,0 +1,100 @@
+package com.axway.apim;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.annotation.JsonPropertyOrder;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+/**
+ * Deployment plan of a run: how many APIs would be deployed and the predicted totals. {@code durationMillis} is the
+ * predicted wall clock time with the run's parallel workers. {@code withoutHistory} lists the endpoints for which the
+ * history had no samples; their latency and sizes are counted as zero.
+ */
+@JsonInclude(JsonInclude.Include.NON_NULL)
+@JsonPropertyOrder({"history", "threads", "apis", "decisions", "requests", "requestBytes", "responseBytes", "durationMillis",
+    "replicationWaitMillis", "withoutHistory", "deployments"})
+public class DeploymentPlan {
+
+    private final String history;
+    private final int threads;
+    private final Map<APIDeployment.Status, Integer> decisions = new TreeMap<>();
+    private final Set<String> withoutHistory = new TreeSet<>();
+    private final List<PlannedDeployment> deployments = new ArrayList<>();
+    private int requests;
+    private long requestBytes;
+    private long responseBytes;
+    private long durationMillis;
+    private long replicationWaitMillis;
+
+    public DeploymentPlan(String history, int threads) {
+        this.history = history;
+        this.threads = threads;
+    }
+
+    void add(PlannedDeployment deployment) {
+        deployments.add(deployment);
+        decisions.merge(deployment.getStatus(), 1, Integer::sum);
+        requests += deployment.getRequests();
+        requestBytes += deployment.getRequestBytes();
+        responseBytes += deployment.getResponseBytes();
+        replicationWaitMillis += deployment.getReplicationWaitMillis();
+    }
+
+    void addShared(int requests, long responseBytes) {
+        this.requests += requests;
+        this.responseBytes += responseBytes;
+    }
+
+    public String getHistory() {
+        return history;
+    }
+
+    public int getThreads() {
+        return threads;
+    }
+
+    public int getApis() {
+        return deployments.size();
+    }
+
+    public Map<APIDeployment.Status, Integer> getDecisions() {
+        return decisions;
+    }
+
+    public int getRequests() {
+        return requests;
+    }
+
+    public long getRequestBytes() {
+        return requestBytes;
+    }
+
+    public long getResponseBytes() {
+        return responseBytes;
+    }
+
+    public long getDurationMillis() {
+        return durationMillis;
+    }
+
+    void setDurationMillis(long durationMillis) {
+        this.durationMillis = durationMillis;
+    }
+
+    public long getReplicationWaitMillis() {
+        return replicationWaitMillis;
+    }
+
+    public Set<String> getWithoutHistory() {
+        return withoutHistory;
+    }
+
+    public List<PlannedDeployment> getDeployments() {
+        return deployments;
+    }
+}
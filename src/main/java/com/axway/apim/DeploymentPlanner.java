@@ -0,0 +1,302 @@
+package com.axway.apim;
+
+import com.axway.apim.metrics.MetricsRegistry;
+import com.axway.apim.service.APIManager;
+import com.axway.apim.service.MetricsInterceptor;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Computes the deployment plan of a set of APIs without changing API Manager. Every API runs through
+ * {@link APIDeployment} in plan mode, so the change decision is the one a real run would take, and the API Manager
+ * calls of the real run are then priced with the latencies, payload sizes, retry rates and replication waits of an
+ * earlier run's JSON metrics ({@code --metrics-file}). The APIs are planned on {@code threads} parallel workers;
+ * with a {@link com.axway.apim.service.CatalogSnapshot} only the backend downloads are made per API.
+ */
+public class DeploymentPlanner {
+
+    private static final Logger logger = LoggerFactory.getLogger(DeploymentPlanner.class);
+
+    private static final List<String> DEPLOY_CALLS = Arrays.asList("createBackend", "createFrontend", "updateFrontend",
+        "publishAPI", "upgradeAPI", "deprecateAPI");
+    private static final String REPLICATION_POLL = "listCatalogByName";
+    private static final AtomicInteger COUNT = new AtomicInteger();
+
+    private final DeploymentContext context;
+    private final APIManager apiManager;
+    private final int threads;
+    private final History history;
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    public DeploymentPlanner(DeploymentContext context, APIManager apiManager, int threads, History history) {
+        this.context = context;
+        this.apiManager = apiManager;
+        this.threads = Math.max(1, threads);
+        this.history = history != null ? history : new History(null);
+    }
+
+    public DeploymentPlan plan(List<ManifestEntry> entries) {
+        context.setPlanOnly(true);
+        ExecutorService executorService = Executors.newFixedThreadPool(Math.min(threads, Math.max(1, entries.size())), runnable -> {
+            Thread thread = new Thread(runnable, "plan-" + COUNT.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        logger.info("Planning {} APIs with {} parallel workers", entries.size(), threads);
+        long start = System.currentTimeMillis();
+        DeploymentPlan plan = new DeploymentPlan(history.source, threads);
+        try {
+            List<Future<APIDeployment>> futures = new ArrayList<>();
+            for (ManifestEntry entry : entries) {
+                futures.add(executorService.submit(() -> {
+                    APIDeployment deployment = new APIDeployment(context, apiManager, entry.getApiName(), entry.getOrgName(), new File(entry.getOpenAPI()));
+                    deployment.call();
+                    return deployment;
+                }));
+            }
+            boolean interrupted = false;
+            for (int i = 0; i < futures.size(); i++) {
+                if (interrupted) {
+                    plan.add(new PlannedDeployment(entries.get(i), "Planning interrupted"));
+                    continue;
+                }
+                try {
+                    plan.add(price(futures.get(i).get(), plan));
+                } catch (ExecutionException e) {
+                    logger.error("Planning of API {} failed", entries.get(i).getApiName(), e.getCause());
+                    // reported as failed, so that a plan missing an API does not pass
+                    plan.add(new PlannedDeployment(entries.get(i), "Planning failed : " + e.getCause()));
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    logger.error("Planning interrupted");
+                    interrupted = true;
+                    plan.add(new PlannedDeployment(entries.get(i), "Planning interrupted"));
+                }
+            }
+        } finally {
+            executorService.shutdownNow();
+        }
+        priceShared(plan);
+        plan.setDurationMillis(wallClockMillis(plan));
+        logger.info("Plan of {} APIs complete in {} ms : {}, {} requests, predicted duration {} ms",
+            plan.getApis(), System.currentTimeMillis() - start, plan.getDecisions(), plan.getRequests(), plan.getDurationMillis());
+        return plan;
+    }
+
+    /**
+     * Prices the calls a real run makes for this API: the lookups, the backend download, and for a planned
+     * deployment the rollout and the replication polls of every node.
+     */
+    private PlannedDeployment price(APIDeployment deployment, DeploymentPlan plan) {
+        PlannedDeployment planned = new PlannedDeployment(deployment);
+        Map<String, Integer> calls = new LinkedHashMap<>();
+        if (context.getCatalog() == null) {
+            calls.put("getOrganizationByName", 1);
+            calls.put("listFrontendAPIsByName", 1);
+        }
+        if (deployment.isBackendDownloaded()) {
+            calls.put("downloadBackendAPI", 1);
+        }
+        boolean deploy = deployment.getStatus() == APIDeployment.Status.PLANNED;
+        if (deploy) {
+            for (String call : DEPLOY_CALLS) {
+                calls.put(call, 1);
+            }
+            if (context.getCatalog() != null) {
+                // the configuration of the old API is read by id when the snapshot is used
+                calls.put("getFrontendAPI", 1);
+            }
+            int nodes = 1 + context.getClusterUrls().size();
+            calls.put(REPLICATION_POLL, (int) Math.max(nodes, Math.round(history.pollsPerReplication)));
+        }
+        double retries = 0;
+        long requestBytes = 0;
+        long responseBytes = 0;
+        double seconds = 0;
+        for (Map.Entry<String, Integer> call : calls.entrySet()) {
+            String endpoint = call.getKey();
+            int count = call.getValue();
+            planned.addCalls(endpoint, count);
+            Endpoint samples = history.endpoints.get(endpoint);
+            if (samples == null) {
+                plan.getWithoutHistory().add(endpoint);
+                samples = new Endpoint();
+            }
+            retries += count * samples.retryRate();
+            requestBytes += count * ("createBackend".equals(endpoint) ? planned.getSpecBytes() : samples.requestBytes);
+            responseBytes += count * (samples.responseBytes > 0 || !"downloadBackendAPI".equals(endpoint) ? samples.responseBytes : planned.getSpecBytes());
+            if (!REPLICATION_POLL.equals(endpoint)) {
+                seconds += count * samples.seconds;
+            }
+        }
+        planned.setExpectedRetries(Math.round(retries * 100) / 100.0);
+        planned.setRequestBytes(requestBytes);
+        planned.setResponseBytes(responseBytes);
+        if (deploy) {
+            planned.setReplicationWaitMillis(millis(history.replicationSeconds));
+            planned.setReplicationWaitP95Millis(millis(history.replicationP95Seconds));
+            seconds += history.replicationSeconds;
+        }
+        planned.setDurationMillis(millis(seconds));
+        return planned;
+    }
+
+    /**
+     * Calls made once per run: the catalog snapshot and the logins to the cluster nodes checked for replication.
+     */
+    private void priceShared(DeploymentPlan plan) {
+        if (context.getCatalog() != null) {
+            for (String endpoint : new String[]{"listFrontendAPIs", "listOrganizations"}) {
+                Endpoint samples = history.endpoints.get(endpoint);
+                plan.addShared(1, samples != null ? samples.responseBytes : 0);
+            }
+        }
+        Integer deployments = plan.getDecisions().get(APIDeployment.Status.PLANNED);
+        if (deployments != null && !context.getClusterUrls().isEmpty()) {
+            Endpoint samples = history.endpoints.get("login");
+            plan.addShared(context.getClusterUrls().size(), samples != null ? samples.responseBytes : 0);
+        }
+    }
+
+    /**
+     * Wall clock time of the planned deployments on the run's workers, assigning the longest deployment first to the
+     * least busy worker.
+     */
+    private long wallClockMillis(DeploymentPlan plan) {
+        List<Long> durations = new ArrayList<>();
+        for (PlannedDeployment deployment : plan.getDeployments()) {
+            durations.add(deployment.getDurationMillis());
+        }
+        durations.sort(Collections.reverseOrder());
+        PriorityQueue<Long> workers = new PriorityQueue<>();
+        for (int i = 0; i < Math.min(threads, Math.max(1, durations.size())); i++) {
+            workers.add(0L);
+        }
+        for (long duration : durations) {
+            workers.add(workers.poll() + duration);
+        }
+        long wallClock = 0;
+        for (long busy : workers) {
+            wallClock = Math.max(wallClock, busy);
+        }
+        Endpoint catalog = history.endpoints.get("listFrontendAPIs");
+        if (context.getCatalog() != null && catalog != null) {
+            wallClock += millis(catalog.seconds);
+        }
+        return wallClock;
+    }
+
+    private static long millis(double seconds) {
+        return Math.round(seconds * TimeUnit.SECONDS.toMillis(1));
+    }
+
+    public static boolean isSuccessful(DeploymentPlan plan) {
+        return !plan.getDecisions().containsKey(APIDeployment.Status.FAILED) && !plan.getDecisions().containsKey(APIDeployment.Status.PENDING);
+    }
+
+    public void writeReport(DeploymentPlan plan, File report) throws IOException {
+        for (PlannedDeployment deployment : plan.getDeployments()) {
+            logger.info("{} : {} - {} requests, {} bytes sent, {} ms - {}", deployment.getApiName(), deployment.getStatus(),
+                deployment.getRequests(), deployment.getRequestBytes(), deployment.getDurationMillis(), deployment.getMessage());
+        }
+        if (!plan.getWithoutHistory().isEmpty()) {
+            logger.warn("No history for the endpoints {}, their latency and sizes are not predicted", plan.getWithoutHistory());
+        }
+        if (report != null) {
+            objectMapper.enable(SerializationFeature.INDENT_OUTPUT).writeValue(report, plan);
+            logger.info("Deployment plan written to {}", report);
+        }
+    }
+
+    /**
+     * Per-endpoint means and replication timings read from the JSON metrics of an earlier run.
+     */
+    public static class History {
+
+        private final String source;
+        private final Map<String, Endpoint> endpoints = new HashMap<>();
+        private double pollsPerReplication;
+        private double replicationSeconds;
+        private double replicationP95Seconds;
+
+        private History(String source) {
+            this.source = source;
+        }
+
+        public static History read(File metricsFile) throws IOException {
+            JsonNode root = new ObjectMapper().readTree(metricsFile);
+            if (root == null || !root.has("histograms")) {
+                throw new IOException("Not a JSON metrics file : " + metricsFile);
+            }
+            History history = new History(metricsFile.getPath());
+            long replications = 0;
+            for (JsonNode histogram : root.path("histograms")) {
+                String name = histogram.path("name").asText();
+                String endpoint = histogram.path("labels").path("endpoint").asText(null);
+                if (MetricsRegistry.PHASE_DURATION.equals(name) && "replication".equals(histogram.path("labels").path("phase").asText())) {
+                    replications = histogram.path("count").asLong();
+                    history.replicationSeconds = histogram.path("mean").asDouble();
+                    history.replicationP95Seconds = histogram.path("p95").asDouble();
+                } else if (endpoint != null && MetricsInterceptor.DURATION.equals(name)) {
+                    history.endpoint(endpoint).seconds = histogram.path("mean").asDouble();
+                } else if (endpoint != null && MetricsInterceptor.REQUEST_SIZE.equals(name)) {
+                    history.endpoint(endpoint).requestBytes = Math.round(histogram.path("mean").asDouble());
+                } else if (endpoint != null && MetricsInterceptor.RESPONSE_SIZE.equals(name)) {
+                    history.endpoint(endpoint).responseBytes = Math.round(histogram.path("mean").asDouble());
+                }
+            }
+            for (JsonNode counter : root.path("counters")) {
+                String name = counter.path("name").asText();
+                String endpoint = counter.path("labels").path("endpoint").asText(null);
+                if (endpoint != null && MetricsInterceptor.REQUESTS.equals(name)) {
+                    history.endpoint(endpoint).requests += counter.path("value").asLong();
+                } else if (endpoint != null && MetricsInterceptor.RETRIES.equals(name)) {
+                    history.endpoint(endpoint).retries += counter.path("value").asLong();
+                }
+            }
+            Endpoint polls = history.endpoints.get(REPLICATION_POLL);
+            if (polls != null && replications > 0) {
+                history.pollsPerReplication = polls.requests / (double) replications;
+            }
+            logger.info("Read the timings of {} endpoints and {} replications from {}", history.endpoints.size(), replications, metricsFile);
+            return history;
+        }
+
+        private Endpoint endpoint(String name) {
+            return endpoints.computeIfAbsent(name, key -> new Endpoint());
+        }
+    }
+
+    private static class Endpoint {
+
+        private double seconds;
+        private long requestBytes;
+        private long responseBytes;
+        private long requests;
+        private long retries;
+
+        private double retryRate() {
+            return requests == 0 ? 0 : retries / (double) requests;
+        }
+    }
+}
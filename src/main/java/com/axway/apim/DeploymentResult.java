@@ -0,0 +1,97 @@
+package com.axway.apim;
+
+import com.axway.apim.openapi.ChangeType;
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.annotation.JsonPropertyOrder;
+
+import java.util.Map;
+
+@JsonInclude(JsonInclude.Include.NON_NULL)
+@JsonPropertyOrder({"apiName", "orgName", "openAPI", "status", "exitCode", "durationMillis", "message", "changeSeverity", "replicationMillis"})
+public class DeploymentResult {
+
+    private final String apiName;
+    private final String orgName;
+    private final String openAPI;
+    private final APIDeployment.Status status;
+    private final int exitCode;
+    private final long durationMillis;
+    private final String message;
+    private ChangeType changeSeverity;
+    private Map<String, Long> replicationMillis;
+
+    public DeploymentResult(String apiName, String orgName, String openAPI, APIDeployment.Status status, int exitCode, long durationMillis, String message) {
+        this.apiName = apiName;
+        this.orgName = orgName;
+        this.openAPI = openAPI;
+        this.status = status;
+        this.exitCode = exitCode;
+        this.durationMillis = durationMillis;
+        this.message = message;
+    }
+
+    public DeploymentResult(APIDeployment deployment, int exitCode, long durationMillis) {
+        this(deployment.getApiName(), deployment.getOrgName(), deployment.getOpenAPI().getPath(), deployment.getStatus(),
+            exitCode, durationMillis, deployment.getMessage());
+        if (deployment.getSpecDiff() != null) {
+            this.changeSeverity = deployment.getSpecDiff().getSeverity();
+        }
+        if (deployment.getReplicationResult() != null) {
+            this.replicationMillis = deployment.getReplicationResult().getPublishMillis();
+        }
+    }
+
+    public String getApiName() {
+        return apiName;
+    }
+
+    public String getOrgName() {
+        return orgName;
+    }
+
+    public String getOpenAPI() {
+        return openAPI;
+    }
+
+    public APIDeployment.Status getStatus() {
+        return status;
+    }
+
+    public int getExitCode() {
+        return exitCode;
+    }
+
+    public long getDurationMillis() {
+        return durationMillis;
+    }
+
+    public String getMessage() {
+        return message;
+    }
+
+    public ChangeType getChangeSeverity() {
+        return changeSeverity;
+    }
+
+    public void setChangeSeverity(ChangeType changeSeverity) {
+        this.changeSeverity = changeSeverity;
+    }
+
+    public Map<String, Long> getReplicationMillis() {
+        return replicationMillis;
+    }
+
+    public void setReplicationMillis(Map<String, Long> replicationMillis) {
+        this.replicationMillis = replicationMillis;
+    }
+
+    @Override
+    public String toString() {
+        return "DeploymentResult{" +
+            "apiName='" + apiName + '\'' +
+            ", status=" + status +
+            ", durationMillis=" + durationMillis +
+            ", message='" + message + '\'' +
+            '}';
+    }
+}
@@ -0,0 +1,84 @@
+package com.axway.apim;
+
+import com.axway.apim.journal.JournalEntry;
+import com.axway.apim.journal.JournalState;
+import com.axway.apim.service.API;
+import com.axway.apim.service.APIMService;
+import okhttp3.ResponseBody;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import retrofit2.Response;
+
+import java.io.IOException;
+import java.util.EnumSet;
+import java.util.Set;
+
+/**
+ * Rolls back a half-finished deployment recorded in a journal by removing the frontend and backend API it created.
+ * The old API is left untouched, so a deployment that was replicated or already started to deprecate or remove the
+ * old API cannot be rolled back and has to be finished by running it again: the journal records these steps before
+ * their call is sent, as the old API may already be retiring when the response is lost. Every step tolerates objects
+ * that are already gone, so a rollback that was interrupted itself can simply be repeated.
+ */
+public class DeploymentRollback {
+
+    private static final Logger logger = LoggerFactory.getLogger(DeploymentRollback.class);
+
+    private static final Set<JournalEntry.Step> ROLL_FORWARD_STEPS = EnumSet.of(JournalEntry.Step.REPLICATED,
+        JournalEntry.Step.OLD_API_DEPRECATING, JournalEntry.Step.OLD_API_UNPUBLISHING, JournalEntry.Step.OLD_API_UNPUBLISHED,
+        JournalEntry.Step.OLD_API_DELETED);
+
+    private final APIMService apimService;
+
+    public DeploymentRollback(APIMService apimService) {
+        this.apimService = apimService;
+    }
+
+    public boolean rollback(JournalState state) throws IOException {
+        if (ROLL_FORWARD_STEPS.stream().anyMatch(state::isDone)) {
+            logger.error("Deployment of {} already started to retire the old API {}, run the deployment again with the same openapi definition to finish it",
+                state.getApiName(), state.getOldAPIId());
+            return false;
+        }
+        logger.info("Rolling back deployment of {}", state);
+        if (state.getNewAPIId() != null && !removeFrontend(state.getNewAPIId())) {
+            return false;
+        }
+        if (state.getNewBackendId() != null) {
+            Response<Void> response = apimService.deleteBackendAPI(state.getNewBackendId()).execute();
+            logger.info("Delete Backend API {} complete with status code :{}", state.getNewBackendId(), response.code());
+            if (response.code() != 204 && response.code() != 404) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private boolean removeFrontend(String id) throws IOException {
+        Response<API> frontendResponse = apimService.getFrontendAPI(id).execute();
+        if (frontendResponse.code() == 404) {
+            logger.info("Frontend API {} is already removed", id);
+            return true;
+        }
+        if (!frontendResponse.isSuccessful() || frontendResponse.body() == null) {
+            logger.error("Unable to read Frontend API {}, status code :{}", id, frontendResponse.code());
+            return false;
+        }
+        if ("published".equals(frontendResponse.body().getState())) {
+            Response<ResponseBody> unpublishResponse = apimService.unPublishAPI(id).execute();
+            logger.info("UnPublish Frontend API {} complete with status code :{}", id, unpublishResponse.code());
+            if (unpublishResponse.body() != null) {
+                unpublishResponse.body().close();
+            }
+            if (unpublishResponse.errorBody() != null) {
+                unpublishResponse.errorBody().close();
+            }
+            if (unpublishResponse.code() != 201) {
+                return false;
+            }
+        }
+        Response<Void> deleteResponse = apimService.deleteAPI(id).execute();
+        logger.info("Delete Frontend API {} complete with status code :{}", id, deleteResponse.code());
+        return deleteResponse.code() == 204 || deleteResponse.code() == 404;
+    }
+}
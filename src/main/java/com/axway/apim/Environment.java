@@ -0,0 +1,94 @@
+package com.axway.apim;
+
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * One independent API Manager topology of a fan-out deployment: the node to deploy to, the cluster nodes to check for
+ * replication and optionally its own credentials and number of parallel deployments.
+ */
+@JsonIgnoreProperties(ignoreUnknown = true)
+public class Environment {
+
+    private String name;
+
+    private String url;
+
+    private List<String> clusterUrls = new ArrayList<>();
+
+    private String username;
+
+    private String password;
+
+    private Integer threads;
+
+    private boolean canary;
+
+    public String getName() {
+        return name;
+    }
+
+    public void setName(String name) {
+        this.name = name;
+    }
+
+    public String getUrl() {
+        return url;
+    }
+
+    public void setUrl(String url) {
+        this.url = url;
+    }
+
+    public List<String> getClusterUrls() {
+        return clusterUrls;
+    }
+
+    public void setClusterUrls(List<String> clusterUrls) {
+        this.clusterUrls = clusterUrls == null ? new ArrayList<>() : clusterUrls;
+    }
+
+    public String getUsername() {
+        return username;
+    }
+
+    public void setUsername(String username) {
+        this.username = username;
+    }
+
+    public String getPassword() {
+        return password;
+    }
+
+    public void setPassword(String password) {
+        this.password = password;
+    }
+
+    public Integer getThreads() {
+        return threads;
+    }
+
+    public void setThreads(Integer threads) {
+        this.threads = threads;
+    }
+
+    public boolean isCanary() {
+        return canary;
+    }
+
+    public void setCanary(boolean canary) {
+        this.canary = canary;
+    }
+
+    @Override
+    public String toString() {
+        return "Environment{" +
+            "name='" + name + '\'' +
+            ", url='" + url + '\'' +
+            ", clusterUrls=" + clusterUrls +
+            ", canary=" + canary +
+            '}';
+    }
+}
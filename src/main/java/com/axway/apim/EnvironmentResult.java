@@ -0,0 +1,92 @@
+package com.axway.apim;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.annotation.JsonPropertyOrder;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Outcome of one environment of a fan-out deployment. {@code startedAfterMillis} is relative to the start of the
+ * fan-out, so the report shows how the environments overlapped.
+ */
+@JsonInclude(JsonInclude.Include.NON_NULL)
+@JsonPropertyOrder({"name", "url", "canary", "status", "startedAfterMillis", "durationMillis", "message", "results"})
+public class EnvironmentResult {
+
+    public enum Status {
+        SUCCEEDED, FAILED, SKIPPED
+    }
+
+    private final String name;
+    private final String url;
+    private final boolean canary;
+    private Status status = Status.SKIPPED;
+    private long startedAfterMillis;
+    private long durationMillis;
+    private String message;
+    private List<DeploymentResult> results = new ArrayList<>();
+
+    public EnvironmentResult(Environment environment) {
+        this.name = environment.getName();
+        this.url = environment.getUrl();
+        this.canary = environment.isCanary();
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public String getUrl() {
+        return url;
+    }
+
+    public boolean isCanary() {
+        return canary;
+    }
+
+    public Status getStatus() {
+        return status;
+    }
+
+    public void setStatus(Status status) {
+        this.status = status;
+    }
+
+    public long getStartedAfterMillis() {
+        return startedAfterMillis;
+    }
+
+    public void setStartedAfterMillis(long startedAfterMillis) {
+        this.startedAfterMillis = startedAfterMillis;
+    }
+
+    public long getDurationMillis() {
+        return durationMillis;
+    }
+
+    public void setDurationMillis(long durationMillis) {
+        this.durationMillis = durationMillis;
+    }
+
+    public String getMessage() {
+        return message;
+    }
+
+    public void setMessage(String message) {
+        this.message = message;
+    }
+
+    public List<DeploymentResult> getResults() {
+        return results;
+    }
+
+    public void setResults(List<DeploymentResult> results) {
+        this.results = results;
+    }
+
+    @Override
+    public String toString() {
+        return name + " : " + status + " in " + durationMillis + " ms" + (message == null ? "" : " - " + message);
+    }
+}
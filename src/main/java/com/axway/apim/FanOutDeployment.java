@@ -0,0 +1,198 @@
+package com.axway.apim;
+
+import com.axway.apim.metrics.MetricsRegistry;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Deploys the same APIs to several independent API Manager environments. Canary environments are deployed first and
+ * the others only start if all canaries succeeded. The remaining environments run at most
+ * {@code maxParallelEnvironments} at a time, in topology order; once {@code abortAfter} environments have failed the
+ * environments that have not started yet are skipped. Environments already running are always finished, so that no
+ * environment is left half deployed.
+ */
+public class FanOutDeployment {
+
+    private static final Logger logger = LoggerFactory.getLogger(FanOutDeployment.class);
+
+    public static final String ENVIRONMENTS = "apim_fanout_environments_total";
+
+    /**
+     * Deploys the APIs to one environment.
+     */
+    public interface EnvironmentDeployer {
+        List<DeploymentResult> deploy(Environment environment) throws IOException;
+    }
+
+    private final int maxParallelEnvironments;
+    private final int abortAfter;
+    private final MetricsRegistry metrics;
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    public FanOutDeployment(int maxParallelEnvironments, int abortAfter, MetricsRegistry metrics) {
+        this.maxParallelEnvironments = Math.max(1, maxParallelEnvironments);
+        this.abortAfter = abortAfter;
+        this.metrics = metrics;
+    }
+
+    public static List<Environment> readTopology(File topology) throws IOException {
+        List<Environment> environments = new ObjectMapper().readValue(topology, new TypeReference<List<Environment>>() {
+        });
+        Set<String> names = new HashSet<>();
+        for (Environment environment : environments) {
+            if (environment.getName() == null || environment.getUrl() == null) {
+                throw new IOException("Topology entry requires name and url : " + environment);
+            }
+            if (!names.add(environment.getName())) {
+                throw new IOException("Duplicate environment in topology : " + environment.getName());
+            }
+        }
+        return environments;
+    }
+
+    public List<EnvironmentResult> deploy(List<Environment> environments, EnvironmentDeployer deployer) {
+        long start = System.currentTimeMillis();
+        List<Environment> canaries = new ArrayList<>();
+        List<Environment> others = new ArrayList<>();
+        for (Environment environment : environments) {
+            (environment.isCanary() ? canaries : others).add(environment);
+        }
+        logger.info("Deploying to {} environments ({} canaries), at most {} in parallel", environments.size(), canaries.size(), maxParallelEnvironments);
+        List<EnvironmentResult> results = new ArrayList<>();
+        AtomicInteger failed = new AtomicInteger();
+        results.addAll(deploy(canaries, deployer, start, failed, Integer.MAX_VALUE));
+        if (failed.get() > 0) {
+            for (Environment environment : others) {
+                results.add(skipped(environment, "Canary deployment failed"));
+            }
+        } else {
+            results.addAll(deploy(others, deployer, start, failed, abortAfter > 0 ? abortAfter : Integer.MAX_VALUE));
+        }
+        for (EnvironmentResult result : results) {
+            metrics.increment(ENVIRONMENTS, "status", result.getStatus().name());
+        }
+        logger.info("Fan-out deployment to {} environments complete in {} ms", environments.size(), System.currentTimeMillis() - start);
+        return results;
+    }
+
+    private List<EnvironmentResult> deploy(List<Environment> environments, EnvironmentDeployer deployer, long start,
+                                           AtomicInteger failed, int abortAfter) {
+        List<EnvironmentResult> results = new ArrayList<>();
+        if (environments.isEmpty()) {
+            return results;
+        }
+        AtomicInteger count = new AtomicInteger();
+        ExecutorService executorService = Executors.newFixedThreadPool(Math.min(maxParallelEnvironments, environments.size()),
+            runnable -> new Thread(runnable, "fanout-" + count.incrementAndGet()));
+        List<Future<EnvironmentResult>> futures = new ArrayList<>();
+        try {
+            for (Environment environment : environments) {
+                futures.add(executorService.submit(() -> {
+                    if (failed.get() >= abortAfter) {
+                        return skipped(environment, "Aborted after " + failed.get() + " failed environments");
+                    }
+                    EnvironmentResult result = deploy(environment, deployer, start);
+                    if (result.getStatus() == EnvironmentResult.Status.FAILED) {
+                        failed.incrementAndGet();
+                    }
+                    return result;
+                }));
+            }
+            for (int i = 0; i < futures.size(); i++) {
+                try {
+                    results.add(futures.get(i).get());
+                } catch (ExecutionException e) {
+                    logger.error("Deployment to environment {} failed", environments.get(i).getName(), e.getCause());
+                    EnvironmentResult result = new EnvironmentResult(environments.get(i));
+                    result.setStatus(EnvironmentResult.Status.FAILED);
+                    result.setMessage(String.valueOf(e.getCause()));
+                    results.add(result);
+                    failed.incrementAndGet();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    logger.error("Fan-out deployment interrupted");
+                    break;
+                }
+            }
+            return results;
+        } finally {
+            executorService.shutdownNow();
+        }
+    }
+
+    private EnvironmentResult deploy(Environment environment, EnvironmentDeployer deployer, long start) {
+        EnvironmentResult result = new EnvironmentResult(environment);
+        long environmentStart = System.currentTimeMillis();
+        result.setStartedAfterMillis(environmentStart - start);
+        logger.info("Deploying to environment {} ({})", environment.getName(), environment.getUrl());
+        try {
+            List<DeploymentResult> results = deployer.deploy(environment);
+            result.setResults(results);
+            if (BatchDeployment.isSuccessful(results)) {
+                result.setStatus(EnvironmentResult.Status.SUCCEEDED);
+            } else {
+                int failed = 0;
+                for (DeploymentResult deploymentResult : results) {
+                    if (deploymentResult.getStatus() == APIDeployment.Status.FAILED || deploymentResult.getStatus() == APIDeployment.Status.PENDING) {
+                        failed++;
+                    }
+                }
+                result.setStatus(EnvironmentResult.Status.FAILED);
+                result.setMessage(failed + " of " + results.size() + " APIs failed");
+            }
+        } catch (IOException | RuntimeException e) {
+            logger.error("Deployment to environment {} failed", environment.getName(), e);
+            result.setStatus(EnvironmentResult.Status.FAILED);
+            result.setMessage(e.getMessage());
+        }
+        result.setDurationMillis(System.currentTimeMillis() - environmentStart);
+        logger.info("Environment {}", result);
+        return result;
+    }
+
+    private static EnvironmentResult skipped(Environment environment, String message) {
+        EnvironmentResult result = new EnvironmentResult(environment);
+        result.setStatus(EnvironmentResult.Status.SKIPPED);
+        result.setMessage(message);
+        logger.warn("Skipping environment {} : {}", environment.getName(), message);
+        return result;
+    }
+
+    public static boolean isSuccessful(List<EnvironmentResult> results) {
+        for (EnvironmentResult result : results) {
+            if (result.getStatus() != EnvironmentResult.Status.SUCCEEDED) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    public void writeReport(List<EnvironmentResult> results, File report) throws IOException {
+        for (EnvironmentResult result : results) {
+            logger.info("{}", result);
+            for (DeploymentResult deploymentResult : result.getResults()) {
+                logger.info("  {} : {} in {} ms - {}", deploymentResult.getApiName(), deploymentResult.getStatus(),
+                    deploymentResult.getDurationMillis(), deploymentResult.getMessage());
+            }
+        }
+        if (report != null) {
+            objectMapper.enable(SerializationFeature.INDENT_OUTPUT).writeValue(report, results);
+            logger.info("Fan-out report written to {}", report);
+        }
+    }
+}
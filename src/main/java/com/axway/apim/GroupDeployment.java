@@ -0,0 +1,495 @@
+package com.axway.apim;
+
+import com.axway.apim.metrics.MetricsRegistry;
+import com.axway.apim.openapi.SpecComparison;
+import com.axway.apim.openapi.SpecDiff;
+import com.axway.apim.openapi.SpecDigest;
+import com.axway.apim.openapi.SpecFile;
+import com.axway.apim.service.API;
+import com.axway.apim.service.APIMService;
+import com.axway.apim.service.APIManager;
+import com.axway.apim.service.Organization;
+import com.axway.apim.service.ReplayCheck;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import okhttp3.ResponseBody;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import retrofit2.Response;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Deploys one spec to all frontend APIs of a backend API, e.g. the per-organization or per-vhost variants of an API.
+ * The group is every frontend API that is not deprecated and uses the backend of the API named {@code apiName}. The
+ * backend definition is downloaded, compared and imported once. Then every frontend API is created on the new backend
+ * in its own organization, gets the configuration of its old API, and is published on its vhost and upgraded, on
+ * {@code threads} parallel workers. The replication of all new frontend APIs is checked in one pass per node before
+ * the old frontend APIs are deprecated.
+ * <p>
+ * A group deployment is not journaled. A frontend API that fails is reported and leaves the others alone; when its new
+ * frontend API was already created, the report names it and its backend API. A new backend API that no frontend API
+ * was created on is removed again. The old backend API is only removed once no old frontend API uses it, including the
+ * deprecated ones left out of the group.
+ */
+public class GroupDeployment {
+
+    private static final Logger logger = LoggerFactory.getLogger(GroupDeployment.class);
+
+    private static final AtomicInteger COUNT = new AtomicInteger();
+
+    private final DeploymentContext context;
+    private final APIManager apiManager;
+    private final String apiName;
+    private final String orgName;
+    private final File openAPI;
+    private final int threads;
+    private final MetricsRegistry metrics;
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    private SpecDiff specDiff;
+
+    public GroupDeployment(DeploymentContext context, APIManager apiManager, String apiName, String orgName, File openAPI, int threads) {
+        this.context = context;
+        this.apiManager = apiManager;
+        this.apiName = apiName;
+        this.orgName = orgName;
+        this.openAPI = openAPI;
+        this.threads = Math.max(1, threads);
+        this.metrics = context.getMetrics();
+    }
+
+    public List<DeploymentResult> deploy() {
+        long start = System.nanoTime();
+        List<Member> members = new ArrayList<>();
+        try {
+            deploy(members);
+        } catch (IOException e) {
+            logger.error("Error processing", e);
+            if (members.isEmpty()) {
+                members.add(new Member(context, apiManager, apiName, orgName, openAPI, null));
+            }
+            for (Member member : members) {
+                if (member.status == APIDeployment.Status.PENDING) {
+                    member.fail(e.getMessage());
+                }
+            }
+        } finally {
+            metrics.recordPhase("total", start);
+        }
+        List<DeploymentResult> results = new ArrayList<>();
+        for (Member member : members) {
+            metrics.increment(APIDeployment.DEPLOYMENTS, "status", member.status.name());
+            results.add(member.result(specDiff));
+        }
+        return results;
+    }
+
+    private void deploy(List<Member> members) throws IOException {
+        APIMService apimService = apiManager.getApimService();
+        long phaseStart = System.nanoTime();
+        SpecFile spec;
+        String openAPIDigest;
+        try {
+            spec = SpecFile.read(openAPI);
+            openAPIDigest = SpecDigest.digest(spec.openStream());
+            metrics.recordPhase("digest", phaseStart);
+        } catch (IOException e) {
+            logger.error("Unable to parse open API json file : {}", openAPI, e);
+            throw new IOException("Unable to parse open API json file");
+        }
+
+        phaseStart = System.nanoTime();
+        APIDeployment leader = new APIDeployment(context, apiManager, apiName, orgName, openAPI);
+        String orgId = leader.getOrgId(apimService, orgName);
+        if (orgId == null) {
+            throw new IOException("Organization not found : " + orgName);
+        }
+        String backendAPIId = findBackendAPIId(apimService);
+        List<API> apis = new ArrayList<>();
+        int leftOut = 0;
+        for (API api : listFrontendAPIs(apimService, "apiid", backendAPIId)) {
+            if (api.isDeprecatedOrRetired()) {
+                logger.info("Leaving out the deprecated frontend API {} of backend API {}", api.getId(), backendAPIId);
+                leftOut++;
+            } else {
+                apis.add(api);
+            }
+        }
+        Map<String, String> orgNames = organizationNames(apimService, orgId, apis);
+        for (API api : apis) {
+            members.add(new Member(context, apiManager, api.getName(), orgNames.getOrDefault(api.getOrganizationId(), api.getOrganizationId()), openAPI, api));
+        }
+        metrics.recordPhase("lookup", phaseStart);
+        if (members.isEmpty()) {
+            throw new IOException("No frontend API uses the backend API " + backendAPIId);
+        }
+        logger.info("Found {} frontend APIs of backend API {} : {}", members.size(), backendAPIId, members);
+
+        phaseStart = System.nanoTime();
+        logger.info("Downloading Backend API Definition with id : {}", backendAPIId);
+        Response<ResponseBody> downloadResponse = apimService.downloadBackendAPI(backendAPIId, true, "swagger.json").execute();
+        logger.info("Backend api download complete wit status code :{}", downloadResponse.code());
+        String existingOpenAPIDigest;
+        try (ResponseBody downloadBody = downloadResponse.body()) {
+            if (!downloadResponse.isSuccessful() || downloadBody == null) {
+                throw new IOException("Unable to download backend API, status code : " + downloadResponse.code());
+            }
+            SpecComparison comparison = SpecComparison.compare(apiName, downloadBody.byteStream(), spec, openAPIDigest,
+                context.getRedeployThreshold(), context.getDiffReportDirectory());
+            existingOpenAPIDigest = comparison.getDigest();
+            specDiff = comparison.getDiff();
+        }
+        metrics.recordPhase("download", phaseStart);
+        if (existingOpenAPIDigest.equals(openAPIDigest)) {
+            logger.info(" The openapi definition is not changed, exiting.. ");
+            for (Member member : members) {
+                member.finish(APIDeployment.Status.UNCHANGED, "The openapi definition is not changed");
+            }
+            return;
+        }
+        if (specDiff != null && !specDiff.requiresRedeploy(context.getRedeployThreshold())) {
+            logger.info(" The openapi definition has only {} changes, skipping deployment ", specDiff.getSeverity());
+            for (Member member : members) {
+                member.finish(APIDeployment.Status.SKIPPED, "The openapi definition has only " + specDiff.getSeverity() + " changes");
+            }
+            return;
+        }
+
+        logger.info("Creating new backend API for {} frontend APIs", members.size());
+        phaseStart = System.nanoTime();
+        String newBackendID = leader.createBackend(apimService, orgId);
+        metrics.recordPhase("create_backend", phaseStart);
+        if (newBackendID == null) {
+            throw new IOException("Unable to create backend API");
+        }
+        logger.info("Backend API created with id : {}", newBackendID);
+
+        ExecutorService executorService = Executors.newFixedThreadPool(Math.min(threads, members.size()), runnable ->
+            new Thread(runnable, "group-" + COUNT.incrementAndGet()));
+        try {
+            runAll(executorService, members, member -> member.rollout(apimService, newBackendID));
+            boolean newBackendUsed = false;
+            for (Member member : members) {
+                newBackendUsed |= member.newAPIId != null;
+            }
+            if (!newBackendUsed) {
+                logger.info("No frontend API was created, delete Backend API with id : {}", newBackendID);
+                leader.deleteBackendAPI(apimService, newBackendID);
+            }
+            checkReplication(apimService, members);
+            runAll(executorService, members, member -> member.retireOldAPI(apimService));
+        } finally {
+            executorService.shutdownNow();
+        }
+        boolean oldBackendUsed = false;
+        for (Member member : members) {
+            oldBackendUsed |= !member.oldAPIRemoved;
+        }
+        if (oldBackendUsed) {
+            return;
+        }
+        if (leftOut > 0) {
+            logger.info("Keeping Backend API {}, still used by {} deprecated frontend APIs", backendAPIId, leftOut);
+        } else {
+            logger.info("Delete Backend API with id : {}", backendAPIId);
+            leader.deleteBackendAPI(apimService, backendAPIId);
+        }
+    }
+
+    /**
+     * The backend API of the frontend APIs named {@code apiName}, which have to share one.
+     */
+    private String findBackendAPIId(APIMService apimService) throws IOException {
+        Set<String> backendAPIIds = new LinkedHashSet<>();
+        for (API api : listFrontendAPIs(apimService, "name", apiName)) {
+            if (!api.isDeprecatedOrRetired()) {
+                backendAPIIds.add(api.getApiId());
+            }
+        }
+        if (backendAPIIds.isEmpty()) {
+            logger.error(" No Match for the API : {}", apiName);
+            throw new IOException("No Match for the API");
+        }
+        if (backendAPIIds.size() > 1) {
+            logger.error("The APIs named {} use different backend APIs : {}", apiName, backendAPIIds);
+            throw new IOException("The APIs named " + apiName + " use " + backendAPIIds.size() + " different backend APIs");
+        }
+        return backendAPIIds.iterator().next();
+    }
+
+    /**
+     * Names of the organizations of the frontend APIs, for the report. The organizations are only listed when a
+     * frontend API belongs to another organization than {@code orgName}.
+     */
+    private Map<String, String> organizationNames(APIMService apimService, String orgId, List<API> apis) throws IOException {
+        Map<String, String> orgNames = new HashMap<>();
+        orgNames.put(orgId, orgName);
+        boolean others = false;
+        for (API api : apis) {
+            others |= !orgId.equals(api.getOrganizationId());
+        }
+        if (!others) {
+            return orgNames;
+        }
+        Response<ResponseBody> response = apimService.listOrganizations().execute();
+        try (ResponseBody body = response.body()) {
+            if (!response.isSuccessful() || body == null) {
+                logger.warn("Unable to list the organizations, status code : {}", response.code());
+                return orgNames;
+            }
+            List<Organization> organizations = objectMapper.readValue(body.byteStream(), new TypeReference<List<Organization>>() {
+            });
+            for (Organization organization : organizations) {
+                orgNames.put(organization.getId(), organization.getName());
+            }
+        }
+        return orgNames;
+    }
+
+    private List<API> listFrontendAPIs(APIMService apimService, String field, String value) throws IOException {
+        Response<List<API>> response = apimService.listFrontendAPIsByName(field, "eq", value).execute();
+        if (!response.isSuccessful()) {
+            throw new IOException("Unable to list frontend APIs, status code : " + response.code());
+        }
+        return response.body() != null ? response.body() : Collections.emptyList();
+    }
+
+    /**
+     * Waits for the new frontend APIs of all upgraded members at once, logging in to every cluster node only once.
+     */
+    private void checkReplication(APIMService apimService, List<Member> members) throws IOException {
+        Map<String, Member> upgraded = new LinkedHashMap<>();
+        for (Member member : members) {
+            if (member.status == APIDeployment.Status.PENDING) {
+                upgraded.put(member.newAPIId, member);
+            }
+        }
+        if (upgraded.isEmpty()) {
+            return;
+        }
+        long phaseStart = System.nanoTime();
+        Map<String, APIMService> nodes = new LinkedHashMap<>();
+        nodes.put(apiManager.getUrl(), apimService);
+        for (String secondaryURL : context.getClusterUrls()) {
+            logger.info("Checking secondary URL : {}", secondaryURL);
+            APIManager secondary = context.getApiManagerFactory().login(secondaryURL);
+            if (secondary != null) {
+                nodes.put(secondaryURL, secondary.getApimService());
+            } else {
+                logger.error("Unable to connect to API manager : {}", secondaryURL);
+            }
+        }
+        ReplicationWatcher watcher = new ReplicationWatcher(context.getScheduler(), context.getReplicationTimeoutMillis());
+        Map<String, ReplicationResult> results = watcher.awaitAll(nodes, upgraded.keySet());
+        metrics.recordPhase("replication", phaseStart);
+        for (Map.Entry<String, ReplicationResult> result : results.entrySet()) {
+            upgraded.get(result.getKey()).replicationResult = result.getValue();
+        }
+        logger.info("Replication of {} frontend APIs : {}", results.size(), results);
+    }
+
+    private interface Step {
+        void run(Member member) throws IOException;
+    }
+
+    /**
+     * Runs the step for every member that has not ended yet and waits for all of them.
+     */
+    private static void runAll(ExecutorService executorService, List<Member> members, Step step) throws IOException {
+        List<Future<?>> futures = new ArrayList<>();
+        for (Member member : members) {
+            futures.add(executorService.submit((Callable<Void>) () -> {
+                if (member.status == APIDeployment.Status.PENDING) {
+                    try {
+                        step.run(member);
+                    } catch (IOException | RuntimeException e) {
+                        logger.error("Deployment of frontend API {} failed", member.oldAPI.getId(), e);
+                        member.fail(e.getMessage());
+                    }
+                }
+                return null;
+            }));
+        }
+        for (Future<?> future : futures) {
+            try {
+                future.get();
+            } catch (ExecutionException e) {
+                throw new IOException(e.getCause());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IOException("Group deployment interrupted");
+            }
+        }
+    }
+
+    /**
+     * One frontend API of the group. The API Manager calls are made through an {@link APIDeployment} of the frontend
+     * API's name, so that it is published under its own name.
+     */
+    private static class Member {
+
+        private final APIDeployment deployment;
+        private final String apiName;
+        private final String orgName;
+        private final String openAPI;
+        private final API oldAPI;
+        private final long start = System.currentTimeMillis();
+        private final MetricsRegistry metrics;
+
+        private volatile APIDeployment.Status status = APIDeployment.Status.PENDING;
+        private volatile String message;
+        private volatile long durationMillis;
+        private volatile String newAPIId;
+        private volatile ReplicationResult replicationResult;
+        private volatile boolean oldAPIRemoved;
+
+        private Member(DeploymentContext context, APIManager apiManager, String apiName, String orgName, File openAPI, API oldAPI) {
+            this.deployment = new APIDeployment(context, apiManager, apiName, orgName, openAPI);
+            this.apiName = apiName;
+            this.orgName = orgName;
+            this.openAPI = openAPI.getPath();
+            this.oldAPI = oldAPI;
+            this.metrics = context.getMetrics();
+        }
+
+        /**
+         * Creates the new frontend API on the new backend, copies the old API's configuration and publishes and
+         * upgrades it.
+         */
+        private void rollout(APIMService apimService, String newBackendID) throws IOException {
+            try {
+                createAndUpgrade(apimService, newBackendID);
+            } catch (IOException | RuntimeException e) {
+                if (newAPIId == null) {
+                    throw e;
+                }
+                logger.error("Deployment of frontend API {} failed", oldAPI.getId(), e);
+                failLeavingNewAPI(String.valueOf(e.getMessage()), newBackendID);
+            }
+        }
+
+        private void createAndUpgrade(APIMService apimService, String newBackendID) throws IOException {
+            logger.info("Creating new Frontend API for {}", oldAPI.getId());
+            long phaseStart = System.nanoTime();
+            // the frontend APIs of the group are created on the same backend at once, so a read-back after a lost
+            // response could take a sibling's frontend API for this one
+            API newAPI = deployment.createFrontend(apimService, newBackendID, oldAPI.getOrganizationId(), ReplayCheck.NONE);
+            metrics.recordPhase("create_frontend", phaseStart);
+            if (newAPI == null) {
+                fail("Unable to create frontend API");
+                return;
+            }
+            newAPIId = newAPI.getId();
+            phaseStart = System.nanoTime();
+            newAPI = deployment.updateNewAPIWithExistingConfig(apimService, oldAPI, newAPI);
+            metrics.recordPhase("update_frontend", phaseStart);
+            if (newAPI == null) {
+                failLeavingNewAPI("Unable to update frontend API", newBackendID);
+                return;
+            }
+            logger.info("Frontend API created with id : {}", newAPIId);
+            phaseStart = System.nanoTime();
+            JsonNode vhost = oldAPI.getProperties().get("vhost");
+            int statusCode = deployment.publishAPI(apimService, newAPIId, vhost != null && vhost.isTextual() ? vhost.asText() : null);
+            metrics.recordPhase("publish", phaseStart);
+            if (statusCode != 201) {
+                failLeavingNewAPI("Unable to publish API, status code : " + statusCode, newBackendID);
+                return;
+            }
+            logger.info("Upgrading API {} with new API {}", oldAPI.getId(), newAPIId);
+            phaseStart = System.nanoTime();
+            statusCode = deployment.upgradeAPI(apimService, oldAPI.getId(), newAPIId);
+            metrics.recordPhase("upgrade", phaseStart);
+            if (statusCode != 204) {
+                failLeavingNewAPI("Unable to upgrade API, status code : " + statusCode, newBackendID);
+            }
+        }
+
+        /**
+         * Deprecates the old frontend API once the new one is replicated; otherwise unpublishes and deletes it, like
+         * a single deployment whose replication check timed out.
+         */
+        private void retireOldAPI(APIMService apimService) throws IOException {
+            String id = oldAPI.getId();
+            long phaseStart = System.nanoTime();
+            if (replicationResult != null && replicationResult.isPublished()) {
+                int statusCode = deployment.deprecateAPI(apimService, id);
+                metrics.recordPhase("deprecate", phaseStart);
+                if (statusCode == 201) {
+                    logger.info("Deprecate API with id : {}", id);
+                    finish(APIDeployment.Status.DEPLOYED, "Deployed frontend API " + newAPIId + " on " + oldAPI.getPath());
+                } else {
+                    fail("Unable to deprecate API, status code : " + statusCode);
+                }
+                return;
+            }
+            logger.info("Un publish API with id : {}", id);
+            int statusCode = deployment.unPublishAPI(apimService, id);
+            if (statusCode == 201) {
+                logger.info("Delete API with id : {}", id);
+                statusCode = deployment.deleteAPI(apimService, id);
+                metrics.recordPhase("remove_old_api", phaseStart);
+                if (statusCode == 204) {
+                    oldAPIRemoved = true;
+                    finish(APIDeployment.Status.DEPLOYED, "Deployed frontend API " + newAPIId + " on " + oldAPI.getPath() + ", removed API " + id);
+                    return;
+                }
+            }
+            fail("Unable to remove API " + id + ", status code : " + statusCode);
+        }
+
+        private void finish(APIDeployment.Status status, String message) {
+            this.message = message;
+            this.durationMillis = System.currentTimeMillis() - start;
+            this.status = status;
+        }
+
+        private void fail(String message) {
+            finish(APIDeployment.Status.FAILED, message);
+        }
+
+        /**
+         * Fails a member whose new frontend API was already created. It is not removed, since a lost response may hide
+         * that it was upgraded; the message names it and its backend API for manual cleanup.
+         */
+        private void failLeavingNewAPI(String message, String newBackendID) {
+            logger.error("Deployment of frontend API {} failed, leaving new frontend API {} of backend API {} in place",
+                oldAPI.getId(), newAPIId, newBackendID);
+            fail(message + ", new frontend API " + newAPIId + " of backend API " + newBackendID + " is left in place");
+        }
+
+        private DeploymentResult result(SpecDiff specDiff) {
+            DeploymentResult result = new DeploymentResult(apiName, orgName, openAPI, status,
+                status == APIDeployment.Status.DEPLOYED ? 0 : 1, durationMillis, message);
+            if (specDiff != null) {
+                result.setChangeSeverity(specDiff.getSeverity());
+            }
+            if (replicationResult != null) {
+                result.setReplicationMillis(replicationResult.getPublishMillis());
+            }
+            return result;
+        }
+
+        @Override
+        public String toString() {
+            return oldAPI != null ? oldAPI.getName() + " (" + oldAPI.getId() + ", " + oldAPI.getPath() + ")" : apiName;
+        }
+    }
+}
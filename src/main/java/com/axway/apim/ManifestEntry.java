@@ -0,0 +1,59 @@
+package com.axway.apim;
+
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+@JsonIgnoreProperties(ignoreUnknown = true)
+public class ManifestEntry {
+
+    @JsonProperty("name")
+    private String apiName;
+
+    @JsonProperty("organization")
+    private String orgName;
+
+    @JsonProperty("openapi")
+    private String openAPI;
+
+    public ManifestEntry() {
+    }
+
+    public ManifestEntry(String apiName, String orgName, String openAPI) {
+        this.apiName = apiName;
+        this.orgName = orgName;
+        this.openAPI = openAPI;
+    }
+
+    public String getApiName() {
+        return apiName;
+    }
+
+    public void setApiName(String apiName) {
+        this.apiName = apiName;
+    }
+
+    public String getOrgName() {
+        return orgName;
+    }
+
+    public void setOrgName(String orgName) {
+        this.orgName = orgName;
+    }
+
+    public String getOpenAPI() {
+        return openAPI;
+    }
+
+    public void setOpenAPI(String openAPI) {
+        this.openAPI = openAPI;
+    }
+
+    @Override
+    public String toString() {
+        return "ManifestEntry{" +
+            "apiName='" + apiName + '\'' +
+            ", orgName='" + orgName + '\'' +
+            ", openAPI='" + openAPI + '\'' +
+            '}';
+    }
+}
@@ -0,0 +1,158 @@
+package com.axway.apim;
+
+import com.axway.apim.openapi.ChangeType;
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.annotation.JsonPropertyOrder;
+
+import java.io.File;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Change decision of one API and the predicted cost of deploying it: the API Manager calls of a real run per
+ * endpoint, the bytes sent and received, and the time spent in calls and waiting for replication.
+ */
+@JsonInclude(JsonInclude.Include.NON_NULL)
+@JsonPropertyOrder({"apiName", "orgName", "openAPI", "status", "message", "changeSeverity", "specBytes", "requests", "calls",
+    "expectedRetries", "requestBytes", "responseBytes", "durationMillis", "replicationWaitMillis", "replicationWaitP95Millis"})
+public class PlannedDeployment {
+
+    private final String apiName;
+    private final String orgName;
+    private final String openAPI;
+    private final APIDeployment.Status status;
+    private final String message;
+    private final ChangeType changeSeverity;
+    private final long specBytes;
+    private final Map<String, Integer> calls = new TreeMap<>();
+    private int requests;
+    private double expectedRetries;
+    private long requestBytes;
+    private long responseBytes;
+    private long durationMillis;
+    private long replicationWaitMillis;
+    private long replicationWaitP95Millis;
+
+    public PlannedDeployment(APIDeployment deployment) {
+        this.apiName = deployment.getApiName();
+        this.orgName = deployment.getOrgName();
+        this.openAPI = deployment.getOpenAPI().getPath();
+        this.status = deployment.getStatus();
+        this.message = deployment.getMessage();
+        this.changeSeverity = deployment.getSpecDiff() != null ? deployment.getSpecDiff().getSeverity() : null;
+        this.specBytes = deployment.getOpenAPI().length();
+    }
+
+    /**
+     * An API whose planning failed, with the cause as its message.
+     */
+    public PlannedDeployment(ManifestEntry entry, String message) {
+        this.apiName = entry.getApiName();
+        this.orgName = entry.getOrgName();
+        this.openAPI = entry.getOpenAPI();
+        this.status = APIDeployment.Status.FAILED;
+        this.message = message;
+        this.changeSeverity = null;
+        this.specBytes = new File(entry.getOpenAPI()).length();
+    }
+
+    void addCalls(String endpoint, int count) {
+        calls.merge(endpoint, count, Integer::sum);
+        requests += count;
+    }
+
+    public String getApiName() {
+        return apiName;
+    }
+
+    public String getOrgName() {
+        return orgName;
+    }
+
+    public String getOpenAPI() {
+        return openAPI;
+    }
+
+    public APIDeployment.Status getStatus() {
+        return status;
+    }
+
+    public String getMessage() {
+        return message;
+    }
+
+    public ChangeType getChangeSeverity() {
+        return changeSeverity;
+    }
+
+    public long getSpecBytes() {
+        return specBytes;
+    }
+
+    public int getRequests() {
+        return requests;
+    }
+
+    public Map<String, Integer> getCalls() {
+        return calls;
+    }
+
+    public double getExpectedRetries() {
+        return expectedRetries;
+    }
+
+    void setExpectedRetries(double expectedRetries) {
+        this.expectedRetries = expectedRetries;
+    }
+
+    public long getRequestBytes() {
+        return requestBytes;
+    }
+
+    void setRequestBytes(long requestBytes) {
+        this.requestBytes = requestBytes;
+    }
+
+    public long getResponseBytes() {
+        return responseBytes;
+    }
+
+    void setResponseBytes(long responseBytes) {
+        this.responseBytes = responseBytes;
+    }
+
+    public long getDurationMillis() {
+        return durationMillis;
+    }
+
+    void setDurationMillis(long durationMillis) {
+        this.durationMillis = durationMillis;
+    }
+
+    public long getReplicationWaitMillis() {
+        return replicationWaitMillis;
+    }
+
+    void setReplicationWaitMillis(long replicationWaitMillis) {
+        this.replicationWaitMillis = replicationWaitMillis;
+    }
+
+    public long getReplicationWaitP95Millis() {
+        return replicationWaitP95Millis;
+    }
+
+    void setReplicationWaitP95Millis(long replicationWaitP95Millis) {
+        this.replicationWaitP95Millis = replicationWaitP95Millis;
+    }
+
+    @Override
+    public String toString() {
+        return "PlannedDeployment{" +
+            "apiName='" + apiName + '\'' +
+            ", status=" + status +
+            ", requests=" + requests +
+            ", requestBytes=" + requestBytes +
+            ", durationMillis=" + durationMillis +
+            '}';
+    }
+}
@@ -0,0 +1,33 @@
+package com.axway.apim;
+
+import java.util.Map;
+
+public class ReplicationResult {
+
+    private final boolean published;
+    private final Map<String, Long> publishMillis;
+
+    public ReplicationResult(boolean published, Map<String, Long> publishMillis) {
+        this.published = published;
+        this.publishMillis = publishMillis;
+    }
+
+    public boolean isPublished() {
+        return published;
+    }
+
+    /**
+     * Time in milliseconds until each node reported the API as published, -1 for nodes that did not.
+     */
+    public Map<String, Long> getPublishMillis() {
+        return publishMillis;
+    }
+
+    @Override
+    public String toString() {
+        return "ReplicationResult{" +
+            "published=" + published +
+            ", publishMillis=" + publishMillis +
+            '}';
+    }
+}
@@ -0,0 +1,193 @@
+package com.axway.apim;
+
+import com.axway.apim.service.APIMService;
+import com.axway.apim.service.CatalogEntry;
+import org.jetbrains.annotations.NotNull;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import retrofit2.Call;
+import retrofit2.Callback;
+import retrofit2.Response;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Polls the discovery catalog of every API Manager node concurrently until the API, or every API of a group, is
+ * reported as published.
+ * Each node backs off exponentially with jitter, starting from a few milliseconds, so replication that is already
+ * done is detected almost immediately while slow nodes do not hold up the others.
+ */
+public class ReplicationWatcher {
+
+    private static final Logger logger = LoggerFactory.getLogger(ReplicationWatcher.class);
+
+    static final long INITIAL_DELAY_MILLIS = 20;
+    static final long MAX_DELAY_MILLIS = 2000;
+
+    private final ScheduledExecutorService scheduler;
+    private final long timeoutMillis;
+
+    public ReplicationWatcher(ScheduledExecutorService scheduler, long timeoutMillis) {
+        this.scheduler = scheduler;
+        this.timeoutMillis = timeoutMillis;
+    }
+
+    public ReplicationResult await(Map<String, APIMService> nodes, String apiId) {
+        return awaitAll(nodes, Collections.singletonList(apiId)).get(apiId);
+    }
+
+    /**
+     * Waits for several APIs in one pass: every node polls its whole catalog, or only the missing API once a single
+     * one is left, until it lists all of them as published.
+     */
+    public Map<String, ReplicationResult> awaitAll(Map<String, APIMService> nodes, Collection<String> apiIds) {
+        Map<String, ReplicationResult> results = new LinkedHashMap<>();
+        if (apiIds.isEmpty()) {
+            return results;
+        }
+        String subject = apiIds.size() == 1 ? "API " + apiIds.iterator().next() : apiIds.size() + " APIs";
+        long start = System.nanoTime();
+        List<NodePoll> polls = new ArrayList<>();
+        CompletableFuture<Void> failure = new CompletableFuture<>();
+        for (Map.Entry<String, APIMService> node : nodes.entrySet()) {
+            NodePoll poll = new NodePoll(node.getKey(), node.getValue(), apiIds, start);
+            poll.future.thenAccept(published -> {
+                if (!published) {
+                    failure.complete(null);
+                }
+            });
+            polls.add(poll);
+            poll.schedule(0);
+        }
+        CompletableFuture<?>[] futures = polls.stream().map(poll -> poll.future).toArray(CompletableFuture[]::new);
+        try {
+            CompletableFuture.anyOf(CompletableFuture.allOf(futures), failure).get(timeoutMillis, TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            logger.error("{} not published on all nodes within {} ms", subject, timeoutMillis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            logger.error("Interrupted while waiting for {} replication", subject);
+        } catch (ExecutionException e) {
+            logger.error("Error waiting for {} replication", subject, e.getCause());
+        } finally {
+            polls.forEach(NodePoll::cancel);
+        }
+
+        for (String apiId : apiIds) {
+            Map<String, Long> publishMillis = new LinkedHashMap<>();
+            boolean published = true;
+            for (NodePoll poll : polls) {
+                long millis = poll.publishMillis.getOrDefault(apiId, -1L);
+                publishMillis.put(poll.node, millis);
+                if (millis < 0) {
+                    published = false;
+                    logger.info("Node {} : API {} not published ({} polls)", poll.node, apiId, poll.attempts);
+                } else {
+                    logger.info("Node {} : API {} published after {} ms ({} polls)", poll.node, apiId, millis, poll.attempts);
+                }
+            }
+            results.put(apiId, new ReplicationResult(published, publishMillis));
+        }
+        return results;
+    }
+
+    private class NodePoll implements Callback<List<CatalogEntry>> {
+
+        private final String node;
+        private final APIMService apimService;
+        private final Set<String> pending = ConcurrentHashMap.newKeySet();
+        private final long start;
+        private final CompletableFuture<Boolean> future = new CompletableFuture<>();
+        private final Map<String, Long> publishMillis = new ConcurrentHashMap<>();
+        private volatile Call<List<CatalogEntry>> call;
+        private long delay = INITIAL_DELAY_MILLIS;
+        private volatile int attempts;
+
+        NodePoll(String node, APIMService apimService, Collection<String> apiIds, long start) {
+            this.node = node;
+            this.apimService = apimService;
+            this.pending.addAll(apiIds);
+            this.start = start;
+        }
+
+        void schedule(long delayMillis) {
+            if (!future.isDone()) {
+                scheduler.schedule(this::poll, delayMillis, TimeUnit.MILLISECONDS);
+            }
+        }
+
+        void poll() {
+            if (future.isDone()) {
+                return;
+            }
+            attempts++;
+            if (pending.size() == 1) {
+                call = apimService.listCatalogByName("id", "eq", pending.iterator().next());
+            } else {
+                call = apimService.listCatalogByName(null, null, null);
+            }
+            call.enqueue(this);
+        }
+
+        void cancel() {
+            future.complete(false);
+            Call<List<CatalogEntry>> current = call;
+            if (current != null) {
+                current.cancel();
+            }
+        }
+
+        long nextDelay() {
+            long next = ThreadLocalRandom.current().nextLong(delay / 2, delay + 1);
+            delay = Math.min(MAX_DELAY_MILLIS, delay * 2);
+            return next;
+        }
+
+        @Override
+        public void onResponse(@NotNull Call<List<CatalogEntry>> call, @NotNull Response<List<CatalogEntry>> response) {
+            if (!response.isSuccessful()) {
+                logger.error("APIs {} not found in API manager catalog of {}, status code :{}", pending, node, response.code());
+                future.complete(false);
+                return;
+            }
+            List<CatalogEntry> entries = response.body();
+            if (entries == null || entries.isEmpty()) {
+                logger.debug("Node {} : Catalog is not yet created", node);
+            } else {
+                long millis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+                for (CatalogEntry entry : entries) {
+                    logger.debug("Node {} : API {} , State : {}", node, entry.getId(), entry.getState());
+                    if ("published".equals(entry.getState()) && pending.remove(entry.getId())) {
+                        publishMillis.put(entry.getId(), millis);
+                    }
+                }
+            }
+            if (pending.isEmpty()) {
+                future.complete(true);
+            } else {
+                schedule(nextDelay());
+            }
+        }
+
+        @Override
+        public void onFailure(@NotNull Call<List<CatalogEntry>> call, @NotNull Throwable t) {
+            if (!call.isCanceled()) {
+                logger.warn("Node {} : Catalog poll failed, retrying", node, t);
+                schedule(nextDelay());
+            }
+        }
+    }
+}
@@ -0,0 +1,260 @@
+package com.axway.apim;
+
+import com.axway.apim.metrics.MetricsRegistry;
+import com.axway.apim.service.API;
+import com.axway.apim.service.APIMService;
+import com.axway.apim.service.FrontendAPIReader;
+import com.axway.apim.service.Organization;
+import com.axway.apim.service.RateLimiter;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import okhttp3.ResponseBody;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import retrofit2.Response;
+
+import java.io.File;
+import java.io.IOException;
+import java.time.Instant;
+import java.time.OffsetDateTime;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Removes the frontend APIs whose retirement date passed more than the grace period ago, together with their backend
+ * APIs. All frontend APIs are read in one streamed list call; the removals ({@code unPublishAPI}, {@code deleteAPI},
+ * {@code deleteBackendAPI}) run in batches on a fixed number of threads, with every call going through one
+ * {@link RateLimiter}. A backend API is deleted together with the last of its frontend APIs, so one that is shared by
+ * several retired frontend APIs goes with the last of them, and one that is still used by a frontend API that is not
+ * due stays. If every API of a batch fails the cleanup stops, since that points at a problem with API Manager rather
+ * than with single APIs.
+ */
+public class RetiredAPICleanup {
+
+    private static final Logger logger = LoggerFactory.getLogger(RetiredAPICleanup.class);
+
+    public static final String CLEANUPS = "apim_cleanup_apis_total";
+
+    private final APIMService apimService;
+    private final long graceMillis;
+    private final int threads;
+    private final int batchSize;
+    private final RateLimiter rateLimiter;
+    private final boolean dryRun;
+    private final MetricsRegistry metrics;
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    public RetiredAPICleanup(APIMService apimService, long graceMillis, int threads, int batchSize, double callsPerSecond,
+                             boolean dryRun, MetricsRegistry metrics) {
+        this.apimService = apimService;
+        this.graceMillis = graceMillis;
+        this.threads = Math.max(1, threads);
+        this.batchSize = Math.max(1, batchSize);
+        this.rateLimiter = new RateLimiter(callsPerSecond);
+        this.dryRun = dryRun;
+        this.metrics = metrics;
+    }
+
+    /**
+     * Cleans up the retired APIs, optionally only those of one name and one organization.
+     */
+    public List<CleanupResult> cleanup(String apiName, String orgName) throws IOException {
+        String orgId = null;
+        if (orgName != null) {
+            Response<List<Organization>> orgResponse = apimService.getOrganizationByName("name", "eq", orgName).execute();
+            if (!orgResponse.isSuccessful() || orgResponse.body() == null || orgResponse.body().isEmpty()) {
+                throw new IOException("Organization not found : " + orgName);
+            }
+            orgId = orgResponse.body().get(0).getId();
+        }
+        List<API> apis = new ArrayList<>();
+        Response<ResponseBody> listResponse = apimService.listFrontendAPIs().execute();
+        if (!listResponse.isSuccessful()) {
+            throw new IOException("Unable to list frontend APIs, status code : " + listResponse.code());
+        }
+        try (ResponseBody body = listResponse.body()) {
+            FrontendAPIReader.read(body.byteStream(), apis::add);
+        }
+
+        Map<String, AtomicInteger> backendUsage = new HashMap<>();
+        for (API api : apis) {
+            if (api.getApiId() != null) {
+                backendUsage.computeIfAbsent(api.getApiId(), id -> new AtomicInteger()).incrementAndGet();
+            }
+        }
+        long now = System.currentTimeMillis();
+        List<CleanupResult> results = new ArrayList<>();
+        List<CleanupResult> due = new ArrayList<>();
+        for (API api : apis) {
+            if (!api.isDeprecatedOrRetired() || (apiName != null && !apiName.equals(api.getName())) || (orgId != null && !orgId.equals(api.getOrganizationId()))) {
+                continue;
+            }
+            Instant retirementDate = retirementDate(api.getRetirementDate());
+            CleanupResult result = new CleanupResult(api.getName(), api.getId(), api.getApiId(), api.getState(),
+                retirementDate == null ? null : retirementDate.toString());
+            results.add(result);
+            if (retirementDate == null) {
+                result.finish(CleanupResult.Status.SKIPPED, null, "No readable retirement date : " + api.getRetirementDate());
+            } else if (retirementDate.toEpochMilli() + graceMillis > now) {
+                result.finish(CleanupResult.Status.NOT_DUE, null, "Removed after " + Instant.ofEpochMilli(retirementDate.toEpochMilli() + graceMillis));
+            } else {
+                due.add(result);
+            }
+        }
+        logger.info("Found {} deprecated or retired frontend APIs of {}, {} due for removal", results.size(), apis.size(), due.size());
+        if (dryRun) {
+            for (CleanupResult result : due) {
+                result.finish(CleanupResult.Status.PLANNED, null, removeFrontend(backendUsage, result.getApiId()) ? "Frontend and backend API would be removed"
+                    : "Frontend API would be removed, backend API is used by other frontend APIs");
+            }
+        } else if (!due.isEmpty()) {
+            remove(due, backendUsage);
+        }
+        for (CleanupResult result : results) {
+            metrics.increment(CLEANUPS, "status", result.getStatus().name());
+        }
+        return results;
+    }
+
+    private void remove(List<CleanupResult> due, Map<String, AtomicInteger> backendUsage) {
+        AtomicInteger count = new AtomicInteger();
+        ExecutorService executorService = Executors.newFixedThreadPool(Math.min(threads, due.size()),
+            runnable -> new Thread(runnable, "cleanup-" + count.incrementAndGet()));
+        try {
+            for (int start = 0; start < due.size(); start += batchSize) {
+                List<CleanupResult> batch = due.subList(start, Math.min(due.size(), start + batchSize));
+                List<Future<CleanupResult>> futures = new ArrayList<>();
+                for (CleanupResult result : batch) {
+                    futures.add(executorService.submit(() -> remove(result, backendUsage)));
+                }
+                int failed = 0;
+                for (int i = 0; i < futures.size(); i++) {
+                    try {
+                        if (futures.get(i).get().getStatus() == CleanupResult.Status.FAILED) {
+                            failed++;
+                        }
+                    } catch (ExecutionException e) {
+                        batch.get(i).finish(CleanupResult.Status.FAILED, null, String.valueOf(e.getCause()));
+                        failed++;
+                    }
+                }
+                logger.info("Cleanup batch {}-{} of {} done, {} failed", start + 1, start + batch.size(), due.size(), failed);
+                if (failed == batch.size()) {
+                    for (CleanupResult result : due.subList(start + batch.size(), due.size())) {
+                        result.finish(CleanupResult.Status.SKIPPED, null, "Cleanup stopped after a batch in which every removal failed");
+                    }
+                    logger.error("Every removal of the last batch failed, stopping the cleanup");
+                    return;
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            logger.error("Cleanup interrupted");
+        } finally {
+            executorService.shutdownNow();
+        }
+    }
+
+    private CleanupResult remove(CleanupResult result, Map<String, AtomicInteger> backendUsage) throws IOException {
+        String id = result.getId();
+        if ("published".equals(result.getState())) {
+            rateLimiter.acquire();
+            Response<ResponseBody> response = apimService.unPublishAPI(id).execute();
+            close(response);
+            logger.info("UnPublish Frontend API {} complete with status code :{}", id, response.code());
+            if (response.code() != 201 && response.code() != 404) {
+                return result.finish(CleanupResult.Status.FAILED, null, "Unable to unpublish API, status code : " + response.code());
+            }
+        }
+        rateLimiter.acquire();
+        Response<Void> deleteResponse = apimService.deleteAPI(id).execute();
+        logger.info("Delete Frontend API {} complete with status code :{}", id, deleteResponse.code());
+        if (deleteResponse.code() != 204 && deleteResponse.code() != 404) {
+            return result.finish(CleanupResult.Status.FAILED, null, "Unable to delete API, status code : " + deleteResponse.code());
+        }
+        if (!removeFrontend(backendUsage, result.getApiId())) {
+            return result.finish(CleanupResult.Status.DELETED, false, "Backend API is used by other frontend APIs");
+        }
+        rateLimiter.acquire();
+        Response<Void> backendResponse = apimService.deleteBackendAPI(result.getApiId()).execute();
+        logger.info("Delete Backend API {} complete with status code :{}", result.getApiId(), backendResponse.code());
+        if (backendResponse.code() != 204 && backendResponse.code() != 404) {
+            return result.finish(CleanupResult.Status.FAILED, false, "Unable to delete backend API, status code : " + backendResponse.code());
+        }
+        return result.finish(CleanupResult.Status.DELETED, true, null);
+    }
+
+    /**
+     * Counts a frontend API of the backend API as removed and returns whether it was the last one, in which case the
+     * backend API is removed too.
+     */
+    private static boolean removeFrontend(Map<String, AtomicInteger> backendUsage, String backendAPIId) {
+        AtomicInteger usage = backendUsage.get(backendAPIId);
+        return usage != null && usage.decrementAndGet() == 0;
+    }
+
+    private static void close(Response<ResponseBody> response) {
+        if (response.body() != null) {
+            response.body().close();
+        }
+        if (response.errorBody() != null) {
+            response.errorBody().close();
+        }
+    }
+
+    /**
+     * Reads the retirement date, which API Manager reports as epoch milliseconds or as an ISO-8601 string.
+     */
+    static Instant retirementDate(JsonNode value) {
+        if (value == null || value.isNull()) {
+            return null;
+        }
+        if (value.isNumber()) {
+            return Instant.ofEpochMilli(value.asLong());
+        }
+        String text = value.asText();
+        try {
+            return Instant.ofEpochMilli(Long.parseLong(text));
+        } catch (NumberFormatException ignored) {
+            // not epoch milliseconds
+        }
+        try {
+            return Instant.parse(text);
+        } catch (DateTimeParseException ignored) {
+            // not in UTC
+        }
+        try {
+            return OffsetDateTime.parse(text).toInstant();
+        } catch (DateTimeParseException e) {
+            return null;
+        }
+    }
+
+    public static boolean isSuccessful(List<CleanupResult> results) {
+        for (CleanupResult result : results) {
+            if (result.getStatus() == CleanupResult.Status.FAILED) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    public void writeReport(List<CleanupResult> results, File report) throws IOException {
+        for (CleanupResult result : results) {
+            logger.info("{}", result);
+        }
+        if (report != null) {
+            objectMapper.enable(SerializationFeature.INDENT_OUTPUT).writeValue(report, results);
+            logger.info("Cleanup report written to {}", report);
+        }
+    }
+}
@@ -0,0 +1,144 @@
+package com.axway.apim.daemon;
+
+import com.axway.apim.metrics.MetricsRegistry;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Local HTTP endpoint of the daemon, bound to the loopback interface:
+ * <ul>
+ *     <li>{@code GET /status} queue depth and state of every API</li>
+ *     <li>{@code GET /status/<name>} state and last deployment result of one API</li>
+ *     <li>{@code POST /deploy/<name>} queues a deployment of one API</li>
+ *     <li>{@code GET /metrics} the collected metrics in Prometheus text format</li>
+ * </ul>
+ */
+public class DaemonServer {
+
+    private static final Logger logger = LoggerFactory.getLogger(DaemonServer.class);
+
+    private final DeploymentDaemon daemon;
+    private final MetricsRegistry metrics;
+    private final HttpServer server;
+    private final ExecutorService executor;
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    public DaemonServer(DeploymentDaemon daemon, MetricsRegistry metrics, int port) throws IOException {
+        this.daemon = daemon;
+        this.metrics = metrics;
+        this.server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), 0);
+        this.executor = Executors.newSingleThreadExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "daemon-http");
+            thread.setDaemon(true);
+            return thread;
+        });
+        server.setExecutor(executor);
+        server.createContext("/status", this::status);
+        server.createContext("/deploy/", this::deploy);
+        server.createContext("/metrics", this::metrics);
+    }
+
+    public void start() {
+        server.start();
+        logger.info("Daemon endpoint listening on http://{}:{}", server.getAddress().getHostString(), server.getAddress().getPort());
+    }
+
+    public int getPort() {
+        return server.getAddress().getPort();
+    }
+
+    public void stop() {
+        server.stop(1);
+        executor.shutdownNow();
+    }
+
+    private void status(HttpExchange exchange) throws IOException {
+        if (!"GET".equals(exchange.getRequestMethod())) {
+            send(exchange, 405, error("Method not allowed"));
+            return;
+        }
+        String name = name(exchange, "/status");
+        if (name.isEmpty()) {
+            ObjectNode status = objectMapper.createObjectNode();
+            status.put("queueDepth", daemon.getQueueDepth());
+            status.set("apis", objectMapper.valueToTree(daemon.list()));
+            send(exchange, 200, status);
+            return;
+        }
+        WatchedAPI api = daemon.get(name);
+        if (api == null) {
+            send(exchange, 404, error("Unknown API " + name));
+            return;
+        }
+        send(exchange, 200, objectMapper.valueToTree(api));
+    }
+
+    private void deploy(HttpExchange exchange) throws IOException {
+        if (!"POST".equals(exchange.getRequestMethod())) {
+            send(exchange, 405, error("Method not allowed"));
+            return;
+        }
+        String name = name(exchange, "/deploy");
+        WatchedAPI api = daemon.get(name);
+        if (api == null) {
+            send(exchange, 404, error("Unknown API " + name));
+            return;
+        }
+        DeploymentDaemon.Trigger trigger = daemon.trigger(api, "http");
+        ObjectNode body = objectMapper.createObjectNode();
+        body.put("apiName", name);
+        body.put("trigger", trigger.name());
+        send(exchange, trigger == DeploymentDaemon.Trigger.REJECTED ? 503 : 202, body);
+    }
+
+    private void metrics(HttpExchange exchange) throws IOException {
+        ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+        try (Writer writer = new OutputStreamWriter(buffer, StandardCharsets.UTF_8)) {
+            metrics.writePrometheus(writer);
+        }
+        exchange.getResponseHeaders().set("Content-Type", "text/plain; version=0.0.4");
+        send(exchange, 200, buffer.toByteArray());
+    }
+
+    private static String name(HttpExchange exchange, String prefix) throws IOException {
+        String path = exchange.getRequestURI().getRawPath().substring(prefix.length());
+        while (path.startsWith("/")) {
+            path = path.substring(1);
+        }
+        return URLDecoder.decode(path, "UTF-8");
+    }
+
+    private ObjectNode error(String message) {
+        ObjectNode error = objectMapper.createObjectNode();
+        error.put("error", message);
+        return error;
+    }
+
+    private void send(HttpExchange exchange, int code, Object body) throws IOException {
+        exchange.getResponseHeaders().set("Content-Type", "application/json");
+        send(exchange, code, objectMapper.writerWithDefaultPrettyPrinter().writeValueAsBytes(body));
+    }
+
+    private static void send(HttpExchange exchange, int code, byte[] body) throws IOException {
+        exchange.sendResponseHeaders(code, body.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(body);
+        }
+    }
+}
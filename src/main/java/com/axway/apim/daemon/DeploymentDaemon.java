@@ -0,0 +1,275 @@
+package com.axway.apim.daemon;
+
+import com.axway.apim.APIDeployment;
+import com.axway.apim.DeploymentContext;
+import com.axway.apim.DeploymentResult;
+import com.axway.apim.ManifestEntry;
+import com.axway.apim.metrics.MetricsRegistry;
+import com.axway.apim.service.APIManager;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Closeable;
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Keeps deploying a set of APIs in one long-running process, reusing the logged in {@link APIManager} and its HTTP
+ * client. Spec changes are debounced: every change of a file restarts its timer, so a burst of writes results in one
+ * deployment after the file has been quiet for {@code debounceMillis}. Triggered APIs go through a bounded queue that
+ * is drained by a fixed number of workers; an API is never queued twice, and an API that changes while it is being
+ * deployed is deployed once more afterwards.
+ */
+public class DeploymentDaemon implements Closeable {
+
+    private static final Logger logger = LoggerFactory.getLogger(DeploymentDaemon.class);
+
+    public static final String QUEUE_DEPTH = "apim_daemon_queue_depth";
+    public static final String TRIGGERS = "apim_daemon_triggers_total";
+
+    public enum Trigger {
+        QUEUED, COALESCED, REJECTED
+    }
+
+    private final DeploymentContext context;
+    private final APIManager apiManager;
+    private final int threads;
+    private final long debounceMillis;
+    private final MetricsRegistry metrics;
+    private final BlockingQueue<WatchedAPI> queue;
+    private final Map<String, WatchedAPI> apis = new TreeMap<>();
+    private final ScheduledExecutorService debouncer;
+    private final ExecutorService workers;
+    private volatile boolean running;
+
+    public DeploymentDaemon(DeploymentContext context, APIManager apiManager, int threads, int queueSize, long debounceMillis) {
+        this.context = context;
+        this.apiManager = apiManager;
+        this.threads = Math.max(1, threads);
+        this.debounceMillis = debounceMillis;
+        this.metrics = context.getMetrics();
+        this.queue = new ArrayBlockingQueue<>(Math.max(1, queueSize));
+        this.debouncer = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "daemon-debounce");
+            thread.setDaemon(true);
+            return thread;
+        });
+        AtomicInteger count = new AtomicInteger();
+        this.workers = Executors.newFixedThreadPool(this.threads, runnable -> new Thread(runnable, "daemon-deploy-" + count.incrementAndGet()));
+    }
+
+    public synchronized WatchedAPI register(ManifestEntry entry) {
+        WatchedAPI api = apis.get(entry.getApiName());
+        if (api == null) {
+            api = new WatchedAPI(entry.getApiName(), entry.getOrgName(), new File(entry.getOpenAPI()).getAbsolutePath());
+            apis.put(api.getApiName(), api);
+            logger.info("Watching {} for API {}", api.getOpenAPI(), api.getApiName());
+        }
+        return api;
+    }
+
+    public synchronized WatchedAPI get(String apiName) {
+        return apis.get(apiName);
+    }
+
+    public synchronized WatchedAPI find(File openAPI) {
+        String path = openAPI.getAbsolutePath();
+        for (WatchedAPI api : apis.values()) {
+            if (api.getOpenAPI().equals(path)) {
+                return api;
+            }
+        }
+        return null;
+    }
+
+    public synchronized List<WatchedAPI> list() {
+        return new ArrayList<>(apis.values());
+    }
+
+    public int getQueueDepth() {
+        return queue.size();
+    }
+
+    public void start() {
+        running = true;
+        for (int i = 0; i < threads; i++) {
+            workers.execute(this::work);
+        }
+        logger.info("Deployment daemon started with {} workers, queue capacity {}, debounce {} ms",
+            threads, queue.remainingCapacity(), debounceMillis);
+    }
+
+    /**
+     * Deploys the API once its spec file has not changed for the debounce delay.
+     */
+    public void changed(WatchedAPI api) {
+        synchronized (api) {
+            ScheduledFuture<?> previous = api.getDebounce();
+            if (previous != null) {
+                previous.cancel(false);
+            }
+            if (api.getState() == WatchedAPI.State.IDLE) {
+                api.setState(WatchedAPI.State.SCHEDULED);
+            }
+            api.setDebounce(debouncer.schedule(() -> {
+                synchronized (api) {
+                    api.setDebounce(null);
+                }
+                trigger(api, "watch");
+            }, debounceMillis, TimeUnit.MILLISECONDS));
+        }
+    }
+
+    public Trigger trigger(WatchedAPI api, String source) {
+        try {
+            return trigger(api, source, false);
+        } catch (InterruptedException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Queues the initial deployment of all APIs, waiting for room in the queue instead of dropping deployments.
+     */
+    public void triggerAll(String source) throws InterruptedException {
+        for (WatchedAPI api : list()) {
+            trigger(api, source, true);
+        }
+    }
+
+    private Trigger trigger(WatchedAPI api, String source, boolean wait) throws InterruptedException {
+        Trigger trigger;
+        synchronized (api) {
+            api.setLastTriggeredAt(System.currentTimeMillis());
+            if (!running) {
+                trigger = Trigger.REJECTED;
+            } else if (api.getState() == WatchedAPI.State.QUEUED) {
+                trigger = Trigger.COALESCED;
+            } else if (api.getState() == WatchedAPI.State.DEPLOYING) {
+                api.setRerun(true);
+                trigger = Trigger.COALESCED;
+            } else if (wait ? queue.offer(api, Long.MAX_VALUE, TimeUnit.MILLISECONDS) : queue.offer(api)) {
+                api.setState(WatchedAPI.State.QUEUED);
+                trigger = Trigger.QUEUED;
+            } else {
+                api.setState(idleState(api));
+                trigger = Trigger.REJECTED;
+                logger.warn("Deployment queue is full, dropping deployment of {}", api.getApiName());
+            }
+        }
+        metrics.increment(TRIGGERS, "source", source, "outcome", trigger.name());
+        metrics.setGauge(QUEUE_DEPTH, queue.size());
+        logger.info("Deployment of {} triggered by {} : {}", api.getApiName(), source, trigger);
+        return trigger;
+    }
+
+    private void work() {
+        try {
+            drain();
+        } catch (VirtualMachineError e) {
+            // the pool does not rerun a task that died, so start another worker in its place
+            if (running) {
+                try {
+                    workers.execute(this::work);
+                } catch (RejectedExecutionException rejected) {
+                    logger.warn("Unable to replace the deployment worker", rejected);
+                }
+            }
+            throw e;
+        }
+    }
+
+    private void drain() {
+        while (running) {
+            WatchedAPI api;
+            try {
+                api = queue.poll(1, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+            if (api == null) {
+                continue;
+            }
+            metrics.setGauge(QUEUE_DEPTH, queue.size());
+            synchronized (api) {
+                api.setState(WatchedAPI.State.DEPLOYING);
+                api.setRerun(false);
+            }
+            DeploymentResult result = null;
+            boolean rerun;
+            try {
+                result = deploy(api);
+            } finally {
+                // a VirtualMachineError escaping the deployment must not leave the API in DEPLOYING, where every trigger only
+                // sets rerun
+                synchronized (api) {
+                    if (result != null) {
+                        api.finished(result);
+                    }
+                    api.setState(idleState(api));
+                    rerun = api.isRerun();
+                }
+            }
+            logger.info("{} : {} in {} ms - {}", result.getApiName(), result.getStatus(), result.getDurationMillis(), result.getMessage());
+            if (rerun) {
+                trigger(api, "rerun");
+            }
+        }
+    }
+
+    private static WatchedAPI.State idleState(WatchedAPI api) {
+        return api.getDebounce() != null ? WatchedAPI.State.SCHEDULED : WatchedAPI.State.IDLE;
+    }
+
+    private DeploymentResult deploy(WatchedAPI api) {
+        long start = System.currentTimeMillis();
+        try {
+            APIDeployment deployment = new APIDeployment(context, apiManager, api.getApiName(), api.getOrgName(), new File(api.getOpenAPI()));
+            int exitCode = deployment.call();
+            return new DeploymentResult(deployment, exitCode, System.currentTimeMillis() - start);
+        } catch (Throwable e) {
+            logger.error("Deployment of API {} failed", api.getApiName(), e);
+            if (e instanceof VirtualMachineError) {
+                throw (VirtualMachineError) e;
+            }
+            return new DeploymentResult(api.getApiName(), api.getOrgName(), api.getOpenAPI(), APIDeployment.Status.FAILED,
+                1, System.currentTimeMillis() - start, String.valueOf(e));
+        }
+    }
+
+    /**
+     * Stops accepting triggers and waits for the running deployments to finish.
+     */
+    @Override
+    public void close() {
+        running = false;
+        debouncer.shutdownNow();
+        workers.shutdown();
+        try {
+            if (!workers.awaitTermination(context.getReplicationTimeoutMillis() + TimeUnit.MINUTES.toMillis(1), TimeUnit.MILLISECONDS)) {
+                logger.warn("Deployments still running at shutdown, interrupting");
+                workers.shutdownNow();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            workers.shutdownNow();
+        }
+        for (WatchedAPI api : queue) {
+            logger.info("Dropping queued deployment of {}", api.getApiName());
+        }
+        queue.clear();
+    }
+}
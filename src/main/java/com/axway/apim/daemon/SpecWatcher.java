@@ -0,0 +1,97 @@
+package com.axway.apim.daemon;
+
+import com.axway.apim.ManifestEntry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.Collection;
+
+/**
+ * Watches the directories of the daemon's spec files and reports created and modified files to the
+ * {@link DeploymentDaemon}. When {@code newFileOrgName} is set, a new {@code .json} file is picked up as another API
+ * named after the file; otherwise only the registered files are followed. If the watch service drops events, all
+ * registered files are treated as changed, since deployments of unchanged specs are cheap.
+ */
+public class SpecWatcher implements Runnable, Closeable {
+
+    private static final Logger logger = LoggerFactory.getLogger(SpecWatcher.class);
+
+    private final DeploymentDaemon daemon;
+    private final String newFileOrgName;
+    private final WatchService watchService;
+
+    public SpecWatcher(DeploymentDaemon daemon, Collection<Path> directories, String newFileOrgName) throws IOException {
+        this.daemon = daemon;
+        this.newFileOrgName = newFileOrgName;
+        this.watchService = FileSystems.getDefault().newWatchService();
+        for (Path directory : directories) {
+            directory.register(watchService, StandardWatchEventKinds.ENTRY_CREATE, StandardWatchEventKinds.ENTRY_MODIFY);
+            logger.info("Watching directory {}", directory);
+        }
+    }
+
+    /**
+     * Name of the API deployed from a spec file in directory mode: the file name without extension.
+     */
+    public static String apiName(File openAPI) {
+        String name = openAPI.getName();
+        int dot = name.lastIndexOf('.');
+        return dot > 0 ? name.substring(0, dot) : name;
+    }
+
+    /**
+     * Processes events until the watcher is closed.
+     */
+    @Override
+    public void run() {
+        try {
+            while (true) {
+                WatchKey key = watchService.take();
+                Path directory = (Path) key.watchable();
+                for (WatchEvent<?> event : key.pollEvents()) {
+                    if (event.kind() == StandardWatchEventKinds.OVERFLOW) {
+                        logger.warn("File change events of {} were lost, redeploying all APIs", directory);
+                        for (WatchedAPI api : daemon.list()) {
+                            daemon.changed(api);
+                        }
+                        continue;
+                    }
+                    changed(directory.resolve((Path) event.context()).toFile());
+                }
+                if (!key.reset()) {
+                    logger.error("Directory {} is no longer accessible, no longer watching it", directory);
+                }
+            }
+        } catch (ClosedWatchServiceException e) {
+            logger.info("Stopped watching spec files");
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void changed(File file) {
+        WatchedAPI api = daemon.find(file);
+        if (api == null && newFileOrgName != null && file.getName().endsWith(".json") && !file.getName().startsWith(".") && file.isFile()) {
+            api = daemon.register(new ManifestEntry(apiName(file), newFileOrgName, file.getAbsolutePath()));
+        }
+        if (api != null) {
+            logger.debug("Spec file {} of API {} changed", file, api.getApiName());
+            daemon.changed(api);
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        watchService.close();
+    }
+}
@@ -0,0 +1,95 @@
+package com.axway.apim.daemon;
+
+import com.axway.apim.DeploymentResult;
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.annotation.JsonPropertyOrder;
+
+import java.util.concurrent.ScheduledFuture;
+
+/**
+ * An API deployed by the daemon and its current state. Instances are guarded by their own monitor.
+ */
+@JsonInclude(JsonInclude.Include.NON_NULL)
+@JsonPropertyOrder({"apiName", "orgName", "openAPI", "state", "deployments", "lastTriggeredAt", "lastResult"})
+public class WatchedAPI {
+
+    public enum State {
+        IDLE, SCHEDULED, QUEUED, DEPLOYING
+    }
+
+    private final String apiName;
+    private final String orgName;
+    private final String openAPI;
+    private State state = State.IDLE;
+    private int deployments;
+    private long lastTriggeredAt;
+    private DeploymentResult lastResult;
+    private boolean rerun;
+    private ScheduledFuture<?> debounce;
+
+    public WatchedAPI(String apiName, String orgName, String openAPI) {
+        this.apiName = apiName;
+        this.orgName = orgName;
+        this.openAPI = openAPI;
+    }
+
+    public String getApiName() {
+        return apiName;
+    }
+
+    public String getOrgName() {
+        return orgName;
+    }
+
+    public String getOpenAPI() {
+        return openAPI;
+    }
+
+    public synchronized State getState() {
+        return state;
+    }
+
+    synchronized void setState(State state) {
+        this.state = state;
+    }
+
+    public synchronized int getDeployments() {
+        return deployments;
+    }
+
+    public synchronized long getLastTriggeredAt() {
+        return lastTriggeredAt;
+    }
+
+    synchronized void setLastTriggeredAt(long lastTriggeredAt) {
+        this.lastTriggeredAt = lastTriggeredAt;
+    }
+
+    public synchronized DeploymentResult getLastResult() {
+        return lastResult;
+    }
+
+    synchronized void finished(DeploymentResult lastResult) {
+        this.lastResult = lastResult;
+        this.deployments++;
+    }
+
+    @JsonIgnore
+    synchronized boolean isRerun() {
+        return rerun;
+    }
+
+    synchronized void setRerun(boolean rerun) {
+        this.rerun = rerun;
+    }
+
+    @JsonIgnore
+    synchronized ScheduledFuture<?> getDebounce() {
+        return debounce;
+    }
+
+    synchronized void setDebounce(ScheduledFuture<?> debounce) {
+        this.debounce = debounce;
+    }
+}
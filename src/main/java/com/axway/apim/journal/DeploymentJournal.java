@@ -0,0 +1,102 @@
+package com.axway.apim.journal;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.OverlappingFileLockException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Stream;
+
+/**
+ * Directory of write-ahead deployment journals, one file per API Manager URL and API name. A deployment records every
+ * completed step with the ids it produced, so that a run that was interrupted can be resumed from the last completed
+ * step or rolled back, and removes its journal when it finishes.
+ */
+public class DeploymentJournal {
+
+    private static final Logger logger = LoggerFactory.getLogger(DeploymentJournal.class);
+
+    private static final String SUFFIX = ".journal";
+
+    private final Path directory;
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    public DeploymentJournal(Path directory) throws IOException {
+        this.directory = Files.createDirectories(directory);
+    }
+
+    /**
+     * Opens the journal of an API, creating it if needed. Fails if another run holds it.
+     */
+    public Journal open(String url, String apiName) throws IOException {
+        return open(directory.resolve(fileName(url, apiName)));
+    }
+
+    /**
+     * Opens all journals holding an unfinished deployment; journals held by another run are skipped.
+     */
+    public List<Journal> openPending() throws IOException {
+        List<Path> files = new ArrayList<>();
+        try (Stream<Path> list = Files.list(directory)) {
+            list.filter(path -> path.getFileName().toString().endsWith(SUFFIX)).forEach(files::add);
+        }
+        List<Journal> journals = new ArrayList<>();
+        for (Path file : files) {
+            try {
+                Journal journal = open(file);
+                if (journal.getState() == null) {
+                    journal.close();
+                } else {
+                    journals.add(journal);
+                }
+            } catch (IOException e) {
+                logger.warn("Skipping journal {} : {}", file, e.getMessage());
+            }
+        }
+        return journals;
+    }
+
+    private Journal open(Path file) throws IOException {
+        FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        try {
+            FileLock lock;
+            try {
+                lock = channel.tryLock();
+            } catch (OverlappingFileLockException e) {
+                lock = null;
+            }
+            if (lock == null) {
+                throw new IOException("Journal " + file + " is in use by another deployment");
+            }
+            return new Journal(file, channel, lock, objectMapper);
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    private static String fileName(String url, String apiName) {
+        try {
+            MessageDigest messageDigest = MessageDigest.getInstance("SHA-256");
+            byte[] hash = messageDigest.digest((url + '\n' + apiName).getBytes(StandardCharsets.UTF_8));
+            StringBuilder builder = new StringBuilder();
+            for (int i = 0; i < 16; i++) {
+                builder.append(String.format("%02x", hash[i]));
+            }
+            return builder.append(SUFFIX).toString();
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
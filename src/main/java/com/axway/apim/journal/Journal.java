@@ -0,0 +1,134 @@
+package com.axway.apim.journal;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * The append-only journal file of one API deployment, held under an exclusive lock while it is open. Every entry is
+ * one JSON line that is forced to disk before {@link #append(JournalEntry)} returns. A line cut short by a crash is
+ * dropped when the journal is opened again.
+ */
+public class Journal implements Closeable {
+
+    private static final Logger logger = LoggerFactory.getLogger(Journal.class);
+
+    private static final byte NEWLINE = '\n';
+
+    private final Path file;
+    private final FileChannel channel;
+    private final FileLock lock;
+    private final ObjectMapper objectMapper;
+    private JournalState state;
+
+    Journal(Path file, FileChannel channel, FileLock lock, ObjectMapper objectMapper) throws IOException {
+        this.file = file;
+        this.channel = channel;
+        this.lock = lock;
+        this.objectMapper = objectMapper;
+        this.state = read();
+    }
+
+    /**
+     * Returns the recorded state, or null if nothing was recorded yet.
+     */
+    public JournalState getState() {
+        return state;
+    }
+
+    public Path getFile() {
+        return file;
+    }
+
+    public void append(JournalEntry entry) throws IOException {
+        byte[] json = objectMapper.writeValueAsBytes(entry);
+        ByteBuffer line = ByteBuffer.allocate(json.length + 1);
+        line.put(json).put(NEWLINE);
+        ((java.nio.Buffer) line).flip();
+        long position = channel.size();
+        while (line.hasRemaining()) {
+            position += channel.write(line, position);
+        }
+        channel.force(false);
+        if (state == null) {
+            state = new JournalState();
+        }
+        state.apply(entry);
+    }
+
+    /**
+     * Discards all entries, after the recorded deployment was rolled back.
+     */
+    public void reset() throws IOException {
+        channel.truncate(0);
+        channel.force(false);
+        state = null;
+    }
+
+    /**
+     * Closes and removes the journal of a finished or rolled back deployment.
+     */
+    public void complete() throws IOException {
+        close();
+        Files.deleteIfExists(file);
+    }
+
+    /**
+     * Releases the journal; a journal without entries is removed.
+     */
+    @Override
+    public void close() throws IOException {
+        if (!channel.isOpen()) {
+            return;
+        }
+        boolean empty = channel.size() == 0;
+        try {
+            lock.release();
+        } finally {
+            channel.close();
+        }
+        if (empty) {
+            Files.deleteIfExists(file);
+        }
+    }
+
+    private JournalState read() throws IOException {
+        long size = channel.size();
+        if (size == 0) {
+            return null;
+        }
+        ByteBuffer content = ByteBuffer.allocate((int) size);
+        while (content.hasRemaining() && channel.read(content, content.position()) >= 0) {
+            // read until the buffer is full
+        }
+        byte[] bytes = content.array();
+        JournalState result = null;
+        int start = 0;
+        for (int i = 0; i < bytes.length; i++) {
+            if (bytes[i] != NEWLINE) {
+                continue;
+            }
+            if (i > start) {
+                if (result == null) {
+                    result = new JournalState();
+                }
+                result.apply(objectMapper.readValue(bytes, start, i - start, JournalEntry.class));
+            }
+            start = i + 1;
+        }
+        if (start < bytes.length) {
+            logger.warn("Dropping incomplete last entry of journal {}", file);
+            channel.truncate(start);
+            channel.force(false);
+        }
+        return result;
+    }
+}
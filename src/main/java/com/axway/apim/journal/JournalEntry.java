@@ -0,0 +1,145 @@
+package com.axway.apim.journal;
+
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import com.fasterxml.jackson.annotation.JsonInclude;
+
+/**
+ * One line of a deployment journal: a completed step and the ids it produced. Fields that a step does not produce are
+ * left out.
+ */
+@JsonIgnoreProperties(ignoreUnknown = true)
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class JournalEntry {
+
+    public enum Step {
+        STARTED,
+        BACKEND_CREATED,
+        FRONTEND_CREATED,
+        FRONTEND_UPDATED,
+        PUBLISHED,
+        UPGRADED,
+        REPLICATED,
+        REPLICATION_TIMED_OUT,
+        OLD_API_DEPRECATING,
+        OLD_API_UNPUBLISHING,
+        OLD_API_UNPUBLISHED,
+        OLD_API_DELETED
+    }
+
+    private Step step;
+    private long timestamp;
+    private String url;
+    private String apiName;
+    private String orgName;
+    private String orgId;
+    private String openAPI;
+    private String digest;
+    private String oldAPIId;
+    private String oldBackendId;
+    private String newBackendId;
+    private String newAPIId;
+
+    public JournalEntry() {
+    }
+
+    public JournalEntry(Step step) {
+        this.step = step;
+        this.timestamp = System.currentTimeMillis();
+    }
+
+    public Step getStep() {
+        return step;
+    }
+
+    public void setStep(Step step) {
+        this.step = step;
+    }
+
+    public long getTimestamp() {
+        return timestamp;
+    }
+
+    public void setTimestamp(long timestamp) {
+        this.timestamp = timestamp;
+    }
+
+    public String getUrl() {
+        return url;
+    }
+
+    public void setUrl(String url) {
+        this.url = url;
+    }
+
+    public String getApiName() {
+        return apiName;
+    }
+
+    public void setApiName(String apiName) {
+        this.apiName = apiName;
+    }
+
+    public String getOrgName() {
+        return orgName;
+    }
+
+    public void setOrgName(String orgName) {
+        this.orgName = orgName;
+    }
+
+    public String getOrgId() {
+        return orgId;
+    }
+
+    public void setOrgId(String orgId) {
+        this.orgId = orgId;
+    }
+
+    public String getOpenAPI() {
+        return openAPI;
+    }
+
+    public void setOpenAPI(String openAPI) {
+        this.openAPI = openAPI;
+    }
+
+    public String getDigest() {
+        return digest;
+    }
+
+    public void setDigest(String digest) {
+        this.digest = digest;
+    }
+
+    public String getOldAPIId() {
+        return oldAPIId;
+    }
+
+    public void setOldAPIId(String oldAPIId) {
+        this.oldAPIId = oldAPIId;
+    }
+
+    public String getOldBackendId() {
+        return oldBackendId;
+    }
+
+    public void setOldBackendId(String oldBackendId) {
+        this.oldBackendId = oldBackendId;
+    }
+
+    public String getNewBackendId() {
+        return newBackendId;
+    }
+
+    public void setNewBackendId(String newBackendId) {
+        this.newBackendId = newBackendId;
+    }
+
+    public String getNewAPIId() {
+        return newAPIId;
+    }
+
+    public void setNewAPIId(String newAPIId) {
+        this.newAPIId = newAPIId;
+    }
+}
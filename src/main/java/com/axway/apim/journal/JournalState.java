@@ -0,0 +1,104 @@
+package com.axway.apim.journal;
+
+import java.util.EnumSet;
+import java.util.Set;
+
+/**
+ * The state of one deployment as recorded by its journal: the completed steps and the latest value of every id.
+ */
+public class JournalState {
+
+    private final Set<JournalEntry.Step> steps = EnumSet.noneOf(JournalEntry.Step.class);
+    private JournalEntry.Step lastStep;
+    private long startedAt;
+    private String url;
+    private String apiName;
+    private String orgName;
+    private String orgId;
+    private String openAPI;
+    private String digest;
+    private String oldAPIId;
+    private String oldBackendId;
+    private String newBackendId;
+    private String newAPIId;
+
+    public void apply(JournalEntry entry) {
+        steps.add(entry.getStep());
+        lastStep = entry.getStep();
+        if (entry.getStep() == JournalEntry.Step.STARTED) {
+            startedAt = entry.getTimestamp();
+        }
+        url = choose(entry.getUrl(), url);
+        apiName = choose(entry.getApiName(), apiName);
+        orgName = choose(entry.getOrgName(), orgName);
+        orgId = choose(entry.getOrgId(), orgId);
+        openAPI = choose(entry.getOpenAPI(), openAPI);
+        digest = choose(entry.getDigest(), digest);
+        oldAPIId = choose(entry.getOldAPIId(), oldAPIId);
+        oldBackendId = choose(entry.getOldBackendId(), oldBackendId);
+        newBackendId = choose(entry.getNewBackendId(), newBackendId);
+        newAPIId = choose(entry.getNewAPIId(), newAPIId);
+    }
+
+    public boolean isDone(JournalEntry.Step step) {
+        return steps.contains(step);
+    }
+
+    public JournalEntry.Step getLastStep() {
+        return lastStep;
+    }
+
+    public long getStartedAt() {
+        return startedAt;
+    }
+
+    public String getUrl() {
+        return url;
+    }
+
+    public String getApiName() {
+        return apiName;
+    }
+
+    public String getOrgName() {
+        return orgName;
+    }
+
+    public String getOrgId() {
+        return orgId;
+    }
+
+    public String getOpenAPI() {
+        return openAPI;
+    }
+
+    public String getDigest() {
+        return digest;
+    }
+
+    public String getOldAPIId() {
+        return oldAPIId;
+    }
+
+    public String getOldBackendId() {
+        return oldBackendId;
+    }
+
+    public String getNewBackendId() {
+        return newBackendId;
+    }
+
+    public String getNewAPIId() {
+        return newAPIId;
+    }
+
+    private static String choose(String value, String current) {
+        return value != null ? value : current;
+    }
+
+    @Override
+    public String toString() {
+        return apiName + " on " + url + " after " + lastStep + " (old API " + oldAPIId + ", new backend " + newBackendId
+            + ", new API " + newAPIId + ")";
+    }
+}
@@ -0,0 +1,78 @@
+package com.axway.apim.metrics;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.DoubleAdder;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Lock free fixed bucket histogram. Bucket counts are not cumulative; the exporters accumulate them.
+ */
+public class Histogram {
+
+    private final double[] bounds;
+    private final AtomicLongArray buckets;
+    private final LongAdder count = new LongAdder();
+    private final DoubleAdder sum = new DoubleAdder();
+    // bit patterns of non-negative doubles order like the values themselves
+    private final LongAccumulator max = new LongAccumulator(Math::max, 0);
+
+    Histogram(double[] bounds) {
+        this.bounds = bounds;
+        this.buckets = new AtomicLongArray(bounds.length + 1);
+    }
+
+    public void record(double value) {
+        value = Math.max(0, value);
+        int index = 0;
+        while (index < bounds.length && value > bounds[index]) {
+            index++;
+        }
+        buckets.incrementAndGet(index);
+        count.increment();
+        sum.add(value);
+        max.accumulate(Double.doubleToLongBits(value));
+    }
+
+    public double[] getBounds() {
+        return bounds;
+    }
+
+    public long getBucket(int index) {
+        return buckets.get(index);
+    }
+
+    public long getCount() {
+        return count.sum();
+    }
+
+    public double getSum() {
+        return sum.sum();
+    }
+
+    public double getMax() {
+        return Double.longBitsToDouble(max.get());
+    }
+
+    /**
+     * Estimates a quantile by linear interpolation inside the bucket that contains it.
+     */
+    public double quantile(double quantile) {
+        long total = getCount();
+        if (total == 0) {
+            return 0;
+        }
+        double rank = quantile * total;
+        long seen = 0;
+        for (int i = 0; i <= bounds.length; i++) {
+            long inBucket = buckets.get(i);
+            if (inBucket > 0 && seen + inBucket >= rank) {
+                double lower = i == 0 ? 0 : bounds[i - 1];
+                double upper = i == bounds.length ? getMax() : Math.min(bounds[i], getMax());
+                return lower + (upper - lower) * ((rank - seen) / inBucket);
+            }
+            seen += inBucket;
+        }
+        return getMax();
+    }
+}
@@ -0,0 +1,202 @@
+package com.axway.apim.metrics;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Map;
+import java.util.Objects;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Collects the counters and histograms of a run and exports them in the Prometheus text format or as a JSON summary.
+ */
+public class MetricsRegistry {
+
+    private static final Logger logger = LoggerFactory.getLogger(MetricsRegistry.class);
+
+    public static final double[] LATENCY_BUCKETS = {0.005, 0.01, 0.025, 0.05, 0.1, 0.25, 0.5, 1, 2.5, 5, 10, 30, 60, 120, 300, 600};
+    public static final double[] SIZE_BUCKETS = {256, 1024, 4096, 16384, 65536, 262144, 1048576, 4194304, 16777216, 67108864};
+
+    public static final String PHASE_DURATION = "apim_deployment_phase_duration_seconds";
+
+    private final Map<Key, Histogram> histograms = new ConcurrentHashMap<>();
+    private final Map<Key, LongAdder> counters = new ConcurrentHashMap<>();
+    private final Map<Key, Double> gauges = new ConcurrentHashMap<>();
+
+    public Histogram histogram(String name, double[] buckets, String... labels) {
+        return histograms.computeIfAbsent(new Key(name, labels), key -> new Histogram(buckets));
+    }
+
+    public void increment(String name, String... labels) {
+        add(name, 1, labels);
+    }
+
+    public void add(String name, long value, String... labels) {
+        counters.computeIfAbsent(new Key(name, labels), key -> new LongAdder()).add(value);
+    }
+
+    public void setGauge(String name, double value, String... labels) {
+        gauges.put(new Key(name, labels), value);
+    }
+
+    public void recordPhase(String phase, long startNanos) {
+        histogram(PHASE_DURATION, LATENCY_BUCKETS, "phase", phase)
+            .record((System.nanoTime() - startNanos) / (double) TimeUnit.SECONDS.toNanos(1));
+    }
+
+    /**
+     * Writes Prometheus text format, or a JSON summary when the file name ends with {@code .json}.
+     */
+    public void write(File file) throws IOException {
+        if (file.getName().endsWith(".json")) {
+            new ObjectMapper().writerWithDefaultPrettyPrinter().writeValue(file, toJson());
+        } else {
+            try (Writer writer = Files.newBufferedWriter(file.toPath(), StandardCharsets.UTF_8)) {
+                writePrometheus(writer);
+            }
+        }
+        logger.info("Metrics written to {}", file);
+    }
+
+    public void writePrometheus(Writer writer) throws IOException {
+        String current = null;
+        for (Map.Entry<Key, LongAdder> entry : new TreeMap<>(counters).entrySet()) {
+            Key key = entry.getKey();
+            if (!key.name.equals(current)) {
+                current = key.name;
+                writer.write("# TYPE " + key.name + " counter\n");
+            }
+            writer.write(key.name + key.labels("") + " " + entry.getValue().sum() + "\n");
+        }
+        current = null;
+        for (Map.Entry<Key, Double> entry : new TreeMap<>(gauges).entrySet()) {
+            Key key = entry.getKey();
+            if (!key.name.equals(current)) {
+                current = key.name;
+                writer.write("# TYPE " + key.name + " gauge\n");
+            }
+            writer.write(key.name + key.labels("") + " " + entry.getValue() + "\n");
+        }
+        current = null;
+        for (Map.Entry<Key, Histogram> entry : new TreeMap<>(histograms).entrySet()) {
+            Key key = entry.getKey();
+            Histogram histogram = entry.getValue();
+            if (!key.name.equals(current)) {
+                current = key.name;
+                writer.write("# TYPE " + key.name + " histogram\n");
+            }
+            long cumulative = 0;
+            double[] bounds = histogram.getBounds();
+            for (int i = 0; i < bounds.length; i++) {
+                cumulative += histogram.getBucket(i);
+                writer.write(key.name + "_bucket" + key.labels("le=\"" + bounds[i] + "\"") + " " + cumulative + "\n");
+            }
+            writer.write(key.name + "_bucket" + key.labels("le=\"+Inf\"") + " " + histogram.getCount() + "\n");
+            writer.write(key.name + "_sum" + key.labels("") + " " + histogram.getSum() + "\n");
+            writer.write(key.name + "_count" + key.labels("") + " " + histogram.getCount() + "\n");
+        }
+    }
+
+    public ObjectNode toJson() {
+        ObjectMapper objectMapper = new ObjectMapper();
+        ObjectNode root = objectMapper.createObjectNode();
+        ArrayNode counterNodes = root.putArray("counters");
+        for (Map.Entry<Key, LongAdder> entry : new TreeMap<>(counters).entrySet()) {
+            ObjectNode node = entry.getKey().toJson(counterNodes.addObject());
+            node.put("value", entry.getValue().sum());
+        }
+        ArrayNode gaugeNodes = root.putArray("gauges");
+        for (Map.Entry<Key, Double> entry : new TreeMap<>(gauges).entrySet()) {
+            ObjectNode node = entry.getKey().toJson(gaugeNodes.addObject());
+            node.put("value", entry.getValue());
+        }
+        ArrayNode histogramNodes = root.putArray("histograms");
+        for (Map.Entry<Key, Histogram> entry : new TreeMap<>(histograms).entrySet()) {
+            Histogram histogram = entry.getValue();
+            ObjectNode node = entry.getKey().toJson(histogramNodes.addObject());
+            node.put("count", histogram.getCount());
+            node.put("sum", histogram.getSum());
+            node.put("mean", histogram.getCount() == 0 ? 0 : histogram.getSum() / histogram.getCount());
+            node.put("p50", histogram.quantile(0.5));
+            node.put("p95", histogram.quantile(0.95));
+            node.put("p99", histogram.quantile(0.99));
+            node.put("max", histogram.getMax());
+        }
+        return root;
+    }
+
+    private static final class Key implements Comparable<Key> {
+        private final String name;
+        private final String[] labels;
+        private final String labelString;
+
+        Key(String name, String[] labels) {
+            if (labels.length % 2 != 0) {
+                throw new IllegalArgumentException("Labels must be name value pairs");
+            }
+            this.name = name;
+            this.labels = labels;
+            StringBuilder builder = new StringBuilder();
+            for (int i = 0; i < labels.length; i += 2) {
+                if (builder.length() > 0) {
+                    builder.append(',');
+                }
+                builder.append(labels[i]).append("=\"").append(escape(labels[i + 1])).append('"');
+            }
+            this.labelString = builder.toString();
+        }
+
+        String labels(String extra) {
+            if (labelString.isEmpty() && extra.isEmpty()) {
+                return "";
+            }
+            if (extra.isEmpty()) {
+                return "{" + labelString + "}";
+            }
+            return "{" + (labelString.isEmpty() ? extra : labelString + "," + extra) + "}";
+        }
+
+        ObjectNode toJson(ObjectNode node) {
+            node.put("name", name);
+            ObjectNode labelNode = node.putObject("labels");
+            for (int i = 0; i < labels.length; i += 2) {
+                labelNode.put(labels[i], labels[i + 1]);
+            }
+            return node;
+        }
+
+        private static String escape(String value) {
+            return String.valueOf(value).replace("\\", "\\\\").replace("\"", "\\\"").replace("\n", "\\n");
+        }
+
+        @Override
+        public int compareTo(Key other) {
+            int compare = name.compareTo(other.name);
+            return compare != 0 ? compare : labelString.compareTo(other.labelString);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (o == null || getClass() != o.getClass()) return false;
+            Key key = (Key) o;
+            return name.equals(key.name) && labelString.equals(key.labelString);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(name, labelString);
+        }
+    }
+}
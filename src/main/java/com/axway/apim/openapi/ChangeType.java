@@ -0,0 +1,8 @@
+package com.axway.apim.openapi;
+
+/**
+ * Severity of a change between two OpenAPI documents, in increasing order.
+ */
+public enum ChangeType {
+    COSMETIC, ADDITIVE, BREAKING
+}
@@ -0,0 +1,223 @@
+package com.axway.apim.openapi;
+
+import com.fasterxml.jackson.databind.JsonNode;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Structural diff of two Swagger 2.0 / OpenAPI 3 documents. Paths, operations, parameters, responses and named
+ * definitions are matched by key rather than by position, and every node is visited at most once, so the diff runs
+ * in time linear to the size of the documents.
+ * <p>
+ * Changes to documentation only fields are {@link ChangeType#COSMETIC}, new paths, operations, optional parameters
+ * and other added members are {@link ChangeType#ADDITIVE}, and everything that may affect existing clients, such as
+ * removals, changed values and new constraints, is {@link ChangeType#BREAKING}.
+ */
+public class OpenAPIDiff {
+
+    private static final Set<String> COSMETIC_KEYS = new HashSet<>(Arrays.asList(
+        "description", "summary", "title", "example", "examples", "externalDocs", "tags", "info"));
+
+    private static final Set<String> CONSTRAINT_KEYS = new HashSet<>(Arrays.asList(
+        "required", "enum", "type", "format", "pattern", "minimum", "maximum", "exclusiveMinimum", "exclusiveMaximum",
+        "minLength", "maxLength", "minItems", "maxItems", "uniqueItems", "minProperties", "maxProperties", "multipleOf",
+        "allOf", "oneOf", "not", "security"));
+
+    private static final Set<String> OPERATIONS = new HashSet<>(Arrays.asList(
+        "get", "put", "post", "delete", "options", "head", "patch", "trace"));
+
+    private static final Set<String> NAMED_SECTIONS = new HashSet<>(Arrays.asList(
+        "definitions", "parameters", "responses", "securityDefinitions"));
+
+    private static final Set<String> NAMED_MEMBERS = new HashSet<>(Arrays.asList(
+        "properties", "patternProperties", "headers", "content"));
+
+    private final SpecDiff diff = new SpecDiff();
+
+    private OpenAPIDiff() {
+    }
+
+    public static SpecDiff compare(JsonNode oldSpec, JsonNode newSpec) {
+        OpenAPIDiff openAPIDiff = new OpenAPIDiff();
+        openAPIDiff.compareRoot(oldSpec, newSpec);
+        return openAPIDiff.diff;
+    }
+
+    private void compareRoot(JsonNode oldSpec, JsonNode newSpec) {
+        for (String name : fieldNames(oldSpec, newSpec)) {
+            String location = "/" + escape(name);
+            JsonNode oldNode = oldSpec.get(name);
+            JsonNode newNode = newSpec.get(name);
+            if ("paths".equals(name)) {
+                compareNamed(location, oldNode, newNode, this::comparePathItem);
+            } else if ("components".equals(name)) {
+                for (String component : fieldNames(oldNode, newNode)) {
+                    compareNamed(location + "/" + escape(component), get(oldNode, component), get(newNode, component), this::compareNodes);
+                }
+            } else if (NAMED_SECTIONS.contains(name)) {
+                compareNamed(location, oldNode, newNode, this::compareNodes);
+            } else {
+                compareMember(location, name, oldNode, newNode);
+            }
+        }
+    }
+
+    private void comparePathItem(String location, JsonNode oldItem, JsonNode newItem) {
+        for (String name : fieldNames(oldItem, newItem)) {
+            String child = location + "/" + escape(name);
+            JsonNode oldNode = oldItem.get(name);
+            JsonNode newNode = newItem.get(name);
+            if (OPERATIONS.contains(name)) {
+                if (oldNode == null) {
+                    add(ChangeType.ADDITIVE, child, "operation added");
+                } else if (newNode == null) {
+                    add(ChangeType.BREAKING, child, "operation removed");
+                } else {
+                    compareOperation(child, oldNode, newNode);
+                }
+            } else if ("parameters".equals(name)) {
+                compareParameters(child, oldNode, newNode);
+            } else {
+                compareMember(child, name, oldNode, newNode);
+            }
+        }
+    }
+
+    private void compareOperation(String location, JsonNode oldOperation, JsonNode newOperation) {
+        for (String name : fieldNames(oldOperation, newOperation)) {
+            String child = location + "/" + escape(name);
+            JsonNode oldNode = oldOperation.get(name);
+            JsonNode newNode = newOperation.get(name);
+            if ("parameters".equals(name)) {
+                compareParameters(child, oldNode, newNode);
+            } else if ("responses".equals(name)) {
+                compareNamed(child, oldNode, newNode, this::compareNodes);
+            } else {
+                compareMember(child, name, oldNode, newNode);
+            }
+        }
+    }
+
+    private void compareParameters(String location, JsonNode oldParameters, JsonNode newParameters) {
+        Map<String, JsonNode> oldByKey = parametersByKey(oldParameters);
+        Map<String, JsonNode> newByKey = parametersByKey(newParameters);
+        for (Map.Entry<String, JsonNode> entry : oldByKey.entrySet()) {
+            String child = location + "/" + escape(entry.getKey());
+            JsonNode newParameter = newByKey.get(entry.getKey());
+            if (newParameter == null) {
+                add(ChangeType.BREAKING, child, "parameter removed");
+            } else {
+                compareNodes(child, entry.getValue(), newParameter);
+            }
+        }
+        for (Map.Entry<String, JsonNode> entry : newByKey.entrySet()) {
+            if (!oldByKey.containsKey(entry.getKey())) {
+                boolean required = entry.getValue().path("required").asBoolean(false);
+                add(required ? ChangeType.BREAKING : ChangeType.ADDITIVE, location + "/" + escape(entry.getKey()),
+                    required ? "required parameter added" : "optional parameter added");
+            }
+        }
+    }
+
+    private void compareNamed(String location, JsonNode oldNamed, JsonNode newNamed, NodeComparator comparator) {
+        if (oldNamed == null || newNamed == null || !oldNamed.isObject() || !newNamed.isObject()) {
+            compareNodes(location, oldNamed, newNamed);
+            return;
+        }
+        for (String name : fieldNames(oldNamed, newNamed)) {
+            String child = location + "/" + escape(name);
+            JsonNode oldNode = oldNamed.get(name);
+            JsonNode newNode = newNamed.get(name);
+            if (oldNode == null) {
+                add(ChangeType.ADDITIVE, child, "added");
+            } else if (newNode == null) {
+                add(ChangeType.BREAKING, child, "removed");
+            } else {
+                comparator.compare(child, oldNode, newNode);
+            }
+        }
+    }
+
+    private void compareMember(String location, String name, JsonNode oldNode, JsonNode newNode) {
+        if (COSMETIC_KEYS.contains(name)) {
+            if (oldNode == null || newNode == null || !oldNode.equals(newNode)) {
+                add(ChangeType.COSMETIC, location, "documentation changed");
+            }
+        } else if (oldNode == null) {
+            add(CONSTRAINT_KEYS.contains(name) ? ChangeType.BREAKING : ChangeType.ADDITIVE, location, "added");
+        } else if (newNode == null) {
+            add(ChangeType.BREAKING, location, "removed");
+        } else if (NAMED_MEMBERS.contains(name)) {
+            compareNamed(location, oldNode, newNode, this::compareNodes);
+        } else {
+            compareNodes(location, oldNode, newNode);
+        }
+    }
+
+    private void compareNodes(String location, JsonNode oldNode, JsonNode newNode) {
+        if (oldNode == null || newNode == null) {
+            compareMember(location, "", oldNode, newNode);
+        } else if (oldNode.isObject() && newNode.isObject()) {
+            for (String name : fieldNames(oldNode, newNode)) {
+                compareMember(location + "/" + escape(name), name, oldNode.get(name), newNode.get(name));
+            }
+        } else if (oldNode.isArray() && newNode.isArray() && oldNode.size() == newNode.size()) {
+            for (int i = 0; i < oldNode.size(); i++) {
+                compareNodes(location + "/" + i, oldNode.get(i), newNode.get(i));
+            }
+        } else if (!oldNode.equals(newNode)) {
+            add(ChangeType.BREAKING, location, "changed");
+        }
+    }
+
+    private static Map<String, JsonNode> parametersByKey(JsonNode parameters) {
+        Map<String, JsonNode> byKey = new LinkedHashMap<>();
+        if (parameters != null && parameters.isArray()) {
+            for (JsonNode parameter : parameters) {
+                String key = parameter.has("$ref")
+                    ? parameter.get("$ref").asText()
+                    : parameter.path("name").asText() + "(" + parameter.path("in").asText() + ")";
+                byKey.put(key, parameter);
+            }
+        }
+        return byKey;
+    }
+
+    private static Set<String> fieldNames(JsonNode oldNode, JsonNode newNode) {
+        Set<String> names = new LinkedHashSet<>();
+        addFieldNames(names, oldNode);
+        addFieldNames(names, newNode);
+        return names;
+    }
+
+    private static void addFieldNames(Set<String> names, JsonNode node) {
+        if (node != null && node.isObject()) {
+            Iterator<String> iterator = node.fieldNames();
+            while (iterator.hasNext()) {
+                names.add(iterator.next());
+            }
+        }
+    }
+
+    private static JsonNode get(JsonNode node, String name) {
+        return node == null ? null : node.get(name);
+    }
+
+    private static String escape(String name) {
+        return name.replace("~", "~0").replace("/", "~1");
+    }
+
+    private void add(ChangeType type, String location, String message) {
+        diff.add(new SpecChange(type, location, message));
+    }
+
+    private interface NodeComparator {
+        void compare(String location, JsonNode oldNode, JsonNode newNode);
+    }
+}
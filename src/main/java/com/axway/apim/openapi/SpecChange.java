@@ -0,0 +1,34 @@
+package com.axway.apim.openapi;
+
+import com.fasterxml.jackson.annotation.JsonPropertyOrder;
+
+@JsonPropertyOrder({"type", "location", "message"})
+public class SpecChange {
+
+    private final ChangeType type;
+    private final String location;
+    private final String message;
+
+    public SpecChange(ChangeType type, String location, String message) {
+        this.type = type;
+        this.location = location;
+        this.message = message;
+    }
+
+    public ChangeType getType() {
+        return type;
+    }
+
+    public String getLocation() {
+        return location;
+    }
+
+    public String getMessage() {
+        return message;
+    }
+
+    @Override
+    public String toString() {
+        return type + " " + location + " : " + message;
+    }
+}
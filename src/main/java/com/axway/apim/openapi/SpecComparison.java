@@ -0,0 +1,83 @@
+package com.axway.apim.openapi;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+
+/**
+ * Compares the downloaded backend definition of an API with its local spec. The download is digested; when the
+ * redeploy threshold or a diff report needs the changes, it is spooled to a temporary file first, so that both
+ * documents are only parsed into trees when their digests differ, and the diff is written to the report directory.
+ * Documents whose digests differ although the diff finds no change are reported with one {@link ChangeType#COSMETIC}
+ * change, so that the redeploy threshold decides about them like about any other cosmetic change.
+ */
+public class SpecComparison {
+
+    private static final Logger logger = LoggerFactory.getLogger(SpecComparison.class);
+
+    private static final ObjectMapper objectMapper = new ObjectMapper();
+
+    private final String digest;
+    private final SpecDiff diff;
+
+    private SpecComparison(String digest, SpecDiff diff) {
+        this.digest = digest;
+        this.diff = diff;
+    }
+
+    public static SpecComparison compare(String apiName, InputStream downloaded, SpecFile spec, String specDigest,
+                                         ChangeType redeployThreshold, File diffReportDirectory) throws IOException {
+        if (redeployThreshold == ChangeType.COSMETIC && diffReportDirectory == null) {
+            return new SpecComparison(SpecDigest.digest(downloaded), null);
+        }
+        Path file = Files.createTempFile("apim-backend", ".json");
+        try {
+            Files.copy(downloaded, file, StandardCopyOption.REPLACE_EXISTING);
+            String digest = SpecDigest.digest(file.toFile());
+            if (digest.equals(specDigest)) {
+                return new SpecComparison(digest, null);
+            }
+            SpecDiff diff = OpenAPIDiff.compare(objectMapper.readTree(file.toFile()), objectMapper.readTree(spec.openStream()));
+            if (diff.getChanges().isEmpty()) {
+                // the digest covers differences the diff matches by key, such as the order of parameters
+                diff.add(new SpecChange(ChangeType.COSMETIC, "/", "The documents only differ in the order of matched elements"));
+            }
+            logger.info("API : {} , Diff : {}", apiName, diff);
+            writeReport(apiName, diff, diffReportDirectory);
+            return new SpecComparison(digest, diff);
+        } finally {
+            Files.deleteIfExists(file);
+        }
+    }
+
+    private static void writeReport(String apiName, SpecDiff diff, File directory) throws IOException {
+        if (directory == null) {
+            return;
+        }
+        Files.createDirectories(directory.toPath());
+        File report = new File(directory, apiName.replaceAll("[^A-Za-z0-9._-]", "_") + "-diff.json");
+        objectMapper.writerWithDefaultPrettyPrinter().writeValue(report, diff);
+        logger.info("Diff report written to {}", report);
+    }
+
+    /**
+     * Digest of the downloaded backend definition.
+     */
+    public String getDigest() {
+        return digest;
+    }
+
+    /**
+     * The structural diff, or null when the digests are equal or no diff was needed.
+     */
+    public SpecDiff getDiff() {
+        return diff;
+    }
+}
@@ -0,0 +1,56 @@
+package com.axway.apim.openapi;
+
+import com.fasterxml.jackson.annotation.JsonPropertyOrder;
+
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+
+@JsonPropertyOrder({"severity", "counts", "changes"})
+public class SpecDiff {
+
+    private final List<SpecChange> changes = new ArrayList<>();
+
+    void add(SpecChange change) {
+        changes.add(change);
+    }
+
+    public List<SpecChange> getChanges() {
+        return changes;
+    }
+
+    /**
+     * The most severe change, or null when the documents are equivalent.
+     */
+    public ChangeType getSeverity() {
+        ChangeType severity = null;
+        for (SpecChange change : changes) {
+            if (severity == null || change.getType().compareTo(severity) > 0) {
+                severity = change.getType();
+            }
+        }
+        return severity;
+    }
+
+    public Map<ChangeType, Integer> getCounts() {
+        Map<ChangeType, Integer> counts = new EnumMap<>(ChangeType.class);
+        for (SpecChange change : changes) {
+            counts.merge(change.getType(), 1, Integer::sum);
+        }
+        return counts;
+    }
+
+    public boolean requiresRedeploy(ChangeType threshold) {
+        ChangeType severity = getSeverity();
+        return severity != null && severity.compareTo(threshold) >= 0;
+    }
+
+    @Override
+    public String toString() {
+        return "SpecDiff{" +
+            "severity=" + getSeverity() +
+            ", counts=" + getCounts() +
+            '}';
+    }
+}
@@ -0,0 +1,169 @@
+package com.axway.apim.openapi;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Computes a canonical SHA-256 digest of a JSON document straight from the token stream, without building a tree.
+ * Two documents get the same digest when they are equal as {@code JsonNode} trees: object member order is ignored,
+ * array order is significant and numbers are compared by value. Memory use is bounded by the nesting depth and the
+ * member count of the widest object, not by the document size.
+ */
+public class SpecDigest {
+
+    private static final JsonFactory JSON_FACTORY = new JsonFactory();
+
+    private static final byte OBJECT = '{';
+    private static final byte ARRAY = '[';
+    private static final byte STRING = 's';
+    private static final byte INTEGER = 'i';
+    private static final byte DECIMAL = 'd';
+    private static final byte TRUE = 't';
+    private static final byte FALSE = 'f';
+    private static final byte NULL = 'n';
+
+    private static final Comparator<byte[]> UNSIGNED_ORDER = (left, right) -> {
+        for (int i = 0; i < left.length && i < right.length; i++) {
+            int compare = (left[i] & 0xff) - (right[i] & 0xff);
+            if (compare != 0) {
+                return compare;
+            }
+        }
+        return left.length - right.length;
+    };
+
+    private final List<MessageDigest> levels = new ArrayList<>();
+
+    private SpecDigest() {
+    }
+
+    public static String digest(File file) throws IOException {
+        try (InputStream inputStream = new FileInputStream(file)) {
+            return digest(inputStream);
+        }
+    }
+
+    public static String digest(InputStream inputStream) throws IOException {
+        try (JsonParser parser = JSON_FACTORY.createParser(inputStream)) {
+            JsonToken token = parser.nextToken();
+            if (token == null) {
+                throw new IOException("Empty JSON document");
+            }
+            MessageDigest root = sha256();
+            new SpecDigest().feed(parser, token, root, 0);
+            if (parser.nextToken() != null) {
+                throw new IOException("Unexpected content after JSON document at " + parser.getCurrentLocation());
+            }
+            return toHex(root.digest());
+        }
+    }
+
+    private void feed(JsonParser parser, JsonToken token, MessageDigest target, int slot) throws IOException {
+        switch (token) {
+            case START_OBJECT:
+                target.update(OBJECT);
+                target.update(container(parser, token, slot));
+                break;
+            case START_ARRAY:
+                target.update(ARRAY);
+                target.update(container(parser, token, slot));
+                break;
+            case VALUE_STRING:
+                target.update(STRING);
+                update(target, parser.getText());
+                break;
+            case VALUE_NUMBER_INT:
+                target.update(INTEGER);
+                update(target, parser.getText());
+                break;
+            case VALUE_NUMBER_FLOAT:
+                target.update(DECIMAL);
+                update(target, Double.toString(parser.getDoubleValue()));
+                break;
+            case VALUE_TRUE:
+                target.update(TRUE);
+                break;
+            case VALUE_FALSE:
+                target.update(FALSE);
+                break;
+            case VALUE_NULL:
+                target.update(NULL);
+                break;
+            default:
+                throw new IOException("Unexpected token " + token + " at " + parser.getCurrentLocation());
+        }
+    }
+
+    private byte[] container(JsonParser parser, JsonToken token, int slot) throws IOException {
+        if (token == JsonToken.START_ARRAY) {
+            MessageDigest array = level(slot);
+            array.update(ARRAY);
+            JsonToken element;
+            while ((element = parser.nextToken()) != JsonToken.END_ARRAY) {
+                feed(parser, element, array, slot + 1);
+            }
+            return array.digest();
+        }
+        List<byte[]> members = new ArrayList<>();
+        while (parser.nextToken() != JsonToken.END_OBJECT) {
+            MessageDigest member = level(slot + 1);
+            update(member, parser.getCurrentName());
+            feed(parser, parser.nextToken(), member, slot + 2);
+            members.add(member.digest());
+        }
+        members.sort(UNSIGNED_ORDER);
+        MessageDigest object = level(slot);
+        object.update(OBJECT);
+        for (byte[] member : members) {
+            object.update(member);
+        }
+        return object.digest();
+    }
+
+    private MessageDigest level(int slot) {
+        while (levels.size() <= slot) {
+            levels.add(sha256());
+        }
+        MessageDigest messageDigest = levels.get(slot);
+        messageDigest.reset();
+        return messageDigest;
+    }
+
+    private static void update(MessageDigest messageDigest, String value) {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        int length = bytes.length;
+        messageDigest.update((byte) (length >>> 24));
+        messageDigest.update((byte) (length >>> 16));
+        messageDigest.update((byte) (length >>> 8));
+        messageDigest.update((byte) length);
+        messageDigest.update(bytes);
+    }
+
+    private static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static String toHex(byte[] bytes) {
+        StringBuilder builder = new StringBuilder(bytes.length * 2);
+        for (byte b : bytes) {
+            builder.append(Character.forDigit((b >> 4) & 0xf, 16)).append(Character.forDigit(b & 0xf, 16));
+        }
+        return builder.toString();
+    }
+}
@@ -0,0 +1,81 @@
+package com.axway.apim.openapi;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+
+/**
+ * A spec file read into memory once, at the start of a deployment. The digest, the structural diff and the backend
+ * upload all read from this snapshot, so the file is read from disk a single time and a generator that rewrites it
+ * while the deployment runs does not affect it; the rewrite is deployed by the next run. The snapshot is deliberately
+ * not a mapping of the file: truncating a mapped file makes later reads of the mapping fail with an
+ * {@link InternalError} instead of an {@link IOException}.
+ */
+public class SpecFile {
+
+    private final File file;
+    private final ByteBuffer content;
+
+    private SpecFile(File file, ByteBuffer content) {
+        this.file = file;
+        this.content = content;
+    }
+
+    public static SpecFile read(File file) throws IOException {
+        return new SpecFile(file, ByteBuffer.wrap(Files.readAllBytes(file.toPath())));
+    }
+
+    public File getFile() {
+        return file;
+    }
+
+    public long length() {
+        return content.capacity();
+    }
+
+    /**
+     * Returns an independent view of the content, positioned at the start.
+     */
+    public ByteBuffer content() {
+        return content.duplicate();
+    }
+
+    public InputStream openStream() {
+        ByteBuffer buffer = content();
+        return new InputStream() {
+            @Override
+            public int read() {
+                return buffer.hasRemaining() ? buffer.get() & 0xff : -1;
+            }
+
+            @Override
+            public int read(byte[] bytes, int offset, int length) {
+                if (length == 0) {
+                    return 0;
+                }
+                if (!buffer.hasRemaining()) {
+                    return -1;
+                }
+                int count = Math.min(length, buffer.remaining());
+                buffer.get(bytes, offset, count);
+                return count;
+            }
+
+            @Override
+            public long skip(long count) {
+                int skipped = (int) Math.max(0, Math.min(count, buffer.remaining()));
+                // cast keeps the Java 8 signature of position(int)
+                ((Buffer) buffer).position(buffer.position() + skipped);
+                return skipped;
+            }
+
+            @Override
+            public int available() {
+                return buffer.remaining();
+            }
+        };
+    }
+}
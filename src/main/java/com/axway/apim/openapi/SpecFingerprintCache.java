@@ -0,0 +1,162 @@
+package com.axway.apim.openapi;
+
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.nio.file.attribute.FileTime;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.Stream;
+
+/**
+ * On-disk cache of the spec digest last deployed for a backend API, keyed by API Manager URL and backend API id.
+ * Every entry is a small file that is replaced atomically, so concurrent runs never read a partial entry. When the
+ * cache holds more than {@code maxEntries} files the least recently used ones are removed.
+ */
+public class SpecFingerprintCache {
+
+    private static final Logger logger = LoggerFactory.getLogger(SpecFingerprintCache.class);
+
+    private static final String SUFFIX = ".json";
+
+    private final Path directory;
+    private final int maxEntries;
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    public SpecFingerprintCache(Path directory, int maxEntries) throws IOException {
+        this.directory = Files.createDirectories(directory);
+        this.maxEntries = maxEntries;
+    }
+
+    public Fingerprint get(String url, String backendAPIId) {
+        Path file = directory.resolve(fileName(url, backendAPIId));
+        try {
+            Fingerprint fingerprint = objectMapper.readValue(file.toFile(), Fingerprint.class);
+            if (!url.equals(fingerprint.getUrl()) || !backendAPIId.equals(fingerprint.getBackendAPIId())) {
+                return null;
+            }
+            Files.setLastModifiedTime(file, FileTime.fromMillis(System.currentTimeMillis()));
+            return fingerprint;
+        } catch (NoSuchFileException | FileNotFoundException e) {
+            return null;
+        } catch (IOException e) {
+            logger.warn("Ignoring unreadable fingerprint cache entry {}", file, e);
+            return null;
+        }
+    }
+
+    public void put(String url, String backendAPIId, String frontendAPIId, String digest) {
+        Fingerprint fingerprint = new Fingerprint();
+        fingerprint.setUrl(url);
+        fingerprint.setBackendAPIId(backendAPIId);
+        fingerprint.setFrontendAPIId(frontendAPIId);
+        fingerprint.setDigest(digest);
+        Path file = directory.resolve(fileName(url, backendAPIId));
+        Path temp = null;
+        try {
+            temp = Files.createTempFile(directory, "fingerprint", ".tmp");
+            objectMapper.writeValue(temp.toFile(), fingerprint);
+            try {
+                Files.move(temp, file, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING);
+            }
+            evict();
+        } catch (IOException e) {
+            logger.warn("Unable to write fingerprint cache entry {}", file, e);
+            if (temp != null) {
+                try {
+                    Files.deleteIfExists(temp);
+                } catch (IOException ignored) {
+                    // best effort
+                }
+            }
+        }
+    }
+
+    private void evict() throws IOException {
+        List<Path> entries = new ArrayList<>();
+        try (Stream<Path> files = Files.list(directory)) {
+            files.filter(path -> path.getFileName().toString().endsWith(SUFFIX)).forEach(entries::add);
+        }
+        if (entries.size() <= maxEntries) {
+            return;
+        }
+        entries.sort(Comparator.comparingLong(SpecFingerprintCache::lastModified));
+        for (Path path : entries.subList(0, entries.size() - maxEntries)) {
+            Files.deleteIfExists(path);
+        }
+        logger.debug("Evicted {} fingerprint cache entries", entries.size() - maxEntries);
+    }
+
+    private static long lastModified(Path path) {
+        try {
+            return Files.getLastModifiedTime(path).toMillis();
+        } catch (IOException e) {
+            return 0;
+        }
+    }
+
+    private static String fileName(String url, String backendAPIId) {
+        try {
+            MessageDigest messageDigest = MessageDigest.getInstance("SHA-256");
+            byte[] hash = messageDigest.digest((url + '\n' + backendAPIId).getBytes(StandardCharsets.UTF_8));
+            StringBuilder builder = new StringBuilder();
+            for (int i = 0; i < 16; i++) {
+                builder.append(String.format("%02x", hash[i]));
+            }
+            return builder.append(SUFFIX).toString();
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    @JsonIgnoreProperties(ignoreUnknown = true)
+    public static class Fingerprint {
+        private String url;
+        private String backendAPIId;
+        private String frontendAPIId;
+        private String digest;
+
+        public String getUrl() {
+            return url;
+        }
+
+        public void setUrl(String url) {
+            this.url = url;
+        }
+
+        public String getBackendAPIId() {
+            return backendAPIId;
+        }
+
+        public void setBackendAPIId(String backendAPIId) {
+            this.backendAPIId = backendAPIId;
+        }
+
+        public String getFrontendAPIId() {
+            return frontendAPIId;
+        }
+
+        public void setFrontendAPIId(String frontendAPIId) {
+            this.frontendAPIId = frontendAPIId;
+        }
+
+        public String getDigest() {
+            return digest;
+        }
+
+        public void setDigest(String digest) {
+            this.digest = digest;
+        }
+    }
+}
@@ -0,0 +1,173 @@
+package com.axway.apim.propagation;
+
+import com.axway.apim.service.API;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Carries the configuration of the old frontend API over to the new one. Every propagated field has a
+ * {@link CopyStrategy}; by default the path and the five profile sections are replaced with the old API's, and a
+ * config file adds fields (CORS profiles, tags, custom properties, ...) or changes their strategy:
+ * <pre>
+ * {"fields": {"corsProfiles": "REPLACE", "tags": "MERGE", "customProperties": "MERGE", "inboundProfiles": "SKIP"}}
+ * </pre>
+ * The result is diffed against the new API per profile, so the caller only writes the API when a section differs.
+ */
+public class ConfigPropagation {
+
+    private static final Logger logger = LoggerFactory.getLogger(ConfigPropagation.class);
+
+    public static final String PROPAGATIONS = "apim_config_propagations_total";
+
+    private static final Set<String> RESERVED = new HashSet<>(Arrays.asList("id", "apiId", "organizationId", "state"));
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final Map<String, CopyStrategy> fields = new LinkedHashMap<>();
+
+    public ConfigPropagation() {
+        for (String field : new String[]{"path", "authenticationProfiles", "securityProfiles", "outboundProfiles", "serviceProfiles", "inboundProfiles"}) {
+            fields.put(field, StandardCopyStrategy.REPLACE);
+        }
+    }
+
+    public static ConfigPropagation read(File config) throws IOException {
+        JsonNode root = new ObjectMapper().readTree(config);
+        if (root == null || !root.path("fields").isObject()) {
+            throw new IOException("Propagation config requires a fields object : " + config);
+        }
+        ConfigPropagation propagation = new ConfigPropagation();
+        for (Iterator<Map.Entry<String, JsonNode>> fields = root.path("fields").fields(); fields.hasNext(); ) {
+            Map.Entry<String, JsonNode> field = fields.next();
+            StandardCopyStrategy strategy;
+            try {
+                strategy = StandardCopyStrategy.valueOf(field.getValue().asText().toUpperCase(Locale.ROOT));
+            } catch (IllegalArgumentException e) {
+                throw new IOException("Unknown copy strategy " + field.getValue() + " of field " + field.getKey()
+                    + ", expected one of " + Arrays.toString(StandardCopyStrategy.values()));
+            }
+            try {
+                propagation.register(field.getKey(), strategy);
+            } catch (IllegalArgumentException e) {
+                throw new IOException(e.getMessage() + " : " + config);
+            }
+        }
+        logger.info("Propagating the frontend API fields {}", propagation.fields);
+        return propagation;
+    }
+
+    public void register(String field, CopyStrategy strategy) {
+        if (RESERVED.contains(field)) {
+            throw new IllegalArgumentException("The field " + field + " of the new API cannot be propagated");
+        }
+        fields.put(field, strategy);
+    }
+
+    public Map<String, CopyStrategy> getFields() {
+        return Collections.unmodifiableMap(fields);
+    }
+
+    /**
+     * Applies the copy strategies to a copy of {@code newAPI}; the two APIs are left as they are.
+     */
+    public Propagation propagate(API oldAPI, API newAPI) throws IOException {
+        ObjectNode oldNode = objectMapper.valueToTree(oldAPI);
+        ObjectNode newNode = objectMapper.valueToTree(newAPI);
+        ObjectNode propagated = newNode.deepCopy();
+        List<String> changes = new ArrayList<>();
+        for (Map.Entry<String, CopyStrategy> field : fields.entrySet()) {
+            String name = field.getKey();
+            JsonNode newValue = newNode.get(name);
+            JsonNode value = field.getValue().copy(oldNode.get(name), newValue);
+            if (value == null || value.isNull()) {
+                propagated.remove(name);
+            } else {
+                propagated.set(name, value);
+            }
+            diff(name, newValue, value, changes);
+        }
+        return new Propagation(objectMapper.treeToValue(propagated, API.class), changes);
+    }
+
+    /**
+     * Lists the changed sections of one field: the keys of an object, the elements of an array (by name when they
+     * have one), or the field itself.
+     */
+    private static void diff(String path, JsonNode before, JsonNode after, List<String> changes) {
+        boolean beforeMissing = before == null || before.isNull();
+        boolean afterMissing = after == null || after.isNull();
+        if (beforeMissing && afterMissing) {
+            return;
+        }
+        if (beforeMissing || afterMissing || before.getNodeType() != after.getNodeType() || !(before.isObject() || before.isArray())) {
+            if (beforeMissing || !before.equals(after)) {
+                changes.add(path);
+            }
+            return;
+        }
+        if (before.isObject()) {
+            Set<String> keys = new HashSet<>();
+            before.fieldNames().forEachRemaining(keys::add);
+            after.fieldNames().forEachRemaining(keys::add);
+            List<String> sorted = new ArrayList<>(keys);
+            Collections.sort(sorted);
+            for (String key : sorted) {
+                JsonNode beforeValue = before.get(key);
+                JsonNode afterValue = after.get(key);
+                if (beforeValue == null || !beforeValue.equals(afterValue)) {
+                    changes.add(path + "." + key);
+                }
+            }
+            return;
+        }
+        for (int i = 0; i < Math.max(before.size(), after.size()); i++) {
+            JsonNode beforeValue = before.get(i);
+            JsonNode afterValue = after.get(i);
+            if (beforeValue == null || !beforeValue.equals(afterValue)) {
+                JsonNode element = afterValue != null ? afterValue : beforeValue;
+                changes.add(path + "[" + (element.hasNonNull("name") ? element.get("name").asText() : String.valueOf(i)) + "]");
+            }
+        }
+    }
+
+    /**
+     * The new API with the propagated configuration and the sections that differ from the API it was computed from.
+     */
+    public static class Propagation {
+
+        private final API api;
+        private final List<String> changes;
+
+        private Propagation(API api, List<String> changes) {
+            this.api = api;
+            this.changes = changes;
+        }
+
+        public API getApi() {
+            return api;
+        }
+
+        public List<String> getChanges() {
+            return changes;
+        }
+
+        public boolean isChanged() {
+            return !changes.isEmpty();
+        }
+    }
+}
@@ -0,0 +1,12 @@
+package com.axway.apim.propagation;
+
+import com.fasterxml.jackson.databind.JsonNode;
+
+/**
+ * Computes the value of one frontend API field of the new API from the old API's value. Either value may be null
+ * when the field is absent; returning null removes the field from the new API.
+ */
+public interface CopyStrategy {
+
+    JsonNode copy(JsonNode oldValue, JsonNode newValue);
+}
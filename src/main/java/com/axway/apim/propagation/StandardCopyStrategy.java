@@ -0,0 +1,74 @@
+package com.axway.apim.propagation;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+
+import java.util.Iterator;
+import java.util.Map;
+
+/**
+ * The copy strategies that can be named in the propagation config.
+ */
+public enum StandardCopyStrategy implements CopyStrategy {
+
+    /**
+     * The old API's value replaces the new one, a field the old API does not have is left as it is.
+     */
+    REPLACE {
+        @Override
+        public JsonNode copy(JsonNode oldValue, JsonNode newValue) {
+            return oldValue != null ? oldValue : newValue;
+        }
+    },
+
+    /**
+     * Objects get the old API's entries on top of the new ones, arrays get the new elements the old array does not
+     * have appended to it, any other value is replaced.
+     */
+    MERGE {
+        @Override
+        public JsonNode copy(JsonNode oldValue, JsonNode newValue) {
+            if (oldValue == null || newValue == null) {
+                return oldValue != null ? oldValue : newValue;
+            }
+            if (oldValue.isObject() && newValue.isObject()) {
+                ObjectNode merged = ((ObjectNode) newValue).deepCopy();
+                for (Iterator<Map.Entry<String, JsonNode>> fields = oldValue.fields(); fields.hasNext(); ) {
+                    Map.Entry<String, JsonNode> field = fields.next();
+                    merged.set(field.getKey(), field.getValue());
+                }
+                return merged;
+            }
+            if (oldValue.isArray() && newValue.isArray()) {
+                ArrayNode merged = ((ArrayNode) oldValue).deepCopy();
+                for (JsonNode element : newValue) {
+                    if (!contains(merged, element)) {
+                        merged.add(element);
+                    }
+                }
+                return merged;
+            }
+            return oldValue;
+        }
+    },
+
+    /**
+     * The new API keeps its own value.
+     */
+    SKIP {
+        @Override
+        public JsonNode copy(JsonNode oldValue, JsonNode newValue) {
+            return newValue;
+        }
+    };
+
+    private static boolean contains(ArrayNode array, JsonNode element) {
+        for (JsonNode candidate : array) {
+            if (candidate.equals(element)) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
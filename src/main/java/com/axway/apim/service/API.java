@@ -1,13 +1,41 @@
 package com.axway.apim.service;
 
 
+import com.fasterxml.jackson.annotation.JsonAnyGetter;
+import com.fasterxml.jackson.annotation.JsonAnySetter;
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.databind.JsonNode;
 
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Frontend API (proxy). The fields the deployment reads or copies are typed; every other field is kept as it was
+ * received, so that the API can be written back with {@code updateFrontend} without losing configuration.
+ */
 @JsonIgnoreProperties(ignoreUnknown = true)
+@JsonInclude(JsonInclude.Include.NON_NULL)
 public class API {
     private String name;
     private String id;
     private String apiId;
+    private String organizationId;
+    private String version;
+    private String path;
+    private String state;
+    private Boolean deprecated;
+    private Boolean retired;
+    private JsonNode retirementDate;
+    private List<JsonNode> securityProfiles;
+    private List<JsonNode> authenticationProfiles;
+    private Map<String, JsonNode> inboundProfiles;
+    private Map<String, JsonNode> outboundProfiles;
+    private Map<String, JsonNode> serviceProfiles;
+    private Map<String, JsonNode> properties;
 
     public String getName() {
         return name;
@@ -31,6 +59,8 @@ public class API {
                 "name='" + name + '\'' +
                 ", id='" + id + '\'' +
                 ", apiId='" + apiId + '\'' +
+                ", state='" + state + '\'' +
+                ", deprecated=" + deprecated +
                 '}';
     }
 
@@ -41,4 +71,128 @@ public class API {
     public void setApiId(String apiId) {
         this.apiId = apiId;
     }
+
+    public String getOrganizationId() {
+        return organizationId;
+    }
+
+    public void setOrganizationId(String organizationId) {
+        this.organizationId = organizationId;
+    }
+
+    public String getVersion() {
+        return version;
+    }
+
+    public void setVersion(String version) {
+        this.version = version;
+    }
+
+    public String getPath() {
+        return path;
+    }
+
+    public void setPath(String path) {
+        this.path = path;
+    }
+
+    public String getState() {
+        return state;
+    }
+
+    public void setState(String state) {
+        this.state = state;
+    }
+
+    public Boolean getDeprecated() {
+        return deprecated;
+    }
+
+    public void setDeprecated(Boolean deprecated) {
+        this.deprecated = deprecated;
+    }
+
+    public Boolean getRetired() {
+        return retired;
+    }
+
+    public void setRetired(Boolean retired) {
+        this.retired = retired;
+    }
+
+    /**
+     * Whether the API has been replaced by a newer deployment and only waits for its retirement or cleanup.
+     */
+    @JsonIgnore
+    public boolean isDeprecatedOrRetired() {
+        return Boolean.TRUE.equals(deprecated) || Boolean.TRUE.equals(retired);
+    }
+
+    /**
+     * Retirement date of a deprecated API, epoch milliseconds or an ISO-8601 string depending on the API Manager
+     * version.
+     */
+    public JsonNode getRetirementDate() {
+        return retirementDate;
+    }
+
+    public void setRetirementDate(JsonNode retirementDate) {
+        this.retirementDate = retirementDate;
+    }
+
+    public List<JsonNode> getSecurityProfiles() {
+        return securityProfiles;
+    }
+
+    public void setSecurityProfiles(List<JsonNode> securityProfiles) {
+        this.securityProfiles = securityProfiles;
+    }
+
+    public List<JsonNode> getAuthenticationProfiles() {
+        return authenticationProfiles;
+    }
+
+    public void setAuthenticationProfiles(List<JsonNode> authenticationProfiles) {
+        this.authenticationProfiles = authenticationProfiles;
+    }
+
+    public Map<String, JsonNode> getInboundProfiles() {
+        return inboundProfiles;
+    }
+
+    public void setInboundProfiles(Map<String, JsonNode> inboundProfiles) {
+        this.inboundProfiles = inboundProfiles;
+    }
+
+    public Map<String, JsonNode> getOutboundProfiles() {
+        return outboundProfiles;
+    }
+
+    public void setOutboundProfiles(Map<String, JsonNode> outboundProfiles) {
+        this.outboundProfiles = outboundProfiles;
+    }
+
+    public Map<String, JsonNode> getServiceProfiles() {
+        return serviceProfiles;
+    }
+
+    public void setServiceProfiles(Map<String, JsonNode> serviceProfiles) {
+        this.serviceProfiles = serviceProfiles;
+    }
+
+    /**
+     * Fields of the API that are not typed above.
+     */
+    @JsonAnyGetter
+    public Map<String, JsonNode> getProperties() {
+        return properties == null ? Collections.emptyMap() : properties;
+    }
+
+    @JsonAnySetter
+    public void setProperty(String name, JsonNode value) {
+        if (properties == null) {
+            properties = new LinkedHashMap<>();
+        }
+        properties.put(name, value);
+    }
 }
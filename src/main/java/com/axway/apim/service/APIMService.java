@@ -7,7 +7,6 @@ import retrofit2.Call;
 import retrofit2.http.*;
 
 import java.util.List;
-import java.util.Map;
 
 public interface APIMService {
 
@@ -18,18 +17,28 @@ public interface APIMService {
     @DELETE("/api/portal/v1.3/login")
     Call<ResponseBody> logout();
 
+    @GET("/api/portal/v1.3/currentuser")
+    Call<ResponseBody> currentUser();
+
+    @Streaming
     @GET("/api/portal/v1.3/apirepo/{id}/download")
     Call<ResponseBody> downloadBackendAPI(@Path("id")String id, @Query("original") boolean original, @Query("filename") String filename);
 
     @Multipart
     @POST("/api/portal/v1.3/apirepo/import")
-    Call<ResponseBody> createBackend(@Part("file") RequestBody requestBody, @Part("organizationId") RequestBody organizationId, @Part("type") RequestBody type, @Part("name") RequestBody name);
+    Call<BackendAPI> createBackend(@Part("file") RequestBody requestBody, @Part("organizationId") RequestBody organizationId, @Part("type") RequestBody type, @Part("name") RequestBody name, @Header("Content-Encoding") String contentEncoding);
+
+    @POST("/api/portal/v1.3/proxies")
+    Call<API> createFrontend(@Body API body);
 
     @POST("/api/portal/v1.3/proxies")
-    Call<Map<String, Object>> createFrontend(@Body Map<String, String> body);
+    Call<API> createFrontend(@Body API body, @Tag ReplayCheck replayCheck);
+
+    @GET("/api/portal/v1.3/proxies/{id}")
+    Call<API> getFrontendAPI(@Path("id")String id);
 
     @PUT("/api/portal/v1.3/proxies/{id}")
-    Call<Map<String, Object>> updateFrontend(@Path("id")String id, @Body Map<String, Object> body);
+    Call<API> updateFrontend(@Path("id")String id, @Body API body);
 
     @FormUrlEncoded
     @POST("/api/portal/v1.3/proxies/{id}/publish")
@@ -53,11 +62,19 @@ public interface APIMService {
     Call<Void> upgradeAPI(@Path("id")String id, @Field("upgradeApiId") String upgradeApiId);
 
     @GET("/api/portal/v1.3/proxies")
-    Call<List<Map<String, Object>>> listFrontendAPIsByName(@Query("field") String field, @Query("op") String op, @Query("value") String value);
+    Call<List<API>> listFrontendAPIsByName(@Query("field") String field, @Query("op") String op, @Query("value") String value);
+
+    @Streaming
+    @GET("/api/portal/v1.3/proxies")
+    Call<ResponseBody> listFrontendAPIs();
+
+    @GET("/api/portal/v1.3/organizations")
+    Call<List<Organization>> getOrganizationByName(@Query("field") String field, @Query("op") String op, @Query("value") String value);
 
+    @Streaming
     @GET("/api/portal/v1.3/organizations")
-    Call<ResponseBody> getOrganizationByName(@Query("field") String field, @Query("op") String op, @Query("value") String value);
+    Call<ResponseBody> listOrganizations();
 
     @GET("/api/portal/v1.3/discovery/swagger/apis")
-    Call<ResponseBody> listCatalogByName(@Query("field") String field, @Query("op") String op, @Query("value") String value);
+    Call<List<CatalogEntry>> listCatalogByName(@Query("field") String field, @Query("op") String op, @Query("value") String value);
 }
@@ -1,8 +1,19 @@
 package com.axway.apim.service;
 
 public class APIManager {
+    private String url;
     private APIMService apimService;
-    private String csrfToken;
+    private SessionCookieJar cookieJar;
+    private volatile String csrfToken;
+    private volatile boolean authenticated;
+
+    public String getUrl() {
+        return url;
+    }
+
+    public void setUrl(String url) {
+        this.url = url;
+    }
 
     public APIMService getApimService() {
         return apimService;
@@ -12,6 +23,14 @@ public class APIManager {
         this.apimService = apimService;
     }
 
+    public SessionCookieJar getCookieJar() {
+        return cookieJar;
+    }
+
+    public void setCookieJar(SessionCookieJar cookieJar) {
+        this.cookieJar = cookieJar;
+    }
+
     public String getCsrfToken() {
         return csrfToken;
     }
@@ -19,4 +38,12 @@ public class APIManager {
     public void setCsrfToken(String csrfToken) {
         this.csrfToken = csrfToken;
     }
+
+    public boolean isAuthenticated() {
+        return authenticated;
+    }
+
+    public void setAuthenticated(boolean authenticated) {
+        this.authenticated = authenticated;
+    }
 }
@@ -0,0 +1,238 @@
+package com.axway.apim.service;
+
+import okhttp3.*;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import retrofit2.Response;
+import retrofit2.Retrofit;
+import retrofit2.converter.jackson.JacksonConverterFactory;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Hands out one logged in {@link APIManager} per API Manager host. Sessions are cached for the lifetime of the
+ * factory and are only logged out by {@link #close()}, so the primary node and the cluster nodes of every deployment
+ * reuse the same client, connections and session.
+ * <p>
+ * With a {@link SessionCache} sessions also outlive the run: a cached session is restored and checked with one
+ * {@code currentuser} request instead of logging in, and {@link #close()} saves the sessions instead of logging them
+ * out. A session that expires while in use is renewed transparently when API Manager answers 401.
+ * <p>
+ * Calls are retried according to the {@link RetryPolicy}, with one {@link CircuitBreaker} per host. With a
+ * {@link ConcurrencyPolicy} the concurrent calls of every host are also held to adaptive limits.
+ */
+public class APIManagerFactory {
+
+    private static final Logger logger = LoggerFactory.getLogger(APIManagerFactory.class);
+
+    private final HttpClientFactory httpClientFactory;
+    private final String username;
+    private final String password;
+    private final Map<String, APIManager> sessions = new ConcurrentHashMap<>();
+    private final Map<String, CircuitBreaker> circuitBreakers = new ConcurrentHashMap<>();
+    private SessionCache sessionCache;
+    private RetryPolicy retryPolicy = new RetryPolicy();
+    private final Map<String, ConcurrencyLimitInterceptor> concurrencyLimits = new ConcurrentHashMap<>();
+    private ConcurrencyPolicy concurrencyPolicy;
+
+    public APIManagerFactory(HttpClientFactory httpClientFactory, String username, String password) {
+        this.httpClientFactory = httpClientFactory;
+        this.username = username;
+        this.password = password;
+    }
+
+    public void setSessionCache(SessionCache sessionCache) {
+        this.sessionCache = sessionCache;
+    }
+
+    public void setRetryPolicy(RetryPolicy retryPolicy) {
+        this.retryPolicy = retryPolicy;
+    }
+
+    public void setConcurrencyPolicy(ConcurrencyPolicy concurrencyPolicy) {
+        this.concurrencyPolicy = concurrencyPolicy;
+    }
+
+    public Collection<CircuitBreaker> getCircuitBreakers() {
+        return new ArrayList<>(circuitBreakers.values());
+    }
+
+    public APIManager login(String httpURL) throws IOException {
+        APIManager apiManager = sessions.computeIfAbsent(sessionKey(httpURL), key -> newAPIManager(httpURL));
+        synchronized (apiManager) {
+            if (apiManager.isAuthenticated()) {
+                return apiManager;
+            }
+            if (restoreSession(apiManager) || authenticate(apiManager)) {
+                return apiManager;
+            }
+            sessions.remove(sessionKey(httpURL), apiManager);
+            return null;
+        }
+    }
+
+    private boolean authenticate(APIManager apiManager) throws IOException {
+        Response<ResponseBody> loginResponse = apiManager.getApimService().login(username, password).execute();
+        if (loginResponse.code() == 303) {
+            String csrfToken = loginResponse.headers().get("CSRF-Token");
+            apiManager.setCsrfToken(csrfToken);
+            apiManager.setAuthenticated(true);
+            saveSession(apiManager);
+            return true;
+        }
+        logger.error("Login to API Manager {} failed with status code :{}", apiManager.getUrl(), loginResponse.code());
+        return false;
+    }
+
+    private boolean restoreSession(APIManager apiManager) {
+        if (sessionCache == null) {
+            return false;
+        }
+        String host = sessionKey(apiManager.getUrl());
+        SessionCache.Session session = sessionCache.get(host, username);
+        if (session == null) {
+            return false;
+        }
+        apiManager.getCookieJar().setCookies(session.toCookies());
+        apiManager.setCsrfToken(session.getCsrfToken());
+        try {
+            Response<ResponseBody> response = apiManager.getApimService().currentUser().execute();
+            closeBody(response);
+            if (response.isSuccessful()) {
+                logger.info("Reusing cached session for {}", host);
+                apiManager.setAuthenticated(true);
+                return true;
+            }
+            logger.info("Cached session for {} expired with status code :{}, logging in", host, response.code());
+        } catch (IOException e) {
+            logger.warn("Unable to validate cached session for {}, logging in", host, e);
+        }
+        apiManager.getCookieJar().clear();
+        apiManager.setCsrfToken(null);
+        sessionCache.remove(host, username);
+        return false;
+    }
+
+    /**
+     * Logs in again after API Manager rejected {@code failedToken} with 401. Concurrent calls that failed with the same
+     * token share one login; returns the token to retry with, or null if the login failed.
+     */
+    String renewSession(APIManager apiManager, String failedToken) {
+        synchronized (apiManager) {
+            String current = apiManager.getCsrfToken();
+            if (apiManager.isAuthenticated() && current != null && !current.equals(failedToken)) {
+                return current;
+            }
+            logger.info("Session for {} expired, logging in again", apiManager.getUrl());
+            apiManager.setAuthenticated(false);
+            apiManager.getCookieJar().clear();
+            try {
+                return authenticate(apiManager) ? apiManager.getCsrfToken() : null;
+            } catch (IOException e) {
+                logger.error("Unable to log in again to API Manager {}", apiManager.getUrl(), e);
+                return null;
+            }
+        }
+    }
+
+    private void saveSession(APIManager apiManager) {
+        if (sessionCache != null) {
+            sessionCache.put(sessionKey(apiManager.getUrl()), username, apiManager.getCsrfToken(), apiManager.getCookieJar().getCookies());
+        }
+    }
+
+    public void logout(APIManager apiManager) {
+        synchronized (apiManager) {
+            if (!apiManager.isAuthenticated()) {
+                return;
+            }
+            try {
+                Response<ResponseBody> logoutResponse = apiManager.getApimService().logout().execute();
+                logger.info("Logout from {} complete with status code :{}", apiManager.getUrl(), logoutResponse.code());
+            } catch (IOException e) {
+                logger.warn("Unable to logout from API Manager {}", apiManager.getUrl(), e);
+            } finally {
+                apiManager.setAuthenticated(false);
+                apiManager.setCsrfToken(null);
+            }
+        }
+    }
+
+    /**
+     * Logs out all sessions, or saves them to the session cache for the next run.
+     */
+    public void close() {
+        for (APIManager apiManager : sessions.values()) {
+            if (sessionCache == null) {
+                logout(apiManager);
+            } else {
+                synchronized (apiManager) {
+                    if (apiManager.isAuthenticated()) {
+                        saveSession(apiManager);
+                    }
+                }
+            }
+        }
+        sessions.clear();
+        for (CircuitBreaker breaker : circuitBreakers.values()) {
+            if (breaker.getTimesOpened() > 0 || breaker.getState() != CircuitBreaker.State.CLOSED) {
+                logger.warn("Circuit breaker {}", breaker);
+            }
+        }
+    }
+
+    private APIManager newAPIManager(String httpURL) {
+        APIManager apiManager = new APIManager();
+        SessionCookieJar cookieJar = new SessionCookieJar();
+        apiManager.setCookieJar(cookieJar);
+
+        String host = sessionKey(httpURL);
+        CircuitBreaker breaker = circuitBreakers.computeIfAbsent(host,
+            key -> new CircuitBreaker(key, retryPolicy, httpClientFactory.getMetrics()));
+        RetryInterceptor retryInterceptor = new RetryInterceptor(breaker, retryPolicy, httpClientFactory.getMetrics());
+        List<Interceptor> interceptors = new ArrayList<>(Arrays.asList(new CSRFTokenInterceptor(apiManager), retryInterceptor));
+        if (concurrencyPolicy != null) {
+            interceptors.add(concurrencyLimits.computeIfAbsent(host,
+                key -> new ConcurrencyLimitInterceptor(key, concurrencyPolicy, httpClientFactory.getMetrics())));
+        }
+        OkHttpClient client = httpClientFactory.newClient(cookieJar, interceptors.toArray(new Interceptor[0])).newBuilder()
+            .authenticator((route, response) -> {
+                Request failed = response.request();
+                if (failed.url().encodedPath().endsWith("/login") || response.priorResponse() != null || !apiManager.isAuthenticated()) {
+                    return null;
+                }
+                String token = renewSession(apiManager, failed.header("CSRF-Token"));
+                return token == null ? null : failed.newBuilder().header("CSRF-Token", token).build();
+            })
+            .build();
+        Retrofit apimRetrofit = new Retrofit.Builder()
+            .baseUrl(httpURL)
+            .client(client)
+            .addConverterFactory(JacksonConverterFactory.create())
+            .build();
+
+        apiManager.setUrl(httpURL);
+        apiManager.setApimService(apimRetrofit.create(APIMService.class));
+        return apiManager;
+    }
+
+    private static void closeBody(Response<ResponseBody> response) {
+        if (response.body() != null) {
+            response.body().close();
+        }
+        if (response.errorBody() != null) {
+            response.errorBody().close();
+        }
+    }
+
+    private static String sessionKey(String httpURL) {
+        HttpUrl parsed = HttpUrl.get(httpURL);
+        return parsed.scheme() + "://" + parsed.host() + ":" + parsed.port();
+    }
+}
@@ -0,0 +1,166 @@
+package com.axway.apim.service;
+
+import com.axway.apim.metrics.MetricsRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.InterruptedIOException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Concurrency limit of one endpoint class of one API Manager node, adapted by additive increase and multiplicative
+ * decrease. While calls succeed at the usual latency and the limit is actually used, it grows by one per limit's
+ * worth of calls. A 429 or 503 response or a timeout multiplies it with the policy's backoff ratio; when the recent
+ * latency of an endpoint exceeds its lowest latency by more than the latency tolerance (and by at least 20 ms, so
+ * that jitter of fast calls does not count) it is multiplied with 0.9. Only calls sent after the last decrease can
+ * lower it again, so a burst of rejected calls counts once. Callers above the limit wait in {@link #acquire()},
+ * which is the backpressure on the deployment workers.
+ */
+public class AdaptiveLimit {
+
+    private static final Logger logger = LoggerFactory.getLogger(AdaptiveLimit.class);
+
+    public static final String LIMIT = "apim_concurrency_limit";
+    public static final String IN_FLIGHT = "apim_concurrency_in_flight";
+    public static final String DECREASES = "apim_concurrency_limit_decreases_total";
+    public static final String WAIT = "apim_concurrency_wait_seconds";
+
+    private static final double LATENCY_BACKOFF_RATIO = 0.9;
+    private static final int MIN_SAMPLES = 5;
+    private static final long MIN_EXCESS_NANOS = TimeUnit.MILLISECONDS.toNanos(20);
+
+    public enum Outcome {
+        SUCCESS, OVERLOAD, ERROR
+    }
+
+    private final String node;
+    private final ConcurrencyPolicy.EndpointClass endpointClass;
+    private final int maxLimit;
+    private final double latencyTolerance;
+    private final double backoffRatio;
+    private final long acquireTimeoutNanos;
+    private final MetricsRegistry metrics;
+    private final Map<String, Baseline> baselines = new HashMap<>();
+
+    private double limit;
+    private int inFlight;
+    private long decreasedAt = System.nanoTime();
+
+    public AdaptiveLimit(String node, ConcurrencyPolicy.EndpointClass endpointClass, ConcurrencyPolicy policy, MetricsRegistry metrics) {
+        this.node = node;
+        this.endpointClass = endpointClass;
+        this.maxLimit = policy.getMaxLimit(endpointClass);
+        this.latencyTolerance = policy.getLatencyTolerance();
+        this.backoffRatio = policy.getBackoffRatio();
+        this.acquireTimeoutNanos = TimeUnit.MILLISECONDS.toNanos(policy.getAcquireTimeoutMillis());
+        this.metrics = metrics;
+        this.limit = Math.max(1, (maxLimit + 1) / 2);
+        publish();
+    }
+
+    /**
+     * Waits until a call may be sent and returns the time it was sent at, to be passed to {@link #release}. Throws
+     * {@link SlotTimeoutException} when no slot frees up within the acquire timeout.
+     */
+    public synchronized long acquire() throws InterruptedIOException, SlotTimeoutException {
+        long start = System.nanoTime();
+        long deadline = start + acquireTimeoutNanos;
+        try {
+            while (inFlight >= (int) limit) {
+                long remaining = deadline - System.nanoTime();
+                if (remaining <= 0) {
+                    throw new SlotTimeoutException("Timed out waiting for a " + endpointClass + " call slot of " + node);
+                }
+                TimeUnit.NANOSECONDS.timedWait(this, remaining);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted waiting for a " + endpointClass + " call slot of " + node);
+        }
+        inFlight++;
+        long sentAt = System.nanoTime();
+        if (metrics != null) {
+            metrics.histogram(WAIT, MetricsRegistry.LATENCY_BUCKETS, "class", endpointClass.name())
+                .record((sentAt - start) / (double) TimeUnit.SECONDS.toNanos(1));
+            metrics.setGauge(IN_FLIGHT, inFlight, "node", node, "class", endpointClass.name());
+        }
+        return sentAt;
+    }
+
+    public synchronized void release(String endpoint, long sentAt, Outcome outcome) {
+        long latency = System.nanoTime() - sentAt;
+        boolean saturated = inFlight * 2 >= limit;
+        inFlight--;
+        if (outcome == Outcome.OVERLOAD) {
+            decrease(sentAt, backoffRatio, "overload");
+        } else if (outcome == Outcome.SUCCESS) {
+            Baseline baseline = baselines.computeIfAbsent(endpoint, key -> new Baseline());
+            baseline.record(latency);
+            boolean slow = baseline.samples >= MIN_SAMPLES && baseline.recentNanos > latencyTolerance * baseline.minNanos
+                && baseline.recentNanos - baseline.minNanos > MIN_EXCESS_NANOS;
+            if (slow) {
+                decrease(sentAt, LATENCY_BACKOFF_RATIO, "latency");
+            } else if (saturated && limit < maxLimit) {
+                limit = Math.min(maxLimit, limit + 1 / limit);
+            }
+        }
+        publish();
+        notifyAll();
+    }
+
+    private void decrease(long sentAt, double ratio, String signal) {
+        if (sentAt < decreasedAt) {
+            return;
+        }
+        double previous = limit;
+        limit = Math.max(1, limit * ratio);
+        decreasedAt = System.nanoTime();
+        if (metrics != null) {
+            metrics.increment(DECREASES, "node", node, "class", endpointClass.name(), "signal", signal);
+        }
+        logger.info("Concurrency limit of {} {} calls lowered from {} to {} on {}", node, endpointClass, (int) previous, (int) limit, signal);
+    }
+
+    public synchronized int getLimit() {
+        return (int) limit;
+    }
+
+    public synchronized int getInFlight() {
+        return inFlight;
+    }
+
+    private void publish() {
+        if (metrics != null) {
+            metrics.setGauge(LIMIT, (int) limit, "node", node, "class", endpointClass.name());
+            metrics.setGauge(IN_FLIGHT, inFlight, "node", node, "class", endpointClass.name());
+        }
+    }
+
+    @Override
+    public synchronized String toString() {
+        return node + " " + endpointClass + " limit " + (int) limit + " (in flight " + inFlight + ")";
+    }
+
+    /**
+     * Recent (exponentially weighted) and lowest latency of one endpoint. The lowest latency drifts slowly upwards, so
+     * that a permanently slower node becomes the new normal.
+     */
+    private static final class Baseline {
+
+        private long minNanos = Long.MAX_VALUE;
+        private double recentNanos;
+        private long samples;
+
+        private void record(long latency) {
+            recentNanos = samples == 0 ? latency : recentNanos + (latency - recentNanos) * 0.2;
+            samples++;
+            if (latency < minNanos) {
+                minNanos = latency;
+            } else {
+                minNanos += (latency - minNanos) / 256;
+            }
+        }
+    }
+}
@@ -0,0 +1,56 @@
+package com.axway.apim.service;
+
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+
+/**
+ * Backend API as returned by the import into the API repository. Only the fields the deployment needs are bound,
+ * the imported methods and models are skipped while parsing.
+ */
+@JsonIgnoreProperties(ignoreUnknown = true)
+public class BackendAPI {
+    private String id;
+    private String name;
+    private String organizationId;
+    private Long createdOn;
+
+    public String getId() {
+        return id;
+    }
+
+    public void setId(String id) {
+        this.id = id;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public void setName(String name) {
+        this.name = name;
+    }
+
+    public String getOrganizationId() {
+        return organizationId;
+    }
+
+    public void setOrganizationId(String organizationId) {
+        this.organizationId = organizationId;
+    }
+
+    public Long getCreatedOn() {
+        return createdOn;
+    }
+
+    public void setCreatedOn(Long createdOn) {
+        this.createdOn = createdOn;
+    }
+
+    @Override
+    public String toString() {
+        return "BackendAPI{" +
+                "id='" + id + '\'' +
+                ", name='" + name + '\'' +
+                ", organizationId='" + organizationId + '\'' +
+                '}';
+    }
+}
@@ -0,0 +1,114 @@
+package com.axway.apim.service;
+
+import org.jetbrains.annotations.NotNull;
+import retrofit2.Call;
+import retrofit2.Callback;
+import retrofit2.Response;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+
+/**
+ * Adapts Retrofit calls to {@link CompletableFuture}s so that independent API Manager requests can be in flight at
+ * the same time. Cancelling the future cancels the underlying HTTP call.
+ */
+public final class Calls {
+
+    private Calls() {
+    }
+
+    public static <T> CompletableFuture<Response<T>> enqueue(Call<T> call) {
+        CompletableFuture<Response<T>> future = new CompletableFuture<Response<T>>() {
+            @Override
+            public boolean cancel(boolean mayInterruptIfRunning) {
+                call.cancel();
+                return super.cancel(mayInterruptIfRunning);
+            }
+        };
+        call.enqueue(new Callback<T>() {
+            @Override
+            public void onResponse(@NotNull Call<T> call, @NotNull Response<T> response) {
+                if (!future.complete(response)) {
+                    close(response);
+                }
+            }
+
+            @Override
+            public void onFailure(@NotNull Call<T> call, @NotNull Throwable t) {
+                future.completeExceptionally(t);
+            }
+        });
+        return future;
+    }
+
+    /**
+     * Converts the response of a call once it completes. Cancelling the returned future cancels the call.
+     */
+    public static <T, R> CompletableFuture<R> map(CompletableFuture<Response<T>> source, ResponseMapper<T, R> mapper) {
+        CompletableFuture<R> future = new CompletableFuture<R>() {
+            @Override
+            public boolean cancel(boolean mayInterruptIfRunning) {
+                source.cancel(mayInterruptIfRunning);
+                return super.cancel(mayInterruptIfRunning);
+            }
+        };
+        source.whenComplete((response, error) -> {
+            if (error != null) {
+                future.completeExceptionally(error);
+                return;
+            }
+            try {
+                future.complete(mapper.map(response));
+            } catch (IOException | RuntimeException e) {
+                close(response);
+                future.completeExceptionally(e);
+            }
+        });
+        return future;
+    }
+
+    /**
+     * Releases the body of a completed response future, for streaming responses that end up not being consumed.
+     */
+    public static <T> void close(CompletableFuture<Response<T>> future) {
+        if (future.isDone() && !future.isCompletedExceptionally()) {
+            close(future.join());
+        }
+    }
+
+    private static void close(Response<?> response) {
+        if (response.body() instanceof Closeable) {
+            try {
+                ((Closeable) response.body()).close();
+            } catch (IOException ignored) {
+                // nothing left to release
+            }
+        }
+        if (response.errorBody() != null) {
+            response.errorBody().close();
+        }
+    }
+
+    public interface ResponseMapper<T, R> {
+        R map(Response<T> response) throws IOException;
+    }
+
+    public static <T> T await(CompletableFuture<T> future) throws IOException {
+        try {
+            return future.get();
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException) {
+                throw (IOException) cause;
+            }
+            throw new IOException(cause);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            future.cancel(true);
+            throw new InterruptedIOException("Interrupted while waiting for API Manager");
+        }
+    }
+}
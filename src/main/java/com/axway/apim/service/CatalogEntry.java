@@ -0,0 +1,46 @@
+package com.axway.apim.service;
+
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+
+/**
+ * Entry of the API discovery catalog of a node, read by the replication check.
+ */
+@JsonIgnoreProperties(ignoreUnknown = true)
+public class CatalogEntry {
+    private String id;
+    private String name;
+    private String state;
+
+    public String getId() {
+        return id;
+    }
+
+    public void setId(String id) {
+        this.id = id;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public void setName(String name) {
+        this.name = name;
+    }
+
+    public String getState() {
+        return state;
+    }
+
+    public void setState(String state) {
+        this.state = state;
+    }
+
+    @Override
+    public String toString() {
+        return "CatalogEntry{" +
+                "id='" + id + '\'' +
+                ", name='" + name + '\'' +
+                ", state='" + state + '\'' +
+                '}';
+    }
+}
@@ -0,0 +1,194 @@
+package com.axway.apim.service;
+
+import com.axway.apim.metrics.MetricsRegistry;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import okhttp3.ResponseBody;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import retrofit2.Response;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * In-memory index of the frontend APIs and organizations of one API Manager, so that the deployments of a run resolve
+ * their API and organization without a filtered lookup each. The two lists are read once, concurrently, and parsed as
+ * a stream into name indexes that only keep the ids and the state of every frontend API. The snapshot is read again
+ * on the first lookup after {@code ttlMillis}.
+ * <p>
+ * An API that is being changed by a deployment is {@link #invalidate(String) invalidated}; until the next refresh its
+ * lookups are left to the caller, which asks API Manager directly.
+ */
+public class CatalogSnapshot {
+
+    private static final Logger logger = LoggerFactory.getLogger(CatalogSnapshot.class);
+
+    public static final String REFRESHES = "apim_catalog_refreshes_total";
+    public static final String ENTRIES = "apim_catalog_entries";
+
+    private static final JsonFactory JSON = new JsonFactory();
+
+    private final long ttlMillis;
+    private final MetricsRegistry metrics;
+    private final Map<String, Long> invalidated = new ConcurrentHashMap<>();
+    private CompletableFuture<Index> index;
+
+    public CatalogSnapshot(long ttlMillis, MetricsRegistry metrics) {
+        this.ttlMillis = ttlMillis;
+        this.metrics = metrics;
+    }
+
+    /**
+     * Frontend APIs named {@code apiName} that are not deprecated or retired. Only the summary fields read by
+     * {@link FrontendAPIReader} are set, and the instances are shared by all lookups.
+     */
+    public CompletableFuture<List<API>> findFrontendAPIs(APIMService apimService, String apiName) {
+        return index(apimService).thenApply(index -> {
+            List<API> apis = new ArrayList<>();
+            for (API api : index.frontendAPIs.getOrDefault(apiName, Collections.emptyList())) {
+                if (!api.isDeprecatedOrRetired()) {
+                    apis.add(api);
+                }
+            }
+            return apis;
+        });
+    }
+
+    /**
+     * Id of the organization, or null if there is none of that name.
+     */
+    public CompletableFuture<String> findOrganizationId(APIMService apimService, String orgName) {
+        return index(apimService).thenApply(index -> index.organizations.get(orgName));
+    }
+
+    /**
+     * Whether lookups of the API have to go to API Manager because it changed after the snapshot was read.
+     */
+    public boolean isStale(String apiName) {
+        Long invalidatedAt = invalidated.get(apiName);
+        if (invalidatedAt == null) {
+            return false;
+        }
+        CompletableFuture<Index> current;
+        synchronized (this) {
+            current = index;
+        }
+        return current == null || !current.isDone() || current.isCompletedExceptionally() || current.join().startedAt <= invalidatedAt;
+    }
+
+    public void invalidate(String apiName) {
+        invalidated.put(apiName, System.nanoTime());
+    }
+
+    private synchronized CompletableFuture<Index> index(APIMService apimService) {
+        if (index == null || index.isCompletedExceptionally()
+            || (index.isDone() && System.nanoTime() - index.join().startedAt > TimeUnit.MILLISECONDS.toNanos(ttlMillis))) {
+            index = load(apimService);
+        }
+        return index;
+    }
+
+    private CompletableFuture<Index> load(APIMService apimService) {
+        long startedAt = System.nanoTime();
+        logger.info("Reading the API Manager catalog");
+        CompletableFuture<Map<String, List<API>>> frontendAPIs = Calls.map(Calls.enqueue(apimService.listFrontendAPIs()),
+            response -> parseFrontendAPIs(body(response, "frontend APIs")));
+        CompletableFuture<Map<String, String>> organizations = Calls.map(Calls.enqueue(apimService.listOrganizations()),
+            response -> parseOrganizations(body(response, "organizations")));
+        return frontendAPIs.thenCombine(organizations, (apis, orgs) -> new Index(startedAt, apis, orgs))
+            .whenComplete((index, error) -> {
+                if (error != null) {
+                    frontendAPIs.cancel(true);
+                    organizations.cancel(true);
+                    metrics.increment(REFRESHES, "outcome", "failed");
+                    logger.error("Unable to read the API Manager catalog", error);
+                    return;
+                }
+                invalidated.values().removeIf(invalidatedAt -> invalidatedAt < startedAt);
+                metrics.increment(REFRESHES, "outcome", "success");
+                metrics.setGauge(ENTRIES, index.size, "kind", "frontend_api");
+                metrics.setGauge(ENTRIES, index.organizations.size(), "kind", "organization");
+                logger.info("API Manager catalog read in {} ms : {} frontend APIs, {} organizations",
+                    TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startedAt), index.size, index.organizations.size());
+            });
+    }
+
+    private static ResponseBody body(Response<ResponseBody> response, String what) throws IOException {
+        if (!response.isSuccessful()) {
+            throw new IOException("Unable to list " + what + ", status code : " + response.code());
+        }
+        return response.body();
+    }
+
+    private static Map<String, List<API>> parseFrontendAPIs(ResponseBody body) throws IOException {
+        Map<String, List<API>> apis = new HashMap<>();
+        try (ResponseBody responseBody = body) {
+            FrontendAPIReader.read(responseBody.byteStream(), api -> {
+                if (api.getName() != null) {
+                    apis.computeIfAbsent(api.getName(), name -> new ArrayList<>(1)).add(api);
+                }
+            });
+        }
+        return apis;
+    }
+
+    private static Map<String, String> parseOrganizations(ResponseBody body) throws IOException {
+        Map<String, String> organizations = new HashMap<>();
+        try (ResponseBody responseBody = body; JsonParser parser = JSON.createParser(responseBody.byteStream())) {
+            expect(parser.nextToken(), JsonToken.START_ARRAY);
+            while (parser.nextToken() == JsonToken.START_OBJECT) {
+                String id = null;
+                String name = null;
+                while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                    String field = parser.getCurrentName();
+                    parser.nextToken();
+                    if ("id".equals(field)) {
+                        id = parser.getValueAsString();
+                    } else if ("name".equals(field)) {
+                        name = parser.getValueAsString();
+                    } else {
+                        parser.skipChildren();
+                    }
+                }
+                if (name != null && id != null) {
+                    organizations.putIfAbsent(name, id);
+                }
+            }
+        }
+        return organizations;
+    }
+
+    private static void expect(JsonToken token, JsonToken expected) throws IOException {
+        if (token != expected) {
+            throw new IOException("Unexpected catalog response, expected " + expected + " but was " + token);
+        }
+    }
+
+    private static class Index {
+
+        private final long startedAt;
+        private final Map<String, List<API>> frontendAPIs;
+        private final Map<String, String> organizations;
+        private final int size;
+
+        private Index(long startedAt, Map<String, List<API>> frontendAPIs, Map<String, String> organizations) {
+            this.startedAt = startedAt;
+            this.frontendAPIs = frontendAPIs;
+            this.organizations = organizations;
+            int size = 0;
+            for (List<API> apis : frontendAPIs.values()) {
+                size += apis.size();
+            }
+            this.size = size;
+        }
+    }
+}
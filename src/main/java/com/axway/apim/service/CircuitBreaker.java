@@ -0,0 +1,125 @@
+package com.axway.apim.service;
+
+import com.axway.apim.metrics.MetricsRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Circuit breaker of one API Manager node. After {@code failureThreshold} consecutive failures the breaker opens and
+ * calls fail fast for {@code openMillis}; then a single trial call is let through, which closes the breaker again on
+ * success or reopens it on failure. A trial that ends without either, e.g. throttled, is {@link #release() released},
+ * so that the next call becomes the trial.
+ */
+public class CircuitBreaker {
+
+    private static final Logger logger = LoggerFactory.getLogger(CircuitBreaker.class);
+
+    public static final String STATE = "apim_circuit_breaker_state";
+    public static final String TRANSITIONS = "apim_circuit_breaker_transitions_total";
+
+    public enum State {
+        CLOSED, HALF_OPEN, OPEN
+    }
+
+    private final String node;
+    private final int failureThreshold;
+    private final long openNanos;
+    private final MetricsRegistry metrics;
+
+    private State state = State.CLOSED;
+    private int consecutiveFailures;
+    private long openedAt;
+    private Thread trial;
+    private int timesOpened;
+
+    public CircuitBreaker(String node, RetryPolicy policy, MetricsRegistry metrics) {
+        this.node = node;
+        this.failureThreshold = policy.getFailureThreshold();
+        this.openNanos = TimeUnit.MILLISECONDS.toNanos(policy.getOpenMillis());
+        this.metrics = metrics;
+        publish();
+    }
+
+    /**
+     * Returns whether a call may be sent now.
+     */
+    public synchronized boolean allowRequest() {
+        if (state == State.OPEN && System.nanoTime() - openedAt >= openNanos) {
+            transition(State.HALF_OPEN);
+        }
+        if (state == State.HALF_OPEN) {
+            if (trial != null) {
+                return false;
+            }
+            trial = Thread.currentThread();
+            return true;
+        }
+        return state == State.CLOSED;
+    }
+
+    public synchronized void onSuccess() {
+        consecutiveFailures = 0;
+        trial = null;
+        if (state != State.CLOSED) {
+            transition(State.CLOSED);
+        }
+    }
+
+    public synchronized void onFailure() {
+        consecutiveFailures++;
+        trial = null;
+        if (state == State.HALF_OPEN || (state == State.CLOSED && consecutiveFailures >= failureThreshold)) {
+            openedAt = System.nanoTime();
+            timesOpened++;
+            transition(State.OPEN);
+        }
+    }
+
+    /**
+     * Gives back the trial call of the calling thread if it ended without a success or failure. Does nothing if the
+     * thread has no trial call.
+     */
+    public synchronized void release() {
+        if (trial == Thread.currentThread()) {
+            trial = null;
+        }
+    }
+
+    public synchronized State getState() {
+        return state;
+    }
+
+    public synchronized int getConsecutiveFailures() {
+        return consecutiveFailures;
+    }
+
+    public synchronized int getTimesOpened() {
+        return timesOpened;
+    }
+
+    public String getNode() {
+        return node;
+    }
+
+    private void transition(State next) {
+        logger.warn("Circuit breaker of {} : {} -> {} after {} consecutive failures", node, state, next, consecutiveFailures);
+        state = next;
+        if (metrics != null) {
+            metrics.increment(TRANSITIONS, "node", node, "state", next.name());
+        }
+        publish();
+    }
+
+    private void publish() {
+        if (metrics != null) {
+            metrics.setGauge(STATE, state.ordinal(), "node", node);
+        }
+    }
+
+    @Override
+    public synchronized String toString() {
+        return node + " " + state + " (consecutive failures " + consecutiveFailures + ", opened " + timesOpened + " times)";
+    }
+}
@@ -0,0 +1,74 @@
+package com.axway.apim.service;
+
+import com.axway.apim.metrics.MetricsRegistry;
+import okhttp3.Interceptor;
+import okhttp3.Request;
+import okhttp3.Response;
+import org.jetbrains.annotations.NotNull;
+import retrofit2.Invocation;
+
+import java.io.IOException;
+import java.net.SocketTimeoutException;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.EnumMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Holds every API Manager call of one node to the {@link AdaptiveLimit} of its {@link ConcurrencyPolicy.EndpointClass}.
+ * It runs inside the {@link RetryInterceptor}, so every attempt takes a slot and every 429 or 503 answer lowers the
+ * limit before the retry. The session calls are not limited, since a session is renewed while the call that found it
+ * expired still holds its slot. A slot is released when the response headers arrive.
+ */
+public class ConcurrencyLimitInterceptor implements Interceptor {
+
+    private static final Set<String> UNLIMITED_ENDPOINTS = new HashSet<>(Arrays.asList("login", "logout", "currentUser"));
+
+    private final Map<ConcurrencyPolicy.EndpointClass, AdaptiveLimit> limits = new EnumMap<>(ConcurrencyPolicy.EndpointClass.class);
+
+    public ConcurrencyLimitInterceptor(String node, ConcurrencyPolicy policy, MetricsRegistry metrics) {
+        for (ConcurrencyPolicy.EndpointClass endpointClass : ConcurrencyPolicy.EndpointClass.values()) {
+            limits.put(endpointClass, new AdaptiveLimit(node, endpointClass, policy, metrics));
+        }
+    }
+
+    public Collection<AdaptiveLimit> getLimits() {
+        return limits.values();
+    }
+
+    @NotNull
+    @Override
+    public Response intercept(@NotNull Chain chain) throws IOException {
+        Request request = chain.request();
+        String endpoint = endpoint(request);
+        if (UNLIMITED_ENDPOINTS.contains(endpoint)) {
+            return chain.proceed(request);
+        }
+        AdaptiveLimit limit = limits.get(ConcurrencyPolicy.EndpointClass.of(endpoint, request.method()));
+        long sentAt = limit.acquire();
+        Response response;
+        try {
+            response = chain.proceed(request);
+        } catch (SocketTimeoutException e) {
+            limit.release(endpoint, sentAt, AdaptiveLimit.Outcome.OVERLOAD);
+            throw e;
+        } catch (IOException | RuntimeException e) {
+            limit.release(endpoint, sentAt, AdaptiveLimit.Outcome.ERROR);
+            throw e;
+        }
+        int code = response.code();
+        limit.release(endpoint, sentAt, code == 429 || code == 503 ? AdaptiveLimit.Outcome.OVERLOAD
+            : code >= 500 ? AdaptiveLimit.Outcome.ERROR : AdaptiveLimit.Outcome.SUCCESS);
+        return response;
+    }
+
+    private static String endpoint(Request request) {
+        Invocation invocation = request.tag(Invocation.class);
+        if (invocation != null) {
+            return invocation.method().getName();
+        }
+        return request.method() + " " + request.url().encodedPath();
+    }
+}
@@ -0,0 +1,92 @@
+package com.axway.apim.service;
+
+import java.util.Arrays;
+import java.util.EnumMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Settings of the adaptive concurrency limits of the API Manager clients. Every node has one limit per
+ * {@link EndpointClass}, which moves between one and the class's maximum.
+ */
+public class ConcurrencyPolicy {
+
+    /**
+     * Groups the API Manager endpoints by the load they put on the admin node.
+     */
+    public enum EndpointClass {
+        /** the apirepo import of a backend API */
+        IMPORT,
+        /** publish, unpublish, upgrade and deprecate, which change what the gateways serve */
+        PUBLISH,
+        /** the other changes */
+        WRITE,
+        /** the GET requests */
+        READ;
+
+        private static final Set<String> IMPORT_ENDPOINTS = new HashSet<>(Arrays.asList("createBackend"));
+        private static final Set<String> PUBLISH_ENDPOINTS = new HashSet<>(Arrays.asList("publishAPI", "unPublishAPI", "upgradeAPI", "deprecateAPI"));
+
+        public static EndpointClass of(String endpoint, String method) {
+            if (IMPORT_ENDPOINTS.contains(endpoint)) {
+                return IMPORT;
+            }
+            if (PUBLISH_ENDPOINTS.contains(endpoint)) {
+                return PUBLISH;
+            }
+            return "GET".equals(method) || "HEAD".equals(method) ? READ : WRITE;
+        }
+    }
+
+    private final Map<EndpointClass, Integer> maxLimits = new EnumMap<>(EndpointClass.class);
+    private double latencyTolerance = 3;
+    private double backoffRatio = 0.5;
+    private long acquireTimeoutMillis = TimeUnit.MINUTES.toMillis(5);
+
+    public ConcurrencyPolicy() {
+        maxLimits.put(EndpointClass.IMPORT, 4);
+        maxLimits.put(EndpointClass.PUBLISH, 4);
+        maxLimits.put(EndpointClass.WRITE, 16);
+        maxLimits.put(EndpointClass.READ, 64);
+    }
+
+    public int getMaxLimit(EndpointClass endpointClass) {
+        return maxLimits.get(endpointClass);
+    }
+
+    public void setMaxLimit(EndpointClass endpointClass, int maxLimit) {
+        maxLimits.put(endpointClass, Math.max(1, maxLimit));
+    }
+
+    /**
+     * Latency, as a multiple of the lowest latency seen for an endpoint, above which the limit is lowered.
+     */
+    public double getLatencyTolerance() {
+        return latencyTolerance;
+    }
+
+    public void setLatencyTolerance(double latencyTolerance) {
+        this.latencyTolerance = Math.max(1, latencyTolerance);
+    }
+
+    /**
+     * Factor the limit is multiplied with on a 429 or 503 response.
+     */
+    public double getBackoffRatio() {
+        return backoffRatio;
+    }
+
+    public void setBackoffRatio(double backoffRatio) {
+        this.backoffRatio = backoffRatio;
+    }
+
+    public long getAcquireTimeoutMillis() {
+        return acquireTimeoutMillis;
+    }
+
+    public void setAcquireTimeoutMillis(long acquireTimeoutMillis) {
+        this.acquireTimeoutMillis = acquireTimeoutMillis;
+    }
+}
@@ -0,0 +1,73 @@
+package com.axway.apim.service;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.function.Consumer;
+
+/**
+ * Reads the frontend API list of API Manager as a stream and binds only the summary fields of every API: {@code id},
+ * {@code apiId}, {@code name}, {@code organizationId}, {@code state}, {@code deprecated}, {@code retired} and
+ * {@code retirementDate}. The profiles and all other fields are skipped without being parsed into objects, so a large
+ * catalog can be scanned with little memory.
+ */
+public final class FrontendAPIReader {
+
+    private static final ObjectMapper objectMapper = new ObjectMapper();
+
+    private FrontendAPIReader() {
+    }
+
+    public static void read(InputStream in, Consumer<API> consumer) throws IOException {
+        // many APIs share an organization, keep one copy of each id
+        Map<String, String> organizationIds = new HashMap<>();
+        try (JsonParser parser = objectMapper.getFactory().createParser(in)) {
+            JsonToken token = parser.nextToken();
+            if (token != JsonToken.START_ARRAY) {
+                throw new IOException("Unexpected frontend API list, expected " + JsonToken.START_ARRAY + " but was " + token);
+            }
+            while (parser.nextToken() == JsonToken.START_OBJECT) {
+                API api = new API();
+                while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                    String field = parser.getCurrentName();
+                    parser.nextToken();
+                    switch (field) {
+                        case "id":
+                            api.setId(parser.getValueAsString());
+                            break;
+                        case "apiId":
+                            api.setApiId(parser.getValueAsString());
+                            break;
+                        case "name":
+                            api.setName(parser.getValueAsString());
+                            break;
+                        case "organizationId":
+                            String organizationId = parser.getValueAsString();
+                            api.setOrganizationId(organizationId == null ? null : organizationIds.computeIfAbsent(organizationId, id -> id));
+                            break;
+                        case "state":
+                            api.setState(parser.getValueAsString());
+                            break;
+                        case "deprecated":
+                            api.setDeprecated(parser.getValueAsBoolean());
+                            break;
+                        case "retired":
+                            api.setRetired(parser.getValueAsBoolean());
+                            break;
+                        case "retirementDate":
+                            api.setRetirementDate(parser.getCurrentToken() == JsonToken.VALUE_NULL ? null : parser.readValueAsTree());
+                            break;
+                        default:
+                            parser.skipChildren();
+                    }
+                }
+                consumer.accept(api);
+            }
+        }
+    }
+}
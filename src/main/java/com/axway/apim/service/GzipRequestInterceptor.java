@@ -0,0 +1,43 @@
+package com.axway.apim.service;
+
+import okhttp3.Interceptor;
+import okhttp3.Request;
+import okhttp3.RequestBody;
+import okhttp3.Response;
+import okio.Buffer;
+import okio.BufferedSink;
+import okio.GzipSink;
+import okio.Okio;
+import org.jetbrains.annotations.NotNull;
+
+import java.io.IOException;
+
+/**
+ * Compresses request bodies of requests that declare {@code Content-Encoding: gzip}, e.g. {@code createBackend}
+ * when upload compression is enabled.
+ */
+public class GzipRequestInterceptor implements Interceptor {
+
+    @NotNull
+    @Override
+    public Response intercept(@NotNull Chain chain) throws IOException {
+        Request request = chain.request();
+        RequestBody body = request.body();
+        if (body == null || !"gzip".equalsIgnoreCase(request.header("Content-Encoding"))) {
+            return chain.proceed(request);
+        }
+        return chain.proceed(request.newBuilder().method(request.method(), gzip(body)).build());
+    }
+
+    /**
+     * Compresses into memory instead of streaming with chunked encoding, so that the request keeps a Content-Length.
+     * Specs compress well, so the buffer is a fraction of the spec size.
+     */
+    private static RequestBody gzip(RequestBody body) throws IOException {
+        Buffer compressed = new Buffer();
+        try (BufferedSink gzipSink = Okio.buffer(new GzipSink(compressed))) {
+            body.writeTo(gzipSink);
+        }
+        return RequestBody.create(compressed.readByteString(), body.contentType());
+    }
+}
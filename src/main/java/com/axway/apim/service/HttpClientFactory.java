@@ -0,0 +1,132 @@
+package com.axway.apim.service;
+
+import com.axway.apim.metrics.MetricsRegistry;
+import okhttp3.ConnectionPool;
+import okhttp3.CookieJar;
+import okhttp3.Dispatcher;
+import okhttp3.Interceptor;
+import okhttp3.OkHttpClient;
+import okhttp3.logging.HttpLoggingInterceptor;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.net.ssl.SSLContext;
+import javax.net.ssl.TrustManager;
+import javax.net.ssl.TrustManagerFactory;
+import javax.net.ssl.X509TrustManager;
+import java.security.GeneralSecurityException;
+import java.security.KeyStore;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Builds the OkHttp clients for all API Manager nodes from one base client, so that every node shares the same
+ * dispatcher, connection pool and SSL context. Sharing the SSL context lets JSSE resume TLS sessions instead of doing
+ * a full handshake for every new connection.
+ */
+public class HttpClientFactory {
+
+    private static final Logger logger = LoggerFactory.getLogger(HttpClientFactory.class);
+
+    private static final int TLS_SESSION_CACHE_SIZE = 256;
+    private static final int TLS_SESSION_TIMEOUT_SECONDS = 3600;
+
+    private final ConnectionPool connectionPool;
+    private final Dispatcher dispatcher;
+    private final OkHttpClient baseClient;
+    private final MetricsRegistry metrics;
+
+    public HttpClientFactory(boolean skipSSL, int maxIdleConnections, long keepAliveSeconds) {
+        this(skipSSL, maxIdleConnections, keepAliveSeconds, null);
+    }
+
+    public HttpClientFactory(boolean skipSSL, int maxIdleConnections, long keepAliveSeconds, MetricsRegistry metrics) {
+        this.metrics = metrics;
+        this.connectionPool = new ConnectionPool(maxIdleConnections, keepAliveSeconds, TimeUnit.SECONDS);
+        this.dispatcher = new Dispatcher();
+        this.dispatcher.setMaxRequestsPerHost(Math.max(5, maxIdleConnections));
+
+        HttpLoggingInterceptor httpLoggingInterceptor = new HttpLoggingInterceptor();
+        httpLoggingInterceptor.setLevel(HttpLoggingInterceptor.Level.BASIC);
+
+        OkHttpClient.Builder builder = new OkHttpClient.Builder()
+            .connectionPool(connectionPool)
+            .dispatcher(dispatcher)
+            .addInterceptor(httpLoggingInterceptor)
+            .followRedirects(false);
+        if (metrics != null) {
+            builder.addInterceptor(new MetricsInterceptor(metrics))
+                .addNetworkInterceptor(MetricsInterceptor.attempts());
+        }
+        builder.addInterceptor(new GzipRequestInterceptor());
+
+        try {
+            X509TrustManager trustManager = skipSSL ? trustAllManager() : defaultTrustManager();
+            SSLContext sslContext = SSLContext.getInstance("TLS");
+            sslContext.init(null, new TrustManager[]{trustManager}, new java.security.SecureRandom());
+            sslContext.getClientSessionContext().setSessionCacheSize(TLS_SESSION_CACHE_SIZE);
+            sslContext.getClientSessionContext().setSessionTimeout(TLS_SESSION_TIMEOUT_SECONDS);
+            builder.sslSocketFactory(sslContext.getSocketFactory(), trustManager);
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("Unable to initialize SSL context", e);
+        }
+
+        if (skipSSL) {
+            builder.connectTimeout(120, TimeUnit.SECONDS)
+                .readTimeout(120, TimeUnit.SECONDS)
+                .writeTimeout(120, TimeUnit.SECONDS)
+                .hostnameVerifier((s, sslSession) -> true);
+        }
+        this.baseClient = builder.build();
+    }
+
+    public OkHttpClient newClient(CookieJar cookieJar, Interceptor... interceptors) {
+        OkHttpClient.Builder builder = baseClient.newBuilder().cookieJar(cookieJar);
+        for (Interceptor interceptor : interceptors) {
+            builder.addInterceptor(interceptor);
+        }
+        return builder.build();
+    }
+
+    public MetricsRegistry getMetrics() {
+        return metrics;
+    }
+
+    public void shutdown() {
+        logger.debug("Evicting {} pooled connections", connectionPool.connectionCount());
+        dispatcher.cancelAll();
+        dispatcher.executorService().shutdown();
+        connectionPool.evictAll();
+    }
+
+    public void registerShutdownHook() {
+        Runtime.getRuntime().addShutdownHook(new Thread(this::shutdown, "http-client-shutdown"));
+    }
+
+    private static X509TrustManager defaultTrustManager() throws GeneralSecurityException {
+        TrustManagerFactory trustManagerFactory = TrustManagerFactory.getInstance(TrustManagerFactory.getDefaultAlgorithm());
+        trustManagerFactory.init((KeyStore) null);
+        for (TrustManager trustManager : trustManagerFactory.getTrustManagers()) {
+            if (trustManager instanceof X509TrustManager) {
+                return (X509TrustManager) trustManager;
+            }
+        }
+        throw new IllegalStateException("No X509TrustManager available");
+    }
+
+    private static X509TrustManager trustAllManager() {
+        return new X509TrustManager() {
+            @Override
+            public void checkClientTrusted(java.security.cert.X509Certificate[] chain, String authType) {
+            }
+
+            @Override
+            public void checkServerTrusted(java.security.cert.X509Certificate[] chain, String authType) {
+            }
+
+            @Override
+            public java.security.cert.X509Certificate[] getAcceptedIssuers() {
+                return new java.security.cert.X509Certificate[]{};
+            }
+        };
+    }
+}
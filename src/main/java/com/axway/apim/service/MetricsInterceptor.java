@@ -0,0 +1,125 @@
+package com.axway.apim.service;
+
+import com.axway.apim.metrics.MetricsRegistry;
+import okhttp3.Interceptor;
+import okhttp3.Request;
+import okhttp3.Response;
+import okhttp3.ResponseBody;
+import okio.Buffer;
+import okio.BufferedSource;
+import okio.ForwardingSource;
+import okio.Okio;
+import org.jetbrains.annotations.NotNull;
+import retrofit2.Invocation;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Records latency, status code, response size and retry count of every API Manager call, labelled with the
+ * {@link APIMService} method that issued it. Retries are counted by the network interceptor from
+ * {@link #attempts()}, which sees every attempt OkHttp makes for a single call.
+ */
+public class MetricsInterceptor implements Interceptor {
+
+    public static final String REQUESTS = "apim_http_requests_total";
+    public static final String DURATION = "apim_http_request_duration_seconds";
+    public static final String RESPONSE_SIZE = "apim_http_response_size_bytes";
+    public static final String REQUEST_SIZE = "apim_http_request_size_bytes";
+    public static final String RETRIES = "apim_http_retries_total";
+
+    private final MetricsRegistry metrics;
+
+    public MetricsInterceptor(MetricsRegistry metrics) {
+        this.metrics = metrics;
+    }
+
+    public static Interceptor attempts() {
+        return chain -> {
+            Attempts attempts = chain.request().tag(Attempts.class);
+            if (attempts != null) {
+                attempts.count.incrementAndGet();
+            }
+            return chain.proceed(chain.request());
+        };
+    }
+
+    @NotNull
+    @Override
+    public Response intercept(@NotNull Chain chain) throws IOException {
+        Attempts attempts = new Attempts();
+        Request request = chain.request().newBuilder().tag(Attempts.class, attempts).build();
+        String endpoint = endpoint(request);
+        if (request.body() != null && request.body().contentLength() >= 0) {
+            metrics.histogram(REQUEST_SIZE, MetricsRegistry.SIZE_BUCKETS, "endpoint", endpoint).record(request.body().contentLength());
+        }
+        long start = System.nanoTime();
+        Response response;
+        try {
+            response = chain.proceed(request);
+        } catch (IOException e) {
+            metrics.increment(REQUESTS, "endpoint", endpoint, "status", e.getClass().getSimpleName());
+            throw e;
+        } finally {
+            metrics.histogram(DURATION, MetricsRegistry.LATENCY_BUCKETS, "endpoint", endpoint)
+                .record((System.nanoTime() - start) / (double) TimeUnit.SECONDS.toNanos(1));
+            if (attempts.count.get() > 1) {
+                metrics.add(RETRIES, attempts.count.get() - 1, "endpoint", endpoint);
+            }
+        }
+        metrics.increment(REQUESTS, "endpoint", endpoint, "status", String.valueOf(response.code()));
+
+        ResponseBody body = response.body();
+        if (body == null) {
+            return response;
+        }
+        if (body.contentLength() >= 0) {
+            metrics.histogram(RESPONSE_SIZE, MetricsRegistry.SIZE_BUCKETS, "endpoint", endpoint).record(body.contentLength());
+            return response;
+        }
+        BufferedSource counting = Okio.buffer(new ForwardingSource(body.source()) {
+            private long total;
+            private boolean recorded;
+
+            @Override
+            public long read(@NotNull Buffer sink, long byteCount) throws IOException {
+                long read = super.read(sink, byteCount);
+                if (read == -1) {
+                    record();
+                } else {
+                    total += read;
+                }
+                return read;
+            }
+
+            @Override
+            public void close() throws IOException {
+                record();
+                super.close();
+            }
+
+            private void record() {
+                if (!recorded) {
+                    recorded = true;
+                    metrics.histogram(RESPONSE_SIZE, MetricsRegistry.SIZE_BUCKETS, "endpoint", endpoint).record(total);
+                }
+            }
+        });
+        return response.newBuilder()
+            .body(ResponseBody.create(counting, body.contentType(), body.contentLength()))
+            .build();
+    }
+
+    private static String endpoint(Request request) {
+        Invocation invocation = request.tag(Invocation.class);
+        if (invocation != null) {
+            return invocation.method().getName();
+        }
+        return request.method() + " " + request.url().encodedPath();
+    }
+
+    private static final class Attempts {
+        private final AtomicInteger count = new AtomicInteger();
+    }
+}
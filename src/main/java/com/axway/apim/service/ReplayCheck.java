@@ -0,0 +1,19 @@
+package com.axway.apim.service;
+
+/**
+ * How {@link RetryInterceptor} finds out whether a non-idempotent call whose response was lost was applied. Passed as
+ * the request tag of the calls that need a choice; untagged calls are read back.
+ */
+public enum ReplayCheck {
+
+    /**
+     * Read back the state the call would have changed and replay the call only if it was not applied.
+     */
+    READ_BACK,
+
+    /**
+     * Give up on a lost response, for calls whose outcome a read-back cannot attribute, e.g. one of several frontend
+     * APIs created at once on the same backend API.
+     */
+    NONE
+}
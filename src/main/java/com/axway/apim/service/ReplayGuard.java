@@ -0,0 +1,193 @@
+package com.axway.apim.service;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import okhttp3.HttpUrl;
+import okhttp3.Interceptor;
+import okhttp3.MediaType;
+import okhttp3.MultipartBody;
+import okhttp3.Request;
+import okhttp3.Response;
+import okhttp3.ResponseBody;
+import okio.Buffer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Finds out whether a non-idempotent API Manager call whose response was lost (timeout, reset connection, 502/503/504)
+ * was applied anyway, by reading back the state it would have changed. If it was, a response standing in for the
+ * lost one is returned, so the caller continues as if the first attempt had succeeded; otherwise the call can be
+ * replayed without creating duplicates.
+ */
+class ReplayGuard {
+
+    private static final Logger logger = LoggerFactory.getLogger(ReplayGuard.class);
+
+    private static final MediaType JSON = MediaType.get("application/json");
+    private static final Set<String> SUPPORTED = new HashSet<>(Arrays.asList(
+        "createBackend", "createFrontend", "publishAPI", "unPublishAPI", "deprecateAPI"));
+    // Date headers have a resolution of one second
+    private static final long CLOCK_TOLERANCE_MILLIS = 2000;
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    boolean supports(String endpoint) {
+        return SUPPORTED.contains(endpoint);
+    }
+
+    /**
+     * Returns a response standing in for the lost one if the call was applied, or null if it was not and can be
+     * replayed. Throws if the state cannot be determined.
+     */
+    Response verify(Interceptor.Chain chain, Request request, String endpoint, long sentAtNanos) throws IOException {
+        List<String> segments = request.url().pathSegments();
+        switch (endpoint) {
+            case "publishAPI":
+                return verifyProxy(chain, request, segments.get(segments.size() - 2), "state", "published");
+            case "unPublishAPI":
+                return verifyProxy(chain, request, segments.get(segments.size() - 2), "state", "unpublished");
+            case "deprecateAPI":
+                return verifyProxy(chain, request, segments.get(segments.size() - 2), "deprecated", "true");
+            case "createFrontend":
+                return verifyFrontendCreated(chain, request);
+            case "createBackend":
+                return verifyBackendCreated(chain, request, sentAtNanos);
+            default:
+                throw new IOException("Unable to verify the outcome of " + endpoint);
+        }
+    }
+
+    private Response verifyProxy(Interceptor.Chain chain, Request request, String id, String field, String expected) throws IOException {
+        JsonNode proxy = get(chain, request, url(request, "proxies/" + id)).node;
+        if (expected.equals(proxy.path(field).asText())) {
+            return applied(request, proxy);
+        }
+        return null;
+    }
+
+    private Response verifyFrontendCreated(Interceptor.Chain chain, Request request) throws IOException {
+        Buffer body = new Buffer();
+        request.body().writeTo(body);
+        JsonNode created = objectMapper.readTree(body.readByteArray());
+        String backendId = created.path("apiId").asText();
+        // API Manager filters the proxies by backend with the field name apiid
+        HttpUrl url = url(request, "proxies").newBuilder()
+            .addQueryParameter("field", "apiid").addQueryParameter("op", "eq").addQueryParameter("value", backendId)
+            .build();
+        JsonNode match = null;
+        for (JsonNode proxy : get(chain, request, url).node) {
+            // an ignored filter returns every proxy, so each one is checked against the request
+            if (!matches(proxy, created, "apiId") || !matches(proxy, created, "organizationId") || !matches(proxy, created, "name")) {
+                continue;
+            }
+            if (match != null) {
+                throw new IOException("More than one frontend API of backend API " + backendId + " matches the lost call");
+            }
+            match = proxy;
+        }
+        // the backend was created by this deployment, so a matching frontend of it is the one of the lost call
+        return match == null ? null : applied(request, match);
+    }
+
+    /**
+     * Whether the proxy has the value the request set for the field; fields the request does not set match any value.
+     */
+    private static boolean matches(JsonNode proxy, JsonNode request, String field) {
+        JsonNode expected = request.path(field);
+        return expected.isMissingNode() || expected.isNull() || expected.asText().equals(proxy.path(field).asText());
+    }
+
+    private Response verifyBackendCreated(Interceptor.Chain chain, Request request, long sentAtNanos) throws IOException {
+        if (!(request.body() instanceof MultipartBody)) {
+            throw new IOException("Unexpected createBackend request body");
+        }
+        String name = null;
+        String organizationId = null;
+        for (MultipartBody.Part part : ((MultipartBody) request.body()).parts()) {
+            String disposition = part.headers() == null ? "" : String.valueOf(part.headers().get("Content-Disposition"));
+            if (disposition.contains("name=\"name\"")) {
+                name = value(part);
+            } else if (disposition.contains("name=\"organizationId\"")) {
+                organizationId = value(part);
+            }
+        }
+        HttpUrl url = url(request, "apirepo").newBuilder()
+            .addQueryParameter("field", "name").addQueryParameter("op", "eq").addQueryParameter("value", name)
+            .build();
+        Checked checked = get(chain, request, url);
+        // createdOn is the server clock, so compare against the server time of the lost request
+        long serverSentAt = checked.serverTime - TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - sentAtNanos);
+        JsonNode newest = null;
+        for (JsonNode backend : checked.node) {
+            if (organizationId != null && !organizationId.equals(backend.path("organizationId").asText())) {
+                continue;
+            }
+            long createdOn = backend.path("createdOn").asLong();
+            if (createdOn >= serverSentAt - CLOCK_TOLERANCE_MILLIS
+                && (newest == null || createdOn > newest.path("createdOn").asLong())) {
+                newest = backend;
+            }
+        }
+        return newest == null ? null : applied(request, newest);
+    }
+
+    private Checked get(Interceptor.Chain chain, Request request, HttpUrl url) throws IOException {
+        Request.Builder builder = new Request.Builder().url(url).get();
+        String csrfToken = request.header("CSRF-Token");
+        if (csrfToken != null) {
+            builder.header("CSRF-Token", csrfToken);
+        }
+        try (Response response = chain.proceed(builder.build())) {
+            if (!response.isSuccessful() || response.body() == null) {
+                throw new IOException("State check " + url.encodedPath() + " failed with status code " + response.code());
+            }
+            Date date = response.headers().getDate("Date");
+            return new Checked(objectMapper.readTree(response.body().byteStream()),
+                date == null ? System.currentTimeMillis() : date.getTime());
+        }
+    }
+
+    private Response applied(Request request, JsonNode node) throws IOException {
+        logger.info("{} {} was applied before its response was lost, not replaying", request.method(), request.url().encodedPath());
+        return new Response.Builder()
+            .request(request)
+            .protocol(okhttp3.Protocol.HTTP_1_1)
+            .code(201)
+            .message("Created")
+            .header("Content-Type", JSON.toString())
+            .body(ResponseBody.create(objectMapper.writeValueAsBytes(node), JSON))
+            .build();
+    }
+
+    private static String value(MultipartBody.Part part) throws IOException {
+        Buffer buffer = new Buffer();
+        part.body().writeTo(buffer);
+        return buffer.readUtf8();
+    }
+
+    private static HttpUrl url(Request request, String path) {
+        // the API Manager base path is everything before the resource the call addressed
+        String encodedPath = request.url().encodedPath();
+        int resource = Math.max(encodedPath.indexOf("/proxies"), encodedPath.indexOf("/apirepo"));
+        String base = resource < 0 ? "" : encodedPath.substring(0, resource);
+        return request.url().newBuilder().encodedPath(base + "/" + path).query(null).build();
+    }
+
+    private static final class Checked {
+        private final JsonNode node;
+        private final long serverTime;
+
+        Checked(JsonNode node, long serverTime) {
+            this.node = node;
+            this.serverTime = serverTime;
+        }
+    }
+}
@@ -0,0 +1,192 @@
+package com.axway.apim.service;
+
+import com.axway.apim.metrics.MetricsRegistry;
+import okhttp3.Interceptor;
+import okhttp3.Request;
+import okhttp3.Response;
+import org.jetbrains.annotations.NotNull;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import retrofit2.Invocation;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.net.ConnectException;
+import java.net.UnknownHostException;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Retries API Manager calls of one node that failed with an I/O error, 429, 502, 503 or 504, with exponential backoff
+ * and full jitter, up to {@link RetryPolicy#getMaxAttempts()} attempts within {@link RetryPolicy#getBudgetMillis()}.
+ * <p>
+ * GET, PUT, DELETE and the login are replayed freely. Other POSTs are only replayed when they cannot have reached API
+ * Manager (connection refused, 429); otherwise {@link ReplayGuard} reads back the state first and the call is only
+ * replayed if it was not applied. Calls tagged with {@link ReplayCheck#NONE} are not read back and give up instead.
+ * A call that timed out waiting for a concurrency slot ({@link SlotTimeoutException}) was never sent; it is passed on
+ * without counting against the breaker or being read back, and so is a call that was cancelled. Every other outcome
+ * feeds the node's {@link CircuitBreaker}, and calls fail fast while it is open.
+ */
+public class RetryInterceptor implements Interceptor {
+
+    private static final Logger logger = LoggerFactory.getLogger(RetryInterceptor.class);
+
+    public static final String REPLAY_CHECKS = "apim_http_replay_checks_total";
+
+    private static final Set<String> IDEMPOTENT_METHODS = new HashSet<>(Arrays.asList("GET", "HEAD", "PUT", "DELETE", "OPTIONS"));
+    private static final Set<String> IDEMPOTENT_ENDPOINTS = new HashSet<>(Arrays.asList("login", "logout"));
+    private static final Set<Integer> RETRYABLE_STATUS = new HashSet<>(Arrays.asList(429, 502, 503, 504));
+
+    private final CircuitBreaker breaker;
+    private final RetryPolicy policy;
+    private final MetricsRegistry metrics;
+    private final ReplayGuard replayGuard = new ReplayGuard();
+
+    public RetryInterceptor(CircuitBreaker breaker, RetryPolicy policy, MetricsRegistry metrics) {
+        this.breaker = breaker;
+        this.policy = policy;
+        this.metrics = metrics;
+    }
+
+    @NotNull
+    @Override
+    public Response intercept(@NotNull Chain chain) throws IOException {
+        Request request = chain.request();
+        String endpoint = endpoint(request);
+        boolean idempotent = IDEMPOTENT_METHODS.contains(request.method()) || IDEMPOTENT_ENDPOINTS.contains(endpoint);
+        boolean checkable = replayGuard.supports(endpoint) && request.tag(ReplayCheck.class) != ReplayCheck.NONE;
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(policy.getBudgetMillis());
+
+        for (int attempt = 1; ; attempt++) {
+            if (!breaker.allowRequest()) {
+                throw new IOException("Circuit breaker of " + breaker.getNode() + " is open, not calling " + endpoint);
+            }
+            try {
+                long sentAt = System.nanoTime();
+                Response response = null;
+                IOException failure = null;
+                try {
+                    response = chain.proceed(request);
+                } catch (SlotTimeoutException e) {
+                    // the call waited for a local concurrency slot and never reached the node
+                    throw e;
+                } catch (IOException e) {
+                    if (chain.call().isCanceled()) {
+                        // cancelled by our own code, which says nothing about the node's health
+                        breaker.release();
+                        throw e;
+                    }
+                    if (e instanceof UnknownHostException) {
+                        breaker.onFailure();
+                        throw e;
+                    }
+                    failure = e;
+                }
+                if (response != null && !RETRYABLE_STATUS.contains(response.code())) {
+                    if (response.code() >= 500) {
+                        breaker.onFailure();
+                    } else {
+                        breaker.onSuccess();
+                    }
+                    return response;
+                }
+                boolean throttled = response != null && response.code() == 429;
+                if (throttled) {
+                    // throttling says nothing about the node's health
+                    breaker.release();
+                } else {
+                    breaker.onFailure();
+                }
+
+                long delay = delayMillis(attempt, response);
+                if (attempt >= policy.getMaxAttempts() || System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(delay) > deadline) {
+                    return giveUp(response, failure);
+                }
+                boolean notReceived = throttled || failure instanceof ConnectException;
+                if (!idempotent && !notReceived && !checkable) {
+                    logger.warn("Not replaying {} {} : outcome unknown after {}", request.method(), request.url().encodedPath(), describe(response, failure));
+                    return giveUp(response, failure);
+                }
+                if (response != null) {
+                    response.close();
+                }
+                logger.warn("{} {} failed with {}, attempt {}/{}, retrying in {} ms", request.method(), request.url().encodedPath(),
+                    describe(response, failure), attempt, policy.getMaxAttempts(), delay);
+                sleep(delay);
+
+                if (!idempotent && !notReceived) {
+                    Response applied;
+                    try {
+                        applied = replayGuard.verify(chain, request, endpoint, sentAt);
+                    } catch (IOException e) {
+                        count(endpoint, "unknown");
+                        logger.warn("Not replaying {} {} : unable to check whether it was applied", request.method(), request.url().encodedPath(), e);
+                        if (failure != null) {
+                            throw failure;
+                        }
+                        throw e;
+                    }
+                    if (applied != null) {
+                        count(endpoint, "applied");
+                        breaker.onSuccess();
+                        return applied;
+                    }
+                    count(endpoint, "not_applied");
+                }
+            } finally {
+                // a trial call that ended without a verdict must not keep the breaker half open for good
+                breaker.release();
+            }
+        }
+    }
+
+    private long delayMillis(int attempt, Response response) {
+        long delay = policy.backoffMillis(attempt, ThreadLocalRandom.current().nextDouble());
+        String retryAfter = response == null ? null : response.header("Retry-After");
+        if (retryAfter != null) {
+            try {
+                delay = Math.max(delay, TimeUnit.SECONDS.toMillis(Long.parseLong(retryAfter.trim())));
+            } catch (NumberFormatException e) {
+                // HTTP dates are not used by API Manager, fall back to the backoff
+            }
+        }
+        return delay;
+    }
+
+    private void count(String endpoint, String outcome) {
+        if (metrics != null) {
+            metrics.increment(REPLAY_CHECKS, "endpoint", endpoint, "outcome", outcome);
+        }
+    }
+
+    private static Response giveUp(Response response, IOException failure) throws IOException {
+        if (response != null) {
+            return response;
+        }
+        throw failure;
+    }
+
+    private static void sleep(long millis) throws InterruptedIOException {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting to retry");
+        }
+    }
+
+    private static String describe(Response response, IOException failure) {
+        return response != null ? "status code " + response.code() : failure.toString();
+    }
+
+    private static String endpoint(Request request) {
+        Invocation invocation = request.tag(Invocation.class);
+        if (invocation != null) {
+            return invocation.method().getName();
+        }
+        return request.method() + " " + request.url().encodedPath();
+    }
+}
@@ -0,0 +1,82 @@
+package com.axway.apim.service;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Settings of the retry and circuit breaker layer of the API Manager clients.
+ */
+public class RetryPolicy {
+
+    private int maxAttempts = 4;
+    private long budgetMillis = TimeUnit.SECONDS.toMillis(60);
+    private long baseDelayMillis = 200;
+    private long maxDelayMillis = TimeUnit.SECONDS.toMillis(10);
+    private int failureThreshold = 5;
+    private long openMillis = TimeUnit.SECONDS.toMillis(30);
+
+    /**
+     * A policy that never retries and never opens the breaker.
+     */
+    public static RetryPolicy disabled() {
+        RetryPolicy policy = new RetryPolicy();
+        policy.setMaxAttempts(1);
+        policy.setFailureThreshold(Integer.MAX_VALUE);
+        return policy;
+    }
+
+    /**
+     * Full jitter backoff: a random delay between zero and the capped exponential delay of the attempt.
+     */
+    long backoffMillis(int attempt, double random) {
+        long ceiling = Math.min(maxDelayMillis, baseDelayMillis << Math.min(attempt, 20));
+        return (long) (ceiling * random);
+    }
+
+    public int getMaxAttempts() {
+        return maxAttempts;
+    }
+
+    public void setMaxAttempts(int maxAttempts) {
+        this.maxAttempts = Math.max(1, maxAttempts);
+    }
+
+    public long getBudgetMillis() {
+        return budgetMillis;
+    }
+
+    public void setBudgetMillis(long budgetMillis) {
+        this.budgetMillis = budgetMillis;
+    }
+
+    public long getBaseDelayMillis() {
+        return baseDelayMillis;
+    }
+
+    public void setBaseDelayMillis(long baseDelayMillis) {
+        this.baseDelayMillis = baseDelayMillis;
+    }
+
+    public long getMaxDelayMillis() {
+        return maxDelayMillis;
+    }
+
+    public void setMaxDelayMillis(long maxDelayMillis) {
+        this.maxDelayMillis = maxDelayMillis;
+    }
+
+    public int getFailureThreshold() {
+        return failureThreshold;
+    }
+
+    public void setFailureThreshold(int failureThreshold) {
+        this.failureThreshold = failureThreshold;
+    }
+
+    public long getOpenMillis() {
+        return openMillis;
+    }
+
+    public void setOpenMillis(long openMillis) {
+        this.openMillis = openMillis;
+    }
+}
@@ -0,0 +1,374 @@
+package com.axway.apim.service;
+
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import okhttp3.Cookie;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.crypto.AEADBadTagException;
+import javax.crypto.Cipher;
+import javax.crypto.SecretKey;
+import javax.crypto.SecretKeyFactory;
+import javax.crypto.spec.GCMParameterSpec;
+import javax.crypto.spec.PBEKeySpec;
+import javax.crypto.spec.SecretKeySpec;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Encrypted on-disk cache of API Manager sessions (cookies and CSRF token), one file per host and user, so that
+ * consecutive runs can skip the login. Entries are encrypted with AES-GCM under a key derived from a passphrase with
+ * PBKDF2; the host and user are bound to the entry as associated data. An entry that cannot be decrypted, e.g.
+ * because the passphrase changed, is treated as missing.
+ */
+public class SessionCache {
+
+    private static final Logger logger = LoggerFactory.getLogger(SessionCache.class);
+
+    private static final String SUFFIX = ".session";
+    private static final byte[] MAGIC = "APIMS1".getBytes(StandardCharsets.US_ASCII);
+    private static final int SALT_LENGTH = 16;
+    private static final int IV_LENGTH = 12;
+    private static final int TAG_BITS = 128;
+    private static final int KDF_ITERATIONS = 120_000;
+
+    private final Path directory;
+    private final SecretKey key;
+    private final SecureRandom random = new SecureRandom();
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    public SessionCache(Path directory, char[] passphrase) throws IOException {
+        this.directory = Files.createDirectories(directory);
+        restrict(directory, "rwx------");
+        this.key = deriveKey(passphrase, salt());
+    }
+
+    public Session get(String host, String username) {
+        Path file = directory.resolve(fileName(host, username));
+        try {
+            byte[] content = Files.readAllBytes(file);
+            if (content.length < MAGIC.length + IV_LENGTH || !Arrays.equals(MAGIC, Arrays.copyOf(content, MAGIC.length))) {
+                logger.warn("Ignoring session cache entry {} with unknown format", file);
+                return null;
+            }
+            Cipher cipher = Cipher.getInstance("AES/GCM/NoPadding");
+            cipher.init(Cipher.DECRYPT_MODE, key, new GCMParameterSpec(TAG_BITS, content, MAGIC.length, IV_LENGTH));
+            cipher.updateAAD(associatedData(host, username));
+            int offset = MAGIC.length + IV_LENGTH;
+            byte[] plain = cipher.doFinal(content, offset, content.length - offset);
+            return objectMapper.readValue(plain, Session.class);
+        } catch (NoSuchFileException e) {
+            return null;
+        } catch (AEADBadTagException e) {
+            logger.warn("Ignoring session cache entry for {} that cannot be decrypted with the current key", host);
+            return null;
+        } catch (IOException | GeneralSecurityException e) {
+            logger.warn("Ignoring unreadable session cache entry {}", file, e);
+            return null;
+        }
+    }
+
+    public void put(String host, String username, String csrfToken, List<Cookie> cookies) {
+        Session session = new Session();
+        session.setHost(host);
+        session.setUsername(username);
+        session.setCsrfToken(csrfToken);
+        session.setSavedAt(System.currentTimeMillis());
+        List<StoredCookie> storedCookies = new ArrayList<>();
+        for (Cookie cookie : cookies) {
+            storedCookies.add(StoredCookie.of(cookie));
+        }
+        session.setCookies(storedCookies);
+
+        Path file = directory.resolve(fileName(host, username));
+        Path temp = null;
+        try {
+            byte[] iv = new byte[IV_LENGTH];
+            random.nextBytes(iv);
+            Cipher cipher = Cipher.getInstance("AES/GCM/NoPadding");
+            cipher.init(Cipher.ENCRYPT_MODE, key, new GCMParameterSpec(TAG_BITS, iv));
+            cipher.updateAAD(associatedData(host, username));
+            byte[] encrypted = cipher.doFinal(objectMapper.writeValueAsBytes(session));
+            ByteBuffer content = ByteBuffer.allocate(MAGIC.length + IV_LENGTH + encrypted.length);
+            content.put(MAGIC).put(iv).put(encrypted);
+
+            temp = Files.createTempFile(directory, "session", ".tmp");
+            restrict(temp, "rw-------");
+            Files.write(temp, content.array());
+            move(temp, file);
+            logger.debug("Session for {} saved to cache", host);
+        } catch (IOException | GeneralSecurityException e) {
+            logger.warn("Unable to write session cache entry {}", file, e);
+            deleteQuietly(temp);
+        }
+    }
+
+    public void remove(String host, String username) {
+        try {
+            Files.deleteIfExists(directory.resolve(fileName(host, username)));
+        } catch (IOException e) {
+            logger.warn("Unable to remove session cache entry for {}", host, e);
+        }
+    }
+
+    /**
+     * Reads the salt of the cache directory, creating it on first use. Concurrent first runs may race; the loser
+     * derives a key that does not match the winner's entries and simply logs in again.
+     */
+    private byte[] salt() throws IOException {
+        Path saltFile = directory.resolve("salt");
+        try {
+            byte[] salt = Files.readAllBytes(saltFile);
+            if (salt.length == SALT_LENGTH) {
+                return salt;
+            }
+        } catch (NoSuchFileException e) {
+            // first use
+        }
+        byte[] salt = new byte[SALT_LENGTH];
+        random.nextBytes(salt);
+        Path temp = Files.createTempFile(directory, "salt", ".tmp");
+        try {
+            Files.write(temp, salt);
+            Files.move(temp, saltFile);
+        } catch (FileAlreadyExistsException e) {
+            deleteQuietly(temp);
+            return Files.readAllBytes(saltFile);
+        }
+        return salt;
+    }
+
+    private static SecretKey deriveKey(char[] passphrase, byte[] salt) {
+        try {
+            PBEKeySpec spec = new PBEKeySpec(passphrase, salt, KDF_ITERATIONS, 256);
+            byte[] encoded = SecretKeyFactory.getInstance("PBKDF2WithHmacSHA256").generateSecret(spec).getEncoded();
+            spec.clearPassword();
+            return new SecretKeySpec(encoded, "AES");
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("Unable to derive session cache key", e);
+        }
+    }
+
+    private static byte[] associatedData(String host, String username) {
+        return (host + '\n' + username).getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static void move(Path temp, Path file) throws IOException {
+        try {
+            Files.move(temp, file, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    private static void restrict(Path path, String permissions) {
+        try {
+            Files.setPosixFilePermissions(path, PosixFilePermissions.fromString(permissions));
+        } catch (UnsupportedOperationException | IOException e) {
+            logger.debug("Unable to restrict permissions of {}", path);
+        }
+    }
+
+    private static void deleteQuietly(Path path) {
+        if (path != null) {
+            try {
+                Files.deleteIfExists(path);
+            } catch (IOException ignored) {
+                // best effort
+            }
+        }
+    }
+
+    private static String fileName(String host, String username) {
+        try {
+            byte[] hash = MessageDigest.getInstance("SHA-256").digest(associatedData(host, username));
+            StringBuilder builder = new StringBuilder();
+            for (int i = 0; i < 16; i++) {
+                builder.append(String.format("%02x", hash[i]));
+            }
+            return builder.append(SUFFIX).toString();
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    @JsonIgnoreProperties(ignoreUnknown = true)
+    public static class Session {
+        private String host;
+        private String username;
+        private String csrfToken;
+        private long savedAt;
+        private List<StoredCookie> cookies = new ArrayList<>();
+
+        public List<Cookie> toCookies() {
+            long now = System.currentTimeMillis();
+            List<Cookie> result = new ArrayList<>();
+            for (StoredCookie cookie : cookies) {
+                if (cookie.getExpiresAt() > now) {
+                    result.add(cookie.toCookie());
+                }
+            }
+            return result;
+        }
+
+        public String getHost() {
+            return host;
+        }
+
+        public void setHost(String host) {
+            this.host = host;
+        }
+
+        public String getUsername() {
+            return username;
+        }
+
+        public void setUsername(String username) {
+            this.username = username;
+        }
+
+        public String getCsrfToken() {
+            return csrfToken;
+        }
+
+        public void setCsrfToken(String csrfToken) {
+            this.csrfToken = csrfToken;
+        }
+
+        public long getSavedAt() {
+            return savedAt;
+        }
+
+        public void setSavedAt(long savedAt) {
+            this.savedAt = savedAt;
+        }
+
+        public List<StoredCookie> getCookies() {
+            return cookies;
+        }
+
+        public void setCookies(List<StoredCookie> cookies) {
+            this.cookies = cookies;
+        }
+    }
+
+    @JsonIgnoreProperties(ignoreUnknown = true)
+    public static class StoredCookie {
+        private String name;
+        private String value;
+        private String domain;
+        private String path;
+        private long expiresAt;
+        private boolean secure;
+        private boolean httpOnly;
+        private boolean hostOnly;
+
+        static StoredCookie of(Cookie cookie) {
+            StoredCookie stored = new StoredCookie();
+            stored.setName(cookie.name());
+            stored.setValue(cookie.value());
+            stored.setDomain(cookie.domain());
+            stored.setPath(cookie.path());
+            stored.setExpiresAt(cookie.expiresAt());
+            stored.setSecure(cookie.secure());
+            stored.setHttpOnly(cookie.httpOnly());
+            stored.setHostOnly(cookie.hostOnly());
+            return stored;
+        }
+
+        Cookie toCookie() {
+            Cookie.Builder builder = new Cookie.Builder().name(name).value(value).path(path).expiresAt(expiresAt);
+            if (hostOnly) {
+                builder.hostOnlyDomain(domain);
+            } else {
+                builder.domain(domain);
+            }
+            if (secure) {
+                builder.secure();
+            }
+            if (httpOnly) {
+                builder.httpOnly();
+            }
+            return builder.build();
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public void setName(String name) {
+            this.name = name;
+        }
+
+        public String getValue() {
+            return value;
+        }
+
+        public void setValue(String value) {
+            this.value = value;
+        }
+
+        public String getDomain() {
+            return domain;
+        }
+
+        public void setDomain(String domain) {
+            this.domain = domain;
+        }
+
+        public String getPath() {
+            return path;
+        }
+
+        public void setPath(String path) {
+            this.path = path;
+        }
+
+        public long getExpiresAt() {
+            return expiresAt;
+        }
+
+        public void setExpiresAt(long expiresAt) {
+            this.expiresAt = expiresAt;
+        }
+
+        public boolean isSecure() {
+            return secure;
+        }
+
+        public void setSecure(boolean secure) {
+            this.secure = secure;
+        }
+
+        public boolean isHttpOnly() {
+            return httpOnly;
+        }
+
+        public void setHttpOnly(boolean httpOnly) {
+            this.httpOnly = httpOnly;
+        }
+
+        public boolean isHostOnly() {
+            return hostOnly;
+        }
+
+        public void setHostOnly(boolean hostOnly) {
+            this.hostOnly = hostOnly;
+        }
+    }
+}
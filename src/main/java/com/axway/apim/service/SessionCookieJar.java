@@ -0,0 +1,58 @@
+package com.axway.apim.service;
+
+import okhttp3.Cookie;
+import okhttp3.CookieJar;
+import okhttp3.HttpUrl;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Cookie jar of one API Manager session. Cookies are kept by name, so a response that sets one cookie does not drop
+ * the others, and expired cookies are no longer sent. The cookies can be exported and restored for the session cache.
+ */
+public class SessionCookieJar implements CookieJar {
+
+    private final Map<String, Cookie> cookies = new ConcurrentHashMap<>();
+
+    @Override
+    public void saveFromResponse(@NotNull HttpUrl httpUrl, @NotNull List<Cookie> list) {
+        for (Cookie cookie : list) {
+            cookies.put(cookie.name(), cookie);
+        }
+    }
+
+    @NotNull
+    @Override
+    public List<Cookie> loadForRequest(@NotNull HttpUrl httpUrl) {
+        long now = System.currentTimeMillis();
+        List<Cookie> result = new ArrayList<>();
+        for (Cookie cookie : cookies.values()) {
+            if (cookie.expiresAt() <= now) {
+                cookies.remove(cookie.name(), cookie);
+            } else if (cookie.matches(httpUrl)) {
+                result.add(cookie);
+            }
+        }
+        return result;
+    }
+
+    public List<Cookie> getCookies() {
+        return new ArrayList<>(cookies.values());
+    }
+
+    public void setCookies(Collection<Cookie> restored) {
+        cookies.clear();
+        for (Cookie cookie : restored) {
+            cookies.put(cookie.name(), cookie);
+        }
+    }
+
+    public void clear() {
+        cookies.clear();
+    }
+}
@@ -0,0 +1,14 @@
+package com.axway.apim.service;
+
+import java.io.IOException;
+
+/**
+ * Thrown when a call waited longer than the acquire timeout for a slot of its {@link AdaptiveLimit}. The call was never
+ * sent, so it says nothing about the health of the node and cannot have changed API Manager.
+ */
+public class SlotTimeoutException extends IOException {
+
+    public SlotTimeoutException(String message) {
+        super(message);
+    }
+}
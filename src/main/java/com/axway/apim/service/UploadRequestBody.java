@@ -0,0 +1,85 @@
+package com.axway.apim.service;
+
+import com.axway.apim.metrics.MetricsRegistry;
+import okhttp3.MediaType;
+import okhttp3.RequestBody;
+import okio.BufferedSink;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Request body that writes a buffer straight into the OkHttp sink in fixed size chunks, logging the
+ * progress of large uploads and the achieved throughput. The buffer is not consumed, so the body can be written again
+ * when OkHttp retries the request.
+ */
+public class UploadRequestBody extends RequestBody {
+
+    private static final Logger logger = LoggerFactory.getLogger(UploadRequestBody.class);
+
+    public static final String UPLOADED_BYTES = "apim_upload_bytes_total";
+    public static final String UPLOAD_SECONDS = "apim_upload_duration_seconds";
+
+    private static final int CHUNK_SIZE = 64 * 1024;
+    private static final long PROGRESS_THRESHOLD = 4 * 1024 * 1024;
+
+    private final ByteBuffer content;
+    private final MediaType mediaType;
+    private final String name;
+    private final MetricsRegistry metrics;
+
+    public UploadRequestBody(ByteBuffer content, MediaType mediaType, String name, MetricsRegistry metrics) {
+        this.content = content;
+        this.mediaType = mediaType;
+        this.name = name;
+        this.metrics = metrics;
+    }
+
+    @Nullable
+    @Override
+    public MediaType contentType() {
+        return mediaType;
+    }
+
+    @Override
+    public long contentLength() {
+        return content.remaining();
+    }
+
+    @Override
+    public void writeTo(@NotNull BufferedSink sink) throws IOException {
+        ByteBuffer buffer = content.duplicate();
+        long total = buffer.remaining();
+        long written = 0;
+        int reportedQuarter = 0;
+        long start = System.nanoTime();
+        while (buffer.hasRemaining()) {
+            int count = Math.min(CHUNK_SIZE, buffer.remaining());
+            ByteBuffer chunk = buffer.slice();
+            ((Buffer) chunk).limit(count);
+            while (chunk.hasRemaining()) {
+                sink.write(chunk);
+            }
+            ((Buffer) buffer).position(buffer.position() + count);
+            written += count;
+            if (total >= PROGRESS_THRESHOLD && written * 4 / total > reportedQuarter) {
+                reportedQuarter = (int) (written * 4 / total);
+                logger.info("Uploading {} : {}% of {} KB", name, reportedQuarter * 25, total / 1024);
+            }
+        }
+        long elapsedNanos = Math.max(1, System.nanoTime() - start);
+        double seconds = elapsedNanos / (double) TimeUnit.SECONDS.toNanos(1);
+        logger.info("Uploaded {} : {} KB in {} ms ({} KB/s)", name, total / 1024,
+            TimeUnit.NANOSECONDS.toMillis(elapsedNanos), Math.round(total / 1024.0 / seconds));
+        if (metrics != null) {
+            metrics.add(UPLOADED_BYTES, total);
+            metrics.histogram(UPLOAD_SECONDS, MetricsRegistry.LATENCY_BUCKETS).record(seconds);
+        }
+    }
+}
@@ -0,0 +1,133 @@
+package com.axway.apim;
+
+import com.axway.apim.journal.JournalEntry;
+import com.axway.apim.journal.JournalState;
+import com.axway.apim.service.APIMService;
+import okhttp3.MediaType;
+import okhttp3.OkHttpClient;
+import okhttp3.Protocol;
+import okhttp3.Request;
+import okhttp3.Response;
+import okhttp3.ResponseBody;
+import org.junit.Test;
+import retrofit2.Retrofit;
+import retrofit2.converter.jackson.JacksonConverterFactory;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class TestDeploymentRollback {
+
+    private static final MediaType JSON = MediaType.get("application/json");
+
+    private final List<String> calls = new ArrayList<>();
+
+    @Test
+    public void removesThePublishedFrontendAndTheBackend() throws IOException {
+        assertTrue(rollback(Collections.emptyMap(), "{'id':'p2','state':'published'}", JournalEntry.Step.BACKEND_CREATED, JournalEntry.Step.FRONTEND_CREATED,
+            JournalEntry.Step.PUBLISHED));
+        assertEquals(Arrays.asList("GET /proxies/p2", "POST /proxies/p2/unpublish", "DELETE /proxies/p2", "DELETE /apirepo/b2"), calls);
+    }
+
+    @Test
+    public void removesOnlyTheBackendBeforeTheFrontendWasCreated() throws IOException {
+        assertTrue(rollback(Collections.emptyMap(), "", JournalEntry.Step.BACKEND_CREATED));
+        assertEquals(Collections.singletonList("DELETE /apirepo/b2"), calls);
+    }
+
+    @Test
+    public void repeatsARollbackThatWasInterrupted() throws IOException {
+        Map<String, Integer> gone = new HashMap<>();
+        gone.put("GET /proxies/p2", 404);
+        gone.put("DELETE /apirepo/b2", 404);
+        assertTrue(rollback(gone, "", JournalEntry.Step.BACKEND_CREATED, JournalEntry.Step.FRONTEND_CREATED));
+        assertEquals(Arrays.asList("GET /proxies/p2", "DELETE /apirepo/b2"), calls);
+    }
+
+    @Test
+    public void keepsTheBackendWhenTheFrontendCannotBeRemoved() throws IOException {
+        Map<String, Integer> codes = Collections.singletonMap("DELETE /proxies/p2", 500);
+        assertFalse(rollback(codes, "{'id':'p2','state':'unpublished'}", JournalEntry.Step.BACKEND_CREATED, JournalEntry.Step.FRONTEND_CREATED));
+        assertEquals(Arrays.asList("GET /proxies/p2", "DELETE /proxies/p2"), calls);
+    }
+
+    @Test
+    public void refusesOnceTheOldAPIIsBeingRemoved() throws IOException {
+        assertFalse(rollback(Collections.emptyMap(), "", JournalEntry.Step.BACKEND_CREATED, JournalEntry.Step.FRONTEND_CREATED,
+            JournalEntry.Step.PUBLISHED, JournalEntry.Step.UPGRADED, JournalEntry.Step.OLD_API_UNPUBLISHED));
+        assertTrue(calls.isEmpty());
+    }
+
+    @Test
+    public void refusesOnceTheOldAPIMayBeDeprecated() throws IOException {
+        assertFalse(rollback(Collections.emptyMap(), "", JournalEntry.Step.BACKEND_CREATED, JournalEntry.Step.FRONTEND_CREATED,
+            JournalEntry.Step.PUBLISHED, JournalEntry.Step.UPGRADED, JournalEntry.Step.REPLICATED));
+        assertFalse(rollback(Collections.emptyMap(), "", JournalEntry.Step.BACKEND_CREATED, JournalEntry.Step.FRONTEND_CREATED,
+            JournalEntry.Step.PUBLISHED, JournalEntry.Step.UPGRADED, JournalEntry.Step.REPLICATION_TIMED_OUT, JournalEntry.Step.OLD_API_UNPUBLISHING));
+        assertTrue(calls.isEmpty());
+    }
+
+    private boolean rollback(Map<String, Integer> codes, String frontend, JournalEntry.Step... steps) throws IOException {
+        return new DeploymentRollback(service(codes, frontend)).rollback(state(steps));
+    }
+
+    private static JournalState state(JournalEntry.Step... steps) {
+        JournalState state = new JournalState();
+        JournalEntry started = new JournalEntry(JournalEntry.Step.STARTED);
+        started.setApiName("pets");
+        started.setOldAPIId("p1");
+        state.apply(started);
+        for (JournalEntry.Step step : steps) {
+            JournalEntry entry = new JournalEntry(step);
+            if (step == JournalEntry.Step.BACKEND_CREATED) {
+                entry.setNewBackendId("b2");
+            } else if (step == JournalEntry.Step.FRONTEND_CREATED) {
+                entry.setNewAPIId("p2");
+            }
+            state.apply(entry);
+        }
+        return state;
+    }
+
+    private APIMService service(Map<String, Integer> codes, String frontend) {
+        OkHttpClient client = new OkHttpClient.Builder().addInterceptor(chain -> {
+            Request request = chain.request();
+            String call = request.method() + " " + request.url().encodedPath().replace("/api/portal/v1.3", "");
+            calls.add(call);
+            int code = codes.getOrDefault(call, defaultCode(request.method()));
+            return new Response.Builder()
+                .request(request)
+                .protocol(Protocol.HTTP_1_1)
+                .code(code)
+                .message("status " + code)
+                .body(ResponseBody.create("GET".equals(request.method()) ? frontend.replace('\'', '"') : "", JSON))
+                .build();
+        }).build();
+        return new Retrofit.Builder()
+            .baseUrl("http://apim.test")
+            .client(client)
+            .addConverterFactory(JacksonConverterFactory.create())
+            .build()
+            .create(APIMService.class);
+    }
+
+    private static int defaultCode(String method) {
+        switch (method) {
+            case "GET":
+                return 200;
+            case "POST":
+                return 201;
+            default:
+                return 204;
+        }
+    }
+}
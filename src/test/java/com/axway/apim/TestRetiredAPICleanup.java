@@ -0,0 +1,142 @@
+package com.axway.apim;
+
+import com.axway.apim.metrics.MetricsRegistry;
+import com.axway.apim.service.APIMService;
+import com.fasterxml.jackson.databind.node.JsonNodeFactory;
+import okhttp3.MediaType;
+import okhttp3.OkHttpClient;
+import okhttp3.Protocol;
+import okhttp3.Request;
+import okhttp3.Response;
+import okhttp3.ResponseBody;
+import org.junit.Test;
+import retrofit2.Retrofit;
+import retrofit2.converter.jackson.JacksonConverterFactory;
+
+import java.io.IOException;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class TestRetiredAPICleanup {
+
+    private static final MediaType JSON = MediaType.get("application/json");
+    private static final long RETIRED = 1000;
+    private static final long NOT_DUE = 4102444800000L;
+
+    private final List<String> calls = new ArrayList<>();
+
+    @Test
+    public void readsRetirementDates() {
+        JsonNodeFactory nodes = JsonNodeFactory.instance;
+        assertEquals(Instant.ofEpochMilli(1700000000000L), RetiredAPICleanup.retirementDate(nodes.numberNode(1700000000000L)));
+        assertEquals(Instant.ofEpochMilli(1700000000000L), RetiredAPICleanup.retirementDate(nodes.textNode("1700000000000")));
+        assertEquals(Instant.parse("2024-03-01T10:00:00Z"), RetiredAPICleanup.retirementDate(nodes.textNode("2024-03-01T10:00:00Z")));
+        assertEquals(Instant.parse("2024-03-01T08:00:00Z"), RetiredAPICleanup.retirementDate(nodes.textNode("2024-03-01T10:00:00+02:00")));
+        assertNull(RetiredAPICleanup.retirementDate(nodes.textNode("next tuesday")));
+        assertNull(RetiredAPICleanup.retirementDate(nodes.nullNode()));
+        assertNull(RetiredAPICleanup.retirementDate(null));
+    }
+
+    @Test
+    public void removesASharedBackendWithItsLastRetiredFrontend() throws IOException {
+        List<CleanupResult> results = cleanup(Collections.emptyMap(), false, 10,
+            proxy("p1", "b1", "published", RETIRED), proxy("p2", "b1", "unpublished", RETIRED));
+        assertEquals(CleanupResult.Status.DELETED, results.get(0).getStatus());
+        assertFalse(results.get(0).getBackendDeleted());
+        assertEquals(CleanupResult.Status.DELETED, results.get(1).getStatus());
+        assertTrue(results.get(1).getBackendDeleted());
+        assertEquals(Arrays.asList("POST /proxies/p1/unpublish", "DELETE /proxies/p1", "DELETE /proxies/p2", "DELETE /apirepo/b1"), calls);
+        assertTrue(RetiredAPICleanup.isSuccessful(results));
+    }
+
+    @Test
+    public void keepsABackendThatIsStillUsed() throws IOException {
+        List<CleanupResult> results = cleanup(Collections.emptyMap(), false, 10,
+            proxy("p1", "b1", "unpublished", RETIRED), proxy("p2", "b1", "published", NOT_DUE),
+            proxy("p3", "b2", "unpublished", RETIRED), "{'id':'p4','name':'pets','apiId':'b2','state':'published'}");
+        assertEquals(3, results.size());
+        assertEquals(CleanupResult.Status.DELETED, results.get(0).getStatus());
+        assertFalse(results.get(0).getBackendDeleted());
+        assertEquals(CleanupResult.Status.NOT_DUE, results.get(1).getStatus());
+        assertEquals(CleanupResult.Status.DELETED, results.get(2).getStatus());
+        assertFalse(results.get(2).getBackendDeleted());
+        assertEquals(Arrays.asList("DELETE /proxies/p1", "DELETE /proxies/p3"), calls);
+    }
+
+    @Test
+    public void dryRunOnlyPlans() throws IOException {
+        List<CleanupResult> results = cleanup(Collections.emptyMap(), true, 10,
+            proxy("p1", "b1", "published", RETIRED), proxy("p2", "b1", "published", RETIRED), proxy("p3", "b2", "published", NOT_DUE));
+        assertEquals(CleanupResult.Status.PLANNED, results.get(0).getStatus());
+        assertTrue(results.get(0).getMessage().contains("backend API is used"));
+        assertEquals(CleanupResult.Status.PLANNED, results.get(1).getStatus());
+        assertEquals("Frontend and backend API would be removed", results.get(1).getMessage());
+        assertEquals(CleanupResult.Status.NOT_DUE, results.get(2).getStatus());
+        assertTrue(calls.isEmpty());
+    }
+
+    @Test
+    public void stopsAfterABatchInWhichEveryRemovalFailed() throws IOException {
+        Map<String, Integer> codes = Collections.singletonMap("DELETE /proxies/p1", 500);
+        List<CleanupResult> results = cleanup(codes, false, 1,
+            proxy("p1", "b1", "unpublished", RETIRED), proxy("p2", "b2", "unpublished", RETIRED), proxy("p3", "b3", "unpublished", RETIRED));
+        assertEquals(CleanupResult.Status.FAILED, results.get(0).getStatus());
+        assertEquals(CleanupResult.Status.SKIPPED, results.get(1).getStatus());
+        assertEquals(CleanupResult.Status.SKIPPED, results.get(2).getStatus());
+        assertEquals(Collections.singletonList("DELETE /proxies/p1"), calls);
+        assertFalse(RetiredAPICleanup.isSuccessful(results));
+    }
+
+    @Test
+    public void continuesAfterABatchWithSomeFailures() throws IOException {
+        Map<String, Integer> codes = Collections.singletonMap("DELETE /proxies/p1", 500);
+        List<CleanupResult> results = cleanup(codes, false, 2,
+            proxy("p1", "b1", "unpublished", RETIRED), proxy("p2", "b2", "unpublished", RETIRED), proxy("p3", "b3", "unpublished", RETIRED));
+        assertEquals(CleanupResult.Status.FAILED, results.get(0).getStatus());
+        assertEquals(CleanupResult.Status.DELETED, results.get(1).getStatus());
+        assertEquals(CleanupResult.Status.DELETED, results.get(2).getStatus());
+    }
+
+    private List<CleanupResult> cleanup(Map<String, Integer> codes, boolean dryRun, int batchSize, String... proxies) throws IOException {
+        String list = ("[" + String.join(",", proxies) + "]").replace('\'', '"');
+        OkHttpClient client = new OkHttpClient.Builder().addInterceptor(chain -> {
+            Request request = chain.request();
+            String call = request.method() + " " + request.url().encodedPath().replace("/api/portal/v1.3", "");
+            String body = "";
+            if ("GET /proxies".equals(call)) {
+                body = list;
+            } else {
+                calls.add(call);
+            }
+            int code = codes.getOrDefault(call, "GET".equals(request.method()) ? 200 : "POST".equals(request.method()) ? 201 : 204);
+            return new Response.Builder()
+                .request(request)
+                .protocol(Protocol.HTTP_1_1)
+                .code(code)
+                .message("status " + code)
+                .body(ResponseBody.create(body, JSON))
+                .build();
+        }).build();
+        APIMService apimService = new Retrofit.Builder()
+            .baseUrl("http://apim.test")
+            .client(client)
+            .addConverterFactory(JacksonConverterFactory.create())
+            .build()
+            .create(APIMService.class);
+        return new RetiredAPICleanup(apimService, 0, 1, batchSize, 0, dryRun, new MetricsRegistry()).cleanup(null, null);
+    }
+
+    private static String proxy(String id, String backendId, String state, long retirementDate) {
+        return "{'id':'" + id + "','name':'pets','apiId':'" + backendId + "','state':'" + state + "','deprecated':true,'retirementDate':"
+            + retirementDate + "}";
+    }
+}
@@ -0,0 +1,140 @@
+package com.axway.apim.journal;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class TestDeploymentJournal {
+
+    private static final String URL = "https://apim.test:8075";
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void resumesFromTheLastCompletedStep() throws IOException {
+        DeploymentJournal deploymentJournal = new DeploymentJournal(folder.getRoot().toPath());
+        try (Journal journal = deploymentJournal.open(URL, "pets")) {
+            assertNull(journal.getState());
+            journal.append(started());
+            journal.append(entry(JournalEntry.Step.BACKEND_CREATED, "b2", null));
+            journal.append(entry(JournalEntry.Step.FRONTEND_CREATED, null, "p2"));
+        }
+        try (Journal journal = deploymentJournal.open(URL, "pets")) {
+            JournalState state = journal.getState();
+            assertEquals(JournalEntry.Step.FRONTEND_CREATED, state.getLastStep());
+            assertTrue(state.isDone(JournalEntry.Step.BACKEND_CREATED));
+            assertFalse(state.isDone(JournalEntry.Step.PUBLISHED));
+            assertEquals("digest", state.getDigest());
+            assertEquals("p1", state.getOldAPIId());
+            assertEquals("b2", state.getNewBackendId());
+            assertEquals("p2", state.getNewAPIId());
+        }
+    }
+
+    @Test
+    public void dropsAnEntryCutShortByACrash() throws IOException {
+        DeploymentJournal deploymentJournal = new DeploymentJournal(folder.getRoot().toPath());
+        Path file;
+        try (Journal journal = deploymentJournal.open(URL, "pets")) {
+            journal.append(started());
+            journal.append(entry(JournalEntry.Step.BACKEND_CREATED, "b2", null));
+            file = journal.getFile();
+        }
+        long complete = Files.size(file);
+        Files.write(file, "{\"step\":\"FRONTEND_CREATED\",\"newAP".getBytes(StandardCharsets.UTF_8), StandardOpenOption.APPEND);
+        try (Journal journal = deploymentJournal.open(URL, "pets")) {
+            assertEquals(JournalEntry.Step.BACKEND_CREATED, journal.getState().getLastStep());
+            assertNull(journal.getState().getNewAPIId());
+            assertEquals(complete, Files.size(file));
+            journal.append(entry(JournalEntry.Step.FRONTEND_CREATED, null, "p2"));
+        }
+        try (Journal journal = deploymentJournal.open(URL, "pets")) {
+            assertEquals("p2", journal.getState().getNewAPIId());
+        }
+    }
+
+    @Test
+    public void resetDiscardsARolledBackDeployment() throws IOException {
+        DeploymentJournal deploymentJournal = new DeploymentJournal(folder.getRoot().toPath());
+        try (Journal journal = deploymentJournal.open(URL, "pets")) {
+            journal.append(started());
+            journal.append(entry(JournalEntry.Step.BACKEND_CREATED, "b2", null));
+            journal.reset();
+            assertNull(journal.getState());
+            journal.append(started());
+        }
+        try (Journal journal = deploymentJournal.open(URL, "pets")) {
+            assertEquals(JournalEntry.Step.STARTED, journal.getState().getLastStep());
+            assertNull(journal.getState().getNewBackendId());
+        }
+    }
+
+    @Test
+    public void listsOnlyPendingDeployments() throws IOException {
+        DeploymentJournal deploymentJournal = new DeploymentJournal(folder.getRoot().toPath());
+        try (Journal journal = deploymentJournal.open(URL, "pets")) {
+            journal.append(started());
+        }
+        Journal finished = deploymentJournal.open(URL, "stores");
+        finished.append(started());
+        finished.complete();
+        deploymentJournal.open(URL, "empty").close();
+
+        List<Journal> pending = deploymentJournal.openPending();
+        try {
+            assertEquals(1, pending.size());
+            assertEquals("pets", pending.get(0).getState().getApiName());
+        } finally {
+            for (Journal journal : pending) {
+                journal.close();
+            }
+        }
+        assertEquals(1, folder.getRoot().list().length);
+    }
+
+    @Test
+    public void refusesAJournalInUse() throws IOException {
+        DeploymentJournal deploymentJournal = new DeploymentJournal(folder.getRoot().toPath());
+        try (Journal journal = deploymentJournal.open(URL, "pets")) {
+            journal.append(started());
+            try {
+                deploymentJournal.open(URL, "pets");
+                fail("The journal is held by another deployment");
+            } catch (IOException e) {
+                assertTrue(e.getMessage().contains("in use"));
+            }
+            assertTrue(deploymentJournal.openPending().isEmpty());
+        }
+    }
+
+    private static JournalEntry started() {
+        JournalEntry entry = new JournalEntry(JournalEntry.Step.STARTED);
+        entry.setUrl(URL);
+        entry.setApiName("pets");
+        entry.setDigest("digest");
+        entry.setOldAPIId("p1");
+        entry.setOldBackendId("b1");
+        return entry;
+    }
+
+    private static JournalEntry entry(JournalEntry.Step step, String newBackendId, String newAPIId) {
+        JournalEntry entry = new JournalEntry(step);
+        entry.setNewBackendId(newBackendId);
+        entry.setNewAPIId(newAPIId);
+        return entry;
+    }
+}
@@ -0,0 +1,91 @@
+package com.axway.apim.openapi;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class TestOpenAPIDiff {
+
+    private static final String SPEC = "{'swagger':'2.0','info':{'title':'pets','version':'1'},'paths':{'/pets':{'get':{"
+        + "'summary':'list','parameters':[{'name':'limit','in':'query','type':'integer'},{'name':'tag','in':'query','type':'string'}],"
+        + "'responses':{'200':{'description':'ok'}}}}}}";
+
+    @Test
+    public void equalDocumentsHaveNoChanges() throws IOException {
+        SpecDiff diff = compare(SPEC, SPEC);
+        assertTrue(diff.getChanges().isEmpty());
+        assertNull(diff.getSeverity());
+    }
+
+    @Test
+    public void documentationChangesAreCosmetic() throws IOException {
+        SpecDiff diff = compare(SPEC, SPEC.replace("'summary':'list'", "'summary':'list all pets'"));
+        assertEquals(ChangeType.COSMETIC, diff.getSeverity());
+        assertEquals("/paths/~1pets/get/summary", diff.getChanges().get(0).getLocation());
+        assertFalse(diff.requiresRedeploy(ChangeType.ADDITIVE));
+        assertTrue(diff.requiresRedeploy(ChangeType.COSMETIC));
+    }
+
+    @Test
+    public void newOperationsAndOptionalParametersAreAdditive() throws IOException {
+        assertEquals(ChangeType.ADDITIVE, compare(SPEC, SPEC.replace("'/pets':{", "'/pets':{'post':{'responses':{}},")).getSeverity());
+        assertEquals(ChangeType.ADDITIVE, compare(SPEC, SPEC.replace("'parameters':[", "'parameters':[{'name':'page','in':'query'},")).getSeverity());
+    }
+
+    @Test
+    public void removalsAndNewConstraintsAreBreaking() throws IOException {
+        SpecDiff removed = compare(SPEC, SPEC.replace("{'name':'tag','in':'query','type':'string'}", "{'name':'tag','in':'header','type':'string'}"));
+        assertEquals(ChangeType.BREAKING, removed.getSeverity());
+        assertEquals(2, removed.getChanges().size());
+        assertEquals(ChangeType.BREAKING, compare(SPEC, SPEC.replace("'parameters':[", "'parameters':[{'name':'page','in':'query','required':true},")).getSeverity());
+        assertEquals(ChangeType.BREAKING, compare(SPEC, SPEC.replace("'type':'integer'", "'type':'string'")).getSeverity());
+        assertTrue(compare(SPEC, SPEC.replace("'type':'integer'", "'type':'string'")).requiresRedeploy(ChangeType.BREAKING));
+    }
+
+    @Test
+    public void reorderedParametersAreNotAChange() throws IOException {
+        String reordered = SPEC.replace("{'name':'limit','in':'query','type':'integer'},{'name':'tag','in':'query','type':'string'}",
+            "{'name':'tag','in':'query','type':'string'},{'name':'limit','in':'query','type':'integer'}");
+        assertTrue(compare(SPEC, reordered).getChanges().isEmpty());
+    }
+
+    @Test
+    public void emptyDiffOfDifferentDigestsIsCosmetic() throws IOException {
+        String reordered = SPEC.replace("{'name':'limit','in':'query','type':'integer'},{'name':'tag','in':'query','type':'string'}",
+            "{'name':'tag','in':'query','type':'string'},{'name':'limit','in':'query','type':'integer'}");
+        File spec = File.createTempFile("spec", ".json");
+        try {
+            Files.write(spec.toPath(), json(reordered).getBytes(StandardCharsets.UTF_8));
+            SpecFile specFile = SpecFile.read(spec);
+            SpecComparison comparison = SpecComparison.compare("pets", stream(SPEC), specFile,
+                SpecDigest.digest(specFile.openStream()), ChangeType.ADDITIVE, null);
+            assertEquals(ChangeType.COSMETIC, comparison.getDiff().getSeverity());
+            assertFalse(comparison.getDiff().requiresRedeploy(ChangeType.ADDITIVE));
+        } finally {
+            Files.delete(spec.toPath());
+        }
+    }
+
+    private static SpecDiff compare(String oldSpec, String newSpec) throws IOException {
+        ObjectMapper objectMapper = new ObjectMapper();
+        return OpenAPIDiff.compare(objectMapper.readTree(json(oldSpec)), objectMapper.readTree(json(newSpec)));
+    }
+
+    private static ByteArrayInputStream stream(String spec) {
+        return new ByteArrayInputStream(json(spec).getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static String json(String spec) {
+        return spec.replace('\'', '"');
+    }
+}
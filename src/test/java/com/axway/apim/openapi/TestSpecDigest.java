@@ -0,0 +1,58 @@
+package com.axway.apim.openapi;
+
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+
+public class TestSpecDigest {
+
+    @Test
+    public void ignoresMemberOrder() throws IOException {
+        assertEquals(digest("{'a':1,'b':{'c':true,'d':null}}"), digest("{'b':{'d':null,'c':true},'a':1}"));
+    }
+
+    @Test
+    public void keepsArrayOrder() throws IOException {
+        assertNotEquals(digest("{'a':[1,2]}"), digest("{'a':[2,1]}"));
+    }
+
+    @Test
+    public void comparesNumbersByValue() throws IOException {
+        assertEquals(digest("{'a':1.50}"), digest("{'a':1.5}"));
+        assertNotEquals(digest("{'a':1}"), digest("{'a':'1'}"));
+    }
+
+    @Test
+    public void separatesMemberNamesFromValues() throws IOException {
+        assertNotEquals(digest("{'ab':'c'}"), digest("{'a':'bc'}"));
+        assertNotEquals(digest("{'a':{}}"), digest("{'a':[]}"));
+    }
+
+    @Test
+    public void reusesLevelsAfterDeeperSiblings() throws IOException {
+        // the first member leaves deeper levels behind that the second one reuses
+        assertEquals(digest("{'a':{'b':{'c':{'d':1}}},'e':{'f':2}}"), digest("{'e':{'f':2},'a':{'b':{'c':{'d':1}}}}"));
+        assertNotEquals(digest("{'a':[[1],[2]]}"), digest("{'a':[[1,2]]}"));
+        assertNotEquals(digest("{'a':[{'x':{'y':1}},{'x':{'y':2}}]}"), digest("{'a':[{'x':{'y':2}},{'x':{'y':1}}]}"));
+    }
+
+    @Test
+    public void nestingDoesNotLeakBetweenSiblings() throws IOException {
+        assertNotEquals(digest("[{'a':{'b':1}},{'c':2}]"), digest("[{'a':{'b':1},'c':2}]"));
+        assertEquals(digest("[{'a':{'b':1}},{'c':2}]"), digest("[{'a':{'b':1}},{'c':2}]"));
+    }
+
+    @Test(expected = IOException.class)
+    public void rejectsTrailingContent() throws IOException {
+        digest("{'a':1} {'b':2}");
+    }
+
+    private static String digest(String json) throws IOException {
+        return SpecDigest.digest(new ByteArrayInputStream(json.replace('\'', '"').getBytes(StandardCharsets.UTF_8)));
+    }
+}
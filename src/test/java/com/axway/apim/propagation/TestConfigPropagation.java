@@ -0,0 +1,143 @@
+package com.axway.apim.propagation;
+
+import com.axway.apim.service.API;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.Collections;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class TestConfigPropagation {
+
+    private static final ObjectMapper objectMapper = new ObjectMapper();
+
+    private static final String OLD = "{'id':'p1','apiId':'b1','path':'/pets','tags':{'team':['a']},"
+        + "'securityProfiles':[{'name':'_default','devices':[{'type':'apiKey'}]}],"
+        + "'outboundProfiles':{'_default':{'authenticationProfile':'basic'},'getPets':{'authenticationProfile':'oauth'}}}";
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void identicalPropagationIsNotAChange() throws IOException {
+        ConfigPropagation.Propagation propagation = new ConfigPropagation().propagate(api(OLD),
+            api(OLD.replace("'id':'p1','apiId':'b1'", "'id':'p2','apiId':'b2'")));
+        assertFalse(propagation.isChanged());
+        assertTrue(propagation.getChanges().isEmpty());
+        assertEquals("p2", propagation.getApi().getId());
+        assertEquals("b2", propagation.getApi().getApiId());
+    }
+
+    @Test
+    public void changedDefaultSecurityProfileIsAChange() throws IOException {
+        API newAPI = api("{'id':'p2','path':'/pets','securityProfiles':[{'name':'_default','devices':[{'type':'passThrough'}]}],"
+            + "'outboundProfiles':{'_default':{'authenticationProfile':'basic'},'getPets':{'authenticationProfile':'oauth'}}}");
+        ConfigPropagation.Propagation propagation = new ConfigPropagation().propagate(api(OLD), newAPI);
+        assertTrue(propagation.isChanged());
+        assertEquals(Collections.singletonList("securityProfiles[_default]"), propagation.getChanges());
+        assertEquals("apiKey", propagation.getApi().getSecurityProfiles().get(0).path("devices").path(0).path("type").asText());
+        assertEquals("passThrough", newAPI.getSecurityProfiles().get(0).path("devices").path(0).path("type").asText());
+    }
+
+    @Test
+    public void diffListsChangedKeysElementsAndFields() throws IOException {
+        API newAPI = api("{'id':'p2','path':'/v2/pets','securityProfiles':[{'name':'_default','devices':[{'type':'apiKey'}]},{'devices':[]}],"
+            + "'outboundProfiles':{'_default':{'authenticationProfile':'none'}}}");
+        ConfigPropagation.Propagation propagation = new ConfigPropagation().propagate(api(OLD), newAPI);
+        assertEquals(Arrays.asList("path", "securityProfiles[1]", "outboundProfiles._default", "outboundProfiles.getPets"),
+            propagation.getChanges());
+    }
+
+    @Test
+    public void absentOldFieldsLeaveTheNewAPIAlone() throws IOException {
+        ConfigPropagation.Propagation propagation = new ConfigPropagation().propagate(api("{'id':'p1'}"),
+            api("{'id':'p2','path':'/pets','outboundProfiles':{'_default':{'authenticationProfile':'basic'}}}"));
+        assertFalse(propagation.isChanged());
+        assertEquals("/pets", propagation.getApi().getPath());
+    }
+
+    @Test
+    public void registeredStrategiesApplyPerField() throws IOException {
+        ConfigPropagation configPropagation = new ConfigPropagation();
+        configPropagation.register("tags", StandardCopyStrategy.MERGE);
+        configPropagation.register("outboundProfiles", StandardCopyStrategy.SKIP);
+        configPropagation.register("securityProfiles", StandardCopyStrategy.MERGE);
+        API newAPI = api("{'id':'p2','path':'/pets','tags':{'env':['b']},'securityProfiles':[{'name':'_default','devices':[]}],"
+            + "'outboundProfiles':{'_default':{'authenticationProfile':'none'}}}");
+        ConfigPropagation.Propagation propagation = configPropagation.propagate(api(OLD), newAPI);
+        // the changes follow the order of the fields, the default ones first
+        assertEquals(Arrays.asList("securityProfiles[_default]", "securityProfiles[_default]", "tags.team"), propagation.getChanges());
+        API api = propagation.getApi();
+        assertEquals(json("{'env':['b'],'team':['a']}"), objectMapper.valueToTree(api).get("tags"));
+        assertEquals(2, api.getSecurityProfiles().size());
+        assertEquals("none", api.getOutboundProfiles().get("_default").path("authenticationProfile").asText());
+    }
+
+    @Test
+    public void removesAFieldTheStrategyReturnsNoValueFor() throws IOException {
+        ConfigPropagation configPropagation = new ConfigPropagation();
+        configPropagation.register("outboundProfiles", (oldValue, newValue) -> null);
+        ConfigPropagation.Propagation propagation = configPropagation.propagate(api(OLD), api(OLD));
+        assertNull(propagation.getApi().getOutboundProfiles());
+        assertEquals(Collections.singletonList("outboundProfiles"), propagation.getChanges());
+    }
+
+    @Test
+    public void rejectsReservedFields() throws IOException {
+        for (String field : Arrays.asList("id", "apiId", "organizationId", "state")) {
+            try {
+                new ConfigPropagation().register(field, StandardCopyStrategy.REPLACE);
+                fail("The field " + field + " is reserved");
+            } catch (IllegalArgumentException e) {
+                assertTrue(e.getMessage().contains(field));
+            }
+        }
+        try {
+            ConfigPropagation.read(config("{'fields':{'tags':'merge','apiId':'REPLACE'}}"));
+            fail("The field apiId is reserved");
+        } catch (IOException e) {
+            assertTrue(e.getMessage().contains("apiId"));
+        }
+    }
+
+    @Test
+    public void readsTheConfig() throws IOException {
+        ConfigPropagation configPropagation = ConfigPropagation.read(config("{'fields':{'tags':'merge','inboundProfiles':'SKIP'}}"));
+        assertEquals(StandardCopyStrategy.MERGE, configPropagation.getFields().get("tags"));
+        assertEquals(StandardCopyStrategy.SKIP, configPropagation.getFields().get("inboundProfiles"));
+        assertEquals(StandardCopyStrategy.REPLACE, configPropagation.getFields().get("path"));
+        try {
+            ConfigPropagation.read(config("{'fields':{'tags':'APPEND'}}"));
+            fail("APPEND is no copy strategy");
+        } catch (IOException e) {
+            assertTrue(e.getMessage().contains("APPEND"));
+        }
+    }
+
+    private File config(String json) throws IOException {
+        File config = folder.newFile();
+        Files.write(config.toPath(), json.replace('\'', '"').getBytes(StandardCharsets.UTF_8));
+        return config;
+    }
+
+    private static API api(String json) throws IOException {
+        return objectMapper.readValue(json.replace('\'', '"'), API.class);
+    }
+
+    private static JsonNode json(String json) throws IOException {
+        return objectMapper.readTree(json.replace('\'', '"'));
+    }
+}
@@ -0,0 +1,56 @@
+package com.axway.apim.propagation;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.Test;
+
+import java.io.IOException;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+public class TestStandardCopyStrategy {
+
+    private static final ObjectMapper objectMapper = new ObjectMapper();
+
+    @Test
+    public void replaceTakesTheOldValue() throws IOException {
+        assertEquals(json("{'a':1}"), StandardCopyStrategy.REPLACE.copy(json("{'a':1}"), json("{'a':2,'b':3}")));
+        assertEquals(json("['x']"), StandardCopyStrategy.REPLACE.copy(json("['x']"), json("['y','z']")));
+        assertEquals(json("{'a':2}"), StandardCopyStrategy.REPLACE.copy(null, json("{'a':2}")));
+        assertEquals(json("{'a':1}"), StandardCopyStrategy.REPLACE.copy(json("{'a':1}"), null));
+        assertNull(StandardCopyStrategy.REPLACE.copy(null, null));
+    }
+
+    @Test
+    public void mergePutsOldEntriesOnTopOfNewOnes() throws IOException {
+        JsonNode newValue = json("{'a':2,'b':3}");
+        assertEquals(json("{'a':1,'b':3,'c':4}"), StandardCopyStrategy.MERGE.copy(json("{'a':1,'c':4}"), newValue));
+        assertEquals(json("{'a':2,'b':3}"), newValue);
+    }
+
+    @Test
+    public void mergeAppendsNewArrayElements() throws IOException {
+        assertEquals(json("['x',{'n':1},'y']"), StandardCopyStrategy.MERGE.copy(json("['x',{'n':1}]"), json("[{'n':1},'y','x']")));
+    }
+
+    @Test
+    public void mergeReplacesOtherValues() throws IOException {
+        assertEquals(json("'old'"), StandardCopyStrategy.MERGE.copy(json("'old'"), json("'new'")));
+        assertEquals(json("['x']"), StandardCopyStrategy.MERGE.copy(json("['x']"), json("{'a':1}")));
+        assertEquals(json("{'a':1}"), StandardCopyStrategy.MERGE.copy(null, json("{'a':1}")));
+        assertEquals(json("['x']"), StandardCopyStrategy.MERGE.copy(json("['x']"), null));
+        assertNull(StandardCopyStrategy.MERGE.copy(null, null));
+    }
+
+    @Test
+    public void skipKeepsTheNewValue() throws IOException {
+        assertEquals(json("{'a':2}"), StandardCopyStrategy.SKIP.copy(json("{'a':1}"), json("{'a':2}")));
+        assertEquals(json("['y']"), StandardCopyStrategy.SKIP.copy(json("['x']"), json("['y']")));
+        assertNull(StandardCopyStrategy.SKIP.copy(json("{'a':1}"), null));
+    }
+
+    private static JsonNode json(String json) throws IOException {
+        return objectMapper.readTree(json.replace('\'', '"'));
+    }
+}
@@ -0,0 +1,144 @@
+package com.axway.apim.service;
+
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class TestAdaptiveLimit {
+
+    @Test
+    public void startsAtHalfTheMaximum() {
+        assertEquals(2, limit(4).getLimit());
+        assertEquals(1, limit(1).getLimit());
+    }
+
+    @Test
+    public void growsOnlyWhileTheLimitIsUsed() throws IOException {
+        AdaptiveLimit limit = limit(20);
+        for (int i = 0; i < 10; i++) {
+            limit.release("listFrontendAPIs", limit.acquire(), AdaptiveLimit.Outcome.SUCCESS);
+        }
+        assertEquals(10, limit.getLimit());
+
+        AdaptiveLimit saturated = limit(4);
+        for (int i = 0; i < 3; i++) {
+            callConcurrently(saturated, 2);
+        }
+        // 2 + 1/2 + 1/2.5 + 1/2.9, each time the first of the two calls returns
+        assertEquals(3, saturated.getLimit());
+        for (int i = 0; i < 20; i++) {
+            callConcurrently(saturated, 3);
+        }
+        assertEquals(4, saturated.getLimit());
+    }
+
+    @Test
+    public void backsOffOnOverload() throws IOException {
+        AdaptiveLimit limit = limit(20);
+        limit.release("createFrontend", limit.acquire(), AdaptiveLimit.Outcome.OVERLOAD);
+        assertEquals(5, limit.getLimit());
+        limit.release("createFrontend", limit.acquire(), AdaptiveLimit.Outcome.ERROR);
+        assertEquals(5, limit.getLimit());
+    }
+
+    @Test
+    public void countsABurstOfRejectedCallsOnce() throws IOException {
+        AdaptiveLimit limit = limit(20);
+        long first = limit.acquire();
+        long second = limit.acquire();
+        long third = limit.acquire();
+        limit.release("createFrontend", first, AdaptiveLimit.Outcome.OVERLOAD);
+        limit.release("createFrontend", second, AdaptiveLimit.Outcome.OVERLOAD);
+        limit.release("createFrontend", third, AdaptiveLimit.Outcome.OVERLOAD);
+        assertEquals(5, limit.getLimit());
+        limit.release("createFrontend", limit.acquire(), AdaptiveLimit.Outcome.OVERLOAD);
+        assertEquals(2, limit.getLimit());
+    }
+
+    @Test
+    public void backsOffWhenTheLatencyRises() throws IOException, InterruptedException {
+        AdaptiveLimit limit = limit(20);
+        for (int i = 0; i < 5; i++) {
+            limit.release("listFrontendAPIs", limit.acquire(), AdaptiveLimit.Outcome.SUCCESS);
+        }
+        int calls = 0;
+        while (limit.getLimit() == 10 && calls++ < 20) {
+            long sentAt = limit.acquire();
+            Thread.sleep(50);
+            limit.release("listFrontendAPIs", sentAt, AdaptiveLimit.Outcome.SUCCESS);
+        }
+        assertEquals(9, limit.getLimit());
+    }
+
+    @Test
+    public void timesOutWaitingForASlot() throws IOException {
+        ConcurrencyPolicy policy = policy(ConcurrencyPolicy.EndpointClass.READ, 1);
+        policy.setAcquireTimeoutMillis(50);
+        AdaptiveLimit limit = new AdaptiveLimit("node", ConcurrencyPolicy.EndpointClass.READ, policy, null);
+        limit.acquire();
+        try {
+            limit.acquire();
+            fail("No slot is free");
+        } catch (SlotTimeoutException e) {
+            assertEquals(1, limit.getInFlight());
+        }
+    }
+
+    @Test
+    public void slotTimeoutIsNotAFailureOfTheNode() throws IOException {
+        ConcurrencyPolicy policy = policy(ConcurrencyPolicy.EndpointClass.READ, 1);
+        policy.setAcquireTimeoutMillis(50);
+        ConcurrencyLimitInterceptor concurrencyLimit = new ConcurrencyLimitInterceptor("node", policy, null);
+        for (AdaptiveLimit limit : concurrencyLimit.getLimits()) {
+            limit.acquire();
+        }
+        RetryPolicy retryPolicy = new RetryPolicy();
+        retryPolicy.setFailureThreshold(1);
+        retryPolicy.setBaseDelayMillis(0);
+        CircuitBreaker breaker = new CircuitBreaker("node", retryPolicy, null);
+        AtomicInteger sent = new AtomicInteger();
+        OkHttpClient client = new OkHttpClient.Builder()
+            .addInterceptor(new RetryInterceptor(breaker, retryPolicy, null))
+            .addInterceptor(concurrencyLimit)
+            .addInterceptor(chain -> {
+                sent.incrementAndGet();
+                throw new IOException("not expected");
+            })
+            .build();
+        try {
+            client.newCall(new Request.Builder().url("http://apim.test/api/portal/v1.3/proxies").build()).execute();
+            fail("No slot is free");
+        } catch (SlotTimeoutException e) {
+            assertTrue(e.getMessage().contains("READ"));
+        }
+        assertEquals(0, sent.get());
+        assertEquals(CircuitBreaker.State.CLOSED, breaker.getState());
+    }
+
+    private static void callConcurrently(AdaptiveLimit limit, int calls) throws IOException {
+        long[] sentAt = new long[calls];
+        for (int i = 0; i < calls; i++) {
+            sentAt[i] = limit.acquire();
+        }
+        for (int i = 0; i < calls; i++) {
+            limit.release("listFrontendAPIs", sentAt[i], AdaptiveLimit.Outcome.SUCCESS);
+        }
+    }
+
+    private static AdaptiveLimit limit(int maxLimit) {
+        return new AdaptiveLimit("node", ConcurrencyPolicy.EndpointClass.WRITE, policy(ConcurrencyPolicy.EndpointClass.WRITE, maxLimit), null);
+    }
+
+    private static ConcurrencyPolicy policy(ConcurrencyPolicy.EndpointClass endpointClass, int maxLimit) {
+        ConcurrencyPolicy policy = new ConcurrencyPolicy();
+        policy.setMaxLimit(endpointClass, maxLimit);
+        return policy;
+    }
+}
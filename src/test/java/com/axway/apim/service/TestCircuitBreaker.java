@@ -0,0 +1,78 @@
+package com.axway.apim.service;
+
+import org.junit.Test;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class TestCircuitBreaker {
+
+    @Test
+    public void opensAfterConsecutiveFailures() {
+        CircuitBreaker breaker = breaker(2, 60000);
+        breaker.onFailure();
+        breaker.onSuccess();
+        breaker.onFailure();
+        assertEquals(CircuitBreaker.State.CLOSED, breaker.getState());
+        breaker.onFailure();
+        assertEquals(CircuitBreaker.State.OPEN, breaker.getState());
+        assertFalse(breaker.allowRequest());
+    }
+
+    @Test
+    public void letsOneTrialThroughWhenHalfOpen() {
+        CircuitBreaker breaker = breaker(1, 0);
+        breaker.onFailure();
+        assertTrue(breaker.allowRequest());
+        assertEquals(CircuitBreaker.State.HALF_OPEN, breaker.getState());
+        assertFalse(breaker.allowRequest());
+        breaker.onSuccess();
+        assertEquals(CircuitBreaker.State.CLOSED, breaker.getState());
+        assertTrue(breaker.allowRequest());
+    }
+
+    @Test
+    public void reopensWhenTheTrialFails() {
+        CircuitBreaker breaker = breaker(1, 0);
+        breaker.onFailure();
+        assertTrue(breaker.allowRequest());
+        breaker.onFailure();
+        assertEquals(CircuitBreaker.State.OPEN, breaker.getState());
+        assertEquals(2, breaker.getTimesOpened());
+    }
+
+    @Test
+    public void releasedTrialLetsTheNextCallThrough() {
+        CircuitBreaker breaker = breaker(1, 0);
+        breaker.onFailure();
+        assertTrue(breaker.allowRequest());
+        breaker.release();
+        assertEquals(CircuitBreaker.State.HALF_OPEN, breaker.getState());
+        assertTrue(breaker.allowRequest());
+    }
+
+    @Test
+    public void onlyTheTrialThreadReleasesTheTrial() throws InterruptedException {
+        CircuitBreaker breaker = breaker(1, 0);
+        breaker.onFailure();
+        assertTrue(breaker.allowRequest());
+        AtomicBoolean allowed = new AtomicBoolean(true);
+        Thread other = new Thread(() -> {
+            breaker.release();
+            allowed.set(breaker.allowRequest());
+        });
+        other.start();
+        other.join();
+        assertFalse(allowed.get());
+    }
+
+    private static CircuitBreaker breaker(int failureThreshold, long openMillis) {
+        RetryPolicy policy = new RetryPolicy();
+        policy.setFailureThreshold(failureThreshold);
+        policy.setOpenMillis(openMillis);
+        return new CircuitBreaker("node", policy, null);
+    }
+}
@@ -0,0 +1,147 @@
+package com.axway.apim.service;
+
+import okhttp3.Interceptor;
+import okhttp3.MediaType;
+import okhttp3.OkHttpClient;
+import okhttp3.Protocol;
+import okhttp3.Request;
+import okhttp3.RequestBody;
+import okhttp3.Response;
+import okhttp3.ResponseBody;
+import org.junit.Test;
+import retrofit2.Invocation;
+
+import java.io.IOException;
+import java.util.Collections;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class TestRetryInterceptor {
+
+    private static final MediaType JSON = MediaType.get("application/json");
+    private static final String PROXIES = "http://apim.test/api/portal/v1.3/proxies";
+
+    @Test
+    public void throttledTrialReleasesTheBreaker() throws IOException {
+        CircuitBreaker breaker = halfOpenBreaker();
+        try (Response response = execute(breaker, 1, new Request.Builder().url(PROXIES).build(), chain -> respond(chain, 429, ""))) {
+            assertEquals(429, response.code());
+        }
+        assertEquals(CircuitBreaker.State.HALF_OPEN, breaker.getState());
+        assertTrue(breaker.allowRequest());
+    }
+
+    @Test
+    public void trialWithFailedReadBackReleasesTheBreaker() throws IOException {
+        CircuitBreaker breaker = halfOpenBreaker();
+        try {
+            execute(breaker, 2, createFrontend(), chain -> respond(chain, "GET".equals(chain.request().method()) ? 500 : 503, ""));
+            fail("The outcome of the lost call is unknown");
+        } catch (IOException e) {
+            assertTrue(e.getMessage().contains("State check"));
+        }
+        assertTrue(breaker.allowRequest());
+    }
+
+    @Test
+    public void adoptsTheFrontendOfTheLostCall() throws IOException {
+        CircuitBreaker breaker = halfOpenBreaker();
+        AtomicInteger posts = new AtomicInteger();
+        try (Response response = execute(breaker, 2, createFrontend(), chain -> {
+            if ("POST".equals(chain.request().method())) {
+                posts.incrementAndGet();
+                return respond(chain, 503, "");
+            }
+            assertEquals("apiid", chain.request().url().queryParameter("field"));
+            return respond(chain, 200, "[{'id':'p1','apiId':'b1','organizationId':'o1','name':'pets'}]");
+        })) {
+            assertEquals(201, response.code());
+            assertTrue(response.body().string().contains("\"p1\""));
+        }
+        assertEquals(1, posts.get());
+        assertEquals(CircuitBreaker.State.CLOSED, breaker.getState());
+    }
+
+    @Test
+    public void replaysWhenOnlyOtherFrontendsAreFound() throws IOException {
+        CircuitBreaker breaker = new CircuitBreaker("node", policy(5), null);
+        AtomicInteger posts = new AtomicInteger();
+        try (Response response = execute(breaker, 2, createFrontend(), chain -> {
+            if ("POST".equals(chain.request().method())) {
+                return posts.incrementAndGet() == 1 ? respond(chain, 503, "") : respond(chain, 201, "{'id':'p2'}");
+            }
+            // a server that ignores the filter returns unrelated proxies
+            return respond(chain, 200, "[{'id':'x1','apiId':'b2','organizationId':'o1'},{'id':'x2','apiId':'b1','organizationId':'o2'}]");
+        })) {
+            assertEquals(201, response.code());
+            assertTrue(response.body().string().contains("\"p2\""));
+        }
+        assertEquals(2, posts.get());
+    }
+
+    @Test
+    public void cancelledCallIsNotAFailureOfTheNode() {
+        CircuitBreaker breaker = halfOpenBreaker();
+        try {
+            execute(breaker, 2, new Request.Builder().url(PROXIES).build(), chain -> {
+                chain.call().cancel();
+                throw new IOException("Canceled");
+            });
+            fail("The call was cancelled");
+        } catch (IOException e) {
+            assertEquals("Canceled", e.getMessage());
+        }
+        assertEquals(CircuitBreaker.State.HALF_OPEN, breaker.getState());
+        assertTrue(breaker.allowRequest());
+    }
+
+    private static CircuitBreaker halfOpenBreaker() {
+        RetryPolicy policy = policy(1);
+        policy.setOpenMillis(0);
+        CircuitBreaker breaker = new CircuitBreaker("node", policy, null);
+        breaker.onFailure();
+        return breaker;
+    }
+
+    private static RetryPolicy policy(int failureThreshold) {
+        RetryPolicy policy = new RetryPolicy();
+        policy.setFailureThreshold(failureThreshold);
+        policy.setBaseDelayMillis(0);
+        return policy;
+    }
+
+    private static Response execute(CircuitBreaker breaker, int maxAttempts, Request request, Interceptor server) throws IOException {
+        RetryPolicy policy = policy(1);
+        policy.setMaxAttempts(maxAttempts);
+        OkHttpClient client = new OkHttpClient.Builder()
+            .addInterceptor(new RetryInterceptor(breaker, policy, null))
+            .addInterceptor(server)
+            .build();
+        return client.newCall(request).execute();
+    }
+
+    private static Request createFrontend() {
+        try {
+            return new Request.Builder()
+                .url(PROXIES)
+                .post(RequestBody.create("{\"apiId\":\"b1\",\"organizationId\":\"o1\"}", JSON))
+                .tag(Invocation.class, Invocation.of(APIMService.class.getMethod("createFrontend", API.class), Collections.emptyList()))
+                .build();
+        } catch (NoSuchMethodException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static Response respond(Interceptor.Chain chain, int code, String body) {
+        return new Response.Builder()
+            .request(chain.request())
+            .protocol(Protocol.HTTP_1_1)
+            .code(code)
+            .message("status " + code)
+            .body(ResponseBody.create(body.replace('\'', '"'), JSON))
+            .build();
+    }
+}